@@ -0,0 +1,517 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Non-interactive booking engine behind option 5. Every call runs in its own
+ * transaction on a pooled connection, so the service is safe to share
+ * between threads.
+ *
+ * A seat is taken with a single conditional UPDATE on the Flight row. The
+ * row lock it acquires is held until commit, and PostgreSQL re-checks the
+ * num_sold < seats condition after waiting on that lock, so concurrent
+ * bookers can never push num_sold past Plane.seats.
+ *
+ * When a SeatInventory is attached, full flights are waitlisted straight
+ * from memory and every committed change of num_sold is mirrored into it.
+ * An attached ReservationSnapshot is told about every committed insert and
+ * cancellation. When a WaitlistEngine is attached, waitlisted bookings join its queues
+ * and cancellations that free seats wake it up.
+ *
+ */
+
+public class BookingService{
+	public static final char RESERVED = 'R';
+	public static final char WAITLISTED = 'W';
+	public static final char CANCELLED = 'C';
+
+	//takes one seat if the flight still has one, holding the Flight row lock
+	static final String RESERVE_SEAT =
+		"UPDATE Flight F SET num_sold = F.num_sold + 1 " +
+		"WHERE F.fnum = ? AND F.num_sold < (" +
+			"SELECT P.seats FROM FlightInfo FI, Plane P " +
+			"WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id ORDER BY FI.fiid LIMIT 1)";
+
+	static final String INSERT_RESERVATION =
+		"INSERT INTO Reservation (rnum, cid, fid, status) " +
+		"VALUES (nextval('reservation_rnum_seq'), ?, ?, ?) RETURNING rnum";
+
+	//taken before any Reservation row, the lock order of bookBatch and
+	//WaitlistEngine, so a cancellation cannot deadlock with a promotion
+	static final String LOCK_FLIGHT =
+		"SELECT fnum FROM Flight WHERE fnum = ? FOR NO KEY UPDATE";
+
+	static final String CANCEL_RESERVATIONS =
+		"UPDATE Reservation R SET status = 'C' " +
+		"FROM (SELECT rnum, status FROM Reservation " +
+			"WHERE cid = ? AND fid = ? AND status <> 'C' FOR UPDATE) old " +
+		"WHERE R.rnum = old.rnum RETURNING old.status, R.rnum";
+
+	static final String RELEASE_SEATS =
+		"UPDATE Flight SET num_sold = num_sold - ? WHERE fnum = ?";
+
+	//locks every flight of a batch in fnum order and reads its capacity
+	static final String LOCK_FLIGHTS =
+		"SELECT F.fnum, F.num_sold, (" +
+			"SELECT P.seats FROM FlightInfo FI, Plane P " +
+			"WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id ORDER BY FI.fiid LIMIT 1) " +
+		"FROM Flight F WHERE F.fnum = ANY (?) ORDER BY F.fnum FOR UPDATE OF F";
+
+	static final String SELL_SEATS =
+		"UPDATE Flight SET num_sold = num_sold + ? WHERE fnum = ?";
+
+	static final String NEXT_RNUMS =
+		"SELECT nextval('reservation_rnum_seq') FROM generate_series(1, ?)";
+
+	static final String INSERT_RESERVATION_ROW =
+		"INSERT INTO Reservation (rnum, cid, fid, status) VALUES (?, ?, ?, ?)";
+
+	private final ConnectionPool _pool;
+	private volatile SeatInventory _inventory = null;
+	private volatile ResultCache _cache = null;
+	private volatile WaitlistEngine _waitlist = null;
+	private volatile ReservationSnapshot _snapshot = null;
+	private volatile ChangeLog _changeLog = null;
+
+	/**
+	 * The outcome of a single booking: the reservation number that was
+	 * assigned and whether the passenger got a seat (R) or was waitlisted (W).
+	 */
+	public static final class Booking {
+		public final int rnum;
+		public final char status;
+
+		Booking(int rnum, char status) {
+			this.rnum = rnum;
+			this.status = status;
+		}
+	}
+
+	/**
+	 * One (customer, flight) pair of a batch booking.
+	 */
+	public static final class Request {
+		public final int customerId;
+		public final int flightNum;
+
+		public Request(int customerId, int flightNum) {
+			this.customerId = customerId;
+			this.flightNum = flightNum;
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> BookingService (ConnectionPool pool)
+	 * Purpose  -> Creates a booking engine that draws connections from the
+	 *             given pool.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ConnectionPool pool
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public BookingService(ConnectionPool pool) {
+		this._pool = pool;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setSeatInventory(SeatInventory inventory)
+	 * Purpose  -> Attaches (or with null, detaches) an in-memory seat
+	 *             inventory that is kept in step with every booking.
+	 * -----------------------------------------------------------------------
+	 * Receives -> SeatInventory inventory
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setSeatInventory(SeatInventory inventory) {
+		this._inventory = inventory;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setResultCache(ResultCache cache)
+	 * Purpose  -> Attaches (or with null, detaches) a result cache whose
+	 *             entries for a flight are dropped whenever a booking on
+	 *             that flight commits.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ResultCache cache
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setResultCache(ResultCache cache) {
+		this._cache = cache;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setWaitlist(WaitlistEngine waitlist)
+	 * Purpose  -> Attaches (or with null, detaches) the engine that
+	 *             promotes waitlisted reservations as seats free up.
+	 * -----------------------------------------------------------------------
+	 * Receives -> WaitlistEngine waitlist
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setWaitlist(WaitlistEngine waitlist) {
+		this._waitlist = waitlist;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setReservationSnapshot(ReservationSnapshot snapshot)
+	 * Purpose  -> Attaches (or with null, detaches) a columnar copy of
+	 *             Reservation that is sent every committed change.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ReservationSnapshot snapshot
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setReservationSnapshot(ReservationSnapshot snapshot) {
+		this._snapshot = snapshot;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setChangeLog(ChangeLog log)
+	 * Purpose  -> Attaches (or with null, detaches) the log that records
+	 *             committed changes for the next start's snapshot.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ChangeLog log
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setChangeLog(ChangeLog log) {
+		this._changeLog = log;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Booking book(int customerId, int flightNum)
+	 *                                                  throws SQLException
+	 * Purpose  -> Books a customer onto a flight. The seat check, the
+	 *             num_sold increment and the Reservation insert commit
+	 *             together; a full flight yields a waitlisted reservation.
+	 * -----------------------------------------------------------------------
+	 * @param customerId Customer.id of the passenger
+	 * @param flightNum Flight.fnum to book
+	 * @return the assigned reservation number and status
+	 * @throws java.sql.SQLException when the booking could not be committed
+	 * -----------------------------------------------------------------------
+	 * Receives -> int customerId, int flightNum
+	 * Returns  -> Booking
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Booking book(int customerId, int flightNum) throws SQLException {
+		SeatInventory inventory = this._inventory;
+		int seat = inventory == null ? SeatInventory.NOT_HELD : inventory.tryReserve(flightNum);
+		//true while an in-memory seat is taken but not yet committed
+		boolean held = seat == SeatInventory.HELD;
+
+		ConnectionPool.PooledConnection conn = null;
+		try {
+			//inside the try, so a pool timeout still gives the held seat back
+			conn = this._pool.acquire();
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+
+			char status = WAITLISTED;
+			if (seat != SeatInventory.FULL) {
+				PreparedStatement reserve = conn.prepare(RESERVE_SEAT);
+				reserve.setInt(1, flightNum);
+				if (reserve.executeUpdate() == 1) {
+					status = RESERVED;
+				}else if (held) {
+					// memory thought there was a seat; resync the flight
+					inventory.invalidate(flightNum);
+					held = false;
+				}
+			}
+
+			PreparedStatement insert = conn.prepare(INSERT_RESERVATION);
+			insert.setInt(1, customerId);
+			insert.setInt(2, flightNum);
+			insert.setString(3, String.valueOf(status));
+			ResultSet rs = insert.executeQuery();
+			rs.next();
+			int rnum = rs.getInt(1);
+			rs.close();
+
+			c.commit();
+			if (held) {
+				inventory.confirm(flightNum);
+			}
+			held = false;
+			invalidate(flightNum);
+			ReservationSnapshot snapshot = this._snapshot;
+			if (snapshot != null) {
+				snapshot.booked(rnum, customerId, flightNum, status);
+			}
+			ChangeLog log = this._changeLog;
+			if (log != null) {
+				log.booked(rnum, customerId, flightNum, status);
+			}
+			WaitlistEngine waitlist = this._waitlist;
+			if (waitlist != null && status == WAITLISTED) {
+				waitlist.enqueue(flightNum, rnum);
+			}
+			return new Booking(rnum, status);
+		}finally {
+			if (held) {
+				inventory.release(flightNum);
+			}
+			// release() rolls back anything left uncommitted
+			this._pool.release(conn);
+		}
+	}//end book
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int cancel(int customerId, int flightNum)
+	 *                                                  throws SQLException
+	 * Purpose  -> Cancels a customer's open reservations on a flight and
+	 *             gives any reserved seats back to Flight.num_sold.
+	 * -----------------------------------------------------------------------
+	 * @param customerId Customer.id of the passenger
+	 * @param flightNum Flight.fnum of the reservation
+	 * @return the number of reservations cancelled
+	 * @throws java.sql.SQLException when the cancellation could not be committed
+	 * -----------------------------------------------------------------------
+	 * Receives -> int customerId, int flightNum
+	 * Returns  -> [int] cancelled
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int cancel(int customerId, int flightNum) throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+
+			PreparedStatement lock = conn.prepare(LOCK_FLIGHT);
+			lock.setInt(1, flightNum);
+			lock.executeQuery().close();
+
+			PreparedStatement cancel = conn.prepare(CANCEL_RESERVATIONS);
+			cancel.setInt(1, customerId);
+			cancel.setInt(2, flightNum);
+			ResultSet rs = cancel.executeQuery();
+			List<Integer> rnums = new ArrayList<Integer>();
+			int cancelled = 0;
+			int seatsFreed = 0;
+			while (rs.next()) {
+				rnums.add(rs.getInt(2));
+				++cancelled;
+				if (rs.getString(1).charAt(0) == RESERVED) {
+					++seatsFreed;
+				}
+			}
+			rs.close();
+
+			if (seatsFreed > 0) {
+				PreparedStatement release = conn.prepare(RELEASE_SEATS);
+				release.setInt(1, seatsFreed);
+				release.setInt(2, flightNum);
+				release.executeUpdate();
+			}
+
+			c.commit();
+			SeatInventory inventory = this._inventory;
+			if (inventory != null && seatsFreed > 0) {
+				inventory.adjust(flightNum, -seatsFreed);
+			}
+			if (cancelled > 0) {
+				invalidate(flightNum);
+			}
+			ReservationSnapshot snapshot = this._snapshot;
+			if (snapshot != null) {
+				for (int rnum : rnums)
+					snapshot.cancelled(rnum, flightNum);
+			}
+			ChangeLog log = this._changeLog;
+			if (log != null) {
+				for (int rnum : rnums)
+					log.cancelled(rnum, flightNum);
+			}
+			WaitlistEngine waitlist = this._waitlist;
+			if (waitlist != null && seatsFreed > 0) {
+				waitlist.reconcile(flightNum);
+			}
+			return cancelled;
+		}finally {
+			this._pool.release(conn);
+		}
+	}//end cancel
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Booking[] bookBatch(List<Request> requests)
+	 *                                                  throws SQLException
+	 * Purpose  -> Books a group of passengers in a single transaction.
+	 *             Requests are grouped by flight, every flight is locked and
+	 *             checked for capacity once, and seats go to requests in
+	 *             the order they were submitted; the rest are waitlisted.
+	 *             All Reservation rows are written with one JDBC batch.
+	 *             Unknown flights abort the whole batch.
+	 * -----------------------------------------------------------------------
+	 * @param requests the bookings to make, in priority order
+	 * @return one Booking per request, at the same index
+	 * @throws java.sql.SQLException when the batch could not be committed
+	 * -----------------------------------------------------------------------
+	 * Receives -> List<Request> requests
+	 * Returns  -> Booking[]
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Booking[] bookBatch(List<Request> requests) throws SQLException {
+		Booking[] result = new Booking[requests.size()];
+		if (requests.isEmpty()) {
+			return result;
+		}
+
+		/* Group request indexes by flight, sorted so locks are taken in fnum order --- */
+		TreeMap<Integer, List<Integer>> byFlight = new TreeMap<Integer, List<Integer>>();
+		for (int i = 0; i < requests.size(); ++i) {
+			Integer fnum = requests.get(i).flightNum;
+			List<Integer> group = byFlight.get(fnum);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				byFlight.put(fnum, group);
+			}
+			group.add(i);
+		}
+
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+
+			/* One capacity check per flight, all in a single round trip --- */
+			Array fnums = c.createArrayOf("int4", byFlight.keySet().toArray(new Integer[0]));
+			PreparedStatement lock = conn.prepare(LOCK_FLIGHTS);
+			lock.setArray(1, fnums);
+			ResultSet rs = lock.executeQuery();
+			Map<Integer, Integer> free = new TreeMap<Integer, Integer>();
+			while (rs.next()) {
+				int seats = rs.getInt(3);
+				free.put(rs.getInt(1), Math.max(0, seats - rs.getInt(2)));
+			}
+			rs.close();
+			fnums.free();
+
+			/* Hand out seats and push the new num_sold per flight --- */
+			char[] status = new char[result.length];
+			Map<Integer, Integer> reservedByFlight = new TreeMap<Integer, Integer>();
+			PreparedStatement sell = conn.prepare(SELL_SEATS);
+			boolean sold = false;
+			for (Map.Entry<Integer, List<Integer>> group : byFlight.entrySet()) {
+				Integer available = free.get(group.getKey());
+				if (available == null) {
+					throw new SQLException("Flight " + group.getKey() + " does not exist");
+				}
+				int reserved = 0;
+				for (int idx : group.getValue()) {
+					if (reserved < available) {
+						status[idx] = RESERVED;
+						++reserved;
+					}else {
+						status[idx] = WAITLISTED;
+					}
+				}
+				if (reserved > 0) {
+					reservedByFlight.put(group.getKey(), reserved);
+					sell.setInt(1, reserved);
+					sell.setInt(2, group.getKey());
+					sell.addBatch();
+					sold = true;
+				}
+			}
+			if (sold) {
+				sell.executeBatch();
+			}
+
+			/* Draw every reservation number at once --- */
+			PreparedStatement next = conn.prepare(NEXT_RNUMS);
+			next.setInt(1, result.length);
+			rs = next.executeQuery();
+			int[] rnums = new int[result.length];
+			for (int i = 0; i < rnums.length && rs.next(); ++i) {
+				rnums[i] = rs.getInt(1);
+			}
+			rs.close();
+
+			PreparedStatement insert = conn.prepare(INSERT_RESERVATION_ROW);
+			for (int i = 0; i < result.length; ++i) {
+				insert.setInt(1, rnums[i]);
+				insert.setInt(2, requests.get(i).customerId);
+				insert.setInt(3, requests.get(i).flightNum);
+				insert.setString(4, String.valueOf(status[i]));
+				insert.addBatch();
+				result[i] = new Booking(rnums[i], status[i]);
+			}
+			insert.executeBatch();
+
+			c.commit();
+			SeatInventory inventory = this._inventory;
+			if (inventory != null) {
+				for (Map.Entry<Integer, Integer> sale : reservedByFlight.entrySet())
+					inventory.adjust(sale.getKey(), sale.getValue());
+			}
+			for (Integer fnum : byFlight.keySet())
+				invalidate(fnum);
+			ReservationSnapshot snapshot = this._snapshot;
+			if (snapshot != null) {
+				for (int i = 0; i < result.length; ++i)
+					snapshot.booked(rnums[i], requests.get(i).customerId, requests.get(i).flightNum, status[i]);
+			}
+			ChangeLog log = this._changeLog;
+			if (log != null) {
+				for (int i = 0; i < result.length; ++i)
+					log.booked(rnums[i], requests.get(i).customerId, requests.get(i).flightNum, status[i]);
+			}
+			WaitlistEngine waitlist = this._waitlist;
+			if (waitlist != null) {
+				for (int i = 0; i < result.length; ++i)
+					if (status[i] == WAITLISTED)
+						waitlist.enqueue(requests.get(i).flightNum, rnums[i]);
+			}
+			return result;
+		}finally {
+			this._pool.release(conn);
+		}
+	}//end bookBatch
+
+	/* Drops cached results of a flight whose bookings just committed */
+	private void invalidate(int flightNum) {
+		ResultCache cache = this._cache;
+		if (cache != null) {
+			cache.invalidate(flightNum);
+		}
+	}
+}/* End of BookingService !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
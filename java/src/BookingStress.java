@@ -0,0 +1,319 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress test for BookingService on a single hot flight. A scratch flight is
+ * added on the smallest plane, many threads book it at once until far more
+ * bookings than seats were made, and the rows are then checked:
+ *
+ *   num_sold never passed the plane's seats;
+ *   num_sold equals the flight's R reservations, and every booking that
+ *   came back RESERVED or WAITLISTED is there with that status;
+ *   the flight is full, and every booking past its seats was waitlisted.
+ *
+ * Throughput and the p50/p99 latency of book() are printed. The scratch
+ * flight and its reservations are removed afterwards.
+ *
+ * Usage: java BookingStress <dbname> <port> <user> [threads] [bookings]
+ *        (exits with status 1 if any check fails)
+ *
+ */
+
+public class BookingStress{
+	private final ConnectionPool _pool;
+	private final BookingService _bookings;
+	private final LatencyHistogram _latency = new LatencyHistogram();
+	private final AtomicInteger _reserved = new AtomicInteger();
+	private final AtomicInteger _waitlisted = new AtomicInteger();
+	private final AtomicInteger _errors = new AtomicInteger();
+	private final AtomicReference<SQLException> _firstError = new AtomicReference<SQLException>();
+
+	private int _fnum;
+	private int _fiid;
+	private int _seats;
+	private int[] _customers;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> BookingStress (ConnectionPool pool)
+	 * Purpose  -> Books through a plain BookingService on pool, with no
+	 *             inventory or cache in front of the database.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ConnectionPool pool
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public BookingStress(ConnectionPool pool) {
+		this._pool = pool;
+		this._bookings = new BookingService(pool);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setUp() throws SQLException
+	 * Purpose  -> Adds the scratch flight, seated by the smallest plane,
+	 *             and reads the customers to book for.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setUp() throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			ResultSet rs = conn.prepare(
+				"SELECT (SELECT COALESCE(MAX(fnum), 0) + 1 FROM Flight), " +
+				"(SELECT COALESCE(MAX(fiid), 0) + 1 FROM FlightInfo), " +
+				"(SELECT MIN(id) FROM Pilot)").executeQuery();
+			rs.next();
+			this._fnum = rs.getInt(1);
+			this._fiid = rs.getInt(2);
+			int pilot = rs.getInt(3);
+			boolean noPilot = rs.wasNull();
+			rs.close();
+
+			rs = conn.prepare("SELECT id, seats FROM Plane ORDER BY seats, id LIMIT 1").executeQuery();
+			if (noPilot || !rs.next()) {
+				throw new SQLException("The database needs at least one pilot and one plane");
+			}
+			int plane = rs.getInt(1);
+			this._seats = rs.getInt(2);
+			rs.close();
+
+			List<Integer> customers = new ArrayList<Integer>();
+			rs = conn.prepare("SELECT id FROM Customer").executeQuery();
+			while (rs.next())
+				customers.add(rs.getInt(1));
+			rs.close();
+			if (customers.isEmpty()) {
+				throw new SQLException("The database needs at least one customer");
+			}
+			this._customers = new int[customers.size()];
+			for (int i = 0; i < this._customers.length; ++i)
+				this._customers[i] = customers.get(i);
+
+			PreparedStatement flight = conn.prepare(
+				"INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, " +
+				"actual_arrival_date, arrival_airport, departure_airport) " +
+				"VALUES (?, 100, 0, 0, current_date, current_date, 'HOT', 'HOT')");
+			flight.setInt(1, this._fnum);
+			flight.executeUpdate();
+			PreparedStatement info = conn.prepare(
+				"INSERT INTO FlightInfo (fiid, flight_id, pilot_id, plane_id) VALUES (?, ?, ?, ?)");
+			info.setInt(1, this._fiid);
+			info.setInt(2, this._fnum);
+			info.setInt(3, pilot);
+			info.setInt(4, plane);
+			info.executeUpdate();
+			c.commit();
+		}finally {
+			this._pool.release(conn);
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long run(int threads, int bookings)
+	 *                                         throws InterruptedException
+	 * Purpose  -> Makes bookings on the hot flight from threads threads at
+	 *             once, for random customers.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int threads, int bookings
+	 * Returns  -> [long] elapsed nanoseconds
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long run(int threads, final int bookings) throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; ++t) {
+			final SplittableRandom random = new SplittableRandom(t);
+			workers[t] = new Thread(() -> {
+				while (next.getAndIncrement() < bookings) {
+					int customer = this._customers[random.nextInt(this._customers.length)];
+					long begin = System.nanoTime();
+					try {
+						BookingService.Booking booking = this._bookings.book(customer, this._fnum);
+						this._latency.record(System.nanoTime() - begin);
+						if (booking.status == BookingService.RESERVED) this._reserved.incrementAndGet();
+						else this._waitlisted.incrementAndGet();
+					}catch (SQLException e) {
+						this._errors.incrementAndGet();
+						this._firstError.compareAndSet(null, e);
+					}
+				}
+			}, "booker-" + t);
+			workers[t].start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+		return System.nanoTime() - start;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<String> check(int bookings) throws SQLException
+	 * Purpose  -> Reads the hot flight back and lists what is wrong with it.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int bookings
+	 * Returns  -> List<String> violations
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<String> check(int bookings) throws SQLException {
+		List<String> violations = new ArrayList<String>();
+		int numSold;
+		int reserved;
+		int waitlisted;
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			PreparedStatement stmt = conn.prepare(
+				"SELECT F.num_sold, " +
+				"(SELECT COUNT(*) FROM Reservation R WHERE R.fid = F.fnum AND R.status = 'R'), " +
+				"(SELECT COUNT(*) FROM Reservation R WHERE R.fid = F.fnum AND R.status = 'W') " +
+				"FROM Flight F WHERE F.fnum = ?");
+			stmt.setInt(1, this._fnum);
+			ResultSet rs = stmt.executeQuery();
+			rs.next();
+			numSold = rs.getInt(1);
+			reserved = rs.getInt(2);
+			waitlisted = rs.getInt(3);
+			rs.close();
+		}finally {
+			this._pool.release(conn);
+		}
+
+		System.out.printf("num_sold %,d of %,d seats, %,d R and %,d W reservations, %,d errors%n",
+			numSold, this._seats, reserved, waitlisted, this._errors.get());
+		if (numSold > this._seats) {
+			violations.add("num_sold " + numSold + " is past the plane's " + this._seats + " seats");
+		}
+		if (numSold != reserved) {
+			violations.add("num_sold " + numSold + " but " + reserved + " R reservations");
+		}
+		if (reserved != this._reserved.get() || waitlisted != this._waitlisted.get()) {
+			violations.add(this._reserved.get() + " RESERVED and " + this._waitlisted.get() +
+				" WAITLISTED bookings came back, but " + reserved + " R and " + waitlisted + " W were stored");
+		}
+		int made = bookings - this._errors.get();
+		if (reserved != Math.min(made, this._seats)) {
+			violations.add(made + " bookings on " + this._seats + " seats left " + reserved + " seats sold");
+		}
+		if (this._errors.get() > 0) {
+			violations.add(this._errors.get() + " bookings failed, first: " + this._firstError.get().getMessage());
+		}
+		return violations;
+	}
+
+	/* Removes the scratch flight and its reservations */
+	public void tearDown() throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			String[] deletes = {
+				"DELETE FROM Reservation WHERE fid = ?",
+				"DELETE FROM FlightInfo WHERE flight_id = ?",
+				"DELETE FROM Flight WHERE fnum = ?" };
+			for (String delete : deletes) {
+				PreparedStatement stmt = conn.prepare(delete);
+				stmt.setInt(1, this._fnum);
+				stmt.executeUpdate();
+			}
+			c.commit();
+		}finally {
+			this._pool.release(conn);
+		}
+	}
+
+	/* Latency of book(), in nanoseconds */
+	public LatencyHistogram latency() {
+		return this._latency;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void main(String[] args)
+	 * Purpose  -> Runs the hot flight stress test and exits with status 1
+	 *             if any check fails.
+	 * -----------------------------------------------------------------------
+	 * @param args <dbname> <port> <user> [threads] [bookings]
+	 * -----------------------------------------------------------------------
+	 * Receives -> [String[]] args
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BookingStress.class.getName () +
+		            " <dbname> <port> <user> [threads=32] [bookings=2000]");
+			return;
+		}//end if
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+		int bookings = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+
+		// one connection per booking thread, plus one to set up and check
+		if (System.getProperty("dbproject.pool.size") == null) {
+			System.setProperty("dbproject.pool.size", String.valueOf(threads + 1));
+		}
+
+		DBproject esql = null;
+		boolean failed = true;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			BookingStress stress = new BookingStress(esql.getPool());
+			stress.setUp();
+			try {
+				long nanos = stress.run(threads, bookings);
+				LatencyHistogram latency = stress.latency();
+				System.out.printf("%,d bookings on one flight from %d threads in %,d ms: %,.0f bookings/s, " +
+					"p50 %,d us, p99 %,d us, max %,d us%n",
+					bookings, threads, nanos / 1000000, bookings * 1e9 / nanos,
+					latency.percentile(50) / 1000, latency.percentile(99) / 1000, latency.max() / 1000);
+				List<String> violations = stress.check(bookings);
+				for (String violation : violations)
+					System.out.println("VIOLATION: " + violation);
+				failed = !violations.isEmpty();
+			}finally {
+				stress.tearDown();
+			}
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+}/* End of BookingStress !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,431 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Client-side bulk export of tables and report queries, the reverse of
+ * BulkLoader. Each table is split into ranges of its key (the first column:
+ * id, fnum, rnum, ...) of about dbproject.export.chunk rows (1000000), and
+ * every range is streamed with COPY ... TO STDOUT on its own worker and
+ * pooled connection into its own gzipped file. A report query is one file.
+ *
+ * Every chunk reads the same snapshot, exported by a transaction held open
+ * for the whole run, so the files agree with each other as one dump would.
+ * A run writes its files into a fresh .export-* directory of its own and
+ * moves them into place only once every chunk is complete, so a failed run
+ * leaves a previous export untouched; the manifest.json listing them, with
+ * their key range, rows, bytes and the CRC-32 of their uncompressed
+ * contents, is written last.
+ *
+ * Usage: java BulkExporter <dbname> <port> <user> <out dir> [-j workers]
+ *                          [--tsv] [--no-gzip] [--query <name> <select>]
+ *                          [table ...]
+ *
+ *   -j        chunks exported at once (4)
+ *   --tsv     tab-separated text instead of CSV
+ *   --no-gzip write the files uncompressed
+ *   --query   export the rows of a SELECT as <name>; may be repeated
+ *
+ */
+
+public class BulkExporter{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * One file of the export: a key range of a table, or a whole query.
+	 */
+	static final class Chunk {
+		final String name;
+		final String[] columns;
+		final String select;
+		//key range [from, to), unused for queries
+		final String key;
+		final long from;
+		final long to;
+		final Path file;
+		//where this run writes the file until every chunk is done
+		Path staged;
+		long rows;
+		long bytes;
+		long crc;
+
+		Chunk(String name, String[] columns, String select, String key, long from, long to, Path file) {
+			this.name = name;
+			this.columns = columns;
+			this.select = select;
+			this.key = key;
+			this.from = from;
+			this.to = to;
+			this.file = file;
+		}
+	}
+
+	private final DBproject _esql;
+	private final File _outDir;
+	private final int _workers;
+	private final boolean _tsv;
+	private final boolean _gzip;
+	private final long _chunkRows = Math.max(1, Long.getLong("dbproject.export.chunk", 1000000L));
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> BulkExporter (DBproject esql, File outDir, int workers,
+	 *                           boolean tsv, boolean gzip)
+	 * Purpose  -> Creates an exporter writing into outDir with up to
+	 *             workers chunks in flight; the pool needs one more
+	 *             connection for the snapshot.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql, File outDir, int workers, boolean tsv,
+	 *             boolean gzip
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public BulkExporter(DBproject esql, File outDir, int workers, boolean tsv, boolean gzip) {
+		this._esql = esql;
+		this._outDir = outDir;
+		this._workers = Math.max(1, workers);
+		this._tsv = tsv;
+		this._gzip = gzip;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<Chunk> export(List<Tables.Table> tables,
+	 *                                List<String[]> queries) throws Exception
+	 * Purpose  -> Exports the tables and the (name, select) queries from one
+	 *             snapshot into a fresh directory, then moves the files into
+	 *             place and writes the manifest. If any chunk fails, only
+	 *             that directory is deleted; the files and manifest of an
+	 *             earlier export stay as they were.
+	 * -----------------------------------------------------------------------
+	 * Receives -> List<Tables.Table> tables, List<String[]> queries
+	 * Returns  -> List<Chunk> the files written
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<Chunk> export(List<Tables.Table> tables, List<String[]> queries) throws Exception {
+		Path out = this._outDir.toPath();
+		Files.createDirectories(out);
+		Path run = Files.createTempDirectory(out, ".export-");
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		ConnectionPool.PooledConnection leader = this._esql.getPool().acquire();
+		ExecutorService workers = Executors.newFixedThreadPool(this._workers);
+		try {
+			Connection c = leader.getConnection();
+			c.setAutoCommit(false);
+			c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+			String snapshot;
+			try (Statement stmt = c.createStatement(); ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()")) {
+				rs.next();
+				snapshot = rs.getString(1);
+			}
+			for (Tables.Table table : tables)
+				plan(c, table, chunks);
+			for (String[] query : queries) {
+				if (!query[0].matches("[A-Za-z0-9_.-]+")) {
+					throw new IllegalArgumentException("Query name \"" + query[0] + "\" cannot be a file name");
+				}
+				chunks.add(new Chunk(query[0], null, query[1], null, 0, 0,
+					out.resolve(query[0] + extension())));
+			}
+			for (Chunk chunk : chunks) {
+				chunk.staged = run.resolve(out.relativize(chunk.file));
+				Files.createDirectories(chunk.staged.getParent());
+			}
+
+			long start = System.nanoTime();
+			List<Future<Chunk>> running = new ArrayList<Future<Chunk>>();
+			for (final Chunk chunk : chunks)
+				running.add(workers.submit(() -> copyChunk(chunk, snapshot)));
+			long rows = 0;
+			for (Future<Chunk> chunk : running)
+				rows += chunk.get().rows;
+			report("TOTAL", rows, System.nanoTime() - start);
+
+			for (Chunk chunk : chunks) {
+				Files.createDirectories(chunk.file.getParent());
+				Files.move(chunk.staged, chunk.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			writeManifest(chunks);
+			c.commit();
+			return chunks;
+		}finally {
+			workers.shutdownNow();
+			//a COPY under way ends on its own; wait for it before cleaning up
+			workers.awaitTermination(10, TimeUnit.MINUTES);
+			try {
+				leader.getConnection().setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+			}catch (SQLException e) {
+				// release() resets the rest; a broken connection is dropped there
+			}
+			this._esql.getPool().release(leader);
+			//empty after a complete run; after a failed one it holds only this run's files
+			delete(run);
+		}
+	}//end export
+
+	/* Splits a table into key ranges of about _chunkRows rows, from the snapshot's keys */
+	private void plan(Connection c, Tables.Table table, List<Chunk> chunks) throws SQLException {
+		String key = table.columns[0];
+		long min;
+		long max;
+		long count;
+		try (Statement stmt = c.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT MIN(" + key + "), MAX(" + key + "), COUNT(*) FROM " + table.name)) {
+			rs.next();
+			min = rs.getLong(1);
+			max = rs.getLong(2);
+			count = rs.getLong(3);
+		}
+		Path dir = this._outDir.toPath().resolve(table.name);
+		String select = "SELECT " + table.columnList() + " FROM " + table.name;
+		if (count == 0) {
+			chunks.add(new Chunk(table.name, table.columns, select, key, 0, 0,
+				dir.resolve(String.format("%s.%05d%s", table.name, 0, extension()))));
+			return;
+		}
+		//keys are mostly dense, so equal spans hold about equal rows
+		long parts = Math.max(1, (count + this._chunkRows - 1) / this._chunkRows);
+		long span = max - min + 1;
+		long step = (span + parts - 1) / parts;
+		int part = 0;
+		for (long from = min; from <= max; from += step, ++part) {
+			long to = Math.min(from + step, max + 1);
+			chunks.add(new Chunk(table.name, table.columns, select + " WHERE " + key + " >= " + from + " AND " + key +
+				" < " + to + " ORDER BY " + key, key, from, to,
+				dir.resolve(String.format("%s.%05d%s", table.name, part, extension()))));
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Chunk copyChunk(Chunk chunk, String snapshot)
+	 *                                     throws SQLException, IOException
+	 * Purpose  -> Streams one chunk with COPY TO STDOUT, in a transaction on
+	 *             the exported snapshot, through gzip into its staged file.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Chunk chunk, String snapshot
+	 * Returns  -> Chunk with its rows, bytes and CRC filled in
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	Chunk copyChunk(Chunk chunk, String snapshot) throws SQLException, IOException {
+		String sql = "COPY (" + chunk.select + ") TO STDOUT" + (this._tsv ? "" : " WITH (FORMAT csv)");
+		Path temporary = temporary(chunk.staged);
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+			try (Statement stmt = c.createStatement()) {
+				stmt.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+			}
+			CopyManager copy = c.unwrap(PGConnection.class).getCopyAPI();
+			long start = System.nanoTime();
+			CRC32 crc = new CRC32();
+			OutputStream file = Files.newOutputStream(temporary);
+			OutputStream out = new BufferedOutputStream(new CheckedOutputStream(this._gzip ?
+				new GZIPOutputStream(file, BUFFER_SIZE) : file, crc), BUFFER_SIZE);
+			try {
+				chunk.rows = copy.copyOut(sql, out);
+			}finally {
+				out.close();
+			}
+			c.commit();
+			Files.move(temporary, chunk.staged, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			chunk.bytes = Files.size(chunk.staged);
+			chunk.crc = crc.getValue();
+			report(chunk.file.getFileName().toString(), chunk.rows, System.nanoTime() - start);
+			return chunk;
+		}finally {
+			try {
+				conn.getConnection().setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+			}catch (SQLException e) {
+				// release() resets the rest; a broken connection is dropped there
+			}
+			this._esql.getPool().release(conn);
+			Files.deleteIfExists(temporary);
+		}
+	}//end copyChunk
+
+	/* Lists the files as JSON, replacing any older manifest atomically */
+	private void writeManifest(List<Chunk> chunks) throws IOException {
+		Path manifest = this._outDir.toPath().resolve("manifest.json");
+		Path temporary = temporary(manifest);
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))) {
+			out.println("{");
+			out.println("  \"created\": \"" + Instant.now() + "\",");
+			out.println("  \"format\": \"" + (this._tsv ? "text" : "csv") + "\",");
+			out.println("  \"compression\": \"" + (this._gzip ? "gzip" : "none") + "\",");
+			out.println("  \"files\": [");
+			for (int i = 0; i < chunks.size(); ++i) {
+				Chunk chunk = chunks.get(i);
+				StringBuilder line = new StringBuilder("    {\"name\": ").append(json(chunk.name));
+				line.append(", \"file\": ").append(json(this._outDir.toPath().relativize(chunk.file).toString()));
+				if (chunk.columns != null) {
+					line.append(", \"columns\": [");
+					for (int col = 0; col < chunk.columns.length; ++col)
+						line.append(col > 0 ? ", " : "").append(json(chunk.columns[col]));
+					line.append("], \"key\": ").append(json(chunk.key)).append(", \"from\": ").append(chunk.from)
+						.append(", \"to\": ").append(chunk.to);
+				}else {
+					line.append(", \"query\": ").append(json(chunk.select));
+				}
+				line.append(", \"rows\": ").append(chunk.rows).append(", \"bytes\": ").append(chunk.bytes)
+					.append(", \"crc32\": \"").append(String.format("%08x", chunk.crc)).append("\"}");
+				out.println(line.append(i + 1 < chunks.size() ? "," : ""));
+			}
+			out.println("  ]");
+			out.println("}");
+			if (out.checkError()) {
+				throw new IOException("Could not write " + temporary);
+			}
+		}
+		Files.move(temporary, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private String extension() {
+		return (this._tsv ? ".tsv" : ".csv") + (this._gzip ? ".gz" : "");
+	}
+
+	/* Removes a directory of this run and everything in it */
+	private static void delete(Path dir) throws IOException {
+		List<Path> paths = new ArrayList<Path>();
+		try (Stream<Path> walk = Files.walk(dir)) {
+			walk.forEach(paths::add);
+		}catch (NoSuchFileException e) {
+			return;
+		}
+		//children come after their directory in a walk
+		for (int i = paths.size() - 1; i >= 0; --i)
+			Files.deleteIfExists(paths.get(i));
+	}
+
+	private static Path temporary(Path file) {
+		return file.resolveSibling(file.getFileName() + ".tmp");
+	}
+
+	private static String json(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); ++i) {
+			char ch = value.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				quoted.append('\\').append(ch);
+			}else if (ch < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) ch));
+			}else {
+				quoted.append(ch);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static void report(String name, long rows, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.printf("%-24s %,12d rows in %7.2fs  %,14.0f rows/s%n",
+			name, rows, seconds, seconds > 0 ? rows / seconds : 0);
+	}
+
+	/**
+	 * The bulk export command
+	 *
+	 * @param args <dbname> <port> <user> <out dir> [-j workers] [--tsv] [--no-gzip]
+	 *             [--query <name> <select>] [table ...]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BulkExporter.class.getName () +
+		            " <dbname> <port> <user> <out dir> [-j workers] [--tsv] [--no-gzip]" +
+		            " [--query <name> <select>] [table ...]");
+			return;
+		}//end if
+
+		int workers = 4;
+		boolean tsv = false;
+		boolean gzip = true;
+		List<Tables.Table> tables = new ArrayList<Tables.Table>();
+		List<String[]> queries = new ArrayList<String[]>();
+		for (int i = 4; i < args.length; ++i) {
+			if (args[i].equals("-j") && i + 1 < args.length) {
+				workers = Integer.parseInt(args[++i]);
+			}else if (args[i].equals("--tsv")) {
+				tsv = true;
+			}else if (args[i].equals("--no-gzip")) {
+				gzip = false;
+			}else if (args[i].equals("--query") && i + 2 < args.length) {
+				queries.add(new String[] { args[i + 1], args[i + 2] });
+				i += 2;
+			}else if (Tables.byName(args[i]) != null) {
+				tables.add(Tables.byName(args[i]));
+			}else {
+				System.err.println("Unknown table or option: " + args[i]);
+				return;
+			}
+		}
+		if (tables.isEmpty() && queries.isEmpty()) {
+			for (Tables.Table table : Tables.ALL)
+				tables.add(table);
+		}
+
+		// one connection per worker, plus one holding the snapshot
+		if (System.getProperty("dbproject.pool.size") == null) {
+			System.setProperty("dbproject.pool.size", String.valueOf(workers + 1));
+		}
+
+		DBproject esql = null;
+		int status = 0;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			new BulkExporter(esql, new File(args[3]), workers, tsv, gzip).export(tables, queries);
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		System.exit(status);
+	}
+}/* End of BulkExporter !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,253 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Client-side bulk import of the data/*.csv files. Each CSV is streamed to
+ * the server with COPY ... FROM STDIN, so the files no longer have to be
+ * copied into the server's data directory first. Tables of the same foreign
+ * key level are loaded in parallel, one table per worker and connection.
+ *
+ * Usage: java BulkLoader <dbname> <port> <user> <data dir>
+ *                        [--defer] [--truncate] [table ...]
+ *
+ *   --defer     drop foreign keys and secondary indexes of the loaded
+ *               tables during the load and rebuild them afterwards
+ *   --truncate  empty the loaded tables first
+ *
+ */
+
+public class BulkLoader{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	static final String FOREIGN_KEYS =
+		"SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint " +
+		"WHERE conrelid = CAST(? AS regclass) AND contype = 'f'";
+
+	//indexes that do not back a primary key, unique or exclusion constraint
+	static final String SECONDARY_INDEXES =
+		"SELECT CAST(CAST(i.indexrelid AS regclass) AS text), pg_get_indexdef(i.indexrelid) " +
+		"FROM pg_index i WHERE i.indrelid = CAST(? AS regclass) AND NOT EXISTS (" +
+			"SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid)";
+
+	private final DBproject _esql;
+	private final File _dataDir;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> BulkLoader (DBproject esql, File dataDir)
+	 * Purpose  -> Creates a loader reading CSV files from dataDir.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql, File dataDir
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public BulkLoader(DBproject esql, File dataDir) {
+		this._esql = esql;
+		this._dataDir = dataDir;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load(List<Tables.Table> tables, boolean defer,
+	 *                       boolean truncate) throws Exception
+	 * Purpose  -> Loads the given tables level by level. Within a level
+	 *             every table gets its own worker and pooled connection.
+	 *             Deferred constraints and indexes are rebuilt even if the
+	 *             load fails part way.
+	 * -----------------------------------------------------------------------
+	 * Receives -> List<Tables.Table> tables, boolean defer, boolean truncate
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load(List<Tables.Table> tables, boolean defer, boolean truncate) throws Exception {
+		if (truncate) {
+			List<String> names = new ArrayList<String>();
+			for (Tables.Table table : tables)
+				names.add(table.name);
+			this._esql.executeUpdate("TRUNCATE " + String.join(", ", names));
+		}
+
+		List<String> rebuild = new ArrayList<String>();
+		ExecutorService workers = Executors.newFixedThreadPool(tables.size());
+		try {
+			if (defer) {
+				for (Tables.Table table : tables)
+					rebuild.addAll(dropDeferred(table));
+			}
+
+			long start = System.nanoTime();
+			long total = 0;
+			for (int level = 0; level <= maxLevel(tables); ++level) {
+				List<Future<Long>> running = new ArrayList<Future<Long>>();
+				for (final Tables.Table table : tables) {
+					if (table.level == level) {
+						running.add(workers.submit(() -> copyTable(table)));
+					}
+				}
+				for (Future<Long> rows : running)
+					total += rows.get();
+			}
+			report("TOTAL", total, System.nanoTime() - start);
+
+			if (tables.contains(Tables.RESERVATION)) {
+				this._esql.executeQuery("SELECT setval('reservation_rnum_seq', (SELECT MAX(rnum) FROM Reservation))");
+			}
+		}finally {
+			workers.shutdownNow();
+			for (String sql : rebuild) {
+				try {
+					long start = System.nanoTime();
+					this._esql.executeUpdate(sql);
+					System.out.printf("Rebuilt in %.1fs: %s%n", (System.nanoTime() - start) / 1e9, sql);
+				}catch (SQLException e) {
+					System.err.println("Could not rebuild (" + e.getMessage() + "): " + sql);
+				}
+			}
+		}
+	}//end load
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long copyTable(Tables.Table table)
+	 *                                     throws SQLException, IOException
+	 * Purpose  -> Streams one CSV file into its table with COPY FROM STDIN
+	 *             and reports the load rate.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Tables.Table table
+	 * Returns  -> [long] rows
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	long copyTable(Tables.Table table) throws SQLException, IOException {
+		File file = new File(this._dataDir, table.file);
+		String sql = "COPY " + table.name + " (" + table.columnList() + ") FROM STDIN WITH DELIMITER ','";
+
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			CopyManager copy = conn.getConnection().unwrap(PGConnection.class).getCopyAPI();
+			long start = System.nanoTime();
+			long rows;
+			InputStream csv = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+			try {
+				rows = copy.copyIn(sql, csv, BUFFER_SIZE);
+			}finally {
+				csv.close();
+			}
+			report(table.name, rows, System.nanoTime() - start);
+			return rows;
+		}finally {
+			this._esql.getPool().release(conn);
+		}
+	}//end copyTable
+
+	/* Drops the foreign keys and secondary indexes of a table, returning the
+	 * statements that recreate them (indexes before constraints) */
+	private List<String> dropDeferred(Tables.Table table) throws SQLException {
+		List<String> indexes = new ArrayList<String>();
+		List<String> constraints = new ArrayList<String>();
+
+		for (List<String> fk : this._esql.executeQueryAndReturnResult(FOREIGN_KEYS, table.name)) {
+			this._esql.executeUpdate("ALTER TABLE " + table.name + " DROP CONSTRAINT \"" + fk.get(0) + "\"");
+			constraints.add("ALTER TABLE " + table.name + " ADD CONSTRAINT \"" + fk.get(0) + "\" " + fk.get(1));
+		}
+		for (List<String> index : this._esql.executeQueryAndReturnResult(SECONDARY_INDEXES, table.name)) {
+			this._esql.executeUpdate("DROP INDEX " + index.get(0));
+			indexes.add(index.get(1));
+		}
+
+		indexes.addAll(constraints);
+		return indexes;
+	}
+
+	private static int maxLevel(List<Tables.Table> tables) {
+		int max = 0;
+		for (Tables.Table table : tables)
+			max = Math.max(max, table.level);
+		return max;
+	}
+
+	private static void report(String name, long rows, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.printf("%-12s %,12d rows in %7.2fs  %,14.0f rows/s%n",
+			name, rows, seconds, seconds > 0 ? rows / seconds : 0);
+	}
+
+	/**
+	 * The bulk import command
+	 *
+	 * @param args <dbname> <port> <user> <data dir> [--defer] [--truncate] [table ...]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BulkLoader.class.getName () +
+		            " <dbname> <port> <user> <data dir> [--defer] [--truncate] [table ...]");
+			return;
+		}//end if
+
+		boolean defer = false;
+		boolean truncate = false;
+		List<Tables.Table> tables = new ArrayList<Tables.Table>();
+		for (int i = 4; i < args.length; ++i) {
+			if (args[i].equals("--defer")) {
+				defer = true;
+			}else if (args[i].equals("--truncate")) {
+				truncate = true;
+			}else if (Tables.byName(args[i]) != null) {
+				tables.add(Tables.byName(args[i]));
+			}else {
+				System.err.println("Unknown table or option: " + args[i]);
+				return;
+			}
+		}
+		if (tables.isEmpty()) {
+			for (Tables.Table table : Tables.ALL)
+				tables.add(table);
+		}
+
+		// one connection per table of the widest level, plus one for DDL
+		if (System.getProperty("dbproject.pool.size") == null) {
+			System.setProperty("dbproject.pool.size", String.valueOf(tables.size() + 1));
+		}
+
+		DBproject esql = null;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			new BulkLoader(esql, new File(args[3])).load(tables, defer, truncate);
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+	}
+}/* End of BulkLoader !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,471 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of the reservation and flight changes this
+ * process commits, replayed on top of a SnapshotFile so in-memory indexes
+ * start from the file instead of SQL. Every record is framed as
+ *
+ *   int length, int crc32, long sequence, byte type, payload
+ *
+ * with the length and CRC covering everything after the CRC. Records are
+ * absolute (the new status of a reservation, the fields of a new flight),
+ * so replaying one twice is harmless. Reading stops at the first torn or
+ * corrupt record, which is cut off when the log is opened for appending.
+ *
+ * The change feed methods (booked, cancelled, promoted, flight) are
+ * called after the database commit and never fail the caller: if a write
+ * fails, the log stops and deletes the snapshot it was catching up, so
+ * the next start reads the tables from SQL instead of missing a change.
+ *
+ * MemoryStorage uses the same log as its write-ahead log, appending before
+ * it answers and calling commit() to wait until the record is on disk.
+ * Concurrent commits share one fsync: the first caller syncs everything
+ * appended so far while the others wait for it, and whoever still needs a
+ * later record syncs next. -Ddbproject.wal.window=<microseconds> (0) makes
+ * the syncing caller wait that long first, so more records share the sync.
+ *
+ */
+
+public class ChangeLog{
+	//the reservation was inserted: rnum, cid, fid, status
+	public static final byte BOOKED = 1;
+	//the reservation was cancelled: rnum, fid
+	public static final byte CANCELLED = 2;
+	//the waitlisted reservation got a seat: rnum, fid
+	public static final byte PROMOTED = 3;
+	//a flight was added: fnum, cost, departure day, arrival day, num_sold,
+	//num_stops, then the departure and arrival airports
+	public static final byte FLIGHT = 4;
+	//a plane was added: id, age, seats, then the make and model
+	public static final byte PLANE = 5;
+	//a pilot was added: id, then the full name and nationality
+	public static final byte PILOT = 6;
+	//a technician was added: id, then the full name
+	public static final byte TECHNICIAN = 7;
+
+	//length and crc
+	private static final int FRAME = 8;
+	//largest record written or accepted when reading, to spot garbage lengths
+	private static final int MAX_RECORD = 1 << 16;
+	//string length written for a null; longer strings do not fit a record
+	private static final int NULL_STRING = 0xFFFF;
+
+	/**
+	 * One record as read back: ints holds the numeric fields in the order
+	 * listed for its type, strings the text fields.
+	 */
+	public static final class Record {
+		public final long sequence;
+		public final byte type;
+		public final int[] ints;
+		public final String[] strings;
+
+		Record(long sequence, byte type, int[] ints, String[] strings) {
+			this.sequence = sequence;
+			this.type = type;
+			this.ints = ints;
+			this.strings = strings;
+		}
+	}
+
+	private final Path _path;
+	//deleted when an append fails, since the log can no longer catch it up
+	private final Path _snapshot;
+	private volatile boolean _failed = false;
+	//replaced by compact(); appends hold this
+	private volatile FileChannel _channel;
+	private final ByteBuffer _buffer = ByteBuffer.allocateDirect(FRAME + MAX_RECORD);
+	private final CRC32 _crc = new CRC32();
+	//guarded by this
+	private long _next;
+
+	//group commit: the last record known to be on disk, whether a caller is
+	//syncing and the first sync failure, all guarded by _syncLock
+	private final Object _syncLock = new Object();
+	private long _durable = -1;
+	private boolean _syncing = false;
+	private IOException _syncFailure = null;
+	private long _syncs = 0;
+	private final long _windowNanos = Math.max(0, Long.getLong("dbproject.wal.window", 0L)) * 1000;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ChangeLog (Path path, long firstSequence, Path snapshot)
+	 *                                                   throws IOException
+	 * Purpose  -> Opens (or creates) a log for appending. A torn record at
+	 *             the end is cut off; numbering continues after the last
+	 *             record, but never below firstSequence. snapshot, if not
+	 *             null, is the file the log catches up.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Path path, long firstSequence, Path snapshot
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ChangeLog(Path path, long firstSequence, Path snapshot) throws IOException {
+		this._path = path;
+		this._snapshot = snapshot;
+		long[] end = { 0, firstSequence - 1 };
+		if (Files.exists(path)) {
+			end = scan(path, Long.MAX_VALUE, null);
+		}
+		this._channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		this._channel.truncate(end[0]);
+		this._channel.position(end[0]);
+		this._next = Math.max(end[1] + 1, firstSequence);
+	}
+
+	/* The sequence number the next record will get */
+	public synchronized long sequence() {
+		return this._next;
+	}
+
+	public Path path() {
+		return this._path;
+	}
+
+	public void booked(int rnum, int cid, int fid, char status) {
+		feed(BOOKED, new int[] { rnum, cid, fid, status }, null);
+	}
+
+	public void cancelled(int rnum, int fid) {
+		feed(CANCELLED, new int[] { rnum, fid }, null);
+	}
+
+	public void promoted(int rnum, int fid) {
+		feed(PROMOTED, new int[] { rnum, fid }, null);
+	}
+
+	public void flight(int fnum, int cost, int departureDay, int arrivalDay, int numSold, int numStops,
+			String departureAirport, String arrivalAirport) {
+		feed(FLIGHT, new int[] { fnum, cost, departureDay, arrivalDay, numSold, numStops },
+			new String[] { departureAirport, arrivalAirport });
+	}
+
+	/* Appends a change feed record; the first failure stops the log */
+	private void feed(byte type, int[] ints, String[] strings) {
+		if (this._failed) {
+			return;
+		}
+		try {
+			append(type, ints, strings);
+		}catch (IOException e) {
+			this._failed = true;
+			System.err.println("Change log stopped: " + e.getMessage());
+			if (this._snapshot != null) {
+				try {
+					Files.deleteIfExists(this._snapshot);
+				}catch (IOException ignored) {
+					System.err.println("Could not delete " + this._snapshot + ", remove it before the next start");
+				}
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long append(byte type, int[] ints, String[] strings)
+	 *                                                   throws IOException
+	 * Purpose  -> Writes one record to the end of the log. The write goes
+	 *             to the OS page cache; call sync() to make it durable.
+	 *             A record that does not fit MAX_RECORD is refused with an
+	 *             IOException before anything is written.
+	 * -----------------------------------------------------------------------
+	 * Receives -> byte type, int[] ints, String[] strings
+	 * Returns  -> [long] the record's sequence number
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized long append(byte type, int[] ints, String[] strings) throws IOException {
+		int texts = strings == null ? 0 : strings.length;
+		byte[][] utf8 = new byte[texts][];
+		//sequence, type, the two counts, the ints and a length per string
+		int length = 8 + 1 + 1 + 4 * ints.length + 1 + 2 * texts;
+		for (int i = 0; i < texts; ++i) {
+			if (strings[i] != null) {
+				utf8[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+				length += utf8[i].length;
+			}
+		}
+		if (ints.length > 255 || texts > 255 || length > MAX_RECORD) {
+			throw new IOException("A record of " + length + " bytes does not fit the " + MAX_RECORD + " byte limit");
+		}
+
+		long sequence = this._next;
+		ByteBuffer buffer = this._buffer;
+		buffer.clear();
+		buffer.position(FRAME);
+		buffer.putLong(sequence);
+		buffer.put(type);
+		buffer.put((byte) ints.length);
+		for (int value : ints)
+			buffer.putInt(value);
+		buffer.put((byte) texts);
+		for (int i = 0; i < texts; ++i) {
+			if (utf8[i] == null) {
+				buffer.putShort((short) NULL_STRING);
+				continue;
+			}
+			buffer.putShort((short) utf8[i].length);
+			buffer.put(utf8[i]);
+		}
+		this._crc.reset();
+		ByteBuffer body = buffer.duplicate();
+		body.flip().position(FRAME);
+		this._crc.update(body);
+		buffer.putInt(0, length);
+		buffer.putInt(4, (int) this._crc.getValue());
+		buffer.flip();
+		while (buffer.hasRemaining())
+			this._channel.write(buffer);
+		++this._next;
+		return sequence;
+	}
+
+	/* Forces every record appended so far to disk */
+	public void sync() throws IOException {
+		this._channel.force(false);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void commit(long sequence) throws IOException
+	 * Purpose  -> Returns once the record numbered sequence, and every one
+	 *             before it, is on disk. If another caller is syncing, waits
+	 *             for it; otherwise syncs everything appended so far. A
+	 *             failed sync fails this and every later commit.
+	 * -----------------------------------------------------------------------
+	 * Receives -> long sequence
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void commit(long sequence) throws IOException {
+		synchronized (this._syncLock) {
+			while (this._durable < sequence) {
+				if (this._syncFailure != null) {
+					throw new IOException("Change log sync failed: " + this._syncFailure.getMessage(), this._syncFailure);
+				}
+				if (!this._syncing) {
+					break;
+				}
+				try {
+					this._syncLock.wait();
+				}catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for the change log sync");
+				}
+			}
+			if (this._durable >= sequence) {
+				return;
+			}
+			this._syncing = true;
+		}
+
+		long target = -1;
+		boolean synced = false;
+		IOException failure = null;
+		try {
+			if (this._windowNanos > 0) {
+				LockSupport.parkNanos(this._windowNanos);
+			}
+			//every record numbered below _next is fully written
+			synchronized (this) {
+				target = this._next - 1;
+			}
+			this._channel.force(false);
+			synced = true;
+		}catch (IOException e) {
+			failure = e;
+		}finally {
+			synchronized (this._syncLock) {
+				this._syncing = false;
+				if (synced) {
+					this._durable = Math.max(this._durable, target);
+					++this._syncs;
+				}else if (this._syncFailure == null) {
+					this._syncFailure = failure != null ? failure : new IOException("Change log sync did not finish");
+				}
+				this._syncLock.notifyAll();
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/* The fsyncs commit() has issued */
+	public long syncs() {
+		synchronized (this._syncLock) {
+			return this._syncs;
+		}
+	}
+
+	public synchronized void close() throws IOException {
+		this._channel.close();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void compact(long keepFrom) throws IOException
+	 * Purpose  -> Drops the records before keepFrom (e.g. those a new
+	 *             snapshot already holds) by copying the rest to a new
+	 *             file and renaming it over the log.
+	 * -----------------------------------------------------------------------
+	 * Receives -> long keepFrom
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized void compact(long keepFrom) throws IOException {
+		this._channel.force(false);
+		//scan() stops before the first record to keep
+		long start = scan(this._path, keepFrom, null)[0];
+		Path copy = Paths.get(this._path + ".tmp");
+		try (FileChannel source = FileChannel.open(this._path, StandardOpenOption.READ);
+				FileChannel target = FileChannel.open(copy, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long size = source.size();
+			for (long done = start; done < size; )
+				done += source.transferTo(done, size - done, target);
+			target.force(true);
+		}
+		Files.move(copy, this._path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		//the open channel still points at the old file; reopen at the end
+		this._channel.close();
+		this._channel = FileChannel.open(this._path, StandardOpenOption.WRITE);
+		this._channel.position(this._channel.size());
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<Record> read(Path path, long fromSequence)
+	 *                                                   throws IOException
+	 * Purpose  -> Reads the records numbered fromSequence and later, up to
+	 *             the first torn or corrupt one. A missing log is empty.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Path path, long fromSequence
+	 * Returns  -> List<Record> in log order
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static List<Record> read(Path path, long fromSequence) throws IOException {
+		List<Record> records = new ArrayList<Record>();
+		if (Files.exists(path)) {
+			scan(path, Long.MAX_VALUE, records);
+			int skip = 0;
+			while (skip < records.size() && records.get(skip).sequence < fromSequence)
+				++skip;
+			records = new ArrayList<Record>(records.subList(skip, records.size()));
+		}
+		return records;
+	}
+
+	/*
+	 * Walks the valid records of a log, collecting them when asked to.
+	 * Stops at the first record numbered stopAt or later, or at the first
+	 * bad one. Returns {offset where it stopped, last sequence read}.
+	 */
+	private static long[] scan(Path path, long stopAt, List<Record> records) throws IOException {
+		long offset = 0;
+		long last = -1;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer frame = ByteBuffer.allocate(FRAME);
+			ByteBuffer body = ByteBuffer.allocate(MAX_RECORD);
+			CRC32 crc = new CRC32();
+			while (offset + FRAME <= size) {
+				frame.clear();
+				if (readFully(channel, frame, offset) < FRAME) {
+					break;
+				}
+				int length = frame.getInt(0);
+				if (length < 10 || length > MAX_RECORD || offset + FRAME + length > size) {
+					break;
+				}
+				body.clear().limit(length);
+				if (readFully(channel, body, offset + FRAME) < length) {
+					break;
+				}
+				body.flip();
+				crc.reset();
+				crc.update(body.duplicate());
+				if ((int) crc.getValue() != frame.getInt(4)) {
+					break;
+				}
+				Record record = decode(body);
+				if (record == null || record.sequence >= stopAt) {
+					break;
+				}
+				if (records != null) {
+					records.add(record);
+				}
+				last = record.sequence;
+				offset += FRAME + length;
+			}
+		}
+		return new long[] { offset, last };
+	}
+
+	private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	/* Decodes a record body; null if it does not add up */
+	private static Record decode(ByteBuffer body) {
+		try {
+			long sequence = body.getLong();
+			byte type = body.get();
+			int[] ints = new int[body.get() & 0xFF];
+			for (int i = 0; i < ints.length; ++i)
+				ints[i] = body.getInt();
+			String[] strings = new String[body.get() & 0xFF];
+			for (int i = 0; i < strings.length; ++i) {
+				int length = body.getShort() & 0xFFFF;
+				if (length == NULL_STRING) {
+					continue;
+				}
+				byte[] utf8 = new byte[length];
+				body.get(utf8);
+				strings[i] = new String(utf8, StandardCharsets.UTF_8);
+			}
+			return body.hasRemaining() ? null : new Record(sequence, type, ints, strings);
+		}catch (java.nio.BufferUnderflowException e) {
+			return null;
+		}
+	}
+}/* End of ChangeLog !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,322 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.DriverManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of physical PostgreSQL connections. Every pooled connection
+ * keeps its own cache of prepared statements keyed by the SQL text (the
+ * query shape), so a statement is parsed and planned by the server once per
+ * connection instead of once per call.
+ *
+ */
+
+public class ConnectionPool{
+	//max number of prepared statements cached on a single connection
+	private static final int STATEMENT_CACHE_SIZE = 64;
+	//how long a waiter sleeps on the idle queue before trying to open a
+	//connection again, in case one was dropped and left room in the pool
+	private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final String _url;
+	private final String _user;
+	private final String _passwd;
+	private final int _maxSize;
+	private final long _waitMillis;
+	private final ArrayBlockingQueue<PooledConnection> _idle;
+	private final List<PooledConnection> _all = new ArrayList<PooledConnection>();
+	//slots reserved by callers opening a connection outside the lock
+	private int _opening = 0;
+	private boolean _closed = false;
+	//time callers spent in acquire(), and how many of them gave up
+	private final LatencyHistogram _waits = new LatencyHistogram();
+	private final AtomicLong _timeouts = new AtomicLong();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ConnectionPool (String url, String user, String passwd,
+	 *                             int maxSize, long waitMillis)
+	 * Purpose  -> Creates an empty pool. Physical connections are opened
+	 *             lazily, up to maxSize of them.
+	 * -----------------------------------------------------------------------
+	 * @param url JDBC connection URL
+	 * @param user the user name used to login to the database
+	 * @param passwd the user login password
+	 * @param maxSize upper bound on open physical connections
+	 * @param waitMillis how long acquire() waits for a free connection
+	 * -----------------------------------------------------------------------
+	 * Receives -> url, user, passwd, maxSize, waitMillis
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ConnectionPool(String url, String user, String passwd, int maxSize, long waitMillis) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Pool size must be positive");
+		}
+		this._url = url;
+		this._user = user;
+		this._passwd = passwd;
+		this._maxSize = maxSize;
+		this._waitMillis = waitMillis;
+		this._idle = new ArrayBlockingQueue<PooledConnection>(maxSize);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> PooledConnection acquire() throws SQLException
+	 * Purpose  -> Hands out an idle connection, opens a new one while the
+	 *             pool is below its bound, and otherwise waits for one to be
+	 *             released, trying again to open one every few milliseconds
+	 *             until the wait runs out.
+	 * -----------------------------------------------------------------------
+	 * @return a connection owned by the caller until release()
+	 * @throws java.sql.SQLException when no connection frees up in time
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> PooledConnection
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public PooledConnection acquire() throws SQLException {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(this._waitMillis);
+		PooledConnection conn = this._idle.poll();
+		while (conn == null) {
+			conn = connect();
+			if (conn == null) {
+				conn = await(deadline);
+			}
+		}
+		conn._acquiredAt = System.nanoTime();
+		this._waits.record(conn._acquiredAt - start);
+		return conn;
+	}//end acquire
+
+	/*
+	 * Opens a new physical connection if the pool is below its size. The
+	 * slot is reserved under the lock and the connection opened outside it,
+	 * so a slow handshake does not hold up release().
+	 */
+	private PooledConnection connect() throws SQLException {
+		synchronized (this) {
+			if (this._closed) {
+				throw new SQLException("Connection pool is closed");
+			}
+			if (this._all.size() + this._opening >= this._maxSize) {
+				return null;
+			}
+			++this._opening;
+		}
+
+		PooledConnection conn;
+		try {
+			conn = new PooledConnection(DriverManager.getConnection(this._url, this._user, this._passwd));
+		}catch (SQLException | RuntimeException e) {
+			synchronized (this) {
+				--this._opening;
+			}
+			throw e;
+		}
+		synchronized (this) {
+			--this._opening;
+			if (!this._closed) {
+				this._all.add(conn);
+				return conn;
+			}
+		}
+		//the pool was closed during the handshake
+		conn.close();
+		throw new SQLException("Connection pool is closed");
+	}
+
+	/*
+	 * Waits a little for another caller to release a connection; null when
+	 * none came back yet and the deadline is still ahead
+	 */
+	private PooledConnection await(long deadline) throws SQLException {
+		long left = deadline - System.nanoTime();
+		PooledConnection conn = null;
+		if (left > 0) {
+			try {
+				conn = this._idle.poll(Math.min(left, RETRY_NANOS), TimeUnit.NANOSECONDS);
+			}catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for a connection");
+			}
+		}
+		if (conn == null && System.nanoTime() - deadline >= 0) {
+			this._timeouts.incrementAndGet();
+			//53300 is PostgreSQL's too_many_connections, so callers can tell
+			//an exhausted pool apart from a failed statement
+			throw new SQLException("Timed out after " + this._waitMillis + "ms waiting for a connection", "53300");
+		}
+		return conn;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void release(PooledConnection conn)
+	 * Purpose  -> Returns a connection to the pool. Connections left inside
+	 *             a transaction are rolled back, and connections that are no
+	 *             longer usable are closed and dropped from the pool.
+	 * -----------------------------------------------------------------------
+	 * Receives -> PooledConnection conn
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void release(PooledConnection conn) {
+		if (conn == null) {
+			return;
+		}
+		//time held counts as DB time of the operation running on this thread
+		Metrics.db(System.nanoTime() - conn._acquiredAt);
+		boolean healthy;
+		try {
+			Connection c = conn.getConnection();
+			if (!c.getAutoCommit()) {
+				c.rollback();
+				c.setAutoCommit(true);
+			}
+			healthy = !c.isClosed();
+		}catch (SQLException e) {
+			healthy = false;
+		}
+
+		synchronized (this) {
+			if (healthy && !this._closed) {
+				this._idle.offer(conn);
+				return;
+			}
+			this._all.remove(conn);
+		}
+		conn.close();
+	}//end release
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void close()
+	 * Purpose  -> Closes every physical connection owned by the pool.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void close() {
+		List<PooledConnection> conns;
+		synchronized (this) {
+			this._closed = true;
+			conns = new ArrayList<PooledConnection>(this._all);
+			this._all.clear();
+			this._idle.clear();
+		}
+		for (PooledConnection conn : conns) {
+			conn.close();
+		}
+	}//end close
+
+	/* Time spent in acquire(), in nanoseconds */
+	public LatencyHistogram waits() {
+		return this._waits;
+	}
+
+	/* Number of acquire() calls that timed out */
+	public long timeouts() {
+		return this._timeouts.get();
+	}
+
+	/* Number of open physical connections */
+	public synchronized int size() {
+		return this._all.size();
+	}
+
+	/* Number of open connections not lent out */
+	public int idle() {
+		return this._idle.size();
+	}
+
+	/**
+	 * A physical connection together with its prepared statement cache. The
+	 * cache evicts the least recently used statement once it is full.
+	 */
+	public static class PooledConnection {
+		private final Connection _connection;
+		private final LinkedHashMap<String, PreparedStatement> _statements;
+		//when the current borrower got this connection, from System.nanoTime()
+		private long _acquiredAt;
+
+		PooledConnection(Connection connection) {
+			this._connection = connection;
+			this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+		}
+
+		public Connection getConnection() {
+			return this._connection;
+		}
+
+		/*
+		 * Returns the cached statement for this query shape, preparing it on
+		 * first use. Callers must not close the returned statement.
+		 */
+		public PreparedStatement prepare(String sql) throws SQLException {
+			PreparedStatement stmt = this._statements.get(sql);
+			if (stmt != null) {
+				// drops parameters and batches left behind by a failed caller
+				stmt.clearParameters();
+				stmt.clearBatch();
+				return stmt;
+			}
+			stmt = this._connection.prepareStatement(sql);
+			this._statements.put(sql, stmt);
+			if (this._statements.size() > STATEMENT_CACHE_SIZE) {
+				Iterator<Map.Entry<String, PreparedStatement>> eldest = this._statements.entrySet().iterator();
+				closeQuietly(eldest.next().getValue());
+				eldest.remove();
+			}
+			return stmt;
+		}
+
+		void close() {
+			for (PreparedStatement stmt : this._statements.values()) {
+				closeQuietly(stmt);
+			}
+			this._statements.clear();
+			try {
+				this._connection.close();
+			}catch (SQLException e) {
+				// ignored.
+			}
+		}
+
+		private static void closeQuietly(PreparedStatement stmt) {
+			try {
+				stmt.close();
+			}catch (SQLException e) {
+				// ignored.
+			}
+		}
+	}
+}/* End of ConnectionPool !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
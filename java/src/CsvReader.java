@@ -0,0 +1,485 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Streaming reader for the data/ CSV files, over a mapped or direct
+ * ByteBuffer. Fields are read in order with typed methods that parse the
+ * bytes in place: ints, yyyy-MM-dd dates, yyyy-MM-dd HH:mm timestamps and
+ * the M/d/yyyy birth dates of customer.csv. Only nextString() allocates,
+ * and only the value it returns, so a row of numbers and dates costs no
+ * garbage at all.
+ *
+ * The files are in COPY's text format with ',' as the delimiter, as
+ * create.sql loads them: no quoting, one row per line. Spaces around a
+ * field are dropped (customer.csv puts one before every zipcode), as are
+ * CR line endings and empty lines.
+ *
+ * Malformed fields throw IllegalArgumentException naming the file, line
+ * and field. Not thread-safe; files over 2 GB are not supported.
+ *
+ * Usage: java CsvReader <data dir> [seconds]
+ *        (compares reading the CSV files with BufferedReader and split)
+ *
+ */
+
+public class CsvReader{
+	private static final DateTimeFormatter DOB = DateTimeFormatter.ofPattern("M/d/yyyy");
+	//for finding ',' and '\n' eight bytes at a time
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final long COMMAS = ',' * ONES;
+	private static final long NEWLINES = '\n' * ONES;
+
+	private final String _name;
+	private final ByteBuffer _buffer;
+	private final int _limit;
+	//next byte to read
+	private int _pos;
+	//whether the current row has fields left
+	private boolean _open = false;
+	//line breaks passed so far, and the line of the current row
+	private int _breaks = 0;
+	private int _line = 0;
+	private int _column = 0;
+	//bounds of the last field read, spaces trimmed
+	private int _start;
+	private int _stop;
+	//for nextString()
+	private byte[] _scratch = new byte[64];
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> CsvReader (String name, ByteBuffer buffer)
+	 * Purpose  -> Reads the rows between the buffer's position and limit,
+	 *             without changing either. name is used in error messages.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String name, ByteBuffer buffer
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public CsvReader(String name, ByteBuffer buffer) {
+		this._name = name;
+		this._buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this._pos = buffer.position();
+		this._limit = buffer.limit();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> CsvReader open(File file) throws IOException
+	 * Purpose  -> Maps a file read-only and reads it. The mapping stays
+	 *             valid after the file is closed; a missing file reads as
+	 *             empty.
+	 * -----------------------------------------------------------------------
+	 * Receives -> File file
+	 * Returns  -> CsvReader
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static CsvReader open(File file) throws IOException {
+		if (!file.exists()) {
+			return new CsvReader(file.getPath(), ByteBuffer.allocate(0));
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is over 2 GB");
+			}
+			return new CsvReader(file.getPath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	/* Moves to the next row, skipping what is left of this one; false at the end */
+	public boolean next() {
+		ByteBuffer buffer = this._buffer;
+		int pos = this._pos;
+		if (this._open) {
+			while (pos < this._limit && buffer.get(pos) != '\n')
+				++pos;
+			if (pos < this._limit) {
+				++pos;
+				++this._breaks;
+			}
+		}
+		//empty lines
+		while (pos < this._limit) {
+			byte b = buffer.get(pos);
+			if (b == '\n') {
+				++this._breaks;
+			}else if (b != '\r') {
+				break;
+			}
+			++pos;
+		}
+		this._pos = pos;
+		this._line = this._breaks + 1;
+		this._column = 0;
+		this._open = pos < this._limit;
+		return this._open;
+	}
+
+	/* Fails unless every field of the row was read */
+	public void end() {
+		if (this._open) {
+			throw error("expected " + this._column + " fields, found more");
+		}
+	}
+
+	/* The line of the current row, from 1 */
+	public int line() {
+		return this._line;
+	}
+
+	public void skip() {
+		field();
+	}
+
+	/* Parses as it scans, the common case of the files */
+	public int nextInt() {
+		if (!this._open) {
+			throw error("expected more than " + this._column + " fields");
+		}
+		ByteBuffer buffer = this._buffer;
+		int limit = this._limit;
+		int i = this._pos;
+		byte b = 0;
+		while (i < limit && (b = buffer.get(i)) == ' ')
+			++i;
+		this._start = i;
+		boolean negative = i < limit && b == '-';
+		if (negative) ++i;
+		int first = i;
+		long value = 0;
+		while (i < limit && (b = buffer.get(i)) >= '0' && b <= '9' && i - first < 11) {
+			value = value * 10 + (b - '0');
+			++i;
+		}
+		this._stop = i;
+		while (i < limit && (b = buffer.get(i)) == ' ')
+			++i;
+		if (i < limit && b == '\r' && (i + 1 == limit || buffer.get(i + 1) == '\n')) {
+			++i;
+			b = i < limit ? buffer.get(i) : 0;
+		}
+		++this._column;
+		if (i < limit && b != ',' && b != '\n' || i == first) {
+			//not a number after all; report the whole field
+			this._pos = this._start;
+			--this._column;
+			field();
+			throw error("expected a number");
+		}
+		finish(i, b);
+		if (negative) value = -value;
+		if (i - first > 10 || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw error("number out of range");
+		}
+		return (int) value;
+	}
+
+	/* The first character of a one-character field, such as a status */
+	public char nextChar() {
+		field();
+		if (this._stop - this._start != 1) {
+			throw error("expected one character");
+		}
+		return (char) (this._buffer.get(this._start) & 0xFF);
+	}
+
+	/* A yyyy-MM-dd date as an epoch day; any time after it is ignored */
+	public int nextDay() {
+		field();
+		if (this._stop - this._start < 10) {
+			throw error("expected yyyy-MM-dd");
+		}
+		return date(this._start);
+	}
+
+	/* A yyyy-MM-dd HH:mm timestamp as minutes since the epoch */
+	public long nextMinute() {
+		field();
+		int i = this._start;
+		if (this._stop - i != 16 || this._buffer.get(i + 10) != ' ' || this._buffer.get(i + 13) != ':') {
+			throw error("expected yyyy-MM-dd HH:mm");
+		}
+		int hour = number(i + 11, i + 13);
+		int minute = number(i + 14, i + 16);
+		if (hour > 23 || minute > 59) {
+			throw error("no such time of day");
+		}
+		return date(i) * 1440L + hour * 60 + minute;
+	}
+
+	/* An M/d/yyyy date as an epoch day */
+	public int nextDob() {
+		field();
+		int first = slash(this._start);
+		int second = slash(first + 1);
+		if (first - this._start > 2 || second - first - 1 > 2 || this._stop - second - 1 != 4) {
+			throw error("expected M/d/yyyy");
+		}
+		return epochDay(number(second + 1, this._stop), number(this._start, first), number(first + 1, second));
+	}
+
+	/* The field as text, spaces trimmed */
+	public String nextString() {
+		field();
+		int length = this._stop - this._start;
+		if (length > this._scratch.length) {
+			this._scratch = new byte[Math.max(length, this._scratch.length * 2)];
+		}
+		for (int i = 0; i < length; ++i)
+			this._scratch[i] = this._buffer.get(this._start + i);
+		return new String(this._scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/* Finds the bounds of the next field and moves past it */
+	private void field() {
+		if (!this._open) {
+			throw error("expected more than " + this._column + " fields");
+		}
+		ByteBuffer buffer = this._buffer;
+		int limit = this._limit;
+		int start = this._pos;
+		int i = start;
+		//eight bytes at a time while a whole word is left
+		while (i + 8 <= limit) {
+			long word = buffer.getLong(i);
+			long commas = word ^ COMMAS;
+			long newlines = word ^ NEWLINES;
+			long found = ((commas - ONES) & ~commas | (newlines - ONES) & ~newlines) & HIGHS;
+			if (found != 0) {
+				i += Long.numberOfTrailingZeros(found) >>> 3;
+				break;
+			}
+			i += 8;
+		}
+		byte b = 0;
+		while (i < limit && (b = buffer.get(i)) != ',' && b != '\n')
+			++i;
+		int stop = i;
+		if (b != ',' && stop > start && buffer.get(stop - 1) == '\r') --stop;
+		finish(i, b);
+		while (start < stop && buffer.get(start) == ' ')
+			++start;
+		while (stop > start && buffer.get(stop - 1) == ' ')
+			--stop;
+		this._start = start;
+		this._stop = stop;
+		++this._column;
+	}
+
+	/* Moves past the delimiter b at i, or the end of the buffer */
+	private void finish(int i, byte b) {
+		if (i < this._limit && b == ',') {
+			this._pos = i + 1;
+		}else {
+			this._open = false;
+			if (i < this._limit) {
+				++this._breaks;
+				++i;
+			}
+			this._pos = i;
+		}
+	}
+
+	private long digits(int from, int to) {
+		long value = 0;
+		for (int i = from; i < to; ++i) {
+			int digit = this._buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw error("expected a number");
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private int number(int from, int to) {
+		if (from == to) {
+			throw error("expected a number");
+		}
+		return (int) digits(from, to);
+	}
+
+	private int slash(int from) {
+		int i = from;
+		while (i < this._stop && this._buffer.get(i) != '/')
+			++i;
+		if (i == this._stop) {
+			throw error("expected M/d/yyyy");
+		}
+		return i;
+	}
+
+	/* The yyyy-MM-dd date starting at i, as an epoch day */
+	private int date(int i) {
+		if (this._buffer.get(i + 4) != '-' || this._buffer.get(i + 7) != '-') {
+			throw error("expected yyyy-MM-dd");
+		}
+		return epochDay(number(i, i + 4), number(i + 5, i + 7), number(i + 8, i + 10));
+	}
+
+	/* Days since 1970-01-01 of a checked calendar date, as LocalDate.toEpochDay() */
+	private int epochDay(int year, int month, int day) {
+		if (month < 1 || month > 12 || day < 1 || day > length(year, month)) {
+			throw error("no such date " + year + "-" + month + "-" + day);
+		}
+		//days from the civil calendar, counting years from March
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	private static int length(int year, int month) {
+		if (month == 2) {
+			return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(this._name + ":" + this._line + ": field " + this._column + ": " + message);
+	}
+
+	/* The schemas the benchmark reads, by file; i int, c char, d day, m minute, b dob, s string */
+	private static final String[][] SCHEMAS = {
+		{ "customer.csv", "isscbsss" }, { "flights.csv", "iiiimmss" }, { "reservation.csv", "iiic" },
+		{ "flightinfo.csv", "iiii" }, { "repairs.csv", "idsiii" }, { "planes.csv", "issii" },
+		{ "pilots.csv", "iss" }, { "technician.csv", "is" }, { "schedule.csv", "iimm" }
+	};
+
+	/* Reads every field of a file the way MemoryStorage used to, returning a checksum */
+	private static long naive(File file, String schema) throws IOException {
+		long sum = 0;
+		try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty()) continue;
+				String[] row = line.split(",", -1);
+				for (int i = 0; i < schema.length(); ++i) {
+					String field = row[i].trim();
+					switch (schema.charAt(i)) {
+						case 'i': sum += Integer.parseInt(field); break;
+						case 'c': sum += field.charAt(0); break;
+						case 'd': sum += LocalDate.parse(field.substring(0, 10)).toEpochDay(); break;
+						case 'm': sum += LocalDateTime.parse(field.replace(' ', 'T')).toLocalDate().toEpochDay(); break;
+						case 'b': sum += LocalDate.parse(field, DOB).toEpochDay(); break;
+						default: sum += field.length(); break;
+					}
+				}
+			}
+		}
+		return sum;
+	}
+
+	/* The same over a mapped buffer; strings are skipped, as the cursor needs no copy of them */
+	private static long cursor(CsvReader csv, String schema) {
+		long sum = 0;
+		while (csv.next()) {
+			for (int i = 0; i < schema.length(); ++i) {
+				switch (schema.charAt(i)) {
+					case 'i': sum += csv.nextInt(); break;
+					case 'c': sum += csv.nextChar(); break;
+					case 'd': sum += csv.nextDay(); break;
+					case 'm': sum += csv.nextMinute() / 1440; break;
+					case 'b': sum += csv.nextDob(); break;
+					default: csv.skip(); sum += csv._stop - csv._start; break;
+				}
+			}
+			csv.end();
+		}
+		return sum;
+	}
+
+	/* Bytes allocated so far by the calling thread, or 0 if unsupported */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if (mx instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	/**
+	 * The CSV throughput benchmark
+	 *
+	 * @param args <data dir> [seconds]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + CsvReader.class.getName () +
+		            " <data dir> [seconds]");
+			return;
+		}//end if
+
+		try {
+			File dir = new File(args[0]);
+			long nanos = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 2) * 1e9);
+			System.out.printf("%-16s %8s %12s %12s %12s %12s%n", "file", "rows", "naive MB/s", "cursor MB/s",
+				"naive B/row", "cursor B/row");
+			for (String[] schema : SCHEMAS) {
+				File file = new File(dir, schema[0]);
+				if (!file.exists()) continue;
+				ByteBuffer mapped = open(file)._buffer;
+				CsvReader counter = new CsvReader(file.getPath(), mapped);
+				long rows = 0;
+				while (counter.next())
+					++rows;
+
+				double[] rates = new double[2];
+				double[] allocated = new double[2];
+				for (int variant = 0; variant < 2; ++variant) {
+					//warm up for a quarter of the time, then measure
+					for (int phase = 0; phase < 2; ++phase) {
+						long until = System.nanoTime() + (phase == 0 ? nanos / 4 : nanos);
+						long start = System.nanoTime();
+						long before = allocatedBytes();
+						long passes = 0;
+						long sum = 0;
+						while (System.nanoTime() < until) {
+							sum += variant == 0 ? naive(file, schema[1]) : cursor(new CsvReader(file.getPath(), mapped), schema[1]);
+							++passes;
+						}
+						if (sum == 42) System.out.print("");
+						rates[variant] = passes * (double) mapped.remaining() / ((System.nanoTime() - start) / 1e9) / 1e6;
+						allocated[variant] = (allocatedBytes() - before) / (double) (passes * Math.max(1, rows));
+					}
+				}
+				System.out.printf("%-16s %,8d %,12.0f %,12.0f %,12.1f %,12.1f%n", schema[0], rows, rates[0], rates[1],
+					allocated[0], allocated[1]);
+			}
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}
+}/* End of CsvReader !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,216 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer for CSV files in the format CsvReader reads and
+ * create.sql copies: ',' between fields, '\n' after every row, no quoting.
+ * Ints, dates (yyyy-MM-dd), timestamps (yyyy-MM-dd HH:mm) and birth dates
+ * (M/d/yyyy) are formatted straight into a direct buffer, which goes to
+ * the channel whenever it fills up; ASCII text is copied byte by byte.
+ * Nothing is allocated per row.
+ *
+ * Text is written as given, so it must not hold ',' or a line break.
+ * Not thread-safe.
+ *
+ */
+
+public class CsvWriter implements AutoCloseable{
+	private final WritableByteChannel _channel;
+	private final ByteBuffer _buffer;
+	//fields written in the current row
+	private int _fields = 0;
+	private long _bytes = 0;
+	//year, month, day of the last civil() call
+	private final int[] _civil = new int[3];
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> CsvWriter (WritableByteChannel channel, int bufferSize)
+	 * Purpose  -> Writes to channel through a direct buffer of bufferSize
+	 *             bytes, which must hold the longest field.
+	 * -----------------------------------------------------------------------
+	 * Receives -> WritableByteChannel channel, int bufferSize
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public CsvWriter(WritableByteChannel channel, int bufferSize) {
+		this._channel = channel;
+		this._buffer = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	public CsvWriter writeInt(int value) throws IOException {
+		separator(11);
+		ByteBuffer buffer = this._buffer;
+		if (value < 0) {
+			buffer.put((byte) '-');
+			if (value == Integer.MIN_VALUE) {
+				//no positive counterpart
+				for (byte b : "2147483648".getBytes(StandardCharsets.US_ASCII))
+					buffer.put(b);
+				return this;
+			}
+			value = -value;
+		}
+		digits(value, 1);
+		return this;
+	}
+
+	public CsvWriter writeChar(char value) throws IOException {
+		separator(1);
+		this._buffer.put((byte) value);
+		return this;
+	}
+
+	/* An epoch day as yyyy-MM-dd */
+	public CsvWriter writeDay(int epochDay) throws IOException {
+		separator(10);
+		date(epochDay);
+		return this;
+	}
+
+	/* Minutes since the epoch as yyyy-MM-dd HH:mm */
+	public CsvWriter writeMinute(long epochMinute) throws IOException {
+		separator(16);
+		int day = (int) Math.floorDiv(epochMinute, 1440L);
+		int minute = (int) Math.floorMod(epochMinute, 1440L);
+		date(day);
+		this._buffer.put((byte) ' ');
+		digits(minute / 60, 2);
+		this._buffer.put((byte) ':');
+		digits(minute % 60, 2);
+		return this;
+	}
+
+	/* An epoch day as M/d/yyyy, as customer.csv holds birth dates */
+	public CsvWriter writeDob(int epochDay) throws IOException {
+		separator(10);
+		int[] date = civil(epochDay);
+		digits(date[1], 1);
+		this._buffer.put((byte) '/');
+		digits(date[2], 1);
+		this._buffer.put((byte) '/');
+		digits(date[0], 4);
+		return this;
+	}
+
+	/* Text, as given; null is written as an empty field */
+	public CsvWriter writeString(String value) throws IOException {
+		int length = value == null ? 0 : value.length();
+		boolean ascii = true;
+		for (int i = 0; i < length && ascii; ++i)
+			ascii = value.charAt(i) < 0x80;
+		if (!ascii) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			separator(utf8.length);
+			this._buffer.put(utf8);
+			return this;
+		}
+		separator(length);
+		for (int i = 0; i < length; ++i)
+			this._buffer.put((byte) value.charAt(i));
+		return this;
+	}
+
+	/* Ends the row */
+	public void endRow() throws IOException {
+		room(1);
+		this._buffer.put((byte) '\n');
+		this._fields = 0;
+	}
+
+	/* Bytes written to the channel so far, not counting the buffer */
+	public long bytes() {
+		return this._bytes;
+	}
+
+	/* Writes out the buffer */
+	public void flush() throws IOException {
+		this._buffer.flip();
+		while (this._buffer.hasRemaining())
+			this._bytes += this._channel.write(this._buffer);
+		this._buffer.clear();
+	}
+
+	/* Writes out the buffer and closes the channel */
+	public void close() throws IOException {
+		try {
+			flush();
+		}finally {
+			this._channel.close();
+		}
+	}
+
+	/* Makes room for a field of up to length bytes and its separator */
+	private void separator(int length) throws IOException {
+		room(length + 1);
+		if (this._fields++ > 0) {
+			this._buffer.put((byte) ',');
+		}
+	}
+
+	private void room(int length) throws IOException {
+		if (this._buffer.remaining() < length) {
+			flush();
+			if (this._buffer.remaining() < length) {
+				throw new IOException("A field of " + length + " bytes does not fit the buffer");
+			}
+		}
+	}
+
+	/* A non-negative value in at least width digits */
+	private void digits(int value, int width) {
+		ByteBuffer buffer = this._buffer;
+		int length = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10)
+			++length;
+		for (int i = length; i < width; ++i)
+			buffer.put((byte) '0');
+		int end = buffer.position() + length;
+		for (int i = end - 1; i >= end - length; --i) {
+			buffer.put(i, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buffer.position(end);
+	}
+
+	private void date(int epochDay) {
+		int[] date = civil(epochDay);
+		digits(date[0], 4);
+		this._buffer.put((byte) '-');
+		digits(date[1], 2);
+		this._buffer.put((byte) '-');
+		digits(date[2], 2);
+	}
+
+	/* The calendar date of an epoch day, as LocalDate.ofEpochDay() */
+	private int[] civil(int epochDay) {
+		//counting years from March, so the leap day ends a year
+		int z = epochDay + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int dayOfEra = z - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shifted = (5 * dayOfYear + 2) / 153;
+		int month = shifted < 10 ? shifted + 3 : shifted - 9;
+		this._civil[0] = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		this._civil[1] = month;
+		this._civil[2] = dayOfYear - (153 * shifted + 2) / 5 + 1;
+		return this._civil;
+	}
+}/* End of CsvWriter !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,563 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Benchmark harness for the operations behind the main menu, run against a
+ * database loaded from data/ (or from DataGenerator output). Every benchmark
+ * gets a warmup phase followed by a timed measurement phase on a fixed
+ * number of threads, and reports throughput, average and percentile latency
+ * and the allocation rate of the benchmark threads.
+ *
+ * The booking benchmarks write to Reservation and Flight.num_sold; those
+ * rows and counters are put back when the run ends, as are the rows added
+ * by the Add* benchmarks. Run it against a scratch database anyway.
+ *
+ * With -Ddbproject.embedded=<data dir> the *Embedded benchmarks run the
+ * same operations on a MemoryStorage loaded from the CSV files there. Add
+ * -Ddbproject.wal=<file> to make its writes durable; the benchmarks log to
+ * a scratch file next to it, deleted on exit, rather than to the file.
+ *
+ * Usage: java DBbench <dbname> <port> <user> [-t threads] [-h hot threads]
+ *                     [-w warmup seconds] [-m measure seconds] [benchmark ...]
+ *
+ */
+
+public class DBbench{
+	private static final int BATCH_SIZE = 100;
+	//flights per availability lookup in the fan-out benchmarks
+	private static final int FAN_OUT = 50;
+
+	/* Reads each streamed row without printing it */
+	private static final DBproject.RowHandler DRAIN = new DBproject.RowHandler() {
+		public void row(ResultSet rs) throws SQLException {
+			rs.getString(1);
+		}
+	};
+
+	/* Drops each listed row */
+	private static final Storage.Rows SINK = (columns, values) -> {};
+
+	/**
+	 * One invocation of the operation under test.
+	 */
+	interface Op {
+		void run(SplittableRandom rnd) throws Exception;
+	}
+
+	private final DBproject _esql;
+	//embedded engine for the *Embedded benchmarks, if dbproject.embedded is set
+	private MemoryStorage _embedded = null;
+	private final long _warmupNanos;
+	private final long _measureNanos;
+
+	//workload drawn from the loaded dataset
+	private int _maxCustomer;
+	private int[] _fnums;
+	private int[] _sold;
+	private LocalDate[] _departures;
+	private String[] _origins;
+	private String[] _destinations;
+	private int _hotFlight;
+	private long _lastRnum;
+	//statuses tearDown() puts back: every W and every hot flight reservation
+	private int[] _statusRnums = new int[0];
+	private String[] _statuses = new String[0];
+	private long _idBase;
+	private SeatInventory _inventory;
+	private ReservationSnapshot _snapshot;
+	private final AtomicInteger _nextId = new AtomicInteger();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> DBbench (DBproject esql, int warmupSeconds,
+	 *                      int measureSeconds)
+	 * Purpose  -> Creates a harness with the given phase lengths.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql, int warmupSeconds, int measureSeconds
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public DBbench(DBproject esql, int warmupSeconds, int measureSeconds) {
+		this._esql = esql;
+		this._warmupNanos = warmupSeconds * 1000000000L;
+		this._measureNanos = measureSeconds * 1000000000L;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void setUp() throws SQLException
+	 * Purpose  -> Reads the key ranges the benchmarks draw from and saves
+	 *             everything tearDown() needs to undo the booking load.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void setUp() throws SQLException {
+		this._maxCustomer = (int) scalar("SELECT COALESCE(MAX(id), 0) FROM Customer");
+		this._idBase = 1 + scalar("SELECT GREATEST((SELECT MAX(id) FROM Plane), (SELECT MAX(id) FROM Pilot), " +
+			"(SELECT MAX(id) FROM Technician), (SELECT MAX(fnum) FROM Flight))");
+		this._lastRnum = scalar("SELECT last_value FROM reservation_rnum_seq");
+
+		final List<Integer> fnums = new ArrayList<Integer>();
+		final List<Integer> sold = new ArrayList<Integer>();
+		final List<LocalDate> departures = new ArrayList<LocalDate>();
+		final List<String> origins = new ArrayList<String>();
+		final List<String> destinations = new ArrayList<String>();
+		this._esql.executeQueryAndStream("SELECT fnum, num_sold, actual_departure_date, departure_airport, arrival_airport " +
+			"FROM Flight ORDER BY fnum",
+			new DBproject.RowHandler() {
+				public void row(ResultSet rs) throws SQLException {
+					fnums.add(rs.getInt(1));
+					sold.add(rs.getInt(2));
+					departures.add(rs.getDate(3).toLocalDate());
+					origins.add(rs.getString(4).trim());
+					destinations.add(rs.getString(5).trim());
+				}
+			});
+		if (fnums.isEmpty()) {
+			throw new SQLException("Flight is empty, load data/ first");
+		}
+		this._fnums = new int[fnums.size()];
+		this._sold = new int[fnums.size()];
+		this._departures = departures.toArray(new LocalDate[0]);
+		this._origins = origins.toArray(new String[0]);
+		this._destinations = destinations.toArray(new String[0]);
+		for (int i = 0; i < this._fnums.length; ++i) {
+			this._fnums[i] = fnums.get(i);
+			this._sold[i] = sold.get(i);
+		}
+		this._hotFlight = this._fnums[0];
+
+		final List<Integer> rnums = new ArrayList<Integer>();
+		final List<String> statuses = new ArrayList<String>();
+		this._esql.executeQueryAndStream("SELECT rnum, status FROM Reservation WHERE status = 'W' OR fid = ?",
+			new DBproject.RowHandler() {
+				public void row(ResultSet rs) throws SQLException {
+					rnums.add(rs.getInt(1));
+					statuses.add(rs.getString(2));
+				}
+			}, this._hotFlight);
+		this._statusRnums = new int[rnums.size()];
+		for (int i = 0; i < this._statusRnums.length; ++i)
+			this._statusRnums[i] = rnums.get(i);
+		this._statuses = statuses.toArray(new String[0]);
+
+		this._inventory = new SeatInventory(this._esql.getPool());
+		this._inventory.load();
+		this._snapshot = new ReservationSnapshot(this._esql);
+		this._snapshot.load();
+		System.out.printf("Reservation snapshot: %,d rows in %,d KB%n", this._snapshot.size(), this._snapshot.memoryBytes() >> 10);
+
+		String data = System.getProperty("dbproject.embedded");
+		if (data != null) {
+			try {
+				this._embedded = new MemoryStorage();
+				this._embedded.load(new java.io.File(data));
+				String wal = System.getProperty("dbproject.wal");
+				if (wal != null) {
+					java.nio.file.Path dir = java.nio.file.Paths.get(wal).toAbsolutePath().getParent();
+					java.nio.file.Path scratch = java.nio.file.Files.createTempFile(dir, "dbbench", ".wal");
+					scratch.toFile().deleteOnExit();
+					this._embedded.recover(scratch);
+					System.out.println("Embedded write-ahead log: " + scratch);
+				}
+				System.out.println("Embedded storage: " + this._embedded.describe());
+			}catch (java.io.IOException e) {
+				this._embedded = null;
+				System.err.println("Embedded benchmarks skipped: " + e.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void tearDown() throws SQLException
+	 * Purpose  -> Deletes the rows the benchmarks added and restores every
+	 *             Flight.num_sold and every waitlisted or hot flight
+	 *             reservation to its state from setUp().
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void tearDown() throws SQLException {
+		WaitlistEngine waitlist = this._esql.getWaitlist();
+		if (waitlist != null) {
+			waitlist.close();
+		}
+		this._esql.executeUpdate("DELETE FROM Reservation WHERE rnum > ?", this._lastRnum);
+		int idBase = (int) this._idBase;
+		this._esql.executeUpdate("DELETE FROM Flight WHERE fnum >= ?", idBase);
+		this._esql.executeUpdate("DELETE FROM Plane WHERE id >= ?", idBase);
+		this._esql.executeUpdate("DELETE FROM Pilot WHERE id >= ?", idBase);
+		this._esql.executeUpdate("DELETE FROM Technician WHERE id >= ?", idBase);
+		this._esql.executeQuery("SELECT setval('reservation_rnum_seq', ?)", this._lastRnum);
+
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			PreparedStatement restore = conn.prepare("UPDATE Flight SET num_sold = ? WHERE fnum = ?");
+			for (int i = 0; i < this._fnums.length; ++i) {
+				restore.setInt(1, this._sold[i]);
+				restore.setInt(2, this._fnums[i]);
+				restore.addBatch();
+			}
+			restore.executeBatch();
+			PreparedStatement status = conn.prepare("UPDATE Reservation SET status = ? WHERE rnum = ?");
+			for (int i = 0; i < this._statusRnums.length; ++i) {
+				status.setString(1, this._statuses[i]);
+				status.setInt(2, this._statusRnums[i]);
+				status.addBatch();
+			}
+			status.executeBatch();
+			c.commit();
+		}finally {
+			this._esql.getPool().release(conn);
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Map<String, Op> benchmarks()
+	 * Purpose  -> Lists every benchmark by name, one per menu operation
+	 *             plus the concurrent, batch and in-memory variants.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> Map<String, Op>
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	Map<String, Op> benchmarks() {
+		Map<String, Op> ops = new LinkedHashMap<String, Op>();
+		final Operations menu = this._esql.getOperations();
+
+		ops.put("AddPlane", rnd -> menu.addPlane(nextId(), "Airbus", "AirbusA320", rnd.nextInt(30), 1 + rnd.nextInt(499)));
+		ops.put("AddPilot", rnd -> menu.addPilot(nextId(), "Bench Pilot", "Nowhere"));
+		ops.put("AddFlight", rnd -> {
+			LocalDate departure = LocalDate.of(2014, 1, 1).plusDays(rnd.nextInt(365));
+			menu.addFlight(nextId(), 100 + rnd.nextInt(900), 0, rnd.nextInt(3),
+				departure, departure.plusDays(1), "BENCH", "BENCH");
+		});
+		ops.put("AddTechnician", rnd -> menu.addTechnician(nextId(), "Bench Technician"));
+
+		ops.put("BookFlight", rnd -> menu.book(customer(rnd), flight(rnd)));
+		ops.put("BookFlightHot", rnd -> menu.book(customer(rnd), this._hotFlight));
+		//every cancelled seat goes to the head of the hot flight's waitlist
+		ops.put("BookCancelHot", rnd -> {
+			int customer = customer(rnd);
+			menu.book(customer, this._hotFlight);
+			menu.cancel(customer, this._hotFlight);
+		});
+		ops.put("BookBatch" + BATCH_SIZE, rnd -> {
+			List<BookingService.Request> batch = new ArrayList<BookingService.Request>(BATCH_SIZE);
+			for (int i = 0; i < BATCH_SIZE; ++i)
+				batch.add(new BookingService.Request(customer(rnd), flight(rnd)));
+			this._esql.getBookingService().bookBatch(batch);
+		});
+
+		ops.put("ListNumberOfAvailableSeats", rnd -> {
+			int i = rnd.nextInt(this._fnums.length);
+			this._esql.executeQueryAndStream(JdbcStorage.AVAILABLE_SEATS, DRAIN,
+				this._fnums[i], this._fnums[i], java.sql.Date.valueOf(this._departures[i]));
+		});
+		ops.put("ListNumberOfAvailableSeatsMemory", rnd -> {
+			int i = rnd.nextInt(this._fnums.length);
+			this._inventory.available(this._fnums[i], this._departures[i]);
+		});
+		ops.put("ListNumberOfAvailableSeatsCached", rnd -> {
+			int i = rnd.nextInt(this._fnums.length);
+			menu.availableSeats(this._fnums[i], this._departures[i]);
+		});
+		//FAN_OUT lookups one after another, in parallel, and as bulk queries;
+		//run the Bulk one with -Ddbproject.cache.size=0 to measure the database
+		ops.put("ListNumberOfAvailableSeats" + FAN_OUT, rnd -> {
+			for (int n = 0; n < FAN_OUT; ++n) {
+				int i = rnd.nextInt(this._fnums.length);
+				this._esql.executeQueryAndStream(JdbcStorage.AVAILABLE_SEATS, DRAIN,
+					this._fnums[i], this._fnums[i], java.sql.Date.valueOf(this._departures[i]));
+			}
+		});
+		ops.put("ListNumberOfAvailableSeatsAsync" + FAN_OUT, rnd -> {
+			List<CompletableFuture<Long>> lookups = new ArrayList<CompletableFuture<Long>>(FAN_OUT);
+			for (int n = 0; n < FAN_OUT; ++n) {
+				int i = rnd.nextInt(this._fnums.length);
+				lookups.add(this._esql.executeQueryAndStreamAsync(JdbcStorage.AVAILABLE_SEATS, DRAIN,
+					this._fnums[i], this._fnums[i], java.sql.Date.valueOf(this._departures[i])));
+			}
+			DBproject.join(CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])));
+		});
+		ops.put("ListNumberOfAvailableSeatsBulk" + FAN_OUT, rnd -> {
+			Map<Integer, LocalDate> flights = new HashMap<Integer, LocalDate>();
+			while (flights.size() < Math.min(FAN_OUT, this._fnums.length)) {
+				int i = rnd.nextInt(this._fnums.length);
+				flights.put(this._fnums[i], this._departures[i]);
+			}
+			menu.availableSeats(flights);
+		});
+
+		//from one flight's origin to another's destination, within a week of the first
+		ops.put("FindItineraries", rnd -> {
+			int i = rnd.nextInt(this._fnums.length);
+			int j = rnd.nextInt(this._fnums.length);
+			menu.itineraries(this._origins[i], this._destinations[j], this._departures[i],
+				this._departures[i].plusDays(7), 3, 0, 1, 10);
+		});
+
+		ops.put("ListsTotalNumberOfRepairsPerPlane", rnd -> menu.repairsPerPlane(SINK));
+		ops.put("ListsTotalNumberOfRepairsPerPlaneFull", rnd -> this._esql.executeQueryAndStream(RepairStats.PER_PLANE_FULL, DRAIN));
+		ops.put("ListTotalNumberOfRepairsPerYear", rnd -> menu.repairsPerYear(SINK));
+		ops.put("ListTotalNumberOfRepairsPerYearFull", rnd -> this._esql.executeQueryAndStream(RepairStats.PER_YEAR_FULL, DRAIN));
+		//every fleet report in one parallel pass, against one aggregate per report
+		ops.put("FleetReports", rnd -> menu.fleetReports());
+		ops.put("FleetReportsSql", rnd -> {
+			for (String report : ReportEngine.SQL_REPORTS)
+				this._esql.executeQueryAndStream(report, DRAIN);
+		});
+		ops.put("FindPassengersCountWithStatus", rnd -> this._esql.executeQueryAndStream(JdbcStorage.PASSENGER_COUNT, DRAIN,
+			String.valueOf("WCR".charAt(rnd.nextInt(3))), flight(rnd)));
+		ops.put("FindPassengersCountWithStatusCached", rnd ->
+			menu.passengerCount(flight(rnd), String.valueOf("WCR".charAt(rnd.nextInt(3)))));
+		ops.put("FindPassengersCountWithStatusSnapshot", rnd ->
+			this._snapshot.count(flight(rnd), "WCR".charAt(rnd.nextInt(3))));
+		ops.put("ReservationsPerCustomer", rnd -> this._esql.executeQueryAndStream(
+			"SELECT rnum, fid, status FROM Reservation WHERE cid = ?", DRAIN, customer(rnd)));
+		ops.put("ReservationsPerCustomerSnapshot", rnd -> this._snapshot.reservations(customer(rnd)));
+
+		final MemoryStorage embedded = this._embedded;
+		if (embedded != null) {
+			ops.put("BookFlightEmbedded", rnd -> embedded.book(customer(rnd), flight(rnd)));
+			//the same on the hot threads, where the write-ahead log's fsyncs are shared
+			ops.put("BookFlightEmbeddedHot", rnd -> embedded.book(customer(rnd), flight(rnd)));
+			ops.put("BookCancelEmbeddedHot", rnd -> {
+				int customer = customer(rnd);
+				embedded.book(customer, this._hotFlight);
+				embedded.cancel(customer, this._hotFlight);
+			});
+			ops.put("ListNumberOfAvailableSeatsEmbedded", rnd -> {
+				int i = rnd.nextInt(this._fnums.length);
+				embedded.availableSeats(this._fnums[i], this._departures[i]);
+			});
+			ops.put("ListsTotalNumberOfRepairsPerPlaneEmbedded", rnd -> embedded.repairsPerPlane(SINK));
+			ops.put("ListTotalNumberOfRepairsPerYearEmbedded", rnd -> embedded.repairsPerYear(SINK));
+			ops.put("FindPassengersCountWithStatusEmbedded", rnd ->
+				embedded.passengerCount(flight(rnd), "WCR".charAt(rnd.nextInt(3))));
+		}
+		return ops;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void run(String name, int threads, final Op op)
+	 *                                                      throws Exception
+	 * Purpose  -> Runs one benchmark: all threads warm up together, then
+	 *             measure together, and the merged results are printed.
+	 *             Failed invocations are counted but not timed.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String name, int threads, Op op
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	void run(String name, int threads, final Op op) throws Exception {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong allocated = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicReference<String> firstError = new AtomicReference<String>();
+		final CyclicBarrier ready = new CyclicBarrier(threads + 1);
+		final long[] phases = new long[2];
+
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; ++t) {
+			final long seed = 0x5EEDL + t;
+			Thread worker = new Thread(() -> {
+				SplittableRandom rnd = new SplittableRandom(seed);
+				LatencyHistogram mine = new LatencyHistogram();
+				try {
+					ready.await();
+					while (System.nanoTime() < phases[0]) {
+						invoke(op, rnd, null, errors, firstError);
+					}
+					long before = allocatedBytes();
+					while (System.nanoTime() < phases[1]) {
+						invoke(op, rnd, mine, errors, firstError);
+					}
+					allocated.addAndGet(allocatedBytes() - before);
+				}catch (Exception e) {
+					firstError.compareAndSet(null, e.toString());
+				}
+				latency.add(mine);
+			}, name + "-" + t);
+			workers.add(worker);
+			worker.start();
+		}
+
+		phases[0] = System.nanoTime() + this._warmupNanos;
+		phases[1] = phases[0] + this._measureNanos;
+		ready.await();
+		for (Thread worker : workers)
+			worker.join();
+
+		double seconds = this._measureNanos / 1e9;
+		long ops = latency.count();
+		System.out.printf("%-34s %3d %12.1f %10.1f %10.1f %10.1f %10.1f %12.0f %9.1f %7d%n",
+			name, threads, ops / seconds, latency.mean() / 1e3,
+			latency.percentile(50) / 1e3, latency.percentile(99) / 1e3, latency.percentile(99.9) / 1e3,
+			ops == 0 ? 0 : (double) allocated.get() / ops, allocated.get() / seconds / (1 << 20),
+			errors.get());
+		if (firstError.get() != null) {
+			System.out.println("    first error: " + firstError.get());
+		}
+	}
+
+	private static void invoke(Op op, SplittableRandom rnd, LatencyHistogram latency,
+			AtomicLong errors, AtomicReference<String> firstError) {
+		long start = System.nanoTime();
+		try {
+			op.run(rnd);
+			if (latency != null) {
+				latency.record(System.nanoTime() - start);
+			}
+		}catch (Exception e) {
+			errors.incrementAndGet();
+			firstError.compareAndSet(null, e.getMessage());
+		}
+	}
+
+	/* Bytes allocated so far by the calling thread, or 0 if unsupported */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if (mx instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private long scalar(String query) throws SQLException {
+		String value = this._esql.executeQueryAndReturnResult(query).get(0).get(0);
+		return value == null ? 0 : Long.parseLong(value);
+	}
+
+	private int nextId() {
+		return (int) this._idBase + this._nextId.getAndIncrement();
+	}
+
+	private int customer(SplittableRandom rnd) {
+		return rnd.nextInt(this._maxCustomer + 1);
+	}
+
+	private int flight(SplittableRandom rnd) {
+		return this._fnums[rnd.nextInt(this._fnums.length)];
+	}
+
+	/**
+	 * The benchmark command
+	 *
+	 * @param args <dbname> <port> <user> [-t threads] [-h hot threads]
+	 *             [-w warmup seconds] [-m measure seconds] [benchmark ...]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DBbench.class.getName () +
+		            " <dbname> <port> <user> [-t threads] [-h hot threads] [-w warmup s] [-m measure s] [benchmark ...]");
+			return;
+		}//end if
+
+		int threads = 1;
+		int hotThreads = 16;
+		int warmup = 5;
+		int measure = 10;
+		List<String> selected = new ArrayList<String>();
+		for (int i = 3; i < args.length; ++i) {
+			if (args[i].equals("-t")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-h")) hotThreads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-w")) warmup = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-m")) measure = Integer.parseInt(args[++i]);
+			else selected.add(args[i]);
+		}
+		if (System.getProperty("dbproject.pool.size") == null) {
+			System.setProperty("dbproject.pool.size", String.valueOf(Math.max(threads, hotThreads) + 1));
+		}
+		// BookCancelHot measures promotions, so the waitlist is on unless turned off
+		if (System.getProperty("dbproject.waitlist") == null) {
+			System.setProperty("dbproject.waitlist", "true");
+		}
+
+		DBproject esql = null;
+		DBbench bench = null;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			bench = new DBbench(esql, warmup, measure);
+			bench.setUp();
+
+			Map<String, Op> ops = bench.benchmarks();
+			if (selected.isEmpty()) {
+				selected.addAll(ops.keySet());
+			}
+			System.out.printf("%-34s %3s %12s %10s %10s %10s %10s %12s %9s %7s%n",
+				"Benchmark", "Thr", "ops/s", "avg(us)", "p50(us)", "p99(us)", "p999(us)", "alloc(B/op)", "MB/s", "errors");
+			for (String name : selected) {
+				Op op = ops.get(name);
+				if (op == null) {
+					System.err.println("Unknown benchmark: " + name);
+					continue;
+				}
+				bench.run(name, name.endsWith("Hot") ? hotThreads : threads, op);
+			}
+			WaitlistEngine waitlist = esql.getWaitlist();
+			if (waitlist != null && waitlist.rounds() > 0) {
+				waitlist.awaitIdle();
+				System.out.printf("Waitlist: %,d promoted in %,d rounds%n", waitlist.promoted(), waitlist.rounds());
+				for (String violation : waitlist.check())
+					System.out.println("  " + violation);
+			}
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+		}finally {
+			try {
+				if (bench != null && bench._fnums != null) {
+					bench.tearDown();
+				}
+			}catch (SQLException e) {
+				System.err.println("Could not undo benchmark writes: " + e.getMessage());
+			}
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+	}
+}/* End of DBbench !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -11,9 +11,8 @@
  */
 
 
-import java.sql.DriverManager;
 import java.sql.Connection;
-import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -21,8 +20,17 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDate;
 
@@ -33,8 +41,36 @@ import java.time.LocalDate;
  */
 
 public class DBproject{
-	//reference to physical database connection
-	private Connection _connection = null;
+	//bounded pool of physical database connections
+	private ConnectionPool _pool = null;
+	//booking engine shared by every caller of this instance
+	private BookingService _bookings = null;
+	//in-memory seat inventory, only used when dbproject.seat.inventory is set
+	private SeatInventory _inventory = null;
+	//columnar Reservation copy, only used when dbproject.reservation.snapshot is set
+	private ReservationSnapshot _snapshot = null;
+	//tables mapped from dbproject.snapshot and the changes logged since
+	private SnapshotFile _snapshotFile = null;
+	private List<ChangeLog.Record> _snapshotChanges = null;
+	private boolean _snapshotOpened = false;
+	//logs committed changes for the next start, when dbproject.snapshot is set
+	private ChangeLog _changeLog = null;
+	//promotes waitlisted reservations when dbproject.waitlist is true
+	private WaitlistEngine _waitlist = null;
+	//repair reports, reading the maintained counts once migration V2 is applied
+	private RepairStats _repairStats = null;
+	//route index for itinerary searches, loaded by the first search
+	private ItinerarySearch _itineraries = null;
+	//the tables behind the menu operations, PostgreSQL unless dbproject.embedded is set
+	private Storage _storage = null;
+	//the menu operations, shared with DBserver and DBbench
+	private Operations _operations = null;
+	//latency, row and error counters of the menu operations
+	private Metrics _metrics = null;
+	//cached availability and passenger counts, unless dbproject.cache.size is 0
+	private ResultCache _cache = null;
+	//runs the *Async methods, one thread per pooled connection
+	private ExecutorService _async = null;
 	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 
 	/*
@@ -46,6 +82,9 @@ public class DBproject{
 	 * Purpose  -> Method which creates a new instance of the DB Project and
 	 *             serves as an initializing intermediary between the
 	 *             server/localhost and the database.
+	 *             The pool size and wait time can be tuned with the
+	 *             dbproject.pool.size and dbproject.pool.wait system
+	 *             properties.
 	 * -----------------------------------------------------------------------
 	 * @param hostname PSQL server hostname
 	 * @param database Name of the database
@@ -60,12 +99,27 @@ public class DBproject{
 	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
 		System.out.print("Connecting to database...");
 		try{
-			// constructs the connection URL
-			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+			// constructs the connection URL, prepareThreshold=1 makes the driver
+			// use a named server-side statement from the first execution on,
+			// reWriteBatchedInserts folds JDBC insert batches into multi-row INSERTs
+			// and floats stay in text form so getString prints 2015, not 2015.0
+			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname +
+				"?prepareThreshold=1&reWriteBatchedInserts=true" +
+				"&binaryTransferDisable=FLOAT4,FLOAT8";
 			System.out.println ("Connection URL: " + url + "\n");
 
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
+			this._pool = new ConnectionPool(url, user, passwd,
+				Integer.getInteger("dbproject.pool.size", 8),
+				Long.getLong("dbproject.pool.wait", 5000L));
+
+			// obtain a physical connection up front so a bad login fails here
+			this._pool.release(this._pool.acquire());
+
+			this._metrics = new Metrics(this._pool);
+			long interval = Long.getLong("dbproject.metrics.interval", 0L);
+			if (interval > 0) {
+				this._metrics.report(interval, System.err);
+			}
 	        System.out.println("Done");
 		}catch(Exception e){
 			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
@@ -74,91 +128,580 @@ public class DBproject{
 		}
 	}
 
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> DBproject (File data) throws IOException
+	 * Purpose  -> Creates an instance without a database. The menu
+	 *             operations run on a MemoryStorage seeded from the CSV
+	 *             files in data, and logged to the write-ahead log named
+	 *             by -Ddbproject.wal if it is set; options 10 and 11 and
+	 *             everything that issues SQL are unavailable.
+	 * -----------------------------------------------------------------------
+	 * Receives -> File data
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public DBproject(File data) throws IOException {
+		System.out.print("Loading " + data + "...");
+		long start = System.nanoTime();
+		MemoryStorage storage = new MemoryStorage();
+		storage.load(data);
+		String wal = System.getProperty("dbproject.wal");
+		if (wal != null) {
+			int replayed = storage.recover(Paths.get(wal));
+			System.out.printf(" %,d logged changes...", replayed);
+		}
+		this._storage = storage;
+		this._metrics = new Metrics(null);
+		long interval = Long.getLong("dbproject.metrics.interval", 0L);
+		if (interval > 0) {
+			this._metrics.report(interval, System.err);
+		}
+		System.out.printf("Done (%s in %,d ms)%n", storage.describe(), (System.nanoTime() - start) / 1000000);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> DBproject open(String dbname, String dbport, String user)
+	 *                                      throws SQLException, IOException
+	 * Purpose  -> Connects to the database, or loads the embedded storage
+	 *             from the directory named by -Ddbproject.embedded, in which
+	 *             case the connection arguments are ignored.
+	 * -----------------------------------------------------------------------
+	 * Receives -> dbname, dbport, user
+	 * Returns  -> DBproject
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static DBproject open(String dbname, String dbport, String user) throws SQLException, IOException {
+		String data = System.getProperty("dbproject.embedded");
+		return data != null ? new DBproject(new File(data)) : new DBproject(dbname, dbport, user, "");
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ConnectionPool getPool()
+	 * Purpose  -> Exposes the connection pool to code that needs to run
+	 *             several statements on one connection (i.e. transactions).
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> ConnectionPool
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ConnectionPool getPool() {
+		return this._pool;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Storage getStorage()
+	 * Purpose  -> Returns the tables the menu operations read and write:
+	 *             the embedded engine of an instance created without a
+	 *             database, PostgreSQL otherwise.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> Storage
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized Storage getStorage() {
+		if (this._storage == null) {
+			this._storage = new JdbcStorage(this);
+		}
+		return this._storage;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> BookingService getBookingService()
+	 * Purpose  -> Returns the thread-safe booking engine bound to this
+	 *             instance's connection pool.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> BookingService
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized BookingService getBookingService() {
+		if (this._bookings == null) {
+			this._bookings = new BookingService(this._pool);
+			this._bookings.setSeatInventory(getSeatInventory());
+			this._bookings.setResultCache(getResultCache());
+			this._bookings.setWaitlist(getWaitlist());
+			this._bookings.setReservationSnapshot(getReservationSnapshot());
+			this._bookings.setChangeLog(getChangeLog());
+		}
+		return this._bookings;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> SeatInventory getSeatInventory()
+	 * Purpose  -> Returns the in-memory seat inventory, loading it on first
+	 *             use. Only enabled with -Ddbproject.seat.inventory=true,
+	 *             since it assumes this process is the only one selling
+	 *             seats; returns null otherwise or if loading fails.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> SeatInventory || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized SeatInventory getSeatInventory() {
+		if (this._inventory == null && this._pool != null && Boolean.getBoolean("dbproject.seat.inventory")) {
+			try {
+				SeatInventory inventory = new SeatInventory(this._pool);
+				SnapshotFile snapshot = getSnapshotFile();
+				if (snapshot != null) {
+					inventory.load(snapshot, this._snapshotChanges);
+				}else {
+					inventory.load();
+				}
+				this._inventory = inventory;
+			}catch (SQLException e) {
+				System.err.println("Seat inventory disabled: " + e.getMessage());
+			}
+		}
+		return this._inventory;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> SnapshotFile getSnapshotFile()
+	 * Purpose  -> Maps the snapshot named by -Ddbproject.snapshot and reads
+	 *             the change log written since. Log records are written
+	 *             after the commit and not synced, so a crash can lose some;
+	 *             the snapshot is only used when its totals with the log
+	 *             (rows, highest keys, W and C counts, seats sold) match the
+	 *             database. Otherwise, or without the property, returns null
+	 *             and the indexes load from SQL.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> SnapshotFile || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized SnapshotFile getSnapshotFile() {
+		String file = System.getProperty("dbproject.snapshot");
+		if (this._snapshotOpened || this._pool == null || file == null || !Files.exists(Paths.get(file))) {
+			return this._snapshotFile;
+		}
+		this._snapshotOpened = true;
+		try {
+			SnapshotFile snapshot = new SnapshotFile(Paths.get(file));
+			List<ChangeLog.Record> changes = ChangeLog.read(Paths.get(file + ".log"), snapshot.logSequence());
+			long[] expected = snapshot.totals(changes);
+			List<String> actual = executeQueryAndReturnResult(SnapshotFile.TOTALS).get(0);
+			for (int i = 0; i < expected.length; ++i) {
+				if (Long.parseLong(actual.get(i)) != expected[i]) {
+					System.err.println("Snapshot " + file + " is out of date, loading from the database");
+					return null;
+				}
+			}
+			this._snapshotChanges = changes;
+			this._snapshotFile = snapshot;
+		}catch (IOException | SQLException e) {
+			System.err.println("Snapshot " + file + " not used: " + e.getMessage());
+		}
+		return this._snapshotFile;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ChangeLog getChangeLog()
+	 * Purpose  -> Returns the log of committed changes next to the
+	 *             snapshot file, opening it on first use; null without
+	 *             -Ddbproject.snapshot or if it cannot be opened.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> ChangeLog || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized ChangeLog getChangeLog() {
+		String file = System.getProperty("dbproject.snapshot");
+		if (this._changeLog == null && this._pool != null && file != null) {
+			//read the changes to catch up before appending new ones
+			SnapshotFile snapshot = getSnapshotFile();
+			try {
+				this._changeLog = new ChangeLog(Paths.get(file + ".log"),
+					snapshot == null ? 0 : snapshot.logSequence(), Paths.get(file));
+			}catch (IOException e) {
+				System.err.println("Change log disabled: " + e.getMessage());
+			}
+		}
+		return this._changeLog;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long saveSnapshot() throws SQLException, IOException
+	 * Purpose  -> Writes a new snapshot to -Ddbproject.snapshot and drops
+	 *             the log records it makes redundant.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> [long] size of the snapshot in bytes
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long saveSnapshot() throws SQLException, IOException {
+		String file = System.getProperty("dbproject.snapshot");
+		ChangeLog log = getChangeLog();
+		if (file == null || log == null) {
+			throw new IOException("Set -Ddbproject.snapshot to the snapshot file first");
+		}
+		Path path = Paths.get(file);
+		long sequence = log.sequence();
+		SnapshotFile.write(this._pool, path, sequence);
+		log.compact(sequence);
+		return Files.size(path);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ReservationSnapshot getReservationSnapshot()
+	 * Purpose  -> Returns the columnar copy of Reservation, loading it on
+	 *             first use. Only enabled with
+	 *             -Ddbproject.reservation.snapshot=true, since it assumes
+	 *             this process is the only one writing reservations;
+	 *             returns null otherwise or if loading fails.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> ReservationSnapshot || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized ReservationSnapshot getReservationSnapshot() {
+		if (this._snapshot == null && this._pool != null && Boolean.getBoolean("dbproject.reservation.snapshot")) {
+			try {
+				ReservationSnapshot snapshot = new ReservationSnapshot(this);
+				SnapshotFile file = getSnapshotFile();
+				if (file != null) {
+					snapshot.load(file, this._snapshotChanges);
+				}else {
+					snapshot.load();
+				}
+				this._snapshot = snapshot;
+			}catch (SQLException e) {
+				System.err.println("Reservation snapshot disabled: " + e.getMessage());
+			}
+		}
+		return this._snapshot;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> WaitlistEngine getWaitlist()
+	 * Purpose  -> Returns the waitlist engine, seeding its queues from
+	 *             Reservation on first use. Enabled with
+	 *             -Ddbproject.waitlist=true; returns null otherwise, if
+	 *             seeding fails, and without a database.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> WaitlistEngine || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized WaitlistEngine getWaitlist() {
+		if (this._waitlist == null && this._pool != null && Boolean.getBoolean("dbproject.waitlist")) {
+			WaitlistEngine waitlist = new WaitlistEngine(this._pool);
+			try {
+				waitlist.seed();
+				waitlist.setSeatInventory(getSeatInventory());
+				waitlist.setResultCache(getResultCache());
+				waitlist.setReservationSnapshot(getReservationSnapshot());
+				waitlist.setChangeLog(getChangeLog());
+				this._waitlist = waitlist;
+			}catch (SQLException e) {
+				waitlist.close();
+				System.err.println("Waitlist disabled: " + e.getMessage());
+			}
+		}
+		return this._waitlist;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ResultCache getResultCache()
+	 * Purpose  -> Returns the cache for per-flight query results, created
+	 *             on first use with room for dbproject.cache.size flights
+	 *             (10000) and a TTL of dbproject.cache.ttl ms (5000).
+	 *             Returns null when the size is 0.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> ResultCache || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized ResultCache getResultCache() {
+		int size = Integer.getInteger("dbproject.cache.size", 10000);
+		if (this._cache == null && size > 0) {
+			this._cache = new ResultCache(size, Long.getLong("dbproject.cache.ttl", 5000L));
+			this._metrics.attach(this._cache);
+		}
+		return this._cache;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ItinerarySearch getItinerarySearch()
+	 * Purpose  -> Returns the itinerary search behind option 10. Flights
+	 *             come from the snapshot file when there is one, and are
+	 *             read by the first search otherwise.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> ItinerarySearch
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized ItinerarySearch getItinerarySearch() {
+		if (this._itineraries == null) {
+			this._itineraries = new ItinerarySearch(this);
+			SnapshotFile snapshot = getSnapshotFile();
+			if (snapshot != null) {
+				this._itineraries.load(snapshot, this._snapshotChanges);
+			}
+		}
+		return this._itineraries;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> RepairStats getRepairStats()
+	 * Purpose  -> Returns the repair reports behind options 7 and 8.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> RepairStats
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized RepairStats getRepairStats() {
+		if (this._repairStats == null) {
+			this._repairStats = new RepairStats(this);
+		}
+		return this._repairStats;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Operations getOperations()
+	 * Purpose  -> Returns the menu operations bound to this instance.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> Operations
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized Operations getOperations() {
+		if (this._operations == null) {
+			this._operations = new Operations(this);
+		}
+		return this._operations;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Metrics getMetrics()
+	 * Purpose  -> Returns the counters recorded by the menu operations.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> Metrics
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Metrics getMetrics() {
+		return this._metrics;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void bind(PreparedStatement stmt, Object[] params)
+	 *                                                  throws SQLException
+	 * Purpose  -> Binds the positional parameters of a prepared statement.
+	 * -----------------------------------------------------------------------
+	 * Receives -> PreparedStatement stmt, Object[] params
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+		for (int i = 0; i < params.length; ++i)
+			stmt.setObject(i + 1, params[i]);
+	}
+
 	/*
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    * Author   -> Dr. Mariam Salloum
    * Modifier -> Dan Murphy
-   * Method   -> void executeUpdate (String sql) throws SQLException
+   * Method   -> int executeUpdate (String sql, Object... params)
+   *                                                     throws SQLException
    * Purpose  -> Method to execute an update SQL statement.
    *             Update SQL instruction includes the following:
    *             CREATE, INSERT, UPDATE, DELETE, DROP
+   *             Values are passed as '?' parameters so the statement is
+   *             prepared once per pooled connection.
    * -----------------------------------------------------------------------
    * @param sql the input SQL string
+   * @param params values bound to the '?' placeholders, in order
+   * @return the number of rows affected
    * @throws java.sql.SQLException when update failed
    * -----------------------------------------------------------------------
-   * Receives -> [String] sql
-   * Returns  -> NONE
+   * Receives -> [String] sql, [Object...] params
+   * Returns  -> [int] rowCount
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    */
-	public void executeUpdate (String sql) throws SQLException {
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
-
-		// close the instruction
-	    stmt.close ();
+	public int executeUpdate (String sql, Object... params) throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			// looks up the cached statement for this query shape
+			PreparedStatement stmt = conn.prepare(sql);
+			bind(stmt, params);
+
+			// issues the update instruction
+			return stmt.executeUpdate ();
+		}finally {
+			this._pool.release(conn);
+		}
 	}//end executeUpdate
 
 	/*
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    * Author   -> Dr. Mariam Salloum
    * Modifier -> Dan Murphy
-   * Method   -> int executeQueryAndPrintResult (String query)
-   *                                            throws SQLException
+   * Method   -> int executeQueryAndPrintResult (String query,
+   *                                Object... params) throws SQLException
    * Purpose  -> Method to execute an input query SQL instruction (i.e. SELECT).
    *             This method issues the query to the DBMS and outputs the
    *             results to standard out.
    * -----------------------------------------------------------------------
    * @param query the input query string
+   * @param params values bound to the '?' placeholders, in order
    * @return the number of rows returned
    * @throws java.sql.SQLException when failed to execute the query
    * -----------------------------------------------------------------------
-   * Receives -> [String] sql
+   * Receives -> [String] sql, [Object...] params
    * Returns  -> [int] rowCount
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    */
-	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		//rows are printed as they arrive from the cursor, never held in memory
+		try (RowPrinter printer = printer()) {
+			return (int) executeQueryAndStream(query, Storage.handler(printer), params);
+		}
+	}
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> RowPrinter printer()
+	 * Purpose  -> Returns a callback that prints rows to standard out in the
+	 *             format set by dbproject.output (a tab separated header and
+	 *             rows by default). Use a new one for every query and close
+	 *             it afterwards to write out what it buffered.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> RowPrinter
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	static RowPrinter printer() {
+		return RowPrinter.standard();
+	}
 
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
-			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
+	/**
+	 * Callback for executeQueryAndStream. The result set is positioned on the
+	 * current row; read it with the typed getters (getInt, getDate, ...) and
+	 * do not move the cursor or keep a reference to it.
+	 */
+	public interface RowHandler {
+		void row(ResultSet rs) throws SQLException;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long executeQueryAndStream(String query, RowHandler handler,
+	 *                                Object... params) throws SQLException
+	 * Purpose  -> Streams the rows of a query to a callback using the
+	 *             default fetch size (dbproject.fetch.size, 1000 rows).
+	 * -----------------------------------------------------------------------
+	 * Receives -> [String] query, RowHandler handler, [Object...] params
+	 * Returns  -> [long] rowCount
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long executeQueryAndStream (String query, RowHandler handler, Object... params) throws SQLException {
+		return executeQueryAndStream(query, Integer.getInteger("dbproject.fetch.size", 1000), handler, params);
 	}
 
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long executeQueryAndStream(String query, int fetchSize,
+	 *                                RowHandler handler, Object... params)
+	 *                                                     throws SQLException
+	 * Purpose  -> Streams the rows of a query to a callback one at a time.
+	 *             The query runs inside a read transaction with a fetch
+	 *             size, which makes pgjdbc use a server-side cursor and pull
+	 *             fetchSize rows per round trip, so memory use does not
+	 *             grow with the size of the result.
+	 * -----------------------------------------------------------------------
+	 * @param query the input query string
+	 * @param fetchSize rows fetched per round trip
+	 * @param handler called once per row, in order
+	 * @param params values bound to the '?' placeholders, in order
+	 * @return the number of rows streamed
+	 * @throws java.sql.SQLException when failed to execute the query
+	 * -----------------------------------------------------------------------
+	 * Receives -> [String] query, [int] fetchSize, RowHandler handler,
+	 *             [Object...] params
+	 * Returns  -> [long] rowCount
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long executeQueryAndStream (String query, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		PreparedStatement stmt = null;
+		try {
+			//cursors only exist inside a transaction
+			conn.getConnection().setAutoCommit(false);
+
+			stmt = conn.prepare(query);
+			stmt.setFetchSize(fetchSize);
+			bind(stmt, params);
+
+			ResultSet rs = stmt.executeQuery ();
+			long rowCount = 0;
+			long handlerNanos = 0;
+			while (rs.next()){
+				long start = System.nanoTime();
+				handler.row(rs);
+				handlerNanos += System.nanoTime() - start;
+				++rowCount;
+			}//end while
+			rs.close ();
+			conn.getConnection().commit();
+
+			//time in the handler is the caller's, not the database's
+			Metrics.db(-handlerNanos);
+			Metrics.rows(rowCount);
+			return rowCount;
+		}finally {
+			try {
+				//the statement stays cached, so put the fetch size back
+				if (stmt != null) stmt.setFetchSize(0);
+			}catch (SQLException e) {
+				// ignored, release() drops broken connections.
+			}
+			this._pool.release(conn);
+		}
+	}//end executeQueryAndStream
+
 	/*
 	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
 	 * Author   -> Dr. Mariam Salloum
 	 * Modifier -> Dan Murphy
-	 * Method   -> List<List<String>> executeQueryAndReturnResult(String query)
-	 *                                                       throws SQLException
+	 * Method   -> List<List<String>> executeQueryAndReturnResult(String query,
+	 *                                Object... params) throws SQLException
 	 * Purpose  -> Method to execute an input query SQL instruction
 	 *             (i.e. SELECT).
 	 *             This method issues the query to the DBMS and returns the
@@ -166,78 +709,90 @@ public class DBproject{
 	 *             Each record is a list of attribute values.
 	 * -----------------------------------------------------------------------
 	 * @param query the input query string
+	 * @param params values bound to the '?' placeholders, in order
 	 * @return the query result as a list of records
 	 * @throws java.sql.SQLException when failed to execute the query
 	 * -----------------------------------------------------------------------
-	 * Receives -> [String] query
+	 * Receives -> [String] query, [Object...] params
 	 * Returns  -> List<List<String>> result
 	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
 	 */
-	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			PreparedStatement stmt = conn.prepare(query);
+			bind(stmt, params);
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+			//issues the query instruction
+			ResultSet rs = stmt.executeQuery ();
 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata
-		 * contains row and column info.
-		*/
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
+			/*
+			 * obtains the metadata object for the returned result set.  The metadata
+			 * contains row and column info.
+			*/
+			ResultSetMetaData rsmd = rs.getMetaData ();
+			int numCol = rsmd.getColumnCount ();
 
-		/* ------------------------------------------------- */
+			/* ------------------------------------------------- */
 
-		/* Iterates through the result set and saves the data
-		 * returned by the query.
-		 */
-		boolean outputHeader = false;
-		List<List<String>> result  = new ArrayList<List<String>>();
-		while (rs.next()){
-			List<String> record = new ArrayList<String>();
-			for (int i=1; i<=numCol; ++i)
-				record.add(rs.getString (i));
-			result.add(record);
-		}//end while
-		stmt.close ();
-		return result;
+			/* Iterates through the result set and saves the data
+			 * returned by the query.
+			 */
+			List<List<String>> result  = new ArrayList<List<String>>();
+			while (rs.next()){
+				List<String> record = new ArrayList<String>();
+				for (int i=1; i<=numCol; ++i)
+					record.add(rs.getString (i));
+				result.add(record);
+			}//end while
+			rs.close ();
+			Metrics.rows(result.size());
+			return result;
+		}finally {
+			this._pool.release(conn);
+		}
 	}//end executeQueryAndReturnResult
 
 	/*
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    * Author   -> Dr. Mariam Salloum
    * Modifier -> Dan Murphy
-   * Method   -> int executeQuery (String query) throws SQLException
+   * Method   -> int executeQuery (String query, Object... params)
+   *                                                     throws SQLException
    * Purpose  -> Method to execute an input query SQL instruction
    *             (i.e. SELECT).
    *             This method issues the query to the DBMS and returns the
    *             number of results.
    * -----------------------------------------------------------------------
    * @param query the input query string
+   * @param params values bound to the '?' placeholders, in order
    * @return the number of rows returned
    * @throws java.sql.SQLException when failed to execute the query
    * -----------------------------------------------------------------------
-   * Receives -> [String] query
+   * Receives -> [String] query, [Object...] params
    * Returns  -> [int] rowCount
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    */
-	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
-
-		int rowCount = 0;
-
-		//iterates through the result set and count nuber of results.
-		if(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
-		return rowCount;
+	public int executeQuery (String query, Object... params) throws SQLException {
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			PreparedStatement stmt = conn.prepare(query);
+			bind(stmt, params);
+
+			//issues the query instruction
+			ResultSet rs = stmt.executeQuery ();
+
+			int rowCount = 0;
+
+			//iterates through the result set and count nuber of results.
+			if(rs.next()){
+				rowCount++;
+			}//end while
+			rs.close ();
+			return rowCount;
+		}finally {
+			this._pool.release(conn);
+		}
 	}
 
 	/*
@@ -248,6 +803,8 @@ public class DBproject{
 	 * Purpose  -> Method to fetch the last value from the sequence.
 	 *             This method issues the query to the DBMS and returns the
 	 *             current value of sequence used for the autogenerated keys.
+	 *             currval() is session local, so this only sees values
+	 *             drawn on the same pooled connection.
 	 * -----------------------------------------------------------------------
 	 * @param sequence name of the DB sequence
 	 * @return current value of a sequence
@@ -258,32 +815,118 @@ public class DBproject{
 	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
 	 */
 	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
+		List<List<String>> result = executeQueryAndReturnResult("SELECT currval(CAST(? AS regclass))", sequence);
+		if (!result.isEmpty()) return Integer.parseInt(result.get(0).get(0));
 		return -1;
 	}
 
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> <T> CompletableFuture<T> async(Metrics.Call<T> call)
+	 * Purpose  -> Runs database work in the background and returns its
+	 *             future result. Work runs on dbproject.pool.size threads,
+	 *             so independent calls proceed on separate pooled
+	 *             connections in parallel and the rest queue in memory
+	 *             rather than for a connection. A SQLException completes
+	 *             the future exceptionally.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Metrics.Call<T> call
+	 * Returns  -> CompletableFuture<T>
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public <T> CompletableFuture<T> async(final Metrics.Call<T> call) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return call.run();
+			}catch (SQLException e) {
+				throw new CompletionException(e);
+			}
+		}, asyncExecutor());
+	}
+
+	public CompletableFuture<Integer> executeUpdateAsync (String sql, Object... params) {
+		return async(() -> executeUpdate(sql, params));
+	}
+
+	public CompletableFuture<List<List<String>>> executeQueryAndReturnResultAsync (String query, Object... params) {
+		return async(() -> executeQueryAndReturnResult(query, params));
+	}
+
+	public CompletableFuture<Long> executeQueryAndStreamAsync (String query, RowHandler handler, Object... params) {
+		return async(() -> executeQueryAndStream(query, handler, params));
+	}
+
+	/* The executor behind async(), created on first use */
+	private synchronized ExecutorService asyncExecutor() {
+		if (this._async == null) {
+			final AtomicInteger count = new AtomicInteger();
+			this._async = Executors.newFixedThreadPool(Integer.getInteger("dbproject.pool.size", 8), r -> {
+				Thread t = new Thread(r, "dbproject-async-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return this._async;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> <T> T join(CompletableFuture<T> future) throws SQLException
+	 * Purpose  -> Waits for an async() result, rethrowing the SQLException
+	 *             it failed with.
+	 * -----------------------------------------------------------------------
+	 * Receives -> CompletableFuture<T> future
+	 * Returns  -> T result
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static <T> T join(CompletableFuture<T> future) throws SQLException {
+		try {
+			return future.join();
+		}catch (CompletionException e) {
+			if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
 	/*
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    * Author   -> Dr. Mariam Salloum
    * Modifier -> Dan Murphy
    * Method   -> void cleanup()
-   * Purpose  -> Method to close the physical connection if it is open.
+   * Purpose  -> Method to close the physical connections if they are open.
    * -----------------------------------------------------------------------
    * Receives -> NONE
    * Returns  -> NONE
    * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
    */
 	public void cleanup(){
-		try{
-			if (this._connection != null){
-				this._connection.close ();
+		if (this._metrics != null){
+			this._metrics.close ();
+		}//end if
+		synchronized (this) {
+			if (this._waitlist != null){
+				this._waitlist.close ();
+			}//end if
+			if (this._async != null){
+				this._async.shutdown ();
+			}//end if
+			if (this._changeLog != null){
+				try {
+					this._changeLog.close ();
+				}catch (IOException e) {
+					System.err.println (e.getMessage ());
+				}
 			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
+		}
+		if (this._storage != null){
+			this._storage.close ();
+		}//end if
+		if (this._pool != null){
+			this._pool.close ();
+		}//end if
 	}//end cleanup
 
 	/**
@@ -292,10 +935,12 @@ public class DBproject{
 	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
 	 */
 	public static void main (String[] args) {
-		if (args.length != 3) {
+		boolean embedded = System.getProperty("dbproject.embedded") != null;
+		if (args.length != 3 && !embedded) {
 			System.err.println (
 				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
 		            " <dbname> <port> <user>");
+			System.err.println ("   or: java -Ddbproject.embedded=<data dir> " + DBproject.class.getName ());
 			return;
 		}//end if
 
@@ -305,7 +950,7 @@ public class DBproject{
 			System.out.println("(1)");
 
 			try {
-				Class.forName("org.postgresql.Driver");
+				if (!embedded) Class.forName("org.postgresql.Driver");
 			}catch(Exception e){
 
 				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
@@ -314,11 +959,11 @@ public class DBproject{
 			}
 
 			System.out.println("(2)");
-			String dbname = args[0];
-			String dbport = args[1];
-			String user = args[2];
+			String dbname = embedded ? null : args[0];
+			String dbport = embedded ? null : args[1];
+			String user = embedded ? null : args[2];
 
-			esql = new DBproject (dbname, dbport, user, "");
+			esql = DBproject.open (dbname, dbport, user);
 
 			boolean keepon = true;
 			while(keepon){
@@ -333,7 +978,9 @@ public class DBproject{
 				System.out.println("7. List total number of repairs per plane in descending order");
 				System.out.println("8. List total number of repairs per year in ascending order");
 				System.out.println("9. Find total number of passengers with a given status");
-				System.out.println("10. < EXIT");
+				System.out.println("10. Find itineraries between two airports");
+				System.out.println("11. Fleet and maintenance reports");
+				System.out.println("12. < EXIT");
 
 				switch (readChoice()){
 					case 1: AddPlane(esql); break;
@@ -345,7 +992,9 @@ public class DBproject{
 					case 7: ListsTotalNumberOfRepairsPerPlane(esql); break;
 					case 8: ListTotalNumberOfRepairsPerYear(esql); break;
 					case 9: FindPassengersCountWithStatus(esql); break;
-					case 10: keepon = false; break;
+					case 10: FindItineraries(esql); break;
+					case 11: FleetReports(esql); break;
+					case 12: keepon = false; break;
 				}
 			}
 		}catch(Exception e){
@@ -487,8 +1136,7 @@ public class DBproject{
 		  * Else, exception handle is caught
 		  */
 			try {
-				String query = "INSERT INTO Plane (id, make, model, age, seats) VALUES (" + plane_id + ", \'" + plane_make + "\', \'" + plane_model + "\', " + plane_age + ", " + plane_seats + ");";
-				esql.executeUpdate(query);
+				esql.getOperations().addPlane(plane_id, plane_make, plane_model, plane_age, plane_seats);
 			}catch(Exception e) {
 				System.err.println(e.getMessage());
 			}
@@ -561,9 +1209,7 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		try {
-			String query = "INSERT INTO Pilot (id, fullname, nationality) VALUES (" + pilot_id + ", \'" + pilot_full_name + "\', \'" + pilot_nationality + "\');";
-
-			esql.executeUpdate(query);
+			esql.getOperations().addPilot(pilot_id, pilot_full_name, pilot_nationality);
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
 		}
@@ -666,12 +1312,13 @@ public class DBproject{
 		} /* ------------------------------------------------------------------- */
 
 		/* Grab Flight arrival date from user --- */
+		LocalDate arrivalDate;
 		String flight_arrival_date;
 		while (true) {
 			System.out.print("Input the flight arrival time as (YYYY-MM-DD hh:mm): ");
 			try {
 				flight_arrival_date = in.readLine();
-				LocalDate arrivalDate = LocalDate.parse(flight_arrival_date, formatter);
+				arrivalDate = LocalDate.parse(flight_arrival_date, formatter);
 				if(!arrivalDate.isAfter(departureDate)) {
 					throw new RuntimeException("Arrival date cannot be before departure date.");
 				}
@@ -719,9 +1366,8 @@ public class DBproject{
 			 * Else, exception handle is caught
 			 */
 				try {
-					String query = "INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport) VALUES (" + flight_number + ", " + flight_cost + ", " + flight_num_sold + ", " + flight_num_stops + ", \'" + flight_depart_date + "\', \'" + flight_arrival_date + "\', \'" + flight_arrival_airport + "\', \'" + flight_departure_airport + "\');";
-
-					esql.executeUpdate(query);
+					esql.getOperations().addFlight(flight_number, flight_cost, flight_num_sold, flight_num_stops,
+						departureDate, arrivalDate, flight_arrival_airport, flight_departure_airport);
 				}catch (Exception e) {
 					System.err.println (e.getMessage());
 				}
@@ -780,9 +1426,7 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		try {
-			String query = "INSERT INTO Technician (id, full_name) VALUES(" + technician_id + ", \'" + technician_full_name + "\');";
-
-			esql.executeUpdate(query);
+			esql.getOperations().addTechnician(technician_id, technician_full_name);
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
 		}
@@ -841,89 +1485,38 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		try {
-			String query = "SELECT R.status " +
-										 "FROM Reservation R " +
-										 "WHERE R.cid = " + customer_id + " AND R.fid = " + flight_number;
-
-			if(esql.executeQueryAndPrintResult(query) == 0) {
-				while(true){
-					System.out.println("No reservation found. Would you like to book one? (Y/N)\n");
-
-					String input_reservation;
-					String reservation_status;
-					try{
-						input_reservation = in.readLine();
-						if( input_reservation.equals("y") || input_reservation.equals("Y") ){
-							int new_reservation_num;
-							while(true){
-								System.out.println("Enter your new reservation number: ");
-								try{
-									new_reservation_num = Integer.parseInt(in.readLine());
-									if(new_reservation_num <= 0){
-										throw new RuntimeException("Reservation number cannot be 0 or negative!\n\n");
-									}
-									break;
-							}catch (Exception e) {
-								System.out.println("Your input is invalid!"); continue;
-							}/* End of catch --- */
-						}/* End of while(true) --- */
-						//String reservation_status;
-						try{
-							query = "SELECT Total_Seats - Seats_Sold as \"Seats Available\"\nFROM(\nSELECT P.seats as Total_Seats\nFROM Plane P, FlightInfo FI\nWHERE FI.flight_id = " + flight_number + " AND FI.plane_id = P.id\n)total,\n(\nSELECT F.num_sold as Seats_Sold\nFROM Flight F\nWHERE F.fnum = " + flight_number + "\n)sold;";
-							if(esql.executeQueryAndPrintResult(query) != 0){
-								reservation_status = "R"; /* RESERVED --- */
-							}else{
-							reservation_status = "W"; /* ELSE WAITLISTED IF NOT RESERVED --- */
-						}
-							//break;
-						}catch(Exception e) {
-							System.err.println(e.getMessage()); continue;
-						} /* End of catch --- */
-						try{
-							query = "INSERT INTO Reservation (rnum, cid, fid, status) VALUES (" + new_reservation_num + ", " + customer_id + ", " + flight_number + ", \'" + reservation_status + "\');";
-							esql.executeUpdate(query);
-						}catch(Exception e) {
-							System.err.println(e.getMessage());
-						}/* End of catch --- */
-					}/* End of if "y" || "Y" ------------ */
-					else if(!input_reservation.equals("n") || !input_reservation.equals("N")){
-						throw new RuntimeException("ERROR -> Invalid Input. (Y/N) only! *** \n\n");
-					}
-					break;
-				}catch(Exception e) {
-						System.err.println(e.getMessage()); continue;
-					}/* End of catch --- */
-			}/* End of while(true) ------------------------------------- */
-		} else {
-			String update_reservation;
+			boolean has_reservation;
+			try (RowPrinter printer = printer()) {
+				has_reservation = esql.getOperations().reservations(customer_id, flight_number, printer) != 0;
+			}
 			while(true){
-				try{
+				if(has_reservation)
 					System.out.println("Would you like to update your current reservation? (Y/N)");
-					update_reservation = in.readLine();
-					String reservation_status;
-					if( update_reservation.equals("y") || update_reservation.equals("Y") ){
-						reservation_status = "C";
-
-						try{
-							query = "UPDATE Reservation SET status = \'" + reservation_status + "\' WHERE cid = " + customer_id + " AND fid = " + flight_number + ";";
-							esql.executeUpdate(query);
-						}catch (Exception e) {
-							System.out.println(e); continue;
-						}/* End of catch --- */
-					}/* End of if "Y" or "y" statement --- */
-					else if( !update_reservation.equals("n") || !update_reservation.equals("N") ){
-						throw new RuntimeException("ERROR -> Invalid Input! (Y/N) only!\n\n");
-					}/* End of else if --- */
+				else
+					System.out.println("No reservation found. Would you like to book one? (Y/N)\n");
+
+				String answer = in.readLine();
+				if(answer == null || answer.equalsIgnoreCase("n")){
 					break;
-				} catch (Exception e) {
-					System.out.println(e); continue;
-				}/* End of catch statement --- */
+				}
+				if(!answer.equalsIgnoreCase("y")){
+					System.out.println("ERROR -> Invalid Input. (Y/N) only! *** \n\n");
+					continue;
+				}
+
+				/* The booking engine decides R or W and commits atomically --- */
+				if(has_reservation){
+					int cancelled = esql.getOperations().cancel(customer_id, flight_number);
+					System.out.println(cancelled + " reservation(s) cancelled.");
+				}else{
+					BookingService.Booking booking = esql.getOperations().book(customer_id, flight_number);
+					System.out.println("Reservation " + booking.rnum + " booked with status " + booking.status);
+				}
+				break;
 			}/* End of while(true) --- */
-		}/* End of parent else statement -------- */
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
 		}/* End of catch statement --- */
-
 	}/* End of BookFlight method --- */
 
 	/*
@@ -957,13 +1550,14 @@ public class DBproject{
 
 		/* Grab date from user --- */
 		String date;
+		LocalDate departure_date;
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
 		while(true) {
 			System.out.println("Enter departure date as (yyyy-mm-dd hh:mm)");
 			try {
 				date = in.readLine();
-				LocalDate departure_date = LocalDate.parse(date, formatter);
+				departure_date = LocalDate.parse(date, formatter);
 				break;
 			}catch (Exception e) {
 				System.out.println("Invalid input. Please enter again.");
@@ -976,10 +1570,13 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		try {
-			String query = "SELECT Total_Seats - Seats_Sold as \"Seats Available\"\nFROM(\nSELECT P.seats as Total_Seats\nFROM Plane P, FlightInfo FI\nWHERE FI.flight_id = " + flight_number + " AND FI.plane_id = P.id\n)total,\n(\nSELECT F.num_sold as Seats_Sold\nFROM Flight F\nWHERE F.fnum = " + flight_number + " AND F.actual_departure_date = \'" + date + "\'\n)sold;";
-
-			if(esql.executeQueryAndPrintResult(query) == 0) {
+			/* Answered from memory when the seat inventory is enabled --- */
+			int seats = esql.getOperations().availableSeats(flight_number, departure_date);
+			if(seats < 0) {
 				System.out.println("Flight or Departure Time does not exist");
+			}else {
+				System.out.println("Seats Available\t");
+				System.out.println(seats + "\t");
 			}
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
@@ -1007,13 +1604,11 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		try {
-			String query = "SELECT R.plane_id, COUNT(*) AS total_num_repairs " +
-							 "FROM Repairs R " +
-							 "GROUP BY R.plane_id " +
-							 "ORDER BY total_num_repairs DESC";
-
 		  System.out.println("\n\n --- EXECUTING QUERY --- \n\n");
-			esql.executeQueryAndPrintResult(query);
+			// per plane counts maintained by migration V2, or a full aggregate
+			try (RowPrinter printer = printer()) {
+				esql.getOperations().repairsPerPlane(printer);
+			}
 			System.out.println("\n\n --- END OF QUERY RESULTS --- \n\n");
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
@@ -1041,13 +1636,11 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		try {
-			String query = "SELECT EXTRACT(year FROM R.repair_date) AS yyyy, COUNT(*) AS total_num_repairs " +
-							 "FROM Repairs R " +
-							 "GROUP BY yyyy " +
-							 "ORDER BY total_num_repairs ASC";
-
 		  System.out.println("\n\n --- EXECUTING QUERY --- \n\n");
-			esql.executeQueryAndPrintResult(query);
+			// per year counts maintained by migration V2, or a full aggregate
+			try (RowPrinter printer = printer()) {
+				esql.getOperations().repairsPerYear(printer);
+			}
 			System.out.println("\n\n --- END OF QUERY RESULTS --- \n\n");
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
@@ -1110,15 +1703,123 @@ public class DBproject{
 		 * Else, exception handle is caught
 		 */
 		 try {
- 			String query = "SELECT R.fid, COUNT(*) AS total_num_passengers " +
- 							 "FROM Reservation R " +
- 							 "WHERE R.status =  \'" + passenger_status + "\' AND R.fid = \'" + Flight_number_choice + "\'" +
- 							 "GROUP BY R.fid;";
-
-			esql.executeQueryAndPrintResult(query);
+			long count = esql.getOperations().passengerCount(Flight_number_choice, passenger_status);
+			System.out.println("fid\ttotal_num_passengers\t");
+			System.out.println(Flight_number_choice + "\t" + count + "\t");
 		}catch(Exception e) {
 			System.err.println(e.getMessage());
 		}
 	}/* End of FindPassengersCountWithStatus method -------------------------- */
 
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void FindItineraries(DBproject esql)
+	 * Purpose  -> Method to list the cheapest ways of getting from one
+	 *             airport to another, with up to a given number of legs.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+
+	 /* /// OPTION 10 /// OPTION 10 /// OPTION 10 /// OPTION 10 /// OPTION 10 /// */
+	public static void FindItineraries(DBproject esql) {
+		String origin;
+		String destination;
+		LocalDate earliest;
+		LocalDate latest;
+		int legs;
+		int connection;
+
+		/* Grab the route and window from user --- */
+		while(true) {
+			try {
+				System.out.println("\tEnter departure airport code: ");
+				origin = in.readLine().trim();
+				System.out.println("\tEnter arrival airport code: ");
+				destination = in.readLine().trim();
+				if(origin.isEmpty() || destination.isEmpty() || origin.length() > 5 || destination.length() > 5) {
+					throw new RuntimeException("Airport codes are 1 to 5 characters");
+				}
+				break;
+			}catch (Exception e) {
+				System.out.println(e);
+			}
+		}
+		while(true) {
+			try {
+				System.out.println("Enter earliest departure date as (yyyy-mm-dd)");
+				earliest = LocalDate.parse(in.readLine().trim());
+				System.out.println("Enter latest departure date as (yyyy-mm-dd)");
+				latest = LocalDate.parse(in.readLine().trim());
+				if(latest.isBefore(earliest)) {
+					throw new RuntimeException("Latest departure cannot be before earliest departure");
+				}
+				break;
+			}catch (Exception e) {
+				System.out.println("Invalid input. Please enter again.");
+			}
+		}
+		while(true) {
+			try {
+				System.out.println("\tEnter maximum number of legs (1-" + Operations.MAX_LEGS + "): ");
+				legs = Integer.parseInt(in.readLine().trim());
+				System.out.println("\tEnter minimum days between legs: ");
+				connection = Integer.parseInt(in.readLine().trim());
+				if(legs < 1 || legs > Operations.MAX_LEGS || connection < 0) {
+					throw new RuntimeException("Input out of range");
+				}
+				break;
+			}catch (Exception e) {
+				System.out.println(e);
+			}
+		}
+
+		try {
+			List<ItinerarySearch.Itinerary> found = esql.getOperations().itineraries(origin, destination,
+				earliest, latest, legs, connection, 1, 10);
+			if(found.isEmpty()) {
+				System.out.println("No itineraries found");
+			}
+			System.out.println("cost\tdays\tlegs\t");
+			for (ItinerarySearch.Itinerary itinerary : found) {
+				System.out.println(itinerary.cost + "\t" + itinerary.days() + "\t" + itinerary.legs() + "\t");
+				for (int i = 0; i < itinerary.legs(); ++i) {
+					System.out.println("\tflight " + itinerary.flights[i] + ": " + itinerary.airports[i] + " "
+						+ itinerary.departures[i] + " -> " + itinerary.airports[i + 1] + " " + itinerary.arrivals[i]);
+				}
+			}
+		}catch(Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}/* End of FindItineraries method ---------------------------------------- */
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void FleetReports(DBproject esql)
+	 * Purpose  -> Method to list repairs per plane, year, code, technician
+	 *             and pilot, and flights per plane.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+
+	 /* /// OPTION 11 /// OPTION 11 /// OPTION 11 /// OPTION 11 /// OPTION 11 /// */
+	public static void FleetReports(DBproject esql) {
+		try {
+			System.out.println("\n\n --- EXECUTING QUERY --- \n\n");
+			for (ReportEngine.Counts report : esql.getOperations().fleetReports().all()) {
+				System.out.println(" --- " + report.report + " --- ");
+				report.print(System.out);
+				System.out.println();
+			}
+			System.out.println("\n\n --- END OF QUERY RESULTS --- \n\n");
+		}catch(Exception e) {
+			System.err.println(e.getMessage());
+		}
+	}/* End of FleetReports method ------------------------------------------- */
+
 }/* End of DBproject !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
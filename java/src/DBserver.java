@@ -0,0 +1,522 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the menu operations over HTTP on localhost so many clients can
+ * share one process and its connection pool. Every operation is a path
+ * named after its menu method; arguments are query string or form
+ * parameters and every response is a JSON object:
+ *
+ *   POST /AddPlane                      id, make, model, age, seats
+ *   POST /AddPilot                      id, fullname, nationality
+ *   POST /AddFlight                     fnum, cost, num_sold, num_stops,
+ *                                       departure, arrival (yyyy-mm-dd),
+ *                                       arrival_airport, departure_airport
+ *   POST /AddTechnician                 id, full_name
+ *   GET  /Reservations                  cid, fnum
+ *   POST /BookFlight                    cid, fnum
+ *   POST /CancelFlight                  cid, fnum
+ *   POST /ReconcileWaitlist
+ *   POST /SaveSnapshot
+ *   GET  /ListNumberOfAvailableSeats    fnum, date (yyyy-mm-dd)
+ *   GET  /ListNumberOfAvailableSeatsBulk
+ *                                       flights (fnum:yyyy-mm-dd,...)
+ *   GET  /ListsTotalNumberOfRepairsPerPlane
+ *   GET  /ListTotalNumberOfRepairsPerYear
+ *   GET  /FindPassengersCountWithStatus fnum, status
+ *   GET  /FleetReports
+ *   GET  /FindItineraries               from, to, earliest, latest
+ *                                       [legs 3, connection 0, seats 1,
+ *                                       limit 10]
+ *
+ * GET /metrics returns the per-operation metrics for Prometheus to scrape.
+ *
+ * Requests run on virtual threads when the JVM has them (Java 21 and
+ * later) and on a fixed pool of dbproject.server.threads threads (64)
+ * otherwise. Either way the database sees at most dbproject.pool.size
+ * concurrent statements; other requests queue for a connection and get
+ * 503 if none frees up within dbproject.pool.wait.
+ *
+ * Usage: java DBserver <dbname> <port> <user> [http port]
+ *
+ */
+
+public class DBserver{
+
+	/**
+	 * One operation: reads its arguments and appends the JSON fields of
+	 * its answer (without the enclosing braces).
+	 */
+	interface Endpoint {
+		void handle(Request request, StringBuilder json) throws Exception;
+	}
+
+	/**
+	 * Failure with the HTTP status it should be reported with.
+	 */
+	static class HttpError extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+
+		HttpError(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Parameters of one request.
+	 */
+	static class Request {
+		private final Map<String, String> _params;
+
+		Request(Map<String, String> params) {
+			this._params = params;
+		}
+
+		String string(String name) {
+			String value = this._params.get(name);
+			if (value == null) {
+				throw new IllegalArgumentException("Missing parameter " + name);
+			}
+			return value;
+		}
+
+		int integer(String name) {
+			return Integer.parseInt(string(name).trim());
+		}
+
+		int integer(String name, int fallback) {
+			return this._params.containsKey(name) ? integer(name) : fallback;
+		}
+
+		LocalDate date(String name) {
+			//also accepts the CLI's "yyyy-mm-dd hh:mm", the time is not stored
+			String value = string(name).trim();
+			return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value);
+		}
+	}
+
+	private final DBproject _esql;
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+	private final Map<String, Endpoint> _gets = new HashMap<String, Endpoint>();
+	private final Map<String, Endpoint> _posts = new HashMap<String, Endpoint>();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> DBserver (DBproject esql, int port) throws IOException
+	 * Purpose  -> Binds a server for the menu operations to localhost:port.
+	 *             Nothing is served until start() is called.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql, int port
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public DBserver(DBproject esql, int port) throws IOException {
+		this._esql = esql;
+		this._server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+			Integer.getInteger("dbproject.server.backlog", 1024));
+		this._executor = newExecutor(Integer.getInteger("dbproject.server.threads", 64));
+		this._server.setExecutor(this._executor);
+		this._server.createContext("/", this::dispatch);
+		this._server.createContext("/metrics", this::metrics);
+		routes(esql.getOperations());
+	}
+
+	/* Registers every operation under its path */
+	private void routes(final Operations ops) {
+		this._posts.put("/AddPlane", (request, json) -> {
+			ops.addPlane(request.integer("id"), request.string("make"), request.string("model"),
+				request.integer("age"), request.integer("seats"));
+			json.append("\"added\":1");
+		});
+		this._posts.put("/AddPilot", (request, json) -> {
+			ops.addPilot(request.integer("id"), request.string("fullname"), request.string("nationality"));
+			json.append("\"added\":1");
+		});
+		this._posts.put("/AddFlight", (request, json) -> {
+			ops.addFlight(request.integer("fnum"), request.integer("cost"), request.integer("num_sold"),
+				request.integer("num_stops"), request.date("departure"), request.date("arrival"),
+				request.string("arrival_airport"), request.string("departure_airport"));
+			json.append("\"added\":1");
+		});
+		this._posts.put("/AddTechnician", (request, json) -> {
+			ops.addTechnician(request.integer("id"), request.string("full_name"));
+			json.append("\"added\":1");
+		});
+
+		this._gets.put("/Reservations", (request, json) ->
+			ops.reservations(request.integer("cid"), request.integer("fnum"), rows(json)));
+		this._posts.put("/BookFlight", (request, json) -> {
+			BookingService.Booking booking = ops.book(request.integer("cid"), request.integer("fnum"));
+			json.append("\"rnum\":").append(booking.rnum).append(",\"status\":");
+			quote(json, String.valueOf(booking.status));
+		});
+		this._posts.put("/CancelFlight", (request, json) ->
+			json.append("\"cancelled\":").append(ops.cancel(request.integer("cid"), request.integer("fnum"))));
+		this._posts.put("/ReconcileWaitlist", (request, json) ->
+			json.append("\"promoted\":").append(ops.reconcileWaitlist()));
+		this._posts.put("/SaveSnapshot", (request, json) ->
+			json.append("\"bytes\":").append(ops.saveSnapshot()));
+
+		this._gets.put("/ListNumberOfAvailableSeats", (request, json) -> {
+			int seats = ops.availableSeats(request.integer("fnum"), request.date("date"));
+			if (seats < 0) {
+				throw new HttpError(404, "Flight or Departure Time does not exist");
+			}
+			json.append("\"seats\":").append(seats);
+		});
+		this._gets.put("/ListNumberOfAvailableSeatsBulk", (request, json) -> {
+			Map<Integer, LocalDate> flights = new LinkedHashMap<Integer, LocalDate>();
+			for (String flight : request.string("flights").split(",")) {
+				int colon = flight.indexOf(':');
+				if (colon < 0) {
+					throw new IllegalArgumentException("Expected fnum:yyyy-mm-dd, got " + flight);
+				}
+				flights.put(Integer.parseInt(flight.substring(0, colon).trim()), LocalDate.parse(flight.substring(colon + 1).trim()));
+			}
+			Map<Integer, Integer> seats = ops.availableSeats(flights);
+			json.append("\"seats\":{");
+			String separator = "";
+			for (Integer fnum : flights.keySet()) {
+				json.append(separator).append('"').append(fnum).append("\":").append(seats.get(fnum));
+				separator = ",";
+			}
+			json.append('}');
+		});
+		this._gets.put("/ListsTotalNumberOfRepairsPerPlane", (request, json) -> ops.repairsPerPlane(rows(json)));
+		this._gets.put("/ListTotalNumberOfRepairsPerYear", (request, json) -> ops.repairsPerYear(rows(json)));
+		this._gets.put("/FindPassengersCountWithStatus", (request, json) -> {
+			int fnum = request.integer("fnum");
+			json.append("\"fid\":").append(fnum).append(",\"total_num_passengers\":")
+				.append(ops.passengerCount(fnum, request.string("status")));
+		});
+		this._gets.put("/FleetReports", (request, json) -> {
+			String separator = "";
+			for (ReportEngine.Counts report : ops.fleetReports().all()) {
+				json.append(separator).append('"').append(report.report).append("\":[");
+				String row = "";
+				for (int i : report.order()) {
+					json.append(row).append("{\"").append(report.key).append("\":");
+					quote(json, report.label(i));
+					json.append(",\"").append(report.value).append("\":").append(report.count(i)).append('}');
+					row = ",";
+				}
+				json.append(']');
+				separator = ",";
+			}
+		});
+		this._gets.put("/FindItineraries", (request, json) -> {
+			json.append("\"itineraries\":[");
+			String separator = "";
+			for (ItinerarySearch.Itinerary itinerary : ops.itineraries(request.string("from"), request.string("to"),
+					request.date("earliest"), request.date("latest"), request.integer("legs", 3),
+					request.integer("connection", 0), request.integer("seats", 1), request.integer("limit", 10))) {
+				json.append(separator).append("{\"cost\":").append(itinerary.cost)
+					.append(",\"days\":").append(itinerary.days()).append(",\"legs\":[");
+				for (int i = 0; i < itinerary.legs(); ++i) {
+					json.append(i == 0 ? "" : ",").append("{\"fnum\":").append(itinerary.flights[i]).append(",\"from\":");
+					quote(json, itinerary.airports[i]);
+					json.append(",\"to\":");
+					quote(json, itinerary.airports[i + 1]);
+					json.append(",\"departure\":\"").append(itinerary.departures[i])
+						.append("\",\"arrival\":\"").append(itinerary.arrivals[i]).append("\"}");
+				}
+				json.append("]}");
+				separator = ",";
+			}
+			json.append(']');
+		});
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ExecutorService newExecutor(int threads)
+	 * Purpose  -> Returns a virtual thread per task executor when the JVM
+	 *             provides one, a fixed pool of threads otherwise. Looked up
+	 *             reflectively so the sources still build on Java 8.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int threads
+	 * Returns  -> ExecutorService
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	static ExecutorService newExecutor(int threads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(threads);
+		}
+	}
+
+	public void start() {
+		this._server.start();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void stop(int seconds)
+	 * Purpose  -> Stops accepting requests and waits up to the given time
+	 *             for the ones in flight to finish.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int seconds
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void stop(int seconds) {
+		this._server.stop(seconds);
+		this._executor.shutdown();
+		try {
+			this._executor.awaitTermination(seconds, TimeUnit.SECONDS);
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void dispatch(HttpExchange exchange) throws IOException
+	 * Purpose  -> Runs the operation named by the request path and sends
+	 *             its answer. Bad arguments are reported as 400, constraint
+	 *             violations (SQLState class 23) as 409, an exhausted
+	 *             connection pool as 503 and anything else as 500.
+	 * -----------------------------------------------------------------------
+	 * Receives -> HttpExchange exchange
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	private void dispatch(HttpExchange exchange) throws IOException {
+		StringBuilder json = new StringBuilder(256).append('{');
+		int status = 200;
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			Endpoint endpoint = ("POST".equals(method) ? this._posts : this._gets).get(path);
+			if (endpoint == null) {
+				if (this._posts.containsKey(path) || this._gets.containsKey(path)) {
+					throw new HttpError(405, method + " not allowed on " + path);
+				}
+				throw new HttpError(404, "No operation " + path);
+			}
+
+			Map<String, String> params = new HashMap<String, String>();
+			parse(exchange.getRequestURI().getRawQuery(), params);
+			if ("POST".equals(method)) {
+				parse(new String(readBody(exchange.getRequestBody()), StandardCharsets.UTF_8), params);
+			}
+			endpoint.handle(new Request(params), json);
+		}catch (HttpError e) {
+			status = e.status;
+			error(json, e.getMessage());
+		}catch (IllegalArgumentException | DateTimeParseException e) {
+			status = 400;
+			error(json, e.getMessage());
+		}catch (SQLException e) {
+			String state = e.getSQLState();
+			status = state == null ? 500 : state.startsWith("23") ? 409 : state.startsWith("53") ? 503 : 500;
+			error(json, e.getMessage());
+			json.append(",\"sqlstate\":");
+			quote(json, state);
+		}catch (Exception e) {
+			status = 500;
+			error(json, String.valueOf(e.getMessage()));
+		}
+		json.append("}\n");
+
+		byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		}finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void metrics(HttpExchange exchange) throws IOException
+	 * Purpose  -> Serves the operation metrics in the Prometheus text
+	 *             format, or as the plain table with ?format=text.
+	 * -----------------------------------------------------------------------
+	 * Receives -> HttpExchange exchange
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	private void metrics(HttpExchange exchange) throws IOException {
+		Metrics metrics = this._esql.getMetrics();
+		boolean text = "format=text".equals(exchange.getRequestURI().getRawQuery());
+		byte[] body = (text ? metrics.dump() : metrics.prometheus()).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", text ? "text/plain; charset=utf-8" : "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		}finally {
+			out.close();
+		}
+	}
+
+	/* Replaces whatever the endpoint wrote with an error message */
+	private static void error(StringBuilder json, String message) {
+		json.setLength(1);
+		json.append("\"error\":");
+		quote(json, message);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Storage.Rows rows(StringBuilder json)
+	 * Purpose  -> Returns a callback that writes the listed rows as a
+	 *             "rows" array of objects keyed by column name. Numeric
+	 *             values are written as JSON numbers.
+	 * -----------------------------------------------------------------------
+	 * Receives -> StringBuilder json
+	 * Returns  -> Storage.Rows
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	static Storage.Rows rows(final StringBuilder json) {
+		json.append("\"rows\":[]");
+		final int start = json.length() - 1;
+		return new Storage.Rows() {
+			public void row(String[] columns, Object[] values) {
+				//drop the closing bracket added after the previous row
+				json.setLength(json.length() - 1);
+				if (json.length() > start) json.append(',');
+				json.append('{');
+				for (int i = 0; i < columns.length; ++i) {
+					if (i > 0) json.append(',');
+					quote(json, columns[i]);
+					json.append(':');
+					Object value = values[i];
+					if (value == null) json.append("null");
+					else if (value instanceof Number) json.append(value);
+					else quote(json, value.toString());
+				}
+				json.append("}]");
+			}
+		};
+	}
+
+	/* Appends a JSON string literal */
+	static void quote(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': json.append("\\\""); break;
+				case '\\': json.append("\\\\"); break;
+				case '\n': json.append("\\n"); break;
+				case '\r': json.append("\\r"); break;
+				case '\t': json.append("\\t"); break;
+				default:
+					if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+					else json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	/* Adds the pairs of an application/x-www-form-urlencoded string */
+	private static void parse(String form, Map<String, String> params) throws UnsupportedEncodingException {
+		if (form == null || form.isEmpty()) {
+			return;
+		}
+		for (String pair : form.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+			}
+		}
+	}
+
+	private static byte[] readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int n;
+		while ((n = in.read(buf)) > 0)
+			body.write(buf, 0, n);
+		return body.toByteArray();
+	}
+
+	/**
+	 * The server command
+	 *
+	 * @param args <dbname> <port> <user> [http port], or just [http port]
+	 *             with -Ddbproject.embedded=<data dir>
+	 */
+	public static void main(String[] args) throws Exception {
+		boolean embedded = System.getProperty("dbproject.embedded") != null;
+		if (args.length < 3 && !embedded) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DBserver.class.getName () +
+		            " <dbname> <port> <user> [http port]");
+			System.err.println ("   or: java -Ddbproject.embedded=<data dir> " + DBserver.class.getName () + " [http port]");
+			return;
+		}//end if
+
+		final DBproject esql;
+		int port;
+		if (embedded) {
+			esql = DBproject.open(null, null, null);
+			port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		}else {
+			Class.forName("org.postgresql.Driver");
+			esql = DBproject.open(args[0], args[1], args[2]);
+			port = args.length > 3 ? Integer.parseInt(args[3]) : 8080;
+		}
+		final DBserver server = new DBserver(esql, port);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			System.out.print("Stopping server...");
+			server.stop(5);
+			esql.cleanup();
+			System.out.println("Done");
+		}));
+		server.start();
+		System.out.println("Serving on http://localhost:" + server._server.getAddress().getPort() + "/");
+	}
+}/* End of DBserver !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
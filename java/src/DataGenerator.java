@@ -0,0 +1,396 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+/**
+ * Deterministic generator for a scaled-up copy of the data/ dataset. Scale
+ * factor 1 produces the row counts of the bundled CSVs (250 customers, 2000
+ * flights, 10000 reservations, ...); scale 1000 produces 10M reservations.
+ *
+ * Every row is derived from (seed, table, row id) alone, so tables can be
+ * generated independently and in parallel while staying referentially
+ * consistent (a flight and its FlightInfo row agree on the plane, num_sold
+ * never exceeds that plane's seats), and nothing is held in memory. Values
+ * respect the domains in sql/create.sql (_STATUS, _CODE, _SEATS, ...).
+ *
+ * Usage: java DataGenerator <scale> <seed> <out dir>
+ *        java DataGenerator <scale> <seed> --copy <dbname> <port> <user>
+ *
+ */
+
+public class DataGenerator{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final String[] FIRST_NAMES = {
+		"Armand", "Alberto", "Wyatt", "Jose", "Mariam", "Dan", "Grace", "Linus",
+		"Ada", "Alan", "Edsger", "Barbara", "Donald", "Frances", "Ken", "Radia"
+	};
+	private static final String[] LAST_NAMES = {
+		"Enderle", "Scarlett", "Ruoff", "Estrada", "Salloum", "Murphy", "Hopper",
+		"Lovelace", "Turing", "Dijkstra", "Liskov", "Knuth", "Allen", "Perlman"
+	};
+	private static final String[] STREETS = {
+		"Chapel Drive Melbourne", "Bald Hill Street Baton Rouge",
+		"Campfire Ave. Cockeysville", "University Ave. Riverside",
+		"Main Street Springfield", "Lake Road Madison"
+	};
+	private static final String[] STATES = { "FL", "LA", "MD", "CA", "IL", "WI", "TX", "NY" };
+	private static final String[] NATIONS = {
+		"Australia", "Morocco", "India", "United States", "Mexico", "France", "Japan", "Brazil"
+	};
+	private static final String[] MAKES = { "Airbus", "Boeing", "Bombadier", "Embraer" };
+	private static final String[] MODELS = {
+		"AirbusA300", "AirbusA310", "AirbusA320", "Boeing737", "Boeing747",
+		"Boeing777", "CRJ900", "E175"
+	};
+	private static final String[] CODES = { "MJ", "MN", "SV" };
+	private static final char[] STATUS = { 'R', 'R', 'R', 'W', 'W', 'C' };
+
+	private static final LocalDateTime FIRST_DEPARTURE = LocalDateTime.of(2014, 1, 1, 0, 0);
+	private static final LocalDate FIRST_REPAIR = LocalDate.of(2010, 1, 1);
+
+	private final long _seed;
+	private final long _customers;
+	private final long _pilots;
+	private final long _planes;
+	private final long _technicians;
+	private final long _flights;
+	private final long _reservations;
+	private final long _repairs;
+	private final int _airports;
+
+	/**
+	 * Where generated rows go: one output stream per table.
+	 */
+	public interface Sink {
+		OutputStream open(Tables.Table table) throws Exception;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> DataGenerator (double scale, long seed)
+	 * Purpose  -> Sizes every table relative to the bundled dataset.
+	 * -----------------------------------------------------------------------
+	 * Receives -> double scale, long seed
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public DataGenerator(double scale, long seed) {
+		if (scale <= 0) {
+			throw new IllegalArgumentException("Scale factor must be positive");
+		}
+		this._seed = seed;
+		this._customers = Math.max(1, Math.round(250 * scale));
+		this._pilots = Math.max(1, Math.round(250 * scale));
+		this._planes = Math.max(1, Math.round(67 * scale));
+		this._technicians = Math.max(1, Math.round(250 * scale));
+		this._flights = Math.max(1, Math.round(2000 * scale));
+		this._reservations = Math.max(1, Math.round(10000 * scale));
+		this._repairs = Math.max(1, Math.round(550 * scale));
+		this._airports = Math.min(26 * 26 * 26, 40 + (int) Math.round(20 * Math.sqrt(scale)));
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void generate(Sink sink) throws Exception
+	 * Purpose  -> Generates every table, level by level in foreign key
+	 *             order, with one worker per table.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Sink sink
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void generate(final Sink sink) throws Exception {
+		ExecutorService workers = Executors.newFixedThreadPool(Tables.ALL.length);
+		try {
+			for (int level = 0; level <= 1; ++level) {
+				List<Future<Long>> running = new ArrayList<Future<Long>>();
+				for (final Tables.Table table : Tables.ALL) {
+					if (table.level == level) {
+						running.add(workers.submit(() -> generate(table, sink)));
+					}
+				}
+				for (Future<Long> rows : running)
+					rows.get();
+			}
+		}finally {
+			workers.shutdownNow();
+		}
+	}//end generate
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long generate(Tables.Table table, Sink sink)
+	 *                                                      throws Exception
+	 * Purpose  -> Streams all rows of one table to the sink.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Tables.Table table, Sink sink
+	 * Returns  -> [long] rows
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long generate(Tables.Table table, Sink sink) throws Exception {
+		long start = System.nanoTime();
+		long rows = rowCount(table);
+		OutputStream raw = sink.open(table);
+		Writer out = new OutputStreamWriter(raw, StandardCharsets.UTF_8);
+		try {
+			StringBuilder line = new StringBuilder(256);
+			for (long id = 0; id < rows; ++id) {
+				line.setLength(0);
+				row(table, id, line);
+				line.append('\n');
+				out.append(line);
+			}
+		}catch (Exception e) {
+			// never let a half-written COPY commit
+			if (raw instanceof PGCopyOutputStream) {
+				((PGCopyOutputStream) raw).cancelCopy();
+			}else {
+				raw.close();
+			}
+			throw e;
+		}
+		out.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-12s %,12d rows in %7.2fs%n", table.name, rows, seconds);
+		return rows;
+	}
+
+	long rowCount(Tables.Table table) {
+		if (table == Tables.CUSTOMER) return this._customers;
+		if (table == Tables.PILOT) return this._pilots;
+		if (table == Tables.PLANE) return this._planes;
+		if (table == Tables.TECHNICIAN) return this._technicians;
+		if (table == Tables.RESERVATION) return this._reservations;
+		if (table == Tables.REPAIRS) return this._repairs;
+		return this._flights; //Flight, FlightInfo and Schedule are 1:1
+	}
+
+	/* Appends the CSV fields of one row, in the column order of Tables */
+	void row(Tables.Table table, long id, StringBuilder line) {
+		SplittableRandom rnd = random(table.name.hashCode(), id);
+		line.append(id).append(',');
+
+		if (table == Tables.CUSTOMER) {
+			line.append(pick(rnd, FIRST_NAMES)).append(',')
+				.append(pick(rnd, LAST_NAMES)).append(',')
+				.append(rnd.nextBoolean() ? 'M' : 'F').append(',');
+			LocalDate dob = LocalDate.of(1940, 1, 1).plusDays(rnd.nextInt(60 * 365));
+			line.append(dob.getMonthValue()).append('/').append(dob.getDayOfMonth()).append('/')
+				.append(dob.getYear()).append(',')
+				.append(1000 + rnd.nextInt(9000)).append(' ').append(pick(rnd, STREETS)).append(',');
+			digits(line, rnd.nextLong(1000000000L, 10000000000L), 10);
+			// the bundled file keeps the state in a space-prefixed zipcode field
+			line.append(", ").append(pick(rnd, STATES)).append(' ');
+			digits(line, rnd.nextInt(100000), 5);
+		}else if (table == Tables.PILOT) {
+			line.append(pick(rnd, FIRST_NAMES)).append(' ').append(pick(rnd, LAST_NAMES)).append(',')
+				.append(pick(rnd, NATIONS));
+		}else if (table == Tables.PLANE) {
+			line.append(pick(rnd, MAKES)).append(',').append(pick(rnd, MODELS)).append(',')
+				.append(rnd.nextInt(30)).append(',').append(seats(id));
+		}else if (table == Tables.TECHNICIAN) {
+			line.append(pick(rnd, FIRST_NAMES)).append(' ').append(pick(rnd, LAST_NAMES));
+		}else if (table == Tables.FLIGHT) {
+			long departure = departure(id);
+			int from = (int) (mix(this._seed, 11, id) % this._airports);
+			int to = (from + 1 + (int) (mix(this._seed, 13, id) % (this._airports - 1))) % this._airports;
+			line.append(50 + rnd.nextInt(950)).append(',')
+				.append(rnd.nextInt(seats(planeOf(id)) + 1)).append(',')
+				.append(rnd.nextInt(4)).append(',');
+			timestamp(line, departure);
+			line.append(',');
+			timestamp(line, departure + duration(id));
+			line.append(',');
+			airport(line, to);
+			line.append(',');
+			airport(line, from);
+		}else if (table == Tables.RESERVATION) {
+			line.append(rnd.nextLong(this._customers)).append(',')
+				.append(rnd.nextLong(this._flights)).append(',')
+				.append(STATUS[rnd.nextInt(STATUS.length)]);
+		}else if (table == Tables.FLIGHT_INFO) {
+			line.append(id).append(',')
+				.append(mix(this._seed, 17, id) % this._pilots).append(',')
+				.append(planeOf(id));
+		}else if (table == Tables.REPAIRS) {
+			LocalDate day = FIRST_REPAIR.plusDays(rnd.nextInt(7 * 365));
+			line.append(day).append(',')
+				.append(pick(rnd, CODES)).append(',')
+				.append(rnd.nextLong(this._pilots)).append(',')
+				.append(rnd.nextLong(this._planes)).append(',')
+				.append(rnd.nextLong(this._technicians));
+		}else if (table == Tables.SCHEDULE) {
+			// scheduled times run up to two hours ahead of the actual ones
+			long scheduled = departure(id) - rnd.nextInt(121);
+			line.append(id).append(',');
+			timestamp(line, scheduled);
+			line.append(',');
+			timestamp(line, scheduled + duration(id));
+		}
+	}
+
+	/* Shared derived values, so related tables agree with each other */
+	private long planeOf(long flight) {
+		return mix(this._seed, 19, flight) % this._planes;
+	}
+
+	private int seats(long plane) {
+		return 1 + (int) (mix(this._seed, 23, plane) % 499);
+	}
+
+	private long departure(long flight) {
+		return mix(this._seed, 29, flight) % (365L * 24 * 60);
+	}
+
+	private long duration(long flight) {
+		return 60 + mix(this._seed, 31, flight) % (15 * 60);
+	}
+
+	private SplittableRandom random(int table, long id) {
+		return new SplittableRandom(mix(this._seed, table, id));
+	}
+
+	/* Non-negative 64-bit hash of (seed, salt, id) */
+	private static long mix(long seed, long salt, long id) {
+		long z = seed ^ (salt * 0x9E3779B97F4A7C15L) ^ (id * 0xBF58476D1CE4E5B9L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+	}
+
+	private static String pick(SplittableRandom rnd, String[] values) {
+		return values[rnd.nextInt(values.length)];
+	}
+
+	private static void digits(StringBuilder line, long value, int width) {
+		String s = Long.toString(value);
+		for (int i = s.length(); i < width; ++i)
+			line.append('0');
+		line.append(s);
+	}
+
+	/* Five letter airport code for an airport index */
+	private static void airport(StringBuilder line, int index) {
+		line.append("AP");
+		line.append((char) ('A' + index / 676)).append((char) ('A' + index / 26 % 26)).append((char) ('A' + index % 26));
+	}
+
+	/* yyyy-MM-dd HH:mm for a minute offset from FIRST_DEPARTURE */
+	private static void timestamp(StringBuilder line, long minutes) {
+		LocalDateTime t = FIRST_DEPARTURE.plusMinutes(minutes);
+		line.append(t.toLocalDate()).append(' ');
+		digits(line, t.getHour(), 2);
+		line.append(':');
+		digits(line, t.getMinute(), 2);
+	}
+
+	/**
+	 * The workload generator command
+	 *
+	 * @param args <scale> <seed> (<out dir> | --copy <dbname> <port> <user>)
+	 */
+	public static void main(String[] args) {
+		boolean copy = args.length == 6 && args[2].equals("--copy");
+		if (args.length != 3 && !copy) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DataGenerator.class.getName () +
+		            " <scale> <seed> (<out dir> | --copy <dbname> <port> <user>)");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		try {
+			DataGenerator generator = new DataGenerator(Double.parseDouble(args[0]), Long.parseLong(args[1]));
+			Sink sink;
+			if (copy) {
+				Class.forName("org.postgresql.Driver");
+				if (System.getProperty("dbproject.pool.size") == null) {
+					System.setProperty("dbproject.pool.size", String.valueOf(Tables.ALL.length));
+				}
+				final DBproject db = new DBproject(args[3], args[4], args[5], "");
+				esql = db;
+				sink = new Sink() {
+					public OutputStream open(Tables.Table table) throws Exception {
+						return copyIn(db.getPool(), table);
+					}
+				};
+			}else {
+				final File dir = new File(args[2]);
+				dir.mkdirs();
+				sink = new Sink() {
+					public OutputStream open(Tables.Table table) throws IOException {
+						return new BufferedOutputStream(new FileOutputStream(new File(dir, table.file)), BUFFER_SIZE);
+					}
+				};
+			}
+			generator.generate(sink);
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+	}
+
+	/* A COPY FROM STDIN pipe that gives its connection back when closed */
+	private static OutputStream copyIn(final ConnectionPool pool, Tables.Table table) throws Exception {
+		final ConnectionPool.PooledConnection conn = pool.acquire();
+		String sql = "COPY " + table.name + " (" + table.columnList() + ") FROM STDIN WITH DELIMITER ','";
+		try {
+			return new PGCopyOutputStream(conn.getConnection().unwrap(PGConnection.class), sql, BUFFER_SIZE) {
+				public void close() throws IOException {
+					try {
+						super.close();
+					}finally {
+						pool.release(conn);
+					}
+				}
+
+				public void cancelCopy() throws java.sql.SQLException {
+					try {
+						super.cancelCopy();
+					}finally {
+						pool.release(conn);
+					}
+				}
+			};
+		}catch (Exception e) {
+			pool.release(conn);
+			throw e;
+		}
+	}
+}/* End of DataGenerator !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,659 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Multi-leg itinerary search over the Flight table. Every flight is one
+ * connection from its departure airport to its arrival airport; they are
+ * kept in primitive arrays with two indexes: the connections leaving each
+ * airport sorted by departure day, and the connections departing on each
+ * day.
+ *
+ * A search first scans the connections of the travel window once per leg
+ * allowed, computing for every airport the latest day one can leave it and
+ * still reach the destination (a connection scan, run backwards). It then
+ * walks forward from the origin, following only connections that can
+ * still arrive, and keeps the cheapest itineraries (then shortest, then
+ * fewest legs).
+ *
+ * Flight dates have day resolution, so connection times are whole days:
+ * with a minimum connection of 0 days a leg may leave the day the previous
+ * one arrives.
+ *
+ * Free seats (Plane.seats - Flight.num_sold) are a snapshot taken at load
+ * time and refreshed from whatever the caller confirms through update().
+ * Flights added through AddFlight are appended by add() without a reload;
+ * their plane is not known yet, so their seats are left to the caller's
+ * confirmation.
+ *
+ */
+
+public class ItinerarySearch{
+	//free seats of flights whose plane is not known
+	private static final int UNKNOWN = -1;
+	//latest departure of airports that cannot reach the destination
+	private static final int NONE = Integer.MIN_VALUE;
+
+	static final String LOAD_FLIGHTS =
+		"SELECT F.fnum, F.cost, F.actual_departure_date, F.actual_arrival_date, " +
+		"F.departure_airport, F.arrival_airport, (" +
+			"SELECT P.seats FROM FlightInfo FI, Plane P " +
+			"WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id ORDER BY FI.fiid LIMIT 1) - F.num_sold " +
+		"FROM Flight F";
+
+	/**
+	 * One itinerary, leg by leg. airports has one more entry than flights:
+	 * the origin followed by the arrival airport of every leg.
+	 */
+	public static final class Itinerary {
+		public final int[] flights;
+		public final String[] airports;
+		public final LocalDate[] departures;
+		public final LocalDate[] arrivals;
+		public final int cost;
+
+		Itinerary(int[] flights, String[] airports, LocalDate[] departures, LocalDate[] arrivals, int cost) {
+			this.flights = flights;
+			this.airports = airports;
+			this.departures = departures;
+			this.arrivals = arrivals;
+			this.cost = cost;
+		}
+
+		public int legs() {
+			return this.flights.length;
+		}
+
+		/* Days from the first departure to the last arrival */
+		public int days() {
+			return (int) (this.arrivals[this.arrivals.length - 1].toEpochDay() - this.departures[0].toEpochDay());
+		}
+	}
+
+	/* Cheapest first, then shortest, then fewest legs, then earliest */
+	static final Comparator<Itinerary> RANKING = new Comparator<Itinerary>() {
+		public int compare(Itinerary a, Itinerary b) {
+			if (a.cost != b.cost) return Integer.compare(a.cost, b.cost);
+			if (a.days() != b.days()) return Integer.compare(a.days(), b.days());
+			if (a.legs() != b.legs()) return Integer.compare(a.legs(), b.legs());
+			return a.departures[0].compareTo(b.departures[0]);
+		}
+	};
+
+	/**
+	 * A consistent view of the connections. Arrays may be longer than
+	 * count and shared with later snapshots, which only write past count.
+	 */
+	private static final class Network {
+		final int count;
+		final int[] fnum;
+		final int[] cost;
+		final int[] departureDay;
+		final int[] arrivalDay;
+		final int[] from;
+		final int[] to;
+		//written by update(); a stale read only costs an extra confirmation
+		final int[] free;
+		final String[] airports;
+		final Map<String, Integer> airportIds;
+		//connections leaving each airport, by departure day
+		final int[][] departures;
+		//connections departing on each day since firstDay
+		final int firstDay;
+		final int[][] days;
+
+		Network(int count, int[] fnum, int[] cost, int[] departureDay, int[] arrivalDay, int[] from, int[] to,
+				int[] free, String[] airports, Map<String, Integer> airportIds, int[][] departures,
+				int firstDay, int[][] days) {
+			this.count = count;
+			this.fnum = fnum;
+			this.cost = cost;
+			this.departureDay = departureDay;
+			this.arrivalDay = arrivalDay;
+			this.from = from;
+			this.to = to;
+			this.free = free;
+			this.airports = airports;
+			this.airportIds = airportIds;
+			this.departures = departures;
+			this.firstDay = firstDay;
+			this.days = days;
+		}
+	}
+
+	/**
+	 * State of one forward walk.
+	 */
+	private static final class Walk {
+		final Network network;
+		final int origin;
+		final int destination;
+		final int lastDeparture;
+		final int deadline;
+		final int maxLegs;
+		final int minConnection;
+		final int seats;
+		final int limit;
+		final int[][] latest;
+		final int[] path;
+		//the worst kept itinerary on top
+		final PriorityQueue<Itinerary> best;
+
+		Walk(Network network, int origin, int destination, int lastDeparture, int deadline, int maxLegs,
+				int minConnection, int seats, int limit, int[][] latest) {
+			this.network = network;
+			this.origin = origin;
+			this.destination = destination;
+			this.lastDeparture = lastDeparture;
+			this.deadline = deadline;
+			this.maxLegs = maxLegs;
+			this.minConnection = minConnection;
+			this.seats = seats;
+			this.limit = limit;
+			this.latest = latest;
+			this.path = new int[maxLegs];
+			this.best = new PriorityQueue<Itinerary>(limit + 1, Collections.reverseOrder(RANKING));
+		}
+	}
+
+	private final DBproject _esql;
+	private final int _maxTripDays;
+	private final Object _lock = new Object();
+	//null until the first search
+	private volatile Network _network = null;
+	//connection of each fnum, guarded by _lock
+	private final Map<Integer, Integer> _index = new HashMap<Integer, Integer>();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ItinerarySearch (DBproject esql)
+	 * Purpose  -> Creates the search; flights are loaded by the first
+	 *             search. Itineraries must arrive within
+	 *             dbproject.itinerary.maxdays days (7) of the end of the
+	 *             departure window.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ItinerarySearch(DBproject esql) {
+		this._esql = esql;
+		this._maxTripDays = Math.max(0, Integer.getInteger("dbproject.itinerary.maxdays", 7));
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load() throws SQLException
+	 * Purpose  -> (Re)reads every flight and rebuilds both indexes.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load() throws SQLException {
+		synchronized (this._lock) {
+			final Map<String, Integer> airportIds = new HashMap<String, Integer>();
+			final List<String> airports = new ArrayList<String>();
+			final int[][] columns = new int[7][1024];
+			final int[] count = { 0 };
+
+			this._esql.executeQueryAndStream(LOAD_FLIGHTS, new DBproject.RowHandler() {
+				public void row(ResultSet rs) throws SQLException {
+					int n = count[0];
+					if (n == columns[0].length) {
+						for (int c = 0; c < columns.length; ++c)
+							columns[c] = Arrays.copyOf(columns[c], n * 2);
+					}
+					columns[0][n] = rs.getInt(1);
+					columns[1][n] = rs.getInt(2);
+					columns[2][n] = (int) rs.getDate(3).toLocalDate().toEpochDay();
+					columns[3][n] = (int) rs.getDate(4).toLocalDate().toEpochDay();
+					columns[4][n] = airport(rs.getString(5), airportIds, airports);
+					columns[5][n] = airport(rs.getString(6), airportIds, airports);
+					int free = rs.getInt(7);
+					columns[6][n] = rs.wasNull() ? UNKNOWN : Math.max(0, free);
+					count[0] = n + 1;
+				}
+			});
+			build(columns, count[0], airportIds, airports);
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load(SnapshotFile snapshot,
+	 *                       List<ChangeLog.Record> changes)
+	 * Purpose  -> Builds both indexes from a snapshot instead of the
+	 *             database, then adds the flights the change log recorded
+	 *             since.
+	 * -----------------------------------------------------------------------
+	 * Receives -> SnapshotFile snapshot, List<ChangeLog.Record> changes
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load(SnapshotFile snapshot, List<ChangeLog.Record> changes) {
+		synchronized (this._lock) {
+			Map<String, Integer> airportIds = new HashMap<String, Integer>();
+			List<String> airports = new ArrayList<String>();
+			int n = snapshot.rows(SnapshotFile.FLIGHT);
+			int[][] columns = {
+				snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.FNUM),
+				snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.COST),
+				snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.DEPARTURE_DAY),
+				snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.ARRIVAL_DAY),
+				snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.DEPARTURE_AIRPORT),
+				snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.ARRIVAL_AIRPORT),
+				snapshot.seats()
+			};
+			//dictionary ids to airport ids, looking each string up once
+			int[] airportOf = new int[snapshot.rows(SnapshotFile.DICTIONARY)];
+			Arrays.fill(airportOf, -1);
+			int[] sold = snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.NUM_SOLD);
+			for (int i = 0; i < n; ++i) {
+				for (int c = 4; c <= 5; ++c) {
+					int id = columns[c][i];
+					if (airportOf[id] < 0) {
+						airportOf[id] = airport(snapshot.string(id), airportIds, airports);
+					}
+					columns[c][i] = airportOf[id];
+				}
+				int seats = columns[6][i];
+				columns[6][i] = seats < 0 ? UNKNOWN : Math.max(0, seats - sold[i]);
+			}
+			if (n == 0) {
+				for (int c = 0; c < columns.length; ++c)
+					columns[c] = new int[16];
+			}
+			build(columns, n, airportIds, airports);
+		}
+		for (ChangeLog.Record change : changes) {
+			if (change.type == ChangeLog.FLIGHT) {
+				add(change.ints[0], change.ints[1], LocalDate.ofEpochDay(change.ints[2]),
+					LocalDate.ofEpochDay(change.ints[3]), change.strings[0], change.strings[1]);
+			}
+		}
+	}
+
+	/* Sorts loaded flights into the search indexes; holds _lock */
+	private void build(int[][] columns, int n, Map<String, Integer> airportIds, List<String> airports) {
+		int[] departureDay = columns[2];
+		int[] from = columns[4];
+		int firstDay = Integer.MAX_VALUE;
+		int lastDay = Integer.MIN_VALUE;
+		for (int i = 0; i < n; ++i) {
+			firstDay = Math.min(firstDay, departureDay[i]);
+			lastDay = Math.max(lastDay, departureDay[i]);
+		}
+		if (n == 0) {
+			firstDay = lastDay = 0;
+		}
+
+		//bucket the connections by departure airport and by day
+		int[][] departures = bucket(from, n, airports.size(), 0);
+		for (int[] leaving : departures)
+			sortByDay(leaving, departureDay);
+		int[][] days = bucket(departureDay, n, lastDay - firstDay + 1, firstDay);
+
+		this._index.clear();
+		for (int i = 0; i < n; ++i)
+			this._index.put(columns[0][i], i);
+		this._network = new Network(n, columns[0], columns[1], departureDay, columns[3], from, columns[5],
+			columns[6], airports.toArray(new String[0]), airportIds, departures, firstDay, days);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void add(int fnum, int cost, LocalDate departure,
+	 *                      LocalDate arrival, String departureAirport,
+	 *                      String arrivalAirport)
+	 * Purpose  -> Appends a flight that was just inserted. Only the indexes
+	 *             of its departure airport and day are copied. Does nothing
+	 *             before the first load, which will read the flight anyway,
+	 *             or for a flight that is already known.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum, int cost, LocalDate departure,
+	 *             LocalDate arrival, String departureAirport,
+	 *             String arrivalAirport
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void add(int fnum, int cost, LocalDate departure, LocalDate arrival, String departureAirport,
+			String arrivalAirport) {
+		synchronized (this._lock) {
+			Network n = this._network;
+			if (n == null || this._index.containsKey(fnum)) {
+				return;
+			}
+
+			int id = n.count;
+			int[][] columns = { n.fnum, n.cost, n.departureDay, n.arrivalDay, n.from, n.to, n.free };
+			if (id == n.fnum.length) {
+				for (int c = 0; c < columns.length; ++c)
+					columns[c] = Arrays.copyOf(columns[c], Math.max(16, id * 2));
+			}
+
+			//a new airport copies the airport table, which is small
+			Map<String, Integer> airportIds = n.airportIds;
+			String[] airports = n.airports;
+			int[][] departures = n.departures;
+			String[] codes = { departureAirport.trim(), arrivalAirport.trim() };
+			for (String code : codes) {
+				if (!airportIds.containsKey(code)) {
+					airportIds = new HashMap<String, Integer>(airportIds);
+					airportIds.put(code, airports.length);
+					airports = Arrays.copyOf(airports, airports.length + 1);
+					airports[airports.length - 1] = code;
+					departures = Arrays.copyOf(departures, departures.length + 1);
+					departures[departures.length - 1] = new int[0];
+				}
+			}
+
+			int day = (int) departure.toEpochDay();
+			columns[0][id] = fnum;
+			columns[1][id] = cost;
+			columns[2][id] = day;
+			columns[3][id] = (int) arrival.toEpochDay();
+			columns[4][id] = airportIds.get(codes[0]);
+			columns[5][id] = airportIds.get(codes[1]);
+			columns[6][id] = UNKNOWN;
+
+			//insert into the departure airport's list, keeping it by day
+			if (departures == n.departures) {
+				departures = departures.clone();
+			}
+			int[] leaving = departures[columns[4][id]];
+			int at = firstAfter(leaving, columns[2], day);
+			int[] inserted = new int[leaving.length + 1];
+			System.arraycopy(leaving, 0, inserted, 0, at);
+			inserted[at] = id;
+			System.arraycopy(leaving, at, inserted, at + 1, leaving.length - at);
+			departures[columns[4][id]] = inserted;
+
+			//append to the day's list, growing the range of days if needed
+			int firstDay = n.count == 0 ? day : Math.min(n.firstDay, day);
+			int lastDay = n.count == 0 ? day : Math.max(n.firstDay + n.days.length - 1, day);
+			int[][] days = new int[lastDay - firstDay + 1][];
+			for (int d = 0; d < days.length; ++d) {
+				int old = firstDay + d - n.firstDay;
+				days[d] = n.count > 0 && old >= 0 && old < n.days.length ? n.days[old] : new int[0];
+			}
+			int[] departing = days[day - firstDay];
+			departing = Arrays.copyOf(departing, departing.length + 1);
+			departing[departing.length - 1] = id;
+			days[day - firstDay] = departing;
+
+			this._index.put(fnum, id);
+			this._network = new Network(id + 1, columns[0], columns[1], columns[2], columns[3], columns[4],
+				columns[5], columns[6], airports, airportIds, departures, firstDay, days);
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void update(Map<Integer, Integer> seats)
+	 * Purpose  -> Records confirmed free seats (fnum -> seats, -1 for a
+	 *             flight that cannot be booked) for later searches.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Map<Integer, Integer> seats
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void update(Map<Integer, Integer> seats) {
+		synchronized (this._lock) {
+			Network n = this._network;
+			if (n == null) {
+				return;
+			}
+			for (Map.Entry<Integer, Integer> flight : seats.entrySet()) {
+				Integer id = this._index.get(flight.getKey());
+				if (id != null) {
+					n.free[id] = Math.max(0, flight.getValue());
+				}
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<Itinerary> search(String origin, String destination,
+	 *                LocalDate earliest, LocalDate latest, int maxLegs,
+	 *                int minConnectionDays, int seats, int limit)
+	 *                                                  throws SQLException
+	 * Purpose  -> Finds the best itineraries leaving origin between
+	 *             earliest and latest with at most maxLegs legs, at least
+	 *             minConnectionDays between legs, no airport visited twice
+	 *             and, as far as the snapshot knows, seats free seats on
+	 *             every leg.
+	 * -----------------------------------------------------------------------
+	 * @return at most limit itineraries, best first
+	 * -----------------------------------------------------------------------
+	 * Receives -> String origin, String destination, LocalDate earliest,
+	 *             LocalDate latest, int maxLegs, int minConnectionDays,
+	 *             int seats, int limit
+	 * Returns  -> List<Itinerary>
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<Itinerary> search(String origin, String destination, LocalDate earliest, LocalDate latest,
+			int maxLegs, int minConnectionDays, int seats, int limit) throws SQLException {
+		Network n = this._network;
+		if (n == null) {
+			synchronized (this._lock) {
+				if (this._network == null) {
+					load();
+				}
+			}
+			n = this._network;
+		}
+
+		Integer from = n.airportIds.get(origin.trim());
+		Integer to = n.airportIds.get(destination.trim());
+		if (from == null || to == null || from.equals(to) || maxLegs < 1 || limit < 1 || latest.isBefore(earliest)) {
+			return new ArrayList<Itinerary>();
+		}
+		int firstDeparture = (int) earliest.toEpochDay();
+		int lastDeparture = (int) latest.toEpochDay();
+		int deadline = lastDeparture + this._maxTripDays;
+
+		int[][] latestDeparture = scan(n, to, firstDeparture, deadline, maxLegs, minConnectionDays, seats);
+		Walk walk = new Walk(n, from, to, lastDeparture, deadline, maxLegs, minConnectionDays, seats, limit, latestDeparture);
+		extend(walk, from, firstDeparture, 0, 0);
+
+		List<Itinerary> found = new ArrayList<Itinerary>(walk.best);
+		Collections.sort(found, RANKING);
+		return found;
+	}
+
+	/*
+	 * Backward scan: latest[k][a] is the last day one can depart airport a
+	 * and still reach the destination by the deadline in at most k legs.
+	 * Each round only reads the previous one, so the order the connections
+	 * are scanned in does not matter.
+	 */
+	private static int[][] scan(Network n, int destination, int firstDay, int deadline, int maxLegs,
+			int minConnection, int seats) {
+		int[][] latest = new int[maxLegs + 1][n.airports.length];
+		Arrays.fill(latest[0], NONE);
+		int fromDay = Math.max(firstDay, n.firstDay);
+		int toDay = Math.min(deadline, n.firstDay + n.days.length - 1);
+
+		for (int k = 1; k <= maxLegs; ++k) {
+			int[] previous = latest[k - 1];
+			int[] current = latest[k] = previous.clone();
+			boolean changed = false;
+			for (int day = fromDay; day <= toDay; ++day) {
+				for (int c : n.days[day - n.firstDay]) {
+					if (n.arrivalDay[c] > deadline || !hasSeats(n, c, seats)) {
+						continue;
+					}
+					int arrives = n.to[c];
+					if ((arrives == destination || n.arrivalDay[c] + minConnection <= previous[arrives])
+							&& day > current[n.from[c]]) {
+						current[n.from[c]] = day;
+						changed = true;
+					}
+				}
+			}
+			if (!changed) {
+				//more legs reach no further
+				for (int rest = k + 1; rest <= maxLegs; ++rest)
+					latest[rest] = current;
+				break;
+			}
+		}
+		return latest;
+	}
+
+	/* Follows every useful connection from airport, ready to leave on day ready */
+	private static void extend(Walk walk, int airport, int ready, int legs, int cost) {
+		Network n = walk.network;
+		int remaining = walk.maxLegs - legs;
+		int last = walk.latest[remaining][airport];
+		if (legs == 0) {
+			last = Math.min(last, walk.lastDeparture);
+		}
+		if (last < ready) {
+			return;
+		}
+
+		int[] leaving = n.departures[airport];
+		for (int i = firstAfter(leaving, n.departureDay, ready - 1); i < leaving.length; ++i) {
+			int c = leaving[i];
+			if (n.departureDay[c] > last) {
+				break;
+			}
+			if (n.arrivalDay[c] > walk.deadline || !hasSeats(n, c, walk.seats)) {
+				continue;
+			}
+			int total = cost + n.cost[c];
+			if (walk.best.size() == walk.limit && total > walk.best.peek().cost) {
+				continue;
+			}
+			int arrives = n.to[c];
+			if (visited(walk, legs, arrives)) {
+				continue;
+			}
+
+			walk.path[legs] = c;
+			if (arrives == walk.destination) {
+				walk.best.add(itinerary(n, walk.path, legs + 1, total));
+				if (walk.best.size() > walk.limit) {
+					walk.best.poll();
+				}
+			}else if (remaining > 1 && n.arrivalDay[c] + walk.minConnection <= walk.latest[remaining - 1][arrives]) {
+				extend(walk, arrives, n.arrivalDay[c] + walk.minConnection, legs + 1, total);
+			}
+		}
+	}
+
+	/* True if the path so far starts at or passes through airport */
+	private static boolean visited(Walk walk, int legs, int airport) {
+		Network n = walk.network;
+		if (airport == walk.origin) {
+			return true;
+		}
+		for (int i = 0; i < legs; ++i) {
+			if (n.to[walk.path[i]] == airport) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasSeats(Network n, int c, int seats) {
+		int free = n.free[c];
+		return free == UNKNOWN || free >= seats;
+	}
+
+	private static Itinerary itinerary(Network n, int[] path, int legs, int cost) {
+		int[] flights = new int[legs];
+		String[] airports = new String[legs + 1];
+		LocalDate[] departures = new LocalDate[legs];
+		LocalDate[] arrivals = new LocalDate[legs];
+		airports[0] = n.airports[n.from[path[0]]];
+		for (int i = 0; i < legs; ++i) {
+			int c = path[i];
+			flights[i] = n.fnum[c];
+			airports[i + 1] = n.airports[n.to[c]];
+			departures[i] = LocalDate.ofEpochDay(n.departureDay[c]);
+			arrivals[i] = LocalDate.ofEpochDay(n.arrivalDay[c]);
+		}
+		return new Itinerary(flights, airports, departures, arrivals, cost);
+	}
+
+	/* Index of the first connection in list departing after day */
+	private static int firstAfter(int[] list, int[] departureDay, int day) {
+		int low = 0;
+		int high = list.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (departureDay[list[mid]] <= day) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/* Interns an airport code (CHAR(5), so blank padded) */
+	private static int airport(String code, Map<String, Integer> ids, List<String> airports) {
+		code = code.trim();
+		Integer id = ids.get(code);
+		if (id == null) {
+			id = airports.size();
+			ids.put(code, id);
+			airports.add(code);
+		}
+		return id;
+	}
+
+	/* Groups connections 0..n-1 by key[c] - offset into buckets of ids */
+	private static int[][] bucket(int[] key, int n, int buckets, int offset) {
+		int[] sizes = new int[buckets];
+		for (int c = 0; c < n; ++c)
+			++sizes[key[c] - offset];
+		int[][] lists = new int[buckets][];
+		for (int b = 0; b < buckets; ++b)
+			lists[b] = new int[sizes[b]];
+		Arrays.fill(sizes, 0);
+		for (int c = 0; c < n; ++c) {
+			int b = key[c] - offset;
+			lists[b][sizes[b]++] = c;
+		}
+		return lists;
+	}
+
+	/* Sorts connection ids by departure day, in place */
+	private static void sortByDay(int[] list, int[] departureDay) {
+		long[] keyed = new long[list.length];
+		for (int i = 0; i < list.length; ++i)
+			keyed[i] = ((long) departureDay[list[i]] << 32) | list[i];
+		Arrays.sort(keyed);
+		for (int i = 0; i < list.length; ++i)
+			list[i] = (int) keyed[i];
+	}
+}/* End of ItinerarySearch !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
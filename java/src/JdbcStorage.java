@@ -0,0 +1,287 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The menu operations run against PostgreSQL through DBproject's connection
+ * pool. Bookings go through its BookingService; availability and passenger
+ * counts are answered from the seat inventory or reservation snapshot when
+ * those are enabled, and through the result cache otherwise.
+ *
+ */
+
+public class JdbcStorage implements Storage{
+	static final String ADD_PLANE =
+		"INSERT INTO Plane (id, make, model, age, seats) VALUES (?, ?, ?, ?, ?);";
+	static final String ADD_PILOT =
+		"INSERT INTO Pilot (id, fullname, nationality) VALUES (?, ?, ?);";
+	static final String ADD_FLIGHT =
+		"INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport) VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+	static final String ADD_TECHNICIAN =
+		"INSERT INTO Technician (id, full_name) VALUES(?, ?);";
+	static final String FIND_RESERVATIONS =
+		"SELECT R.status " +
+		"FROM Reservation R " +
+		"WHERE R.cid = ? AND R.fid = ?";
+	//a flight is seated by the plane of its lowest fiid, everywhere
+	static final String AVAILABLE_SEATS =
+		"SELECT Total_Seats - Seats_Sold as \"Seats Available\"\nFROM(\nSELECT P.seats as Total_Seats\nFROM Plane P, FlightInfo FI\nWHERE FI.flight_id = ? AND FI.plane_id = P.id\nORDER BY FI.fiid\nLIMIT 1\n)total,\n(\nSELECT F.num_sold as Seats_Sold\nFROM Flight F\nWHERE F.fnum = ? AND F.actual_departure_date = ?\n)sold;";
+	//availability of many flights at once, one row per flight that departs
+	//on the given day
+	static final String AVAILABLE_SEATS_BULK =
+		"SELECT DISTINCT ON (F.fnum) F.fnum, P.seats - F.num_sold " +
+		"FROM unnest(CAST(? AS int4[]), CAST(? AS date[])) AS Q(fnum, departure), Flight F, FlightInfo FI, Plane P " +
+		"WHERE F.fnum = Q.fnum AND F.actual_departure_date = Q.departure " +
+		"AND FI.flight_id = F.fnum AND FI.plane_id = P.id " +
+		"ORDER BY F.fnum, FI.fiid";
+	static final String PASSENGER_COUNT =
+		"SELECT R.fid, COUNT(*) AS total_num_passengers " +
+		"FROM Reservation R " +
+		"WHERE R.status = ? AND R.fid = ? " +
+		"GROUP BY R.fid;";
+
+	private final DBproject _esql;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> JdbcStorage (DBproject esql)
+	 * Purpose  -> Binds the storage to a connected DBproject.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public JdbcStorage(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/* /// OPTION 1 /// */
+	public int addPlane(int id, String make, String model, int age, int seats) throws SQLException {
+		return this._esql.executeUpdate(ADD_PLANE, id, make, model, age, seats);
+	}
+
+	/* /// OPTION 2 /// */
+	public int addPilot(int id, String fullname, String nationality) throws SQLException {
+		return this._esql.executeUpdate(ADD_PILOT, id, fullname, nationality);
+	}
+
+	/* /// OPTION 3 /// */
+	public int addFlight(int fnum, int cost, int numSold, int numStops, LocalDate departure, LocalDate arrival,
+			String arrivalAirport, String departureAirport) throws SQLException {
+		int added = this._esql.executeUpdate(ADD_FLIGHT, fnum, cost, numSold, numStops,
+			java.sql.Date.valueOf(departure), java.sql.Date.valueOf(arrival),
+			arrivalAirport, departureAirport);
+		//availability may be cached as "does not exist"
+		ResultCache cache = this._esql.getResultCache();
+		if (cache != null) {
+			cache.invalidate(fnum);
+		}
+		return added;
+	}
+
+	/* /// OPTION 4 /// */
+	public int addTechnician(int id, String fullName) throws SQLException {
+		return this._esql.executeUpdate(ADD_TECHNICIAN, id, fullName);
+	}
+
+	/* Streams the status of every reservation a customer holds on a flight */
+	public long reservations(int customerId, int flightNum, Storage.Rows rows) throws SQLException {
+		return this._esql.executeQueryAndStream(FIND_RESERVATIONS, Storage.handler(rows), customerId, flightNum);
+	}
+
+	/* /// OPTION 5 /// */
+	public BookingService.Booking book(int customerId, int flightNum) throws SQLException {
+		return this._esql.getBookingService().book(customerId, flightNum);
+	}
+
+	/* /// OPTION 5 /// */
+	public int cancel(int customerId, int flightNum) throws SQLException {
+		return this._esql.getBookingService().cancel(customerId, flightNum);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int availableSeats(int flightNum, LocalDate departure)
+	 *                                                     throws SQLException
+	 * Purpose  -> Counts the unsold seats of a flight departing on a date,
+	 *             from memory when the seat inventory is enabled and
+	 *             through the result cache otherwise.
+	 *             /// OPTION 6 ///
+	 * -----------------------------------------------------------------------
+	 * Receives -> int flightNum, LocalDate departure
+	 * Returns  -> [int] seats || -1 if no such flight departs that day
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int availableSeats(int flightNum, LocalDate departure) throws SQLException {
+		SeatInventory inventory = this._esql.getSeatInventory();
+		if (inventory != null) {
+			return inventory.available(flightNum, departure);
+		}
+
+		return cached("ListNumberOfAvailableSeats", flightNum, departure, () -> {
+			final int[] seats = { -1 };
+			this._esql.executeQueryAndStream(AVAILABLE_SEATS, new DBproject.RowHandler() {
+				public void row(ResultSet rs) throws SQLException {
+					seats[0] = rs.getInt(1);
+				}
+			}, flightNum, flightNum, java.sql.Date.valueOf(departure));
+			return seats[0];
+		});
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> CompletableFuture<Map<Integer, Integer>>
+	 *                 availableSeatsAsync(Map<Integer, LocalDate> flights)
+	 * Purpose  -> Looks up the availability of many flights. Flights found
+	 *             in the seat inventory or result cache are answered
+	 *             directly; the rest are split into chunks of
+	 *             dbproject.bulk.chunk flights (200), each fetched with one
+	 *             query on its own pooled connection, all in parallel.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Map<Integer, LocalDate> flights (fnum -> departure day)
+	 * Returns  -> CompletableFuture<Map<Integer, Integer>> seats by flight,
+	 *             -1 for flights that do not depart that day
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public CompletableFuture<Map<Integer, Integer>> availableSeatsAsync(Map<Integer, LocalDate> flights) {
+		final Map<Integer, Integer> seats = new HashMap<Integer, Integer>(flights.size() * 2);
+		final SeatInventory inventory = this._esql.getSeatInventory();
+		if (inventory != null) {
+			//the inventory may still have to load, so this runs off the caller too
+			return this._esql.async(() -> {
+				for (Map.Entry<Integer, LocalDate> flight : flights.entrySet())
+					seats.put(flight.getKey(), inventory.available(flight.getKey(), flight.getValue()));
+				return seats;
+			});
+		}
+
+		ResultCache cache = this._esql.getResultCache();
+		List<Integer> missing = new ArrayList<Integer>();
+		for (Map.Entry<Integer, LocalDate> flight : flights.entrySet()) {
+			Integer known = cache == null ? null :
+				cache.<Integer>peek("ListNumberOfAvailableSeats", flight.getKey(), flight.getValue());
+			if (known != null) seats.put(flight.getKey(), known);
+			else missing.add(flight.getKey());
+		}
+		if (missing.isEmpty()) {
+			return CompletableFuture.completedFuture(seats);
+		}
+
+		int chunk = Math.max(1, Integer.getInteger("dbproject.bulk.chunk", 200));
+		List<CompletableFuture<Map<Integer, Integer>>> parts = new ArrayList<CompletableFuture<Map<Integer, Integer>>>();
+		for (int from = 0; from < missing.size(); from += chunk) {
+			final List<Integer> fnums = missing.subList(from, Math.min(missing.size(), from + chunk));
+			parts.add(this._esql.async(() -> loadSeats(fnums, flights, cache)));
+		}
+		return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			for (CompletableFuture<Map<Integer, Integer>> part : parts)
+				seats.putAll(part.join());
+			return seats;
+		});
+	}
+
+	/* Runs AVAILABLE_SEATS_BULK for one chunk and caches what it finds */
+	private Map<Integer, Integer> loadSeats(List<Integer> fnums, Map<Integer, LocalDate> flights, ResultCache cache)
+			throws SQLException {
+		Integer[] ids = fnums.toArray(new Integer[0]);
+		java.sql.Date[] days = new java.sql.Date[ids.length];
+		long[] versions = new long[ids.length];
+		for (int i = 0; i < ids.length; ++i) {
+			days[i] = java.sql.Date.valueOf(flights.get(ids[i]));
+			versions[i] = cache == null ? 0 : cache.version(ids[i]);
+		}
+
+		Map<Integer, Integer> seats = new HashMap<Integer, Integer>(ids.length * 2);
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			Connection c = conn.getConnection();
+			Array fnumArray = c.createArrayOf("int4", ids);
+			Array dayArray = c.createArrayOf("date", days);
+			PreparedStatement stmt = conn.prepare(AVAILABLE_SEATS_BULK);
+			stmt.setArray(1, fnumArray);
+			stmt.setArray(2, dayArray);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next())
+				seats.put(rs.getInt(1), rs.getInt(2));
+			rs.close();
+			fnumArray.free();
+			dayArray.free();
+		}finally {
+			this._esql.getPool().release(conn);
+		}
+
+		for (int i = 0; i < ids.length; ++i) {
+			Integer found = seats.get(ids[i]);
+			if (found == null) {
+				found = -1;
+				seats.put(ids[i], found);
+			}
+			if (cache != null) {
+				cache.put("ListNumberOfAvailableSeats", ids[i], flights.get(ids[i]), found, versions[i]);
+			}
+		}
+		return seats;
+	}
+
+	/* /// OPTION 7 /// */
+	public long repairsPerPlane(Storage.Rows rows) throws SQLException {
+		return this._esql.executeQueryAndStream(this._esql.getRepairStats().perPlaneQuery(), Storage.handler(rows));
+	}
+
+	/* /// OPTION 8 /// */
+	public long repairsPerYear(Storage.Rows rows) throws SQLException {
+		return this._esql.executeQueryAndStream(this._esql.getRepairStats().perYearQuery(), Storage.handler(rows));
+	}
+
+	/* /// OPTION 9 /// from the reservation snapshot or through the result cache */
+	public long passengerCount(int flightNum, char status) throws SQLException {
+		ReservationSnapshot snapshot = this._esql.getReservationSnapshot();
+		if (snapshot != null) {
+			return (long) snapshot.count(flightNum, status);
+		}
+		return cached("FindPassengersCountWithStatus", flightNum, String.valueOf(status), () -> {
+			final long[] count = { 0 };
+			this._esql.executeQueryAndStream(PASSENGER_COUNT, new DBproject.RowHandler() {
+				public void row(ResultSet rs) throws SQLException {
+					count[0] = rs.getLong(2);
+				}
+			}, String.valueOf(status), flightNum);
+			return count[0];
+		});
+	}
+
+	/* The pool and caches belong to DBproject, which closes them */
+	public void close() {
+	}
+
+	/* Runs a per-flight query through the result cache, if there is one */
+	private <V> V cached(String operation, int flightNum, Object argument, ResultCache.Loader<V> loader) throws SQLException {
+		ResultCache cache = this._esql.getResultCache();
+		return cache == null ? loader.load() : cache.get(operation, flightNum, argument, loader);
+	}
+}/* End of JdbcStorage !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,151 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, log-linear latency histogram in the style of HdrHistogram.
+ * Values below 128 get their own bucket; above that every power of two is
+ * split into 64 buckets, so any recorded value is reported within 1.6%
+ * of its true value. Recording is lock-free and safe from many threads;
+ * the whole long range fits in fewer than 4K buckets.
+ *
+ */
+
+public class LatencyHistogram{
+	private static final int SUB_BITS = 7;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int HALF = SUB_COUNT / 2;
+	private static final int BUCKETS = SUB_COUNT + (64 - SUB_BITS) * HALF;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _total = new AtomicLong();
+	private final AtomicLong _sum = new AtomicLong();
+	private final AtomicLong _max = new AtomicLong();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void record(long value)
+	 * Purpose  -> Counts one value (e.g. a latency in nanoseconds).
+	 *             Negative values are recorded as 0.
+	 * -----------------------------------------------------------------------
+	 * Receives -> long value
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		this._counts.incrementAndGet(index(value));
+		this._total.incrementAndGet();
+		this._sum.addAndGet(value);
+		long max = this._max.get();
+		while (value > max && !this._max.compareAndSet(max, value)) {
+			max = this._max.get();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long percentile(double percent)
+	 * Purpose  -> Returns the value below which the given percentage of the
+	 *             recorded values fall (50 for the median, 99.9 for p999).
+	 * -----------------------------------------------------------------------
+	 * Receives -> double percent
+	 * Returns  -> [long] value
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long percentile(double percent) {
+		long total = this._total.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percent / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += this._counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValue(i), this._max.get());
+			}
+		}
+		return this._max.get();
+	}
+
+	public long count() {
+		return this._total.get();
+	}
+
+	public long max() {
+		return this._max.get();
+	}
+
+	public double mean() {
+		long total = this._total.get();
+		return total == 0 ? 0 : (double) this._sum.get() / total;
+	}
+
+	public long sum() {
+		return this._sum.get();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void add(LatencyHistogram other)
+	 * Purpose  -> Merges the counts of another histogram into this one.
+	 * -----------------------------------------------------------------------
+	 * Receives -> LatencyHistogram other
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; ++i) {
+			long n = other._counts.get(i);
+			if (n != 0) {
+				this._counts.addAndGet(i, n);
+			}
+		}
+		this._total.addAndGet(other._total.get());
+		this._sum.addAndGet(other._sum.get());
+		long max = other._max.get();
+		long current = this._max.get();
+		while (max > current && !this._max.compareAndSet(current, max)) {
+			current = this._max.get();
+		}
+	}
+
+	/* Bucket of a non-negative value */
+	static int index(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int mantissa = (int) (value >>> shift);
+		return SUB_COUNT + (shift - 1) * HALF + (mantissa - HALF);
+	}
+
+	/* Largest value that falls into a bucket */
+	static long highestValue(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_COUNT) / HALF + 1;
+		long mantissa = (index - SUB_COUNT) % HALF + HALF;
+		long high = ((mantissa + 1) << shift) - 1;
+		return high < 0 ? Long.MAX_VALUE : high;
+	}
+}/* End of LatencyHistogram !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
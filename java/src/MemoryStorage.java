@@ -0,0 +1,1043 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An embedded engine holding every table the menu operations touch in this
+ * process, seeded from the data/ CSV files. It needs no database, so it
+ * serves edge caches, load tests and local runs.
+ *
+ * Customer, Flight, Plane, Pilot and Technician are hash maps keyed by the
+ * int primary key, without boxing. Reservation is kept by rnum and indexed
+ * by customer and by flight; each flight also keeps its passenger count per
+ * status and its waitlist in reservation number order. FlightInfo is
+ * indexed by flight, the plane of its lowest fiid giving the flight's
+ * seats. Repairs are indexed by the number of repairs per plane and per
+ * year, kept as they are added.
+ *
+ * The store mirrors what the schema enforces: primary keys, foreign keys
+ * and the domains of the columns it writes.
+ * Bookings take a seat while one is free and are waitlisted otherwise;
+ * cancellations that free seats promote the oldest waitlisted reservations
+ * of the flight at once, as WaitlistEngine would.
+ *
+ * The CSV files are read with CsvReader, and nothing is written back to
+ * them. After recover(), every change
+ * is appended to a write-ahead log (a ChangeLog) under the write lock, and
+ * the writer returns once commit() has the record on disk, so concurrent
+ * bookings share their fsyncs. Readers may see a change a moment before it
+ * is durable. If the log fails, later writes are refused with SQLState
+ * 58030 until the store is reloaded. One read-write lock guards every
+ * table; rows are handed to a Rows callback after it is released.
+ *
+ */
+
+public class MemoryStorage implements Storage{
+	//SQLStates PostgreSQL uses for the same violations
+	static final String UNIQUE_VIOLATION = "23505";
+	static final String FOREIGN_KEY_VIOLATION = "23503";
+	static final String CHECK_VIOLATION = "23514";
+	static final String IO_ERROR = "58030";
+	static final String STRING_TOO_LONG = "22001";
+
+	static final String[] RESERVATION_COLUMNS = { "status" };
+	static final String[] PER_PLANE_COLUMNS = { "plane_id", "total_num_repairs" };
+	static final String[] PER_YEAR_COLUMNS = { "yyyy", "total_num_repairs" };
+
+	/**
+	 * An open addressing hash map from int keys to non-null values. Keys are
+	 * never removed. Not thread-safe.
+	 */
+	static final class IntMap<V> {
+		private int[] _keys = new int[16];
+		private Object[] _values = new Object[16];
+		private int _size = 0;
+
+		/* Slot a key lives in, or the empty slot it would take */
+		private int slot(int key) {
+			int mask = this._keys.length - 1;
+			int i = (key * 0x9E3779B9 >>> 16 ^ key * 0x9E3779B9) & mask;
+			while (this._values[i] != null && this._keys[i] != key)
+				i = (i + 1) & mask;
+			return i;
+		}
+
+		@SuppressWarnings("unchecked")
+		V get(int key) {
+			return (V) this._values[slot(key)];
+		}
+
+		/* Returns false, changing nothing, if the key is already present */
+		boolean putIfAbsent(int key, V value) {
+			int i = slot(key);
+			if (this._values[i] != null) {
+				return false;
+			}
+			this._keys[i] = key;
+			this._values[i] = value;
+			if (++this._size * 2 > this._keys.length) {
+				int[] keys = this._keys;
+				Object[] values = this._values;
+				this._keys = new int[keys.length * 2];
+				this._values = new Object[keys.length * 2];
+				for (int j = 0; j < keys.length; ++j) {
+					if (values[j] != null) {
+						int k = slot(keys[j]);
+						this._keys[k] = keys[j];
+						this._values[k] = values[j];
+					}
+				}
+			}
+			return true;
+		}
+
+		int size() {
+			return this._size;
+		}
+
+		/* Slots to iterate, some of them empty */
+		int slots() {
+			return this._keys.length;
+		}
+
+		int key(int slot) {
+			return this._keys[slot];
+		}
+
+		@SuppressWarnings("unchecked")
+		V value(int slot) {
+			return (V) this._values[slot];
+		}
+	}
+
+	static final class Customer {
+		final int id;
+		final String fname;
+		final String lname;
+		final char gtype;
+		final int dobDay;
+		final String address;
+		final String phone;
+		final String zipcode;
+		//index on Reservation.cid
+		final List<Reservation> reservations = new ArrayList<Reservation>(4);
+
+		Customer(int id, String fname, String lname, char gtype, int dobDay, String address, String phone,
+				String zipcode) {
+			this.id = id;
+			this.fname = fname;
+			this.lname = lname;
+			this.gtype = gtype;
+			this.dobDay = dobDay;
+			this.address = address;
+			this.phone = phone;
+			this.zipcode = zipcode;
+		}
+	}
+
+	static final class Flight {
+		final int fnum;
+		final int cost;
+		int numSold;
+		final int numStops;
+		final int departureDay;
+		final int arrivalDay;
+		final String arrivalAirport;
+		final String departureAirport;
+		//index on FlightInfo.flight_id, and the plane of its lowest fiid
+		final List<FlightInfo> info = new ArrayList<FlightInfo>(1);
+		Plane plane;
+		//reservations per status, by status index
+		final int[] passengers = new int[3];
+		//waitlisted reservations in rnum order; cancelled ones are skipped when met
+		final ArrayDeque<Reservation> waiting = new ArrayDeque<Reservation>();
+
+		Flight(int fnum, int cost, int numSold, int numStops, int departureDay, int arrivalDay,
+				String arrivalAirport, String departureAirport) {
+			this.fnum = fnum;
+			this.cost = cost;
+			this.numSold = numSold;
+			this.numStops = numStops;
+			this.departureDay = departureDay;
+			this.arrivalDay = arrivalDay;
+			this.arrivalAirport = arrivalAirport;
+			this.departureAirport = departureAirport;
+		}
+	}
+
+	static final class Plane {
+		final int id;
+		final String make;
+		final String model;
+		final int age;
+		final int seats;
+
+		Plane(int id, String make, String model, int age, int seats) {
+			this.id = id;
+			this.make = make;
+			this.model = model;
+			this.age = age;
+			this.seats = seats;
+		}
+	}
+
+	static final class Pilot {
+		final int id;
+		final String fullname;
+		final String nationality;
+
+		Pilot(int id, String fullname, String nationality) {
+			this.id = id;
+			this.fullname = fullname;
+			this.nationality = nationality;
+		}
+	}
+
+	static final class Technician {
+		final int id;
+		final String fullName;
+
+		Technician(int id, String fullName) {
+			this.id = id;
+			this.fullName = fullName;
+		}
+	}
+
+	static final class Reservation {
+		final int rnum;
+		final int cid;
+		final int fid;
+		char status;
+
+		Reservation(int rnum, int cid, int fid, char status) {
+			this.rnum = rnum;
+			this.cid = cid;
+			this.fid = fid;
+			this.status = status;
+		}
+	}
+
+	static final class FlightInfo {
+		final int fiid;
+		final int flightId;
+		final int pilotId;
+		final int planeId;
+
+		FlightInfo(int fiid, int flightId, int pilotId, int planeId) {
+			this.fiid = fiid;
+			this.flightId = flightId;
+			this.pilotId = pilotId;
+			this.planeId = planeId;
+		}
+	}
+
+	static final class Repair {
+		final int rid;
+		final int day;
+		final String code;
+		final int pilotId;
+		final int planeId;
+		final int technicianId;
+
+		Repair(int rid, int day, String code, int pilotId, int planeId, int technicianId) {
+			this.rid = rid;
+			this.day = day;
+			this.code = code;
+			this.pilotId = pilotId;
+			this.planeId = planeId;
+			this.technicianId = technicianId;
+		}
+	}
+
+	private final IntMap<Customer> _customers = new IntMap<Customer>();
+	private final IntMap<Flight> _flights = new IntMap<Flight>();
+	private final IntMap<Plane> _planes = new IntMap<Plane>();
+	private final IntMap<Pilot> _pilots = new IntMap<Pilot>();
+	private final IntMap<Technician> _technicians = new IntMap<Technician>();
+	private final IntMap<Reservation> _reservations = new IntMap<Reservation>();
+	private final IntMap<FlightInfo> _flightInfo = new IntMap<FlightInfo>();
+	private final IntMap<Repair> _repairs = new IntMap<Repair>();
+	//indexes on Repairs, counting the repairs of each plane_id and year
+	private final IntMap<int[]> _repairsByPlane = new IntMap<int[]>();
+	private final IntMap<int[]> _repairsByYear = new IntMap<int[]>();
+	//last rnum handed out, like reservation_rnum_seq
+	private int _lastRnum = -1;
+	private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+	//write-ahead log, null until recover(); appended to under the write lock
+	private ChangeLog _log = null;
+	//first append or sync failure of the log; writes are refused after it
+	private volatile IOException _logFailure = null;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load(File dir) throws IOException
+	 * Purpose  -> Adds the rows of the data/ CSV files in dir, in the order
+	 *             create.sql copies them so every foreign key finds its row.
+	 *             Missing files are skipped; a malformed or conflicting row
+	 *             fails the load with its file and line.
+	 * -----------------------------------------------------------------------
+	 * Receives -> File dir
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load(File dir) throws IOException {
+		this._lock.writeLock().lock();
+		try {
+			CsvReader csv = CsvReader.open(new File(dir, "planes.csv"));
+			while (csv.next()) {
+				insertPlane(csv.nextInt(), csv.nextString(), csv.nextString(), csv.nextInt(), csv.nextInt());
+				csv.end();
+			}
+			csv = CsvReader.open(new File(dir, "pilots.csv"));
+			while (csv.next()) {
+				insertPilot(csv.nextInt(), csv.nextString(), csv.nextString());
+				csv.end();
+			}
+			csv = CsvReader.open(new File(dir, "technician.csv"));
+			while (csv.next()) {
+				insertTechnician(csv.nextInt(), csv.nextString());
+				csv.end();
+			}
+			csv = CsvReader.open(new File(dir, "customer.csv"));
+			while (csv.next()) {
+				int id = csv.nextInt();
+				Customer customer = new Customer(id, csv.nextString(), csv.nextString(), csv.nextChar(), csv.nextDob(),
+					csv.nextString(), csv.nextString(), csv.nextString());
+				csv.end();
+				if (!this._customers.putIfAbsent(id, customer)) {
+					throw duplicate("customer", id);
+				}
+			}
+			csv = CsvReader.open(new File(dir, "flights.csv"));
+			while (csv.next()) {
+				insertFlight(csv.nextInt(), csv.nextInt(), csv.nextInt(), csv.nextInt(), csv.nextDay(), csv.nextDay(),
+					csv.nextString(), csv.nextString());
+				csv.end();
+			}
+			csv = CsvReader.open(new File(dir, "flightinfo.csv"));
+			while (csv.next()) {
+				insertFlightInfo(csv.nextInt(), csv.nextInt(), csv.nextInt(), csv.nextInt());
+				csv.end();
+			}
+
+			//waitlists are kept in rnum order: read the rows into columns, then
+			//insert them by (rnum, row) packed into one long
+			csv = CsvReader.open(new File(dir, "reservation.csv"));
+			int rows = 0;
+			int[] columns = new int[4 * 1024];
+			while (csv.next()) {
+				if (rows * 4 == columns.length) {
+					columns = Arrays.copyOf(columns, columns.length * 2);
+				}
+				columns[rows * 4] = csv.nextInt();
+				columns[rows * 4 + 1] = csv.nextInt();
+				columns[rows * 4 + 2] = csv.nextInt();
+				columns[rows * 4 + 3] = csv.nextChar();
+				csv.end();
+				++rows;
+			}
+			long[] order = new long[rows];
+			for (int i = 0; i < rows; ++i)
+				order[i] = (long) columns[i * 4] << 32 | i;
+			Arrays.sort(order);
+			for (long key : order) {
+				int row = (int) key * 4;
+				insertReservation(columns[row], columns[row + 1], columns[row + 2], (char) columns[row + 3]);
+			}
+
+			csv = CsvReader.open(new File(dir, "repairs.csv"));
+			while (csv.next()) {
+				insertRepair(csv.nextInt(), csv.nextDay(), csv.nextString(), csv.nextInt(), csv.nextInt(), csv.nextInt());
+				csv.end();
+			}
+		}catch (SQLException | IllegalArgumentException e) {
+			throw new IOException("Could not load " + dir + ": " + e.getMessage(), e);
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/* /// OPTION 1 /// */
+	public int addPlane(int id, String make, String model, int age, int seats) throws SQLException {
+		long sequence;
+		this._lock.writeLock().lock();
+		try {
+			writable();
+			insertPlane(id, make, model, age, seats);
+			sequence = log(ChangeLog.PLANE, new int[] { id, age, seats }, new String[] { make, model });
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		durable(sequence);
+		return 1;
+	}
+
+	/* /// OPTION 2 /// */
+	public int addPilot(int id, String fullname, String nationality) throws SQLException {
+		long sequence;
+		this._lock.writeLock().lock();
+		try {
+			writable();
+			insertPilot(id, fullname, nationality);
+			sequence = log(ChangeLog.PILOT, new int[] { id }, new String[] { fullname, nationality });
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		durable(sequence);
+		return 1;
+	}
+
+	/* /// OPTION 3 /// */
+	public int addFlight(int fnum, int cost, int numSold, int numStops, LocalDate departure, LocalDate arrival,
+			String arrivalAirport, String departureAirport) throws SQLException {
+		int departureDay = (int) departure.toEpochDay();
+		int arrivalDay = (int) arrival.toEpochDay();
+		long sequence;
+		this._lock.writeLock().lock();
+		try {
+			writable();
+			insertFlight(fnum, cost, numSold, numStops, departureDay, arrivalDay, arrivalAirport, departureAirport);
+			sequence = log(ChangeLog.FLIGHT, new int[] { fnum, cost, departureDay, arrivalDay, numSold, numStops },
+				new String[] { departureAirport, arrivalAirport });
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		durable(sequence);
+		return 1;
+	}
+
+	/* /// OPTION 4 /// */
+	public int addTechnician(int id, String fullName) throws SQLException {
+		long sequence;
+		this._lock.writeLock().lock();
+		try {
+			writable();
+			insertTechnician(id, fullName);
+			sequence = log(ChangeLog.TECHNICIAN, new int[] { id }, new String[] { fullName });
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		durable(sequence);
+		return 1;
+	}
+
+	/* Lists the status of every reservation a customer holds on a flight */
+	public long reservations(int customerId, int flightNum, Storage.Rows rows) throws SQLException {
+		StringBuilder statuses = new StringBuilder();
+		this._lock.readLock().lock();
+		try {
+			Customer customer = this._customers.get(customerId);
+			if (customer != null) {
+				for (Reservation reservation : customer.reservations) {
+					if (reservation.fid == flightNum) statuses.append(reservation.status);
+				}
+			}
+		}finally {
+			this._lock.readLock().unlock();
+		}
+
+		Object[] values = new Object[1];
+		for (int i = 0; i < statuses.length(); ++i) {
+			values[0] = String.valueOf(statuses.charAt(i));
+			rows.row(RESERVATION_COLUMNS, values);
+		}
+		Metrics.rows(statuses.length());
+		return statuses.length();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> BookingService.Booking book(int customerId, int flightNum)
+	 *                                                     throws SQLException
+	 * Purpose  -> Books a customer onto a flight: a seat while the plane of
+	 *             the flight has one, a waitlist spot otherwise or if the
+	 *             flight has no plane. /// OPTION 5 ///
+	 * -----------------------------------------------------------------------
+	 * Receives -> int customerId, int flightNum
+	 * Returns  -> BookingService.Booking
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public BookingService.Booking book(int customerId, int flightNum) throws SQLException {
+		int rnum;
+		char status;
+		long sequence;
+		this._lock.writeLock().lock();
+		try {
+			writable();
+			Flight flight = this._flights.get(flightNum);
+			status = flight != null && flight.plane != null && flight.numSold < flight.plane.seats ?
+				BookingService.RESERVED : BookingService.WAITLISTED;
+			rnum = insertReservation(this._lastRnum + 1, customerId, flightNum, status).rnum;
+			if (status == BookingService.RESERVED) {
+				++flight.numSold;
+			}
+			sequence = log(ChangeLog.BOOKED, new int[] { rnum, customerId, flightNum, status }, null);
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		durable(sequence);
+		return new BookingService.Booking(rnum, status);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int cancel(int customerId, int flightNum)
+	 *                                                     throws SQLException
+	 * Purpose  -> Cancels a customer's open reservations on a flight, gives
+	 *             their seats back and promotes as many waitlisted
+	 *             reservations as there are free seats. /// OPTION 5 ///
+	 * -----------------------------------------------------------------------
+	 * Receives -> int customerId, int flightNum
+	 * Returns  -> [int] cancelled
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int cancel(int customerId, int flightNum) throws SQLException {
+		int cancelled = 0;
+		long sequence = -1;
+		this._lock.writeLock().lock();
+		try {
+			writable();
+			Customer customer = this._customers.get(customerId);
+			Flight flight = this._flights.get(flightNum);
+			if (customer == null || flight == null) {
+				return 0;
+			}
+			boolean seatsFreed = false;
+			for (Reservation reservation : customer.reservations) {
+				if (reservation.fid != flightNum || reservation.status == BookingService.CANCELLED) continue;
+				//logged first, so a failed append leaves this reservation and its seat as they were
+				sequence = log(ChangeLog.CANCELLED, new int[] { reservation.rnum, flightNum }, null);
+				if (reservation.status == BookingService.RESERVED) {
+					--flight.numSold;
+					seatsFreed = true;
+				}
+				status(flight, reservation, BookingService.CANCELLED);
+				++cancelled;
+			}
+			if (seatsFreed) {
+				sequence = Math.max(sequence, promote(flight));
+			}
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		durable(sequence);
+		return cancelled;
+	}
+
+	/*
+	 * Moves the head of a flight's waitlist into its free seats; holds the
+	 * write lock. Returns the sequence of the last promotion logged, -1 if
+	 * none was.
+	 */
+	private long promote(Flight flight) throws SQLException {
+		long sequence = -1;
+		while (flight.plane != null && flight.numSold < flight.plane.seats && !flight.waiting.isEmpty()) {
+			Reservation head = flight.waiting.peek();
+			if (head.status == BookingService.WAITLISTED) {
+				//logged first, so a failed append leaves the head waiting
+				sequence = log(ChangeLog.PROMOTED, new int[] { head.rnum, flight.fnum }, null);
+				status(flight, head, BookingService.RESERVED);
+				++flight.numSold;
+			}
+			flight.waiting.poll();
+		}
+		return sequence;
+	}
+
+	/* /// OPTION 6 /// */
+	public int availableSeats(int flightNum, LocalDate departure) throws SQLException {
+		int day = (int) departure.toEpochDay();
+		this._lock.readLock().lock();
+		try {
+			return seats(flightNum, day);
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* /// OPTION 6 /// answered at once, under one lock */
+	public CompletableFuture<Map<Integer, Integer>> availableSeatsAsync(Map<Integer, LocalDate> flights) {
+		Map<Integer, Integer> seats = new HashMap<Integer, Integer>(flights.size() * 2);
+		this._lock.readLock().lock();
+		try {
+			for (Map.Entry<Integer, LocalDate> flight : flights.entrySet())
+				seats.put(flight.getKey(), seats(flight.getKey(), (int) flight.getValue().toEpochDay()));
+		}finally {
+			this._lock.readLock().unlock();
+		}
+		return CompletableFuture.completedFuture(seats);
+	}
+
+	/* Seats left on a flight departing on a day, -1 if it does not or has no plane; holds a lock */
+	private int seats(int flightNum, int day) {
+		Flight flight = this._flights.get(flightNum);
+		if (flight == null || flight.departureDay != day || flight.plane == null) {
+			return -1;
+		}
+		return flight.plane.seats - flight.numSold;
+	}
+
+	/* /// OPTION 7 /// */
+	public long repairsPerPlane(Storage.Rows rows) throws SQLException {
+		return report(this._repairsByPlane, PER_PLANE_COLUMNS, true, rows);
+	}
+
+	/* /// OPTION 8 /// */
+	public long repairsPerYear(Storage.Rows rows) throws SQLException {
+		return report(this._repairsByYear, PER_YEAR_COLUMNS, false, rows);
+	}
+
+	/* Lists (key, count) pairs ordered by count, ties by key */
+	private long report(IntMap<int[]> counts, String[] columns, boolean descending, Storage.Rows rows)
+			throws SQLException {
+		long[] sorted;
+		this._lock.readLock().lock();
+		try {
+			sorted = new long[counts.size()];
+			int n = 0;
+			for (int i = 0; i < counts.slots(); ++i) {
+				int[] count = counts.value(i);
+				if (count != null) {
+					//count in the high half so one sort orders by count, then key
+					long key = (long) counts.key(i) - Integer.MIN_VALUE;
+					sorted[n++] = (descending ? (long) Integer.MAX_VALUE - count[0] : count[0]) << 32 | key;
+				}
+			}
+		}finally {
+			this._lock.readLock().unlock();
+		}
+
+		Arrays.sort(sorted);
+		Object[] values = new Object[2];
+		for (long entry : sorted) {
+			long count = entry >>> 32;
+			values[0] = (int) ((entry & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+			values[1] = descending ? Integer.MAX_VALUE - count : count;
+			rows.row(columns, values);
+		}
+		Metrics.rows(sorted.length);
+		return sorted.length;
+	}
+
+	/* /// OPTION 9 /// */
+	public long passengerCount(int flightNum, char status) throws SQLException {
+		this._lock.readLock().lock();
+		try {
+			Flight flight = this._flights.get(flightNum);
+			return flight == null ? 0 : flight.passengers[index(status)];
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* Closes the write-ahead log, if there is one; the tables go with the object */
+	public void close() {
+		this._lock.writeLock().lock();
+		try {
+			if (this._log != null) {
+				this._log.close();
+			}
+		}catch (IOException e) {
+			System.err.println("Could not close " + this._log.path() + ": " + e.getMessage());
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int recover(Path path) throws IOException
+	 * Purpose  -> Replays the write-ahead log at path on top of what load()
+	 *             read, up to its first torn or corrupt record, then keeps
+	 *             appending every change to it. A missing log starts empty.
+	 *             Flights whose cancellation was logged without all of its
+	 *             promotions get them now.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Path path
+	 * Returns  -> [int] records replayed
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int recover(Path path) throws IOException {
+		this._lock.writeLock().lock();
+		try {
+			if (this._log != null) {
+				throw new IllegalStateException("The store already logs to " + this._log.path());
+			}
+			List<ChangeLog.Record> records = ChangeLog.read(path, 0);
+			List<Flight> cancelled = new ArrayList<Flight>();
+			for (ChangeLog.Record record : records)
+				apply(record, cancelled);
+			this._log = new ChangeLog(path, 0, null);
+			long sequence = -1;
+			for (Flight flight : cancelled)
+				sequence = Math.max(sequence, promote(flight));
+			if (sequence >= 0) {
+				this._log.commit(sequence);
+			}
+			return records.size();
+		}catch (SQLException | IllegalArgumentException e) {
+			throw new IOException("Could not replay " + path + ": " + e.getMessage(), e);
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Redoes one logged change; holds the write lock. Records already
+	 * reflected in the tables are skipped, so a log can be replayed twice.
+	 * Flights that lost seats to a cancellation go to cancelled.
+	 */
+	private void apply(ChangeLog.Record record, List<Flight> cancelled) throws SQLException {
+		int[] ints = record.ints;
+		String[] strings = record.strings;
+		Reservation reservation;
+		switch (record.type) {
+			case ChangeLog.PLANE:
+				if (this._planes.get(ints[0]) == null) insertPlane(ints[0], strings[0], strings[1], ints[1], ints[2]);
+				break;
+			case ChangeLog.PILOT:
+				if (this._pilots.get(ints[0]) == null) insertPilot(ints[0], strings[0], strings[1]);
+				break;
+			case ChangeLog.TECHNICIAN:
+				if (this._technicians.get(ints[0]) == null) insertTechnician(ints[0], strings[0]);
+				break;
+			case ChangeLog.FLIGHT:
+				if (this._flights.get(ints[0]) == null) {
+					insertFlight(ints[0], ints[1], ints[4], ints[5], ints[2], ints[3], strings[1], strings[0]);
+				}
+				break;
+			case ChangeLog.BOOKED:
+				if (this._reservations.get(ints[0]) == null) {
+					reservation = insertReservation(ints[0], ints[1], ints[2], (char) ints[3]);
+					if (reservation.status == BookingService.RESERVED) {
+						++this._flights.get(reservation.fid).numSold;
+					}
+				}
+				break;
+			case ChangeLog.CANCELLED:
+				reservation = this._reservations.get(ints[0]);
+				if (reservation != null && reservation.status != BookingService.CANCELLED) {
+					Flight flight = this._flights.get(reservation.fid);
+					if (reservation.status == BookingService.RESERVED) {
+						--flight.numSold;
+						cancelled.add(flight);
+					}
+					status(flight, reservation, BookingService.CANCELLED);
+				}
+				break;
+			case ChangeLog.PROMOTED:
+				reservation = this._reservations.get(ints[0]);
+				if (reservation != null && reservation.status == BookingService.WAITLISTED) {
+					Flight flight = this._flights.get(reservation.fid);
+					status(flight, reservation, BookingService.RESERVED);
+					++flight.numSold;
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("record " + record.sequence + " has unknown type " + record.type);
+		}
+	}
+
+	/* Refuses writes once the log has failed; holds the write lock */
+	private void writable() throws SQLException {
+		IOException failure = this._logFailure;
+		if (failure != null) {
+			throw new SQLException("write-ahead log " + this._log.path() + " failed: " + failure.getMessage(), IO_ERROR,
+				failure);
+		}
+	}
+
+	/* Appends a change to the log; holds the write lock. Returns its sequence, -1 without a log */
+	private long log(byte type, int[] ints, String[] strings) throws SQLException {
+		if (this._log == null) {
+			return -1;
+		}
+		try {
+			return this._log.append(type, ints, strings);
+		}catch (IOException e) {
+			//the tables are ahead of the log from here on
+			this._logFailure = e;
+			writable();
+			return -1;
+		}
+	}
+
+	/* Waits until the change logged as sequence is on disk; without the lock */
+	private void durable(long sequence) throws SQLException {
+		if (sequence < 0) {
+			return;
+		}
+		try {
+			this._log.commit(sequence);
+		}catch (IOException e) {
+			if (this._logFailure == null) {
+				this._logFailure = e;
+			}
+			throw new SQLException("write-ahead log " + this._log.path() + " failed: " + e.getMessage(), IO_ERROR, e);
+		}
+	}
+
+	/* The log's fsyncs so far, 0 without one */
+	long syncs() {
+		ChangeLog log = this._log;
+		return log == null ? 0 : log.syncs();
+	}
+
+	/* A copy of the reservation numbered rnum, null if there is none */
+	Reservation reservation(int rnum) {
+		this._lock.readLock().lock();
+		try {
+			Reservation reservation = this._reservations.get(rnum);
+			return reservation == null ? null :
+				new Reservation(reservation.rnum, reservation.cid, reservation.fid, reservation.status);
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* Every customer id */
+	int[] customers() {
+		this._lock.readLock().lock();
+		try {
+			int[] ids = new int[this._customers.size()];
+			int n = 0;
+			for (int i = 0; i < this._customers.slots(); ++i) {
+				if (this._customers.value(i) != null) ids[n++] = this._customers.key(i);
+			}
+			return ids;
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* {fnum, num_sold, reservations with status R, seats or -1} for every flight */
+	List<int[]> seatCounts() {
+		List<int[]> counts = new ArrayList<int[]>();
+		this._lock.readLock().lock();
+		try {
+			for (int i = 0; i < this._flights.slots(); ++i) {
+				Flight flight = this._flights.value(i);
+				if (flight != null) {
+					counts.add(new int[] { flight.fnum, flight.numSold, flight.passengers[0],
+						flight.plane == null ? -1 : flight.plane.seats });
+				}
+			}
+		}finally {
+			this._lock.readLock().unlock();
+		}
+		return counts;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> String describe()
+	 * Purpose  -> Counts the rows of every table, for the start-up message.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> String
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public String describe() {
+		this._lock.readLock().lock();
+		try {
+			return String.format("%,d customers, %,d flights, %,d planes, %,d pilots, %,d technicians, " +
+				"%,d reservations, %,d flight infos, %,d repairs", this._customers.size(), this._flights.size(),
+				this._planes.size(), this._pilots.size(), this._technicians.size(), this._reservations.size(),
+				this._flightInfo.size(), this._repairs.size());
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* The inserts below check what the schema would and hold the write lock */
+
+	private void insertPlane(int id, String make, String model, int age, int seats) throws SQLException {
+		notNull("plane", "make", make);
+		notNull("plane", "model", model);
+		fits(make, 32);
+		fits(model, 64);
+		check("_year_1970", age >= 0);
+		check("_seats", seats > 0 && seats < 500);
+		if (!this._planes.putIfAbsent(id, new Plane(id, make.trim(), model.trim(), age, seats))) {
+			throw duplicate("plane", id);
+		}
+	}
+
+	private void insertPilot(int id, String fullname, String nationality) throws SQLException {
+		fits(fullname, 128);
+		fits(nationality, 24);
+		if (!this._pilots.putIfAbsent(id, new Pilot(id, trim(fullname), trim(nationality)))) {
+			throw duplicate("pilot", id);
+		}
+	}
+
+	private void insertTechnician(int id, String fullName) throws SQLException {
+		notNull("technician", "full_name", fullName);
+		fits(fullName, 128);
+		if (!this._technicians.putIfAbsent(id, new Technician(id, fullName.trim()))) {
+			throw duplicate("technician", id);
+		}
+	}
+
+	private void insertFlight(int fnum, int cost, int numSold, int numStops, int departureDay, int arrivalDay,
+			String arrivalAirport, String departureAirport) throws SQLException {
+		notNull("flight", "arrival_airport", arrivalAirport);
+		notNull("flight", "departure_airport", departureAirport);
+		fits(arrivalAirport, 5);
+		fits(departureAirport, 5);
+		check("_pinteger", cost > 0);
+		check("_pzerointeger", numSold >= 0 && numStops >= 0);
+		if (!this._flights.putIfAbsent(fnum, new Flight(fnum, cost, numSold, numStops, departureDay, arrivalDay,
+				arrivalAirport.trim(), departureAirport.trim()))) {
+			throw duplicate("flight", fnum);
+		}
+	}
+
+	private void insertFlightInfo(int fiid, int flightId, int pilotId, int planeId) throws SQLException {
+		Flight flight = reference("flightinfo", "flight_id", this._flights, flightId);
+		reference("flightinfo", "pilot_id", this._pilots, pilotId);
+		Plane plane = reference("flightinfo", "plane_id", this._planes, planeId);
+		FlightInfo info = new FlightInfo(fiid, flightId, pilotId, planeId);
+		if (!this._flightInfo.putIfAbsent(fiid, info)) {
+			throw duplicate("flightinfo", fiid);
+		}
+		//kept in fiid order, the first one seating the flight
+		int at = flight.info.size();
+		while (at > 0 && flight.info.get(at - 1).fiid > fiid)
+			--at;
+		flight.info.add(at, info);
+		if (at == 0) {
+			flight.plane = plane;
+		}
+	}
+
+	private Reservation insertReservation(int rnum, int cid, int fid, char status) throws SQLException {
+		Customer customer = reference("reservation", "cid", this._customers, cid);
+		Flight flight = reference("reservation", "fid", this._flights, fid);
+		int index = index(status);
+		Reservation reservation = new Reservation(rnum, cid, fid, status);
+		if (!this._reservations.putIfAbsent(rnum, reservation)) {
+			throw duplicate("reservation", rnum);
+		}
+		this._lastRnum = Math.max(this._lastRnum, rnum);
+		customer.reservations.add(reservation);
+		++flight.passengers[index];
+		if (status == BookingService.WAITLISTED) {
+			flight.waiting.add(reservation);
+		}
+		return reservation;
+	}
+
+	private void insertRepair(int rid, int day, String code, int pilotId, int planeId, int technicianId)
+			throws SQLException {
+		reference("repairs", "pilot_id", this._pilots, pilotId);
+		reference("repairs", "plane_id", this._planes, planeId);
+		reference("repairs", "technician_id", this._technicians, technicianId);
+		check("_code", "MJ".equals(code) || "MN".equals(code) || "SV".equals(code));
+		if (!this._repairs.putIfAbsent(rid, new Repair(rid, day, code, pilotId, planeId, technicianId))) {
+			throw duplicate("repairs", rid);
+		}
+		count(this._repairsByPlane, planeId);
+		count(this._repairsByYear, LocalDate.ofEpochDay(day).getYear());
+	}
+
+	private static void count(IntMap<int[]> counts, int key) {
+		int[] count = counts.get(key);
+		if (count == null) {
+			counts.putIfAbsent(key, new int[] { 1 });
+		}else {
+			++count[0];
+		}
+	}
+
+	/* Moves a reservation to another status, keeping the flight's counts */
+	private static void status(Flight flight, Reservation reservation, char status) {
+		--flight.passengers[index(reservation.status)];
+		++flight.passengers[index(status)];
+		reservation.status = status;
+	}
+
+	/* Index of a status in Flight.passengers; anything else violates _status */
+	private static int index(char status) {
+		switch (status) {
+			case BookingService.RESERVED: return 0;
+			case BookingService.WAITLISTED: return 1;
+			case BookingService.CANCELLED: return 2;
+			default:
+				throw new IllegalArgumentException("value for domain _status violates check constraint \"_status_check\"");
+		}
+	}
+
+	private static String trim(String value) {
+		return value == null ? null : value.trim();
+	}
+
+	private static <V> V reference(String table, String column, IntMap<V> target, int key) throws SQLException {
+		V row = target.get(key);
+		if (row == null) {
+			throw new SQLException("insert or update on table \"" + table + "\" violates foreign key constraint \"" +
+				table + "_" + column + "_fkey\": key " + key + " is not present", FOREIGN_KEY_VIOLATION);
+		}
+		return row;
+	}
+
+	private static SQLException duplicate(String table, int key) {
+		return new SQLException("duplicate key value violates unique constraint \"" + table + "_pkey\": key " + key +
+			" already exists", UNIQUE_VIOLATION);
+	}
+
+	private static void check(String domain, boolean valid) throws SQLException {
+		if (!valid) {
+			throw new SQLException("value for domain " + domain + " violates check constraint \"" + domain + "_check\"",
+				CHECK_VIOLATION);
+		}
+	}
+
+	/* A char(n) value; like PostgreSQL, trailing spaces past n are dropped */
+	private static void fits(String value, int n) throws SQLException {
+		if (value == null) {
+			return;
+		}
+		int end = value.length();
+		while (end > 0 && value.charAt(end - 1) == ' ')
+			--end;
+		if (value.codePointCount(0, end) > n) {
+			throw new SQLException("value too long for type character(" + n + ")", STRING_TOO_LONG);
+		}
+	}
+
+	private static void notNull(String table, String column, String value) throws SQLException {
+		if (value == null) {
+			throw new SQLException("null value in column \"" + column + "\" of relation \"" + table +
+				"\" violates not-null constraint", "23502");
+		}
+	}
+}/* End of MemoryStorage !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
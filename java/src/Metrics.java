@@ -0,0 +1,344 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-operation latency, row and error counters for the menu operations,
+ * plus connection pool wait times.
+ *
+ * Each operation's latency is split into DB time and client time. DB time
+ * is the time the operation's thread held a pooled connection, less the
+ * time spent in row handlers. Client time is the rest: argument checks,
+ * queueing for a connection and formatting. The pool and DBproject report
+ * DB time and rows to the calling thread; time() reads them around the
+ * operation.
+ *
+ * The counters can be read as a text table (dump) or in the Prometheus
+ * text exposition format (prometheus). DBserver serves the latter at
+ * /metrics. Set dbproject.metrics.interval to a number of seconds to have
+ * the table printed to standard error periodically.
+ *
+ */
+
+public class Metrics{
+
+	/**
+	 * An operation whose DB time and rows are attributed to its caller.
+	 */
+	public interface Call<T> {
+		T run() throws SQLException;
+	}
+
+	/**
+	 * DB time and rows accumulated by one thread.
+	 */
+	private static final class Usage {
+		long dbNanos;
+		long rows;
+	}
+
+	private static final ThreadLocal<Usage> USAGE = new ThreadLocal<Usage>() {
+		protected Usage initialValue() {
+			return new Usage();
+		}
+	};
+
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	/**
+	 * Counters of one operation.
+	 */
+	public static final class Operation {
+		public final String name;
+		public final LatencyHistogram total = new LatencyHistogram();
+		public final LatencyHistogram db = new LatencyHistogram();
+		public final LatencyHistogram client = new LatencyHistogram();
+		public final AtomicLong rows = new AtomicLong();
+		//SQLState (or "invalid" for rejected arguments) -> count
+		public final ConcurrentHashMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+		Operation(String name) {
+			this.name = name;
+		}
+
+		void error(String state) {
+			AtomicLong count = this.errors.get(state);
+			if (count == null) {
+				AtomicLong created = new AtomicLong();
+				count = this.errors.putIfAbsent(state, created);
+				if (count == null) count = created;
+			}
+			count.incrementAndGet();
+		}
+
+		long errorCount() {
+			long n = 0;
+			for (AtomicLong count : this.errors.values())
+				n += count.get();
+			return n;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Operation> _operations = new ConcurrentHashMap<String, Operation>();
+	private final ConnectionPool _pool;
+	private volatile ResultCache _cache = null;
+	private ScheduledExecutorService _reporter = null;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Metrics (ConnectionPool pool)
+	 * Purpose  -> Creates an empty registry reporting the given pool's wait
+	 *             times alongside the operations; null for none.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ConnectionPool pool
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Metrics(ConnectionPool pool) {
+		this._pool = pool;
+	}
+
+	/* Includes a result cache's hit, miss and eviction counts in the output */
+	public void attach(ResultCache cache) {
+		this._cache = cache;
+	}
+
+	/* Adds DB time to the calling thread's usage; negative to take it back */
+	static void db(long nanos) {
+		USAGE.get().dbNanos += nanos;
+	}
+
+	/* Adds returned rows to the calling thread's usage */
+	static void rows(long rows) {
+		USAGE.get().rows += rows;
+	}
+
+	/* Returns the counters of an operation, creating them on first use */
+	public Operation operation(String name) {
+		Operation op = this._operations.get(name);
+		if (op == null) {
+			Operation created = new Operation(name);
+			op = this._operations.putIfAbsent(name, created);
+			if (op == null) op = created;
+		}
+		return op;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> <T> T time(String name, Call<T> call) throws SQLException
+	 * Purpose  -> Runs an operation on the calling thread and records its
+	 *             total, DB and client time, the rows it read and, if it
+	 *             fails, its SQLState. Failed calls are counted but their
+	 *             latency is not recorded.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String name, Call<T> call
+	 * Returns  -> T result of the call
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public <T> T time(String name, Call<T> call) throws SQLException {
+		Operation op = operation(name);
+		Usage usage = USAGE.get();
+		long db = usage.dbNanos;
+		long rows = usage.rows;
+		long start = System.nanoTime();
+		try {
+			T result = call.run();
+			long total = System.nanoTime() - start;
+			db = Math.min(total, Math.max(0, usage.dbNanos - db));
+			op.total.record(total);
+			op.db.record(db);
+			op.client.record(total - db);
+			op.rows.addAndGet(usage.rows - rows);
+			return result;
+		}catch (SQLException e) {
+			op.error(e.getSQLState() == null ? "unknown" : e.getSQLState());
+			throw e;
+		}catch (IllegalArgumentException e) {
+			op.error("invalid");
+			throw e;
+		}catch (RuntimeException e) {
+			op.error("unknown");
+			throw e;
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> String dump()
+	 * Purpose  -> Formats every operation as one line of a table: calls,
+	 *             errors, rows and p50/p99/p999 of total, DB and client time
+	 *             in microseconds, followed by the pool wait times.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> String
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public String dump() {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("%-36s %9s %7s %10s %22s %22s %22s%n", "operation", "calls", "errors", "rows",
+			"total p50/p99/p999 us", "db p50/p99/p999 us", "client p50/p99/p999 us"));
+		for (Operation op : sorted().values()) {
+			out.append(String.format("%-36s %9d %7d %10d %22s %22s %22s%n", op.name, op.total.count(),
+				op.errorCount(), op.rows.get(), percentiles(op.total), percentiles(op.db), percentiles(op.client)));
+			for (Map.Entry<String, AtomicLong> error : new TreeMap<String, AtomicLong>(op.errors).entrySet()) {
+				out.append(String.format("  %-34s %9s %7d%n", "sqlstate " + error.getKey(), "", error.getValue().get()));
+			}
+		}
+		if (this._pool != null) {
+			LatencyHistogram waits = this._pool.waits();
+			out.append(String.format("%-36s %9d %7d %10s %22s%n", "pool wait", waits.count(), this._pool.timeouts(), "",
+				percentiles(waits)));
+		}
+		ResultCache cache = this._cache;
+		if (cache != null) {
+			out.append(String.format("result cache: %d hits, %d misses, %d evictions, %d expirations, %d invalidations, %d flights%n",
+				cache.hits(), cache.misses(), cache.evictions(), cache.expirations(), cache.invalidations(), cache.size()));
+		}
+		return out.toString();
+	}
+
+	private static String percentiles(LatencyHistogram h) {
+		return String.format("%d/%d/%d", h.percentile(50) / 1000, h.percentile(99) / 1000, h.percentile(99.9) / 1000);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> String prometheus()
+	 * Purpose  -> Formats the counters in the Prometheus text exposition
+	 *             format. Latencies are summaries in seconds with 0.5, 0.99
+	 *             and 0.999 quantiles, labelled by operation and by kind
+	 *             (total, db, client).
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> String
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public String prometheus() {
+		StringBuilder out = new StringBuilder();
+		Map<String, Operation> ops = sorted();
+
+		out.append("# HELP dbproject_operation_seconds Latency of successful operations.\n");
+		out.append("# TYPE dbproject_operation_seconds summary\n");
+		for (Operation op : ops.values()) {
+			summary(out, "dbproject_operation_seconds", "operation=\"" + op.name + "\",kind=\"total\"", op.total);
+			summary(out, "dbproject_operation_seconds", "operation=\"" + op.name + "\",kind=\"db\"", op.db);
+			summary(out, "dbproject_operation_seconds", "operation=\"" + op.name + "\",kind=\"client\"", op.client);
+		}
+
+		out.append("# HELP dbproject_operation_rows_total Rows read by successful operations.\n");
+		out.append("# TYPE dbproject_operation_rows_total counter\n");
+		for (Operation op : ops.values()) {
+			out.append("dbproject_operation_rows_total{operation=\"").append(op.name).append("\"} ")
+				.append(op.rows.get()).append('\n');
+		}
+
+		out.append("# HELP dbproject_operation_errors_total Failed operations by SQLState.\n");
+		out.append("# TYPE dbproject_operation_errors_total counter\n");
+		for (Operation op : ops.values()) {
+			for (Map.Entry<String, AtomicLong> error : new TreeMap<String, AtomicLong>(op.errors).entrySet()) {
+				out.append("dbproject_operation_errors_total{operation=\"").append(op.name)
+					.append("\",sqlstate=\"").append(error.getKey()).append("\"} ")
+					.append(error.getValue().get()).append('\n');
+			}
+		}
+
+		if (this._pool != null) {
+			out.append("# HELP dbproject_pool_wait_seconds Time spent waiting for a pooled connection.\n");
+			out.append("# TYPE dbproject_pool_wait_seconds summary\n");
+			summary(out, "dbproject_pool_wait_seconds", null, this._pool.waits());
+			out.append("# HELP dbproject_pool_timeouts_total Acquires that gave up waiting for a connection.\n");
+			out.append("# TYPE dbproject_pool_timeouts_total counter\n");
+			out.append("dbproject_pool_timeouts_total ").append(this._pool.timeouts()).append('\n');
+			out.append("# HELP dbproject_pool_connections Open physical connections.\n");
+			out.append("# TYPE dbproject_pool_connections gauge\n");
+			out.append("dbproject_pool_connections{state=\"open\"} ").append(this._pool.size()).append('\n');
+			out.append("dbproject_pool_connections{state=\"idle\"} ").append(this._pool.idle()).append('\n');
+		}
+
+		ResultCache cache = this._cache;
+		if (cache != null) {
+			out.append("# HELP dbproject_cache_requests_total Result cache lookups by outcome.\n");
+			out.append("# TYPE dbproject_cache_requests_total counter\n");
+			out.append("dbproject_cache_requests_total{result=\"hit\"} ").append(cache.hits()).append('\n');
+			out.append("dbproject_cache_requests_total{result=\"miss\"} ").append(cache.misses()).append('\n');
+			out.append("# HELP dbproject_cache_removals_total Result cache entries dropped, by cause.\n");
+			out.append("# TYPE dbproject_cache_removals_total counter\n");
+			out.append("dbproject_cache_removals_total{cause=\"eviction\"} ").append(cache.evictions()).append('\n');
+			out.append("dbproject_cache_removals_total{cause=\"expiration\"} ").append(cache.expirations()).append('\n');
+			out.append("dbproject_cache_removals_total{cause=\"invalidation\"} ").append(cache.invalidations()).append('\n');
+			out.append("# HELP dbproject_cache_flights Flights with cached results.\n");
+			out.append("# TYPE dbproject_cache_flights gauge\n");
+			out.append("dbproject_cache_flights ").append(cache.size()).append('\n');
+		}
+		return out.toString();
+	}
+
+	/* Appends the quantile, sum and count lines of one summary */
+	private static void summary(StringBuilder out, String name, String labels, LatencyHistogram h) {
+		String prefix = labels == null ? "" : labels + ",";
+		for (double q : QUANTILES) {
+			out.append(name).append("{").append(prefix).append("quantile=\"").append(q).append("\"} ")
+				.append(h.percentile(q * 100) / 1e9).append('\n');
+		}
+		String suffix = labels == null ? " " : "{" + labels + "} ";
+		out.append(name).append("_sum").append(suffix).append(h.sum() / 1e9).append('\n');
+		out.append(name).append("_count").append(suffix).append(h.count()).append('\n');
+	}
+
+	private Map<String, Operation> sorted() {
+		return new TreeMap<String, Operation>(this._operations);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void report(long seconds, PrintStream out)
+	 * Purpose  -> Prints dump() to out every given number of seconds from a
+	 *             daemon thread, until close() is called.
+	 * -----------------------------------------------------------------------
+	 * Receives -> long seconds, PrintStream out
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public synchronized void report(long seconds, final PrintStream out) {
+		if (this._reporter == null) {
+			this._reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "metrics-reporter");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		this._reporter.scheduleAtFixedRate(() -> out.print(dump()), seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	public synchronized void close() {
+		if (this._reporter != null) {
+			this._reporter.shutdownNow();
+			this._reporter = null;
+		}
+	}
+}/* End of Metrics !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,225 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Versioned schema migrations on top of sql/create.sql. Migrations are the
+ * files sql/migrations/V<version>__<description>.sql; each pending one runs
+ * in its own transaction together with its row in schema_version, in
+ * version order, so a failed migration leaves nothing behind.
+ *
+ * --verify EXPLAINs the menu lookups and fails unless they use the indexes
+ * added by V1. Run it against a database at production scale (see
+ * DataGenerator); on the bundled 10K-row tables the planner rightly
+ * prefers sequential scans.
+ *
+ * Usage: java MigrationRunner <dbname> <port> <user> [migrations dir]
+ *                             [--verify]
+ *
+ */
+
+public class MigrationRunner{
+	private static final Pattern MIGRATION = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+	static final String CREATE_VERSION_TABLE =
+		"CREATE TABLE IF NOT EXISTS schema_version (" +
+			"version INTEGER NOT NULL PRIMARY KEY, " +
+			"description TEXT NOT NULL, " +
+			"applied_at TIMESTAMP NOT NULL DEFAULT now())";
+
+	/* Lookups that must not fall back to sequential scans, and the index
+	 * each one should use */
+	static final String[][] INDEX_CHECKS = {
+		{ "reservation_fid_status_idx",
+			"SELECT R.fid, COUNT(*) AS total_num_passengers FROM Reservation R " +
+			"WHERE R.status = 'R' AND R.fid = 1 GROUP BY R.fid" },
+		{ "reservation_cid_fid_idx",
+			"SELECT R.status FROM Reservation R WHERE R.cid = 1 AND R.fid = 1" },
+		{ "flightinfo_flight_id_idx",
+			"SELECT P.seats FROM Plane P, FlightInfo FI WHERE FI.flight_id = 1 AND FI.plane_id = P.id" },
+		{ "repairs_year_idx",
+			"SELECT COUNT(*) FROM Repairs R WHERE EXTRACT(year FROM R.repair_date) = 2014" }
+	};
+
+	private final DBproject _esql;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> MigrationRunner (DBproject esql)
+	 * Purpose  -> Creates a runner for the given database.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public MigrationRunner(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int migrate(File dir) throws SQLException, IOException
+	 * Purpose  -> Applies every migration in dir newer than the database's
+	 *             current version. schema_version is locked while each
+	 *             migration runs so two runners cannot apply the same one.
+	 * -----------------------------------------------------------------------
+	 * @return the number of migrations applied
+	 * -----------------------------------------------------------------------
+	 * Receives -> File dir
+	 * Returns  -> [int] applied
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int migrate(File dir) throws SQLException, IOException {
+		TreeMap<Integer, File> migrations = new TreeMap<Integer, File>();
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("No migrations directory: " + dir);
+		}
+		for (File file : files) {
+			Matcher m = MIGRATION.matcher(file.getName());
+			if (m.matches() && migrations.put(Integer.parseInt(m.group(1)), file) != null) {
+				throw new IOException("Duplicate migration version " + m.group(1));
+			}
+		}
+
+		this._esql.executeUpdate(CREATE_VERSION_TABLE);
+
+		int applied = 0;
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			Connection c = conn.getConnection();
+			for (File file : migrations.values()) {
+				c.setAutoCommit(false);
+				Statement stmt = c.createStatement();
+				try {
+					stmt.execute("LOCK TABLE schema_version IN EXCLUSIVE MODE");
+					ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+					rs.next();
+					int current = rs.getInt(1);
+					rs.close();
+
+					Matcher m = MIGRATION.matcher(file.getName());
+					m.matches();
+					int version = Integer.parseInt(m.group(1));
+					if (version <= current) {
+						c.rollback();
+						continue;
+					}
+
+					long start = System.nanoTime();
+					stmt.execute(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+					stmt.execute("INSERT INTO schema_version (version, description) VALUES (" +
+						version + ", '" + m.group(2).replace('_', ' ') + "')");
+					c.commit();
+					++applied;
+					System.out.printf("Applied V%d %s in %.1fs%n", version, m.group(2), (System.nanoTime() - start) / 1e9);
+				}catch (SQLException e) {
+					c.rollback();
+					throw new SQLException(file.getName() + ": " + e.getMessage(), e.getSQLState(), e);
+				}finally {
+					stmt.close();
+				}
+			}
+		}finally {
+			this._esql.getPool().release(conn);
+		}
+		return applied;
+	}//end migrate
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<String> verify() throws SQLException
+	 * Purpose  -> EXPLAINs each lookup in INDEX_CHECKS and reports the ones
+	 *             whose plan does not use the expected index.
+	 * -----------------------------------------------------------------------
+	 * @return one message per failed check, empty when all pass
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> List<String> failures
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<String> verify() throws SQLException {
+		List<String> failures = new ArrayList<String>();
+		for (String[] check : INDEX_CHECKS) {
+			StringBuilder plan = new StringBuilder();
+			for (List<String> line : this._esql.executeQueryAndReturnResult("EXPLAIN " + check[1]))
+				plan.append(line.get(0)).append('\n');
+			if (plan.indexOf(check[0]) < 0) {
+				failures.add("expected " + check[0] + " for: " + check[1] + "\n" + plan);
+			}
+		}
+		return failures;
+	}//end verify
+
+	/**
+	 * The migration command
+	 *
+	 * @param args <dbname> <port> <user> [migrations dir] [--verify]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + MigrationRunner.class.getName () +
+		            " <dbname> <port> <user> [migrations dir] [--verify]");
+			return;
+		}//end if
+
+		File dir = new File("../../sql/migrations");
+		boolean verify = false;
+		for (int i = 3; i < args.length; ++i) {
+			if (args[i].equals("--verify")) verify = true;
+			else dir = new File(args[i]);
+		}
+
+		DBproject esql = null;
+		int status = 0;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			MigrationRunner runner = new MigrationRunner(esql);
+			System.out.println(runner.migrate(dir) + " migration(s) applied");
+
+			if (verify) {
+				List<String> failures = runner.verify();
+				for (String failure : failures)
+					System.err.println("FAIL " + failure);
+				System.out.println((INDEX_CHECKS.length - failures.size()) + "/" + INDEX_CHECKS.length + " index checks passed");
+				status = failures.isEmpty() ? 0 : 1;
+			}
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		System.exit(status);
+	}
+}/* End of MigrationRunner !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
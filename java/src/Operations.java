@@ -0,0 +1,306 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The nine menu operations, independent of how their input is read and
+ * their output shown. The terminal menu in DBproject, DBserver and DBbench
+ * all run them through this class. Listed rows are handed to a
+ * Storage.Rows; invalid arguments raise IllegalArgumentException.
+ *
+ * Arguments are checked here and the reading and writing is left to
+ * DBproject's Storage, PostgreSQL or the embedded engine. Every call is
+ * timed under its menu method's name in DBproject's Metrics.
+ *
+ * Instances are thread-safe and hold no state beyond their DBproject.
+ *
+ */
+
+public class Operations{
+	//legs an itinerary search may combine
+	static final int MAX_LEGS = 4;
+
+	private final DBproject _esql;
+	private final Storage _storage;
+	private final Metrics _metrics;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Operations (DBproject esql)
+	 * Purpose  -> Binds the operations to a DBproject and its storage.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Operations(DBproject esql) {
+		this._esql = esql;
+		this._storage = esql.getStorage();
+		this._metrics = esql.getMetrics();
+	}
+
+	/* /// OPTION 1 /// */
+	public void addPlane(int id, String make, String model, int age, int seats) throws SQLException {
+		this._metrics.time("AddPlane", () -> {
+			length("make", make, 1, 32);
+			length("model", model, 1, 64);
+			return this._storage.addPlane(id, make, model, age, seats);
+		});
+	}
+
+	/* /// OPTION 2 /// */
+	public void addPilot(int id, String fullname, String nationality) throws SQLException {
+		this._metrics.time("AddPilot", () -> {
+			length("fullname", fullname, 0, 128);
+			length("nationality", nationality, 0, 24);
+			return this._storage.addPilot(id, fullname, nationality);
+		});
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void addFlight(int fnum, int cost, int numSold,
+	 *                            int numStops, LocalDate departure,
+	 *                            LocalDate arrival, String arrivalAirport,
+	 *                            String departureAirport)
+	 *                                                     throws SQLException
+	 * Purpose  -> Adds a flight. /// OPTION 3 ///
+	 * -----------------------------------------------------------------------
+	 * Receives -> fnum, cost, numSold, numStops, departure, arrival,
+	 *             arrivalAirport, departureAirport
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void addFlight(int fnum, int cost, int numSold, int numStops, LocalDate departure, LocalDate arrival,
+			String arrivalAirport, String departureAirport) throws SQLException {
+		this._metrics.time("AddFlight", () -> {
+			nonNegative("Flight number", fnum);
+			if (!arrival.isAfter(departure)) {
+				throw new IllegalArgumentException("Arrival date cannot be before departure date.");
+			}
+			length("arrival airport", arrivalAirport, 1, 5);
+			length("departure airport", departureAirport, 1, 5);
+			int added = this._storage.addFlight(fnum, cost, numSold, numStops, departure, arrival,
+				arrivalAirport, departureAirport);
+			this._esql.getItinerarySearch().add(fnum, cost, departure, arrival, departureAirport, arrivalAirport);
+			ChangeLog log = this._esql.getChangeLog();
+			if (log != null) {
+				log.flight(fnum, cost, (int) departure.toEpochDay(), (int) arrival.toEpochDay(), numSold, numStops,
+					departureAirport, arrivalAirport);
+			}
+			return added;
+		});
+	}
+
+	/* /// OPTION 4 /// */
+	public void addTechnician(int id, String fullName) throws SQLException {
+		this._metrics.time("AddTechnician", () -> {
+			nonNegative("Technician ID", id);
+			length("full name", fullName, 0, 128);
+			return this._storage.addTechnician(id, fullName);
+		});
+	}
+
+	/* Lists the status of every reservation a customer holds on a flight */
+	public long reservations(int customerId, int flightNum, Storage.Rows rows) throws SQLException {
+		return this._metrics.time("Reservations", () -> this._storage.reservations(customerId, flightNum, rows));
+	}
+
+	/* /// OPTION 5 /// books a seat, or a waitlist spot on a full flight */
+	public BookingService.Booking book(int customerId, int flightNum) throws SQLException {
+		return this._metrics.time("BookFlight", () -> {
+			nonNegative("Customer ID", customerId);
+			nonNegative("Flight number", flightNum);
+			return this._storage.book(customerId, flightNum);
+		});
+	}
+
+	/* /// OPTION 5 /// cancels a customer's reservations on a flight */
+	public int cancel(int customerId, int flightNum) throws SQLException {
+		return this._metrics.time("CancelFlight", () -> {
+			nonNegative("Customer ID", customerId);
+			nonNegative("Flight number", flightNum);
+			return this._storage.cancel(customerId, flightNum);
+		});
+	}
+
+	/* /// OPTION 6 /// unsold seats, -1 if no such flight departs that day */
+	public int availableSeats(int flightNum, LocalDate departure) throws SQLException {
+		return this._metrics.time("ListNumberOfAvailableSeats", () -> this._storage.availableSeats(flightNum, departure));
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Map<Integer, Integer> availableSeats(Map<Integer,
+	 *                               LocalDate> flights) throws SQLException
+	 * Purpose  -> Blocking form of availableSeatsAsync.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Map<Integer, LocalDate> flights
+	 * Returns  -> Map<Integer, Integer> seats by flight
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Map<Integer, Integer> availableSeats(Map<Integer, LocalDate> flights) throws SQLException {
+		return this._metrics.time("ListNumberOfAvailableSeatsBulk", () -> DBproject.join(availableSeatsAsync(flights)));
+	}
+
+	/* Looks up the availability of many flights, -1 for those that do not depart that day */
+	public CompletableFuture<Map<Integer, Integer>> availableSeatsAsync(Map<Integer, LocalDate> flights) {
+		return this._storage.availableSeatsAsync(flights);
+	}
+
+	/* /// OPTION 7 /// */
+	public long repairsPerPlane(Storage.Rows rows) throws SQLException {
+		return this._metrics.time("ListsTotalNumberOfRepairsPerPlane", () -> this._storage.repairsPerPlane(rows));
+	}
+
+	/* /// OPTION 8 /// */
+	public long repairsPerYear(Storage.Rows rows) throws SQLException {
+		return this._metrics.time("ListTotalNumberOfRepairsPerYear", () -> this._storage.repairsPerYear(rows));
+	}
+
+	/* /// OPTION 11 /// every fleet and maintenance report, counted in parallel */
+	public ReportEngine.Reports fleetReports() throws SQLException {
+		return this._metrics.time("FleetReports", () -> {
+			database("Fleet reports");
+			return new ReportEngine(this._esql).compute();
+		});
+	}
+
+	/* promotes waitlisted reservations on every flight with free seats */
+	public long reconcileWaitlist() throws SQLException {
+		return this._metrics.time("ReconcileWaitlist", () -> {
+			WaitlistEngine waitlist = this._esql.getWaitlist();
+			if (waitlist == null) {
+				throw new SQLException("The waitlist engine is off; start with -Ddbproject.waitlist=true");
+			}
+			return DBproject.join(waitlist.reconcileAll());
+		});
+	}
+
+	/* writes the snapshot the in-memory indexes start from next time */
+	public long saveSnapshot() throws SQLException {
+		return this._metrics.time("SaveSnapshot", () -> {
+			try {
+				return this._esql.saveSnapshot();
+			}catch (java.io.IOException e) {
+				throw new SQLException("Could not write the snapshot: " + e.getMessage(), e);
+			}
+		});
+	}
+
+	/* /// OPTION 9 /// counts a flight's passengers with a status */
+	public long passengerCount(int flightNum, String status) throws SQLException {
+		return this._metrics.time("FindPassengersCountWithStatus", () -> {
+			nonNegative("Flight number", flightNum);
+			if (!"W".equals(status) && !"C".equals(status) && !"R".equals(status)) {
+				throw new IllegalArgumentException("Input must either be W, C, or R");
+			}
+			return this._storage.passengerCount(flightNum, status.charAt(0));
+		});
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<ItinerarySearch.Itinerary> itineraries(String origin,
+	 *                String destination, LocalDate earliest, LocalDate latest,
+	 *                int maxLegs, int minConnectionDays, int seats, int limit)
+	 *                                                     throws SQLException
+	 * Purpose  -> Finds the cheapest itineraries between two airports. The
+	 *             seats of every leg found are confirmed with one bulk
+	 *             availability lookup; itineraries that no longer have
+	 *             them are dropped and the search repeated with the
+	 *             confirmed figures, a few times at most.
+	 *             /// OPTION 10 ///
+	 * -----------------------------------------------------------------------
+	 * Receives -> String origin, String destination, LocalDate earliest,
+	 *             LocalDate latest, int maxLegs, int minConnectionDays,
+	 *             int seats, int limit
+	 * Returns  -> List<ItinerarySearch.Itinerary> best first
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<ItinerarySearch.Itinerary> itineraries(String origin, String destination, LocalDate earliest,
+			LocalDate latest, int maxLegs, int minConnectionDays, int seats, int limit) throws SQLException {
+		return this._metrics.time("FindItineraries", () -> {
+			length("origin", origin, 1, 5);
+			length("destination", destination, 1, 5);
+			if (latest.isBefore(earliest)) {
+				throw new IllegalArgumentException("Latest departure cannot be before earliest departure.");
+			}
+			if (maxLegs < 1 || maxLegs > MAX_LEGS) {
+				throw new IllegalArgumentException("Legs must be 1 to " + MAX_LEGS);
+			}
+			nonNegative("Connection time", minConnectionDays);
+			if (seats < 1 || limit < 1) {
+				throw new IllegalArgumentException("Seats and limit must be positive");
+			}
+
+			database("Itinerary search");
+			ItinerarySearch search = this._esql.getItinerarySearch();
+			List<ItinerarySearch.Itinerary> found = new ArrayList<ItinerarySearch.Itinerary>();
+			for (int attempt = 0; attempt < 3; ++attempt) {
+				found = search.search(origin, destination, earliest, latest, maxLegs, minConnectionDays, seats, limit);
+				Map<Integer, LocalDate> legs = new HashMap<Integer, LocalDate>();
+				for (ItinerarySearch.Itinerary itinerary : found) {
+					for (int i = 0; i < itinerary.legs(); ++i)
+						legs.put(itinerary.flights[i], itinerary.departures[i]);
+				}
+				Map<Integer, Integer> free = DBproject.join(availableSeatsAsync(legs));
+				search.update(free);
+
+				List<ItinerarySearch.Itinerary> bookable = new ArrayList<ItinerarySearch.Itinerary>(found.size());
+				for (ItinerarySearch.Itinerary itinerary : found) {
+					boolean seated = true;
+					for (int i = 0; i < itinerary.legs() && seated; ++i)
+						seated = free.get(itinerary.flights[i]) >= seats;
+					if (seated) bookable.add(itinerary);
+				}
+				if (bookable.size() == found.size()) {
+					break;
+				}
+				found = bookable;
+			}
+			return found;
+		});
+	}
+
+	/* Fails the options that only run on PostgreSQL when the storage is embedded */
+	private void database(String what) throws SQLException {
+		if (!(this._storage instanceof JdbcStorage)) {
+			throw new SQLException(what + " needs the PostgreSQL storage");
+		}
+	}
+
+	//ids start at 0 in data/
+	private static void nonNegative(String what, int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException(what + " cannot be negative");
+		}
+	}
+
+	private static void length(String what, String value, int min, int max) {
+		if (value == null || value.length() < min || value.length() > max) {
+			throw new IllegalArgumentException(what + " must be " + min + " to " + max + " characters");
+		}
+	}
+}/* End of Operations !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
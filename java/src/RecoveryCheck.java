@@ -0,0 +1,377 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Crash test for the write-ahead log of MemoryStorage. Each round starts a
+ * child JVM that recovers the log and books and cancels from several
+ * threads, printing every operation before it starts and again once it is
+ * acknowledged. The child is killed at a random moment, and now and then
+ * garbage is appended to the log as a torn record would leave it. The log
+ * is then recovered here and checked:
+ *
+ *   every acknowledged booking exists, for its customer and flight;
+ *   an acknowledged cancellation left its reservations cancelled, and no
+ *   other booking was cancelled;
+ *   every flight's num_sold moved with its R reservations, and no flight
+ *   was oversold.
+ *
+ * A killed process leaves what it wrote in the page cache, so this checks
+ * replay, torn tails and the ordering of acknowledgements, not power loss.
+ *
+ * Usage: java RecoveryCheck <data dir> <new log file> [rounds] [threads]
+ *        (exits with status 1 if any check fails)
+ *
+ */
+
+public class RecoveryCheck{
+	//how long a child runs before it is killed, in milliseconds
+	private static final int MIN_RUN = 200;
+	private static final int MAX_RUN = 1500;
+
+	private final File _data;
+	private final Path _wal;
+	private final int _threads;
+	private final SplittableRandom _random = new SplittableRandom();
+
+	//(cid, fnum) of every acknowledged booking, by rnum
+	private final Map<Integer, int[]> _booked = new HashMap<Integer, int[]>();
+	//acknowledged bookings of each (cid, fnum) pair, in order
+	private final Map<Long, List<Integer>> _pairs = new HashMap<Long, List<Integer>>();
+	//bookings a cancellation was started on, and those it was acknowledged for
+	private final Set<Integer> _mayBeCancelled = new HashSet<Integer>();
+	private final Set<Integer> _cancelled = new HashSet<Integer>();
+	//num_sold - R per flight, and num_sold, seats, in the seed data
+	private final Map<Integer, int[]> _seed = new HashMap<Integer, int[]>();
+
+	private long _operations = 0;
+	private long _nanos = 0;
+	private long _syncs = 0;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> RecoveryCheck (File data, Path wal, int threads)
+	 *                                                   throws IOException
+	 * Purpose  -> Loads the seed data once, to compare every recovered
+	 *             store with.
+	 * -----------------------------------------------------------------------
+	 * Receives -> File data, Path wal, int threads
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public RecoveryCheck(File data, Path wal, int threads) throws IOException {
+		this._data = data;
+		this._wal = wal;
+		this._threads = threads;
+		MemoryStorage seed = new MemoryStorage();
+		seed.load(data);
+		for (int[] flight : seed.seatCounts())
+			this._seed.put(flight[0], new int[] { flight[1] - flight[2], flight[1], flight[3] });
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<String> round(int round) throws Exception
+	 * Purpose  -> Runs one child until it is killed, maybe tears the end
+	 *             of the log, then recovers it and checks the result.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int round
+	 * Returns  -> List<String> the checks that failed
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<String> round(int round) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		String window = System.getProperty("dbproject.wal.window");
+		if (window != null) {
+			command.add("-Ddbproject.wal.window=" + window);
+		}
+		command.add(RecoveryCheck.class.getName());
+		command.add("--child");
+		command.add(this._data.getPath());
+		command.add(this._wal.toString());
+		command.add(String.valueOf(this._threads));
+		command.add(String.valueOf(this._random.nextLong()));
+		Process child = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+		final List<String> lines = new ArrayList<String>();
+		final long[] ready = { 0 };
+		Thread reader = new Thread(() -> {
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream(),
+					StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					synchronized (lines) {
+						if (line.equals("READY")) {
+							ready[0] = System.nanoTime();
+							lines.notifyAll();
+						}else {
+							lines.add(line);
+						}
+					}
+				}
+			}catch (IOException e) {
+				//the pipe breaks when the child dies
+			}
+			synchronized (lines) {
+				lines.notifyAll();
+			}
+		});
+		reader.start();
+
+		long started;
+		synchronized (lines) {
+			while (ready[0] == 0 && child.isAlive())
+				lines.wait(100);
+			started = ready[0];
+		}
+		if (started == 0) {
+			reader.join();
+			throw new IOException("Round " + round + ": the child exited with status " + child.waitFor() +
+				" before it was ready");
+		}
+		Thread.sleep(MIN_RUN + this._random.nextInt(MAX_RUN - MIN_RUN));
+		child.destroyForcibly();
+		long ran = System.nanoTime() - started;
+		child.waitFor();
+		reader.join();
+
+		long acknowledged = 0;
+		long syncs = 0;
+		for (String line : lines) {
+			//a line cut short by the kill has no end mark
+			if (!line.endsWith(" .")) continue;
+			String[] fields = line.split(" ");
+			try {
+				switch (fields[0]) {
+					case "B":
+						acknowledged(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+						++acknowledged;
+						break;
+					case "c":
+						for (int rnum : pair(Integer.parseInt(fields[1]), Integer.parseInt(fields[2])))
+							this._mayBeCancelled.add(rnum);
+						break;
+					case "C":
+						for (int rnum : pair(Integer.parseInt(fields[1]), Integer.parseInt(fields[2])))
+							this._cancelled.add(rnum);
+						++acknowledged;
+						break;
+					case "S":
+						syncs = Long.parseLong(fields[1]);
+						break;
+					default:
+						break;
+				}
+			}catch (RuntimeException e) {
+				System.err.println("Round " + round + ": cannot read \"" + line + "\"");
+			}
+		}
+
+		int garbage = 0;
+		if (this._random.nextInt(3) == 0) {
+			byte[] bytes = new byte[1 + this._random.nextInt(64)];
+			for (int i = 0; i < bytes.length; ++i)
+				bytes[i] = (byte) this._random.nextInt(256);
+			try (FileChannel channel = FileChannel.open(this._wal, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				channel.write(ByteBuffer.wrap(bytes));
+			}
+			garbage = bytes.length;
+		}
+
+		this._operations += acknowledged;
+		this._nanos += ran;
+		this._syncs += syncs;
+		List<String> violations = verify();
+		System.out.printf("Round %d: %,d acknowledged operations in %.2fs (%,.0f/s), %,d fsyncs, %d garbage bytes," +
+			" %d violations%n", round, acknowledged, ran / 1e9, acknowledged / (ran / 1e9), syncs, garbage,
+			violations.size());
+		return violations;
+	}
+
+	private void acknowledged(int rnum, int cid, int fnum) {
+		this._booked.put(rnum, new int[] { cid, fnum });
+		pair(cid, fnum).add(rnum);
+	}
+
+	private List<Integer> pair(int cid, int fnum) {
+		return this._pairs.computeIfAbsent((long) cid << 32 | (fnum & 0xFFFFFFFFL), key -> new ArrayList<Integer>());
+	}
+
+	/* Recovers the log into a new store and checks it against the acknowledgements */
+	private List<String> verify() throws IOException {
+		List<String> violations = new ArrayList<String>();
+		MemoryStorage store = new MemoryStorage();
+		store.load(this._data);
+		try {
+			store.recover(this._wal);
+			for (Map.Entry<Integer, int[]> booking : this._booked.entrySet()) {
+				int rnum = booking.getKey();
+				MemoryStorage.Reservation reservation = store.reservation(rnum);
+				if (reservation == null) {
+					violations.add("Acknowledged booking " + rnum + " was lost");
+				}else if (reservation.cid != booking.getValue()[0] || reservation.fid != booking.getValue()[1]) {
+					violations.add("Booking " + rnum + " is for customer " + reservation.cid + " on flight " +
+						reservation.fid + ", not " + booking.getValue()[0] + " on " + booking.getValue()[1]);
+				}else if (this._cancelled.contains(rnum) && reservation.status != BookingService.CANCELLED) {
+					violations.add("Acknowledged cancellation of " + rnum + " was lost");
+				}else if (!this._mayBeCancelled.contains(rnum) && reservation.status == BookingService.CANCELLED) {
+					violations.add("Booking " + rnum + " was cancelled without a cancellation");
+				}
+			}
+			for (int[] flight : store.seatCounts()) {
+				int[] seed = this._seed.get(flight[0]);
+				if (seed == null) {
+					violations.add("Flight " + flight[0] + " appeared");
+				}else if (flight[1] - flight[2] != seed[0]) {
+					violations.add("Flight " + flight[0] + " has " + flight[1] + " seats sold but " + flight[2] +
+						" reservations, " + (flight[1] - flight[2] - seed[0]) + " off from the seed data");
+				}else if (flight[3] >= 0 && seed[1] <= seed[2] && flight[1] > flight[3]) {
+					violations.add("Flight " + flight[0] + " is oversold: " + flight[1] + " of " + flight[3] + " seats");
+				}
+			}
+		}finally {
+			store.close();
+		}
+		return violations;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void child(File data, Path wal, int threads, long seed)
+	 *                                                     throws Exception
+	 * Purpose  -> The process that gets killed: recovers the log, then
+	 *             books and cancels until it dies. Each thread owns its own
+	 *             customers, so the operations on one (customer, flight)
+	 *             pair are printed in the order they ran.
+	 * -----------------------------------------------------------------------
+	 * Receives -> File data, Path wal, int threads, long seed
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	private static void child(File data, Path wal, int threads, long seed) throws Exception {
+		final MemoryStorage store = new MemoryStorage();
+		store.load(data);
+		store.recover(wal);
+		final int[] customers = store.customers();
+		List<int[]> counts = store.seatCounts();
+		final int[] flights = new int[counts.size()];
+		for (int i = 0; i < flights.length; ++i)
+			flights[i] = counts.get(i)[0];
+		final SplittableRandom random = new SplittableRandom(seed);
+		System.out.println("READY");
+
+		for (int t = 0; t < threads; ++t) {
+			final int thread = t;
+			final SplittableRandom rnd = random.split();
+			Thread worker = new Thread(() -> {
+				int owned = (customers.length - thread + threads - 1) / threads;
+				try {
+					while (true) {
+						int cid = customers[thread + threads * rnd.nextInt(owned)];
+						int fnum = flights[rnd.nextInt(flights.length)];
+						BookingService.Booking booking = store.book(cid, fnum);
+						System.out.println("B " + booking.rnum + " " + cid + " " + fnum + " .");
+						if (rnd.nextInt(3) == 0) {
+							System.out.println("c " + cid + " " + fnum + " .");
+							store.cancel(cid, fnum);
+							System.out.println("C " + cid + " " + fnum + " .");
+						}
+					}
+				}catch (Exception e) {
+					System.err.println("Worker " + thread + " stopped: " + e.getMessage());
+				}
+			});
+			worker.setDaemon(true);
+			worker.start();
+		}
+		while (true) {
+			Thread.sleep(100);
+			System.out.println("S " + store.syncs() + " .");
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> main
+	 * Purpose  -> Runs the rounds and reports every failed check.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String[] args
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static void main(String[] args) {
+		if (args.length == 5 && args[0].equals("--child")) {
+			try {
+				child(new File(args[1]), Paths.get(args[2]), Integer.parseInt(args[3]), Long.parseLong(args[4]));
+			}catch (Exception e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		if (args.length < 2) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + RecoveryCheck.class.getName () +
+		            " <data dir> <new log file> [rounds] [threads]");
+			return;
+		}//end if
+
+		int status = 0;
+		try {
+			Path wal = Paths.get(args[1]);
+			if (Files.exists(wal)) {
+				throw new IOException(wal + " already exists; the check needs a new log");
+			}
+			int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+			int threads = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+			RecoveryCheck check = new RecoveryCheck(new File(args[0]), wal, threads);
+			List<String> violations = new ArrayList<String>();
+			for (int round = 1; round <= rounds; ++round)
+				violations.addAll(check.round(round));
+			for (String violation : violations)
+				System.out.println(violation);
+			System.out.printf("%d rounds, %,d acknowledged operations (%,.0f/s), %,d fsyncs, %d violations%n", rounds,
+				check._operations, check._operations / (check._nanos / 1e9), check._syncs, violations.size());
+			status = violations.isEmpty() ? 0 : 1;
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		}
+		System.exit(status);
+	}
+}/* End of RecoveryCheck !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,227 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Repair report queries for options 7 and 8. When migration V2 is applied
+ * the reports read the trigger-maintained repair_stats_plane and
+ * repair_stats_year tables, one row per plane or year; otherwise they fall
+ * back to aggregating Repairs.
+ *
+ * The main method compares the maintained counts with a full recomputation
+ * and can rebuild them.
+ *
+ * Usage: java RepairStats <dbname> <port> <user> [--rebuild]
+ *
+ */
+
+public class RepairStats{
+	static final String PER_PLANE =
+		"SELECT S.plane_id, S.total_num_repairs " +
+		"FROM repair_stats_plane S " +
+		"ORDER BY S.total_num_repairs DESC";
+	static final String PER_YEAR =
+		"SELECT S.yyyy, S.total_num_repairs " +
+		"FROM repair_stats_year S " +
+		"ORDER BY S.total_num_repairs ASC";
+
+	static final String PER_PLANE_FULL =
+		"SELECT R.plane_id, COUNT(*) AS total_num_repairs " +
+		"FROM Repairs R " +
+		"GROUP BY R.plane_id " +
+		"ORDER BY total_num_repairs DESC";
+	static final String PER_YEAR_FULL =
+		"SELECT CAST(EXTRACT(year FROM R.repair_date) AS INTEGER) AS yyyy, COUNT(*) AS total_num_repairs " +
+		"FROM Repairs R " +
+		"GROUP BY yyyy " +
+		"ORDER BY total_num_repairs ASC";
+
+	private static final String INSTALLED =
+		"SELECT 1 WHERE to_regclass('repair_stats_plane') IS NOT NULL AND to_regclass('repair_stats_year') IS NOT NULL";
+
+	private final DBproject _esql;
+	//null until the first report looks for the summary tables
+	private volatile Boolean _installed = null;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> RepairStats (DBproject esql)
+	 * Purpose  -> Creates the repair reports for the given database.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public RepairStats(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> boolean installed() throws SQLException
+	 * Purpose  -> Tells whether the summary tables exist. Checked once;
+	 *             restart after applying V2 to pick them up.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> [boolean] installed
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public boolean installed() throws SQLException {
+		Boolean installed = this._installed;
+		if (installed == null) {
+			installed = this._esql.executeQuery(INSTALLED) > 0;
+			this._installed = installed;
+		}
+		return installed;
+	}
+
+	/* Returns the query behind option 7 */
+	public String perPlaneQuery() throws SQLException {
+		return installed() ? PER_PLANE : PER_PLANE_FULL;
+	}
+
+	/* Returns the query behind option 8 */
+	public String perYearQuery() throws SQLException {
+		return installed() ? PER_YEAR : PER_YEAR_FULL;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<String> check() throws SQLException
+	 * Purpose  -> Compares the maintained counts with a recomputation from
+	 *             Repairs. Both are read in one REPEATABLE READ transaction
+	 *             so concurrent repairs cannot show up as differences.
+	 * -----------------------------------------------------------------------
+	 * @return one line per differing plane or year, empty when consistent
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> List<String> differences
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<String> check() throws SQLException {
+		List<String> differences = new ArrayList<String>();
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+			try {
+				compare("plane", counts(conn, PER_PLANE), counts(conn, PER_PLANE_FULL), differences);
+				compare("year", counts(conn, PER_YEAR), counts(conn, PER_YEAR_FULL), differences);
+				c.commit();
+			}finally {
+				c.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+			}
+		}finally {
+			this._esql.getPool().release(conn);
+		}
+		return differences;
+	}
+
+	/* Reads a report into key -> count */
+	private static Map<Integer, Long> counts(ConnectionPool.PooledConnection conn, String query) throws SQLException {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		ResultSet rs = conn.prepare(query).executeQuery();
+		try {
+			while (rs.next())
+				counts.put(rs.getInt(1), rs.getLong(2));
+		}finally {
+			rs.close();
+		}
+		return counts;
+	}
+
+	/* Lists every key whose maintained count differs from the recomputed one */
+	private static void compare(String what, Map<Integer, Long> maintained, Map<Integer, Long> full, List<String> differences) {
+		Map<Integer, Long> keys = new TreeMap<Integer, Long>(full);
+		keys.putAll(maintained);
+		for (Integer key : keys.keySet()) {
+			Long have = maintained.get(key);
+			Long want = full.get(key);
+			if (have == null ? want != null : !have.equals(want)) {
+				differences.add(what + " " + key + ": maintained " + (have == null ? 0 : have) +
+					", recomputed " + (want == null ? 0 : want));
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void rebuild() throws SQLException
+	 * Purpose  -> Recomputes the maintained counts from Repairs.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void rebuild() throws SQLException {
+		this._esql.executeQuery("SELECT repair_stats_rebuild()");
+	}
+
+	/**
+	 * The consistency checker
+	 *
+	 * @param args <dbname> <port> <user> [--rebuild]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + RepairStats.class.getName () +
+		            " <dbname> <port> <user> [--rebuild]");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		int status = 0;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			RepairStats stats = new RepairStats(esql);
+			if (!stats.installed()) {
+				throw new SQLException("repair_stats tables missing, apply migration V2 first");
+			}
+
+			List<String> differences = stats.check();
+			for (String difference : differences)
+				System.out.println(difference);
+			System.out.println(differences.isEmpty() ? "Repair statistics are consistent" :
+				differences.size() + " difference(s) found");
+
+			if (!differences.isEmpty() && args.length > 3 && args[3].equals("--rebuild")) {
+				stats.rebuild();
+				differences = stats.check();
+				System.out.println("Rebuilt, " + differences.size() + " difference(s) left");
+			}
+			status = differences.isEmpty() ? 0 : 1;
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		System.exit(status);
+	}
+}/* End of RepairStats !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,354 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes the fleet and maintenance reports in one pass: Repairs,
+ * FlightInfo and Plane are each streamed once (the three in parallel) into
+ * primitive columns, which are then counted on every core with fork-join.
+ * Each task counts a range of rows into plain long arrays indexed by id
+ * and the partial counts are summed as the tasks join.
+ *
+ * Counters are dense arrays from the smallest to the largest id seen, as
+ * the ids in data/ are. SQL_REPORTS holds the same reports as separate SQL
+ * aggregates, for comparison.
+ *
+ */
+
+public class ReportEngine{
+	//rows one fork-join task counts without splitting further
+	private static final int THRESHOLD = 1 << 14;
+	//values of the _CODE domain
+	static final String[] CODES = { "MJ", "MN", "SV" };
+
+	static final String REPAIRS =
+		"SELECT R.plane_id, CAST(EXTRACT(year FROM R.repair_date) AS INTEGER), R.repair_code, " +
+		"R.technician_id, R.pilot_id FROM Repairs R";
+	static final String FLIGHT_PLANES = "SELECT FI.plane_id FROM FlightInfo FI";
+	static final String PLANES = "SELECT P.id FROM Plane P";
+
+	//one aggregate per report, in the order of Reports.all()
+	static final String[] SQL_REPORTS = {
+		"SELECT R.plane_id, COUNT(*) FROM Repairs R GROUP BY R.plane_id",
+		"SELECT CAST(EXTRACT(year FROM R.repair_date) AS INTEGER) AS yyyy, COUNT(*) FROM Repairs R GROUP BY yyyy",
+		"SELECT R.repair_code, COUNT(*) FROM Repairs R GROUP BY R.repair_code",
+		"SELECT R.technician_id, COUNT(*) FROM Repairs R GROUP BY R.technician_id",
+		"SELECT R.pilot_id, COUNT(*) FROM Repairs R GROUP BY R.pilot_id",
+		"SELECT P.id, COUNT(FI.fiid) FROM Plane P LEFT JOIN FlightInfo FI ON FI.plane_id = P.id GROUP BY P.id"
+	};
+
+	/**
+	 * One report: a count per key, keys being first + index (or labels).
+	 */
+	public static final class Counts {
+		public final String report;
+		public final String key;
+		public final String value;
+		private final int _first;
+		private final long[] _counts;
+		private final String[] _labels;
+		private final boolean _descending;
+		//report keys with no rows too (planes that never flew)
+		private final boolean _zeros;
+
+		Counts(String report, String key, String value, int first, long[] counts, String[] labels,
+				boolean descending, boolean zeros) {
+			this.report = report;
+			this.key = key;
+			this.value = value;
+			this._first = first;
+			this._counts = counts;
+			this._labels = labels;
+			this._descending = descending;
+			this._zeros = zeros;
+		}
+
+		public String label(int index) {
+			return this._labels != null ? this._labels[index] : String.valueOf(this._first + index);
+		}
+
+		public long count(int index) {
+			return this._counts[index];
+		}
+
+		/* Indexes of the reported keys, by count (ties by key) */
+		public int[] order() {
+			long[] keyed = new long[this._counts.length];
+			int n = 0;
+			for (int i = 0; i < this._counts.length; ++i) {
+				if (this._counts[i] != 0 || this._zeros) {
+					keyed[n++] = ((this._descending ? -this._counts[i] : this._counts[i]) << 32) | i;
+				}
+			}
+			Arrays.sort(keyed, 0, n);
+			int[] order = new int[n];
+			for (int i = 0; i < n; ++i)
+				order[i] = (int) (keyed[i] & 0xFFFFFFFFL);
+			return order;
+		}
+
+		public void print(PrintStream out) {
+			out.println(this.key + "\t" + this.value + "\t");
+			for (int i : order())
+				out.println(label(i) + "\t" + this._counts[i] + "\t");
+		}
+	}
+
+	/**
+	 * The whole family of reports.
+	 */
+	public static final class Reports {
+		public final Counts perPlane;
+		public final Counts perYear;
+		public final Counts perCode;
+		public final Counts perTechnician;
+		public final Counts perPilot;
+		public final Counts flightsPerPlane;
+
+		Reports(Counts perPlane, Counts perYear, Counts perCode, Counts perTechnician, Counts perPilot,
+				Counts flightsPerPlane) {
+			this.perPlane = perPlane;
+			this.perYear = perYear;
+			this.perCode = perCode;
+			this.perTechnician = perTechnician;
+			this.perPilot = perPilot;
+			this.flightsPerPlane = flightsPerPlane;
+		}
+
+		public List<Counts> all() {
+			return Arrays.asList(this.perPlane, this.perYear, this.perCode, this.perTechnician, this.perPilot,
+				this.flightsPerPlane);
+		}
+	}
+
+	/**
+	 * A streamed table as int columns.
+	 */
+	private static final class Columns {
+		int rows = 0;
+		int[][] values;
+
+		Columns(int width) {
+			this.values = new int[width][1024];
+		}
+
+		void add(int column, int value) {
+			if (this.rows == this.values[column].length) {
+				this.values[column] = Arrays.copyOf(this.values[column], this.rows * 2);
+			}
+			this.values[column][this.rows] = value;
+		}
+
+		/* Smallest and largest value of a column, {0, -1} when empty */
+		int[] range(int column) {
+			int low = Integer.MAX_VALUE;
+			int high = Integer.MIN_VALUE;
+			int[] values = this.values[column];
+			for (int i = 0; i < this.rows; ++i) {
+				low = Math.min(low, values[i]);
+				high = Math.max(high, values[i]);
+			}
+			return this.rows == 0 ? new int[] { 0, -1 } : new int[] { low, high };
+		}
+	}
+
+	/**
+	 * Counts rows [from, to) of some columns, splitting the range in two
+	 * until it is small enough. Counter c of the result counts column c
+	 * from offsets[c]; the columns are read only.
+	 */
+	private static final class Tally extends RecursiveTask<long[][]> {
+		private static final long serialVersionUID = 1L;
+
+		private final int[][] _columns;
+		private final int[] _offsets;
+		private final int[] _sizes;
+		private final int _from;
+		private final int _to;
+
+		Tally(int[][] columns, int[] offsets, int[] sizes, int from, int to) {
+			this._columns = columns;
+			this._offsets = offsets;
+			this._sizes = sizes;
+			this._from = from;
+			this._to = to;
+		}
+
+		protected long[][] compute() {
+			if (this._to - this._from <= THRESHOLD) {
+				long[][] counts = new long[this._columns.length][];
+				for (int c = 0; c < this._columns.length; ++c) {
+					long[] counter = counts[c] = new long[this._sizes[c]];
+					int[] column = this._columns[c];
+					int offset = this._offsets[c];
+					for (int i = this._from; i < this._to; ++i) {
+						int slot = column[i] - offset;
+						if (slot >= 0 && slot < counter.length) {
+							++counter[slot];
+						}
+					}
+				}
+				return counts;
+			}
+
+			int middle = (this._from + this._to) >>> 1;
+			Tally left = new Tally(this._columns, this._offsets, this._sizes, this._from, middle);
+			left.fork();
+			long[][] counts = new Tally(this._columns, this._offsets, this._sizes, middle, this._to).compute();
+			long[][] other = left.join();
+			for (int c = 0; c < counts.length; ++c) {
+				for (int k = 0; k < counts[c].length; ++k)
+					counts[c][k] += other[c][k];
+			}
+			return counts;
+		}
+	}
+
+	private final DBproject _esql;
+	private final ForkJoinPool _pool;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ReportEngine (DBproject esql)
+	 * Purpose  -> Creates an engine counting on the common fork-join pool.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ReportEngine(DBproject esql) {
+		this._esql = esql;
+		this._pool = ForkJoinPool.commonPool();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Reports compute() throws SQLException
+	 * Purpose  -> Streams the three tables and counts every report.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> Reports
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Reports compute() throws SQLException {
+		final Columns repairs = new Columns(5);
+		final Columns flights = new Columns(1);
+		final Columns planes = new Columns(1);
+
+		CompletableFuture<Long> readRepairs = this._esql.executeQueryAndStreamAsync(REPAIRS, new DBproject.RowHandler() {
+			public void row(ResultSet rs) throws SQLException {
+				repairs.add(0, rs.getInt(1));
+				repairs.add(1, rs.getInt(2));
+				repairs.add(2, code(rs.getString(3)));
+				repairs.add(3, rs.getInt(4));
+				repairs.add(4, rs.getInt(5));
+				++repairs.rows;
+			}
+		});
+		CompletableFuture<Long> readFlights = this._esql.executeQueryAndStreamAsync(FLIGHT_PLANES, column(flights));
+		CompletableFuture<Long> readPlanes = this._esql.executeQueryAndStreamAsync(PLANES, column(planes));
+		DBproject.join(CompletableFuture.allOf(readRepairs, readFlights, readPlanes));
+
+		//planes that never flew or were never repaired still get a row
+		int[] planeRange = widest(planes.range(0), widest(repairs.range(0), flights.range(0)));
+		int[][] ranges = { planeRange, repairs.range(1), { 0, CODES.length - 1 }, repairs.range(3), repairs.range(4) };
+		long[][] repairCounts = tally(repairs, ranges);
+		long[][] flightCounts = tally(flights, new int[][] { planeRange });
+		long[][] planeCounts = tally(planes, new int[][] { planeRange });
+
+		//flights per plane keeps only the ids that are planes
+		long[] utilization = flightCounts[0];
+		boolean[] plane = new boolean[utilization.length];
+		for (int i = 0; i < plane.length; ++i)
+			plane[i] = planeCounts[0][i] > 0;
+
+		return new Reports(
+			new Counts("repairs_per_plane", "plane_id", "total_num_repairs", planeRange[0],
+				repairCounts[0], null, true, false),
+			new Counts("repairs_per_year", "yyyy", "total_num_repairs", ranges[1][0],
+				repairCounts[1], null, false, false),
+			new Counts("repairs_per_code", "repair_code", "total_num_repairs", 0,
+				repairCounts[2], CODES, true, false),
+			new Counts("repairs_per_technician", "technician_id", "total_num_repairs", ranges[3][0],
+				repairCounts[3], null, true, false),
+			new Counts("repairs_per_pilot", "pilot_id", "total_num_repairs", ranges[4][0],
+				repairCounts[4], null, true, false),
+			planesOnly(planeRange[0], utilization, plane));
+	}
+
+	/* Counts each column of a table over its range with fork-join */
+	private long[][] tally(Columns table, int[][] ranges) {
+		int[] offsets = new int[ranges.length];
+		int[] sizes = new int[ranges.length];
+		for (int c = 0; c < ranges.length; ++c) {
+			offsets[c] = ranges[c][0];
+			sizes[c] = ranges[c][1] - ranges[c][0] + 1;
+		}
+		return this._pool.invoke(new Tally(table.values, offsets, sizes, 0, table.rows));
+	}
+
+	/* Flights per plane, with every plane listed and no other ids */
+	private static Counts planesOnly(int first, long[] utilization, boolean[] plane) {
+		List<String> labels = new ArrayList<String>();
+		List<Long> counts = new ArrayList<Long>();
+		for (int i = 0; i < plane.length; ++i) {
+			if (plane[i]) {
+				labels.add(String.valueOf(first + i));
+				counts.add(utilization[i]);
+			}
+		}
+		long[] values = new long[counts.size()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = counts.get(i);
+		return new Counts("flights_per_plane", "plane_id", "total_num_flights", 0, values,
+			labels.toArray(new String[0]), true, true);
+	}
+
+	/* Reads the first column of every row into table */
+	private static DBproject.RowHandler column(final Columns table) {
+		return new DBproject.RowHandler() {
+			public void row(ResultSet rs) throws SQLException {
+				table.add(0, rs.getInt(1));
+				++table.rows;
+			}
+		};
+	}
+
+	/* Index of a repair code in CODES, -1 (not counted) for anything else */
+	private static int code(String code) {
+		code = code == null ? "" : code.trim();
+		for (int i = 0; i < CODES.length; ++i) {
+			if (CODES[i].equals(code)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int[] widest(int[] a, int[] b) {
+		if (a[1] < a[0]) return b;
+		if (b[1] < b[0]) return a;
+		return new int[] { Math.min(a[0], b[0]), Math.max(a[1], b[1]) };
+	}
+}/* End of ReportEngine !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,620 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar copy of Reservation for status and passenger counts (option 9)
+ * and per-customer lookups. Rows are sorted by (fid, rnum) into parallel
+ * arrays: rnum and cid as ints, status as one byte. fid needs no column of
+ * its own: the distinct fids are kept sorted, and the rows of the k-th one
+ * are positions offsets[k] to offsets[k + 1], so any fid, however large or
+ * negative, costs 8 bytes per flight. A second pair of arrays lists the
+ * positions in cid order for binary search. That is 17 bytes per
+ * reservation.
+ *
+ * BookingService and WaitlistEngine report every committed change
+ * (booked, cancelled, promoted). Status changes are applied in place; new
+ * rows go to a small unsorted delta that is merged into the sorted arrays
+ * once it reaches dbproject.snapshot.merge rows (4096) or 1/64 of the
+ * table. Changes can arrive out of commit order, so a promotion only
+ * applies to a W row and updates for rows not seen yet are held until
+ * the row arrives. Like SeatInventory, the snapshot assumes this process
+ * is the only one writing reservations.
+ *
+ */
+
+public class ReservationSnapshot{
+	static final String LOAD_RESERVATIONS =
+		"SELECT rnum, cid, fid, status FROM Reservation ORDER BY fid, rnum";
+
+	//updates held for unseen rows before the oldest are dropped
+	private static final int MAX_PENDING = 100000;
+
+	/**
+	 * One reservation, as returned by the per-customer lookups.
+	 */
+	public static final class Entry {
+		public final int rnum;
+		public final int cid;
+		public final int fid;
+		public final char status;
+
+		Entry(int rnum, int cid, int fid, char status) {
+			this.rnum = rnum;
+			this.cid = cid;
+			this.fid = fid;
+			this.status = status;
+		}
+	}
+
+	/* The sorted part; only status changes after it is built */
+	private static final class Columns {
+		final int[] rnum;
+		final int[] cid;
+		final byte[] status;
+		//distinct fids in order; rows of fids[k] are [offsets[k], offsets[k + 1])
+		final int[] fids;
+		final int[] offsets;
+		//positions sorted by (cid, position), and their cids for searching
+		final int[] byCustomer;
+		final int[] customers;
+
+		Columns(int[] rnum, int[] cid, int[] fid, byte[] status, int size) {
+			this.rnum = rnum.length == size ? rnum : Arrays.copyOf(rnum, size);
+			this.cid = cid.length == size ? cid : Arrays.copyOf(cid, size);
+			this.status = status.length == size ? status : Arrays.copyOf(status, size);
+
+			//rows arrive sorted by fid, so each flight is one run
+			int flights = 0;
+			for (int i = 0; i < size; ++i)
+				if (i == 0 || fid[i] != fid[i - 1]) ++flights;
+			this.fids = new int[flights];
+			this.offsets = new int[flights + 1];
+			for (int i = 0, k = 0; i < size; ++i) {
+				if (i == 0 || fid[i] != fid[i - 1]) {
+					this.fids[k] = fid[i];
+					this.offsets[k++] = i;
+				}
+			}
+			this.offsets[flights] = size;
+
+			this.byCustomer = new int[size];
+			this.customers = new int[size];
+			int minCid = Integer.MAX_VALUE;
+			int maxCid = Integer.MIN_VALUE;
+			for (int i = 0; i < size; ++i) {
+				minCid = Math.min(minCid, this.cid[i]);
+				maxCid = Math.max(maxCid, this.cid[i]);
+			}
+			if (size > 0 && (long) maxCid - minCid < 4L * size + 1024) {
+				//customer ids are dense: a counting sort, stable by position
+				int[] start = new int[maxCid - minCid + 2];
+				for (int i = 0; i < size; ++i)
+					++start[this.cid[i] - minCid + 1];
+				for (int c = 1; c < start.length; ++c)
+					start[c] += start[c - 1];
+				for (int i = 0; i < size; ++i) {
+					int at = start[this.cid[i] - minCid]++;
+					this.byCustomer[at] = i;
+					this.customers[at] = this.cid[i];
+				}
+			}else {
+				long[] keys = new long[size];
+				for (int i = 0; i < size; ++i)
+					keys[i] = ((long) this.cid[i] << 32) | i;
+				Arrays.parallelSort(keys);
+				for (int i = 0; i < size; ++i) {
+					this.byCustomer[i] = (int) keys[i];
+					this.customers[i] = (int) (keys[i] >> 32);
+				}
+			}
+		}
+
+		int size() {
+			return this.rnum.length;
+		}
+
+		int start(int fid) {
+			int k = Arrays.binarySearch(this.fids, fid);
+			return k < 0 ? 0 : this.offsets[k];
+		}
+
+		int end(int fid) {
+			int k = Arrays.binarySearch(this.fids, fid);
+			return k < 0 ? 0 : this.offsets[k + 1];
+		}
+
+		//position of a reservation of a flight, or -1
+		int find(int fid, int rnum) {
+			int start = start(fid);
+			int end = end(fid);
+			if (end <= start) {
+				return -1;
+			}
+			int i = Arrays.binarySearch(this.rnum, start, end, rnum);
+			return i < 0 ? -1 : i;
+		}
+
+		//fid of a position, from the offsets
+		int fid(int position) {
+			int lo = 0;
+			int hi = this.fids.length - 1;
+			while (lo < hi) {
+				int mid = (lo + hi + 1) >>> 1;
+				if (this.offsets[mid] <= position) {
+					lo = mid;
+				}else {
+					hi = mid - 1;
+				}
+			}
+			return this.fids[lo];
+		}
+	}
+
+	private final DBproject _esql;
+	private final int _mergeRows;
+	private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+	//everything below is guarded by _lock
+	private Columns _columns = new Columns(new int[0], new int[0], new int[0], new byte[0], 0);
+	private int[] _deltaRnum = new int[64];
+	private int[] _deltaCid = new int[64];
+	private int[] _deltaFid = new int[64];
+	private byte[] _deltaStatus = new byte[64];
+	private int _deltaSize = 0;
+	//status updates for rows not in the snapshot yet, by rnum
+	private final Map<Integer, Byte> _pending = new HashMap<Integer, Byte>();
+	//changes reported while load() runs, replayed on top of what it read
+	private List<Object[]> _backlog = null;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ReservationSnapshot (DBproject esql)
+	 * Purpose  -> Creates an empty snapshot; use load() to fill it.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ReservationSnapshot(DBproject esql) {
+		this._esql = esql;
+		this._mergeRows = Math.max(1, Integer.getInteger("dbproject.snapshot.merge", 4096));
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load() throws SQLException
+	 * Purpose  -> Streams Reservation once into the columns. Changes
+	 *             reported meanwhile are replayed on top, so the snapshot
+	 *             can be (re)loaded while bookings run.
+	 * -----------------------------------------------------------------------
+	 * @throws java.sql.SQLException when Reservation could not be read
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load() throws SQLException {
+		this._lock.writeLock().lock();
+		try {
+			this._backlog = new ArrayList<Object[]>();
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+
+		final int[][] columns = { new int[1024], new int[1024], new int[1024] };
+		final byte[][] status = { new byte[1024] };
+		final int[] size = { 0 };
+		try {
+			this._esql.executeQueryAndStream(LOAD_RESERVATIONS, 10000, new DBproject.RowHandler() {
+				public void row(ResultSet rs) throws SQLException {
+					int n = size[0];
+					if (n == status[0].length) {
+						int length = n + (n >> 1);
+						for (int c = 0; c < 3; ++c)
+							columns[c] = Arrays.copyOf(columns[c], length);
+						status[0] = Arrays.copyOf(status[0], length);
+					}
+					columns[0][n] = rs.getInt(1);
+					columns[1][n] = rs.getInt(2);
+					columns[2][n] = rs.getInt(3);
+					status[0][n] = code(rs.getString(4));
+					size[0] = n + 1;
+				}
+			});
+		}catch (SQLException e) {
+			this._lock.writeLock().lock();
+			try {
+				this._backlog = null;
+			}finally {
+				this._lock.writeLock().unlock();
+			}
+			throw e;
+		}
+
+		Columns loaded = new Columns(columns[0], columns[1], columns[2], status[0], size[0]);
+		this._lock.writeLock().lock();
+		try {
+			this._columns = loaded;
+			this._deltaSize = 0;
+			this._pending.clear();
+			List<Object[]> backlog = this._backlog;
+			this._backlog = null;
+			for (Object[] change : backlog)
+				apply((int[]) change[0], (Byte) change[1]);
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load(SnapshotFile snapshot,
+	 *                       List<ChangeLog.Record> changes)
+	 * Purpose  -> Fills the columns from a snapshot, whose reservations
+	 *             are already in (fid, rnum) order, then replays the change
+	 *             log recorded since.
+	 * -----------------------------------------------------------------------
+	 * Receives -> SnapshotFile snapshot, List<ChangeLog.Record> changes
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load(SnapshotFile snapshot, List<ChangeLog.Record> changes) {
+		int n = snapshot.rows(SnapshotFile.RESERVATION);
+		int[] statuses = snapshot.column(SnapshotFile.RESERVATION, SnapshotFile.STATUS);
+		byte[] status = new byte[n];
+		for (int i = 0; i < n; ++i)
+			status[i] = (byte) statuses[i];
+		Columns loaded = new Columns(snapshot.column(SnapshotFile.RESERVATION, SnapshotFile.RNUM),
+			snapshot.column(SnapshotFile.RESERVATION, SnapshotFile.CID),
+			snapshot.column(SnapshotFile.RESERVATION, SnapshotFile.FID), status, n);
+		this._lock.writeLock().lock();
+		try {
+			this._columns = loaded;
+			this._deltaSize = 0;
+			this._pending.clear();
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+		for (ChangeLog.Record change : changes) {
+			if (change.type == ChangeLog.BOOKED) {
+				booked(change.ints[0], change.ints[1], change.ints[2], (char) change.ints[3]);
+			}else if (change.type == ChangeLog.CANCELLED) {
+				cancelled(change.ints[0], change.ints[1]);
+			}else if (change.type == ChangeLog.PROMOTED) {
+				promoted(change.ints[0], change.ints[1]);
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void booked(int rnum, int cid, int fid, char status)
+	 * Purpose  -> Change feed: a reservation was inserted and committed.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int rnum, int cid, int fid, char status
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void booked(int rnum, int cid, int fid, char status) {
+		change(new int[] { rnum, cid, fid }, (byte) status);
+	}
+
+	/* Change feed: a reservation of a flight was cancelled */
+	public void cancelled(int rnum, int fid) {
+		change(new int[] { rnum, -1, fid }, (byte) BookingService.CANCELLED);
+	}
+
+	/* Change feed: a waitlisted reservation of a flight got a seat */
+	public void promoted(int rnum, int fid) {
+		change(new int[] { rnum, -1, fid }, (byte) BookingService.RESERVED);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int count(int fid, char status)
+	 * Purpose  -> Counts a flight's reservations with a status by scanning
+	 *             its slice of the status column (option 9).
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fid, char status
+	 * Returns  -> [int] count
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int count(int fid, char status) {
+		byte code = (byte) status;
+		this._lock.readLock().lock();
+		try {
+			Columns columns = this._columns;
+			byte[] statuses = columns.status;
+			int count = 0;
+			for (int i = columns.start(fid), end = columns.end(fid); i < end; ++i)
+				if (statuses[i] == code) ++count;
+			for (int i = 0; i < this._deltaSize; ++i)
+				if (this._deltaFid[i] == fid && this._deltaStatus[i] == code) ++count;
+			return count;
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long count(char status)
+	 * Purpose  -> Counts every reservation with a status in one pass over
+	 *             the status column.
+	 * -----------------------------------------------------------------------
+	 * Receives -> char status
+	 * Returns  -> [long] count
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long count(char status) {
+		byte code = (byte) status;
+		this._lock.readLock().lock();
+		try {
+			long count = 0;
+			for (byte s : this._columns.status)
+				if (s == code) ++count;
+			for (int i = 0; i < this._deltaSize; ++i)
+				if (this._deltaStatus[i] == code) ++count;
+			return count;
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int[] countsByFlight(char status)
+	 * Purpose  -> Counts the reservations with a status of every flight,
+	 *             walking the status column once.
+	 * -----------------------------------------------------------------------
+	 * Receives -> char status
+	 * Returns  -> Map<Integer, Integer> counts by fid, flights with none left out
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public Map<Integer, Integer> countsByFlight(char status) {
+		byte code = (byte) status;
+		this._lock.readLock().lock();
+		try {
+			Columns columns = this._columns;
+			Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+			byte[] statuses = columns.status;
+			for (int k = 0; k < columns.fids.length; ++k) {
+				int count = 0;
+				for (int i = columns.offsets[k], end = columns.offsets[k + 1]; i < end; ++i)
+					if (statuses[i] == code) ++count;
+				if (count > 0) {
+					counts.put(columns.fids[k], count);
+				}
+			}
+			for (int i = 0; i < this._deltaSize; ++i)
+				if (this._deltaStatus[i] == code) counts.merge(this._deltaFid[i], 1, Integer::sum);
+			return counts;
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<Entry> reservations(int cid)
+	 * Purpose  -> Finds a customer's reservations with a binary search of
+	 *             the cid index.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int cid
+	 * Returns  -> List<Entry> by flight, then reservation number
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<Entry> reservations(int cid) {
+		List<Entry> entries = new ArrayList<Entry>();
+		this._lock.readLock().lock();
+		try {
+			Columns columns = this._columns;
+			int i = lowerBound(columns.customers, cid);
+			for (; i < columns.customers.length && columns.customers[i] == cid; ++i) {
+				int position = columns.byCustomer[i];
+				entries.add(new Entry(columns.rnum[position], cid, columns.fid(position), (char) columns.status[position]));
+			}
+			for (int d = 0; d < this._deltaSize; ++d) {
+				if (this._deltaCid[d] == cid) {
+					entries.add(new Entry(this._deltaRnum[d], cid, this._deltaFid[d], (char) this._deltaStatus[d]));
+				}
+			}
+		}finally {
+			this._lock.readLock().unlock();
+		}
+		return entries;
+	}
+
+	/* The rows in the snapshot, sorted and not yet merged */
+	public int size() {
+		this._lock.readLock().lock();
+		try {
+			return this._columns.size() + this._deltaSize;
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* Approximate heap used by the arrays, in bytes */
+	public long memoryBytes() {
+		this._lock.readLock().lock();
+		try {
+			Columns columns = this._columns;
+			return 4L * (columns.rnum.length + columns.cid.length + columns.fids.length + columns.offsets.length +
+					columns.byCustomer.length + columns.customers.length) + columns.status.length +
+				13L * this._deltaRnum.length;
+		}finally {
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/* Applies a change now, or records it for replay while load() runs */
+	private void change(int[] row, byte status) {
+		this._lock.writeLock().lock();
+		try {
+			if (this._backlog != null) {
+				this._backlog.add(new Object[] { row, status });
+			}
+			apply(row, status);
+		}finally {
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/* row is {rnum, cid, fid}, cid -1 for a status change; holds the write lock */
+	private void apply(int[] row, byte status) {
+		int rnum = row[0];
+		int fid = row[2];
+		boolean insert = row[1] >= 0;
+
+		Columns columns = this._columns;
+		int position = columns.find(fid, rnum);
+		if (position >= 0) {
+			columns.status[position] = merge(columns.status[position], status, insert);
+			return;
+		}
+		for (int d = 0; d < this._deltaSize; ++d) {
+			if (this._deltaRnum[d] == rnum && this._deltaFid[d] == fid) {
+				this._deltaStatus[d] = merge(this._deltaStatus[d], status, insert);
+				return;
+			}
+		}
+		if (!insert) {
+			//the row's insert has not been reported yet
+			if (this._pending.size() >= MAX_PENDING) {
+				this._pending.clear();
+			}
+			Byte held = this._pending.get(rnum);
+			this._pending.put(rnum, held == null ? status : merge(held, status, false));
+			return;
+		}
+
+		Byte held = this._pending.remove(rnum);
+		if (held != null) {
+			status = merge(status, held, false);
+		}
+		if (this._deltaSize == this._deltaRnum.length) {
+			int length = this._deltaSize * 2;
+			this._deltaRnum = Arrays.copyOf(this._deltaRnum, length);
+			this._deltaCid = Arrays.copyOf(this._deltaCid, length);
+			this._deltaFid = Arrays.copyOf(this._deltaFid, length);
+			this._deltaStatus = Arrays.copyOf(this._deltaStatus, length);
+		}
+		this._deltaRnum[this._deltaSize] = rnum;
+		this._deltaCid[this._deltaSize] = row[1];
+		this._deltaFid[this._deltaSize] = fid;
+		this._deltaStatus[this._deltaSize] = status;
+		++this._deltaSize;
+		if (this._deltaSize >= Math.max(this._mergeRows, columns.size() >> 6)) {
+			mergeDelta();
+		}
+	}
+
+	/*
+	 * The status a row ends up with when a change arrives: cancellations
+	 * are final, promotions only apply to waitlisted rows, and a repeated
+	 * insert never overrides what is known
+	 */
+	private static byte merge(byte current, byte change, boolean insert) {
+		if (insert || current == (byte) BookingService.CANCELLED) {
+			return current;
+		}
+		if (change == (byte) BookingService.RESERVED && current != (byte) BookingService.WAITLISTED) {
+			return current;
+		}
+		return change;
+	}
+
+	/* Merges the delta into new sorted columns; holds the write lock */
+	private void mergeDelta() {
+		Columns columns = this._columns;
+		int n = columns.size();
+		int d = this._deltaSize;
+
+		long[] keys = new long[d];
+		for (int i = 0; i < d; ++i)
+			keys[i] = key(this._deltaFid[i], this._deltaRnum[i]);
+		Integer[] order = new Integer[d];
+		for (int i = 0; i < d; ++i)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+		int[] rnum = new int[n + d];
+		int[] cid = new int[n + d];
+		int[] fid = new int[n + d];
+		byte[] status = new byte[n + d];
+		int i = 0;
+		int j = 0;
+		int f = 0;
+		for (int out = 0; out < n + d; ++out) {
+			while (i < n && i >= columns.offsets[f + 1]) {
+				++f;
+			}
+			boolean fromBase = j == d || (i < n && key(columns.fids[f], columns.rnum[i]) < keys[order[j]]);
+			if (fromBase) {
+				rnum[out] = columns.rnum[i];
+				cid[out] = columns.cid[i];
+				fid[out] = columns.fids[f];
+				status[out] = columns.status[i];
+				++i;
+			}else {
+				int k = order[j++];
+				rnum[out] = this._deltaRnum[k];
+				cid[out] = this._deltaCid[k];
+				fid[out] = this._deltaFid[k];
+				status[out] = this._deltaStatus[k];
+			}
+		}
+		this._columns = new Columns(rnum, cid, fid, status, n + d);
+		this._deltaSize = 0;
+	}
+
+	/* Orders (fid, rnum) pairs as the columns are sorted, negative values included */
+	private static long key(int fid, int rnum) {
+		return ((long) fid << 32) | ((rnum ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+	}
+
+	private static int lowerBound(int[] sorted, int key) {
+		int lo = 0;
+		int hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < key) {
+				lo = mid + 1;
+			}else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static byte code(String status) {
+		return status == null || status.isEmpty() ? 0 : (byte) status.charAt(0);
+	}
+}/* End of ReservationSnapshot !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
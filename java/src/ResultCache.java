@@ -0,0 +1,294 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through cache for per-flight query results (seat availability,
+ * passenger counts). Results are grouped by flight so that a booking can
+ * drop everything cached for its flight in one step. Flights are evicted
+ * least recently used first, and every result also expires after a TTL,
+ * which bounds staleness from writers outside this process.
+ *
+ * A load that races with an invalidation of its flight is returned to its
+ * caller but not cached: each flight stripe carries a version that
+ * invalidate() bumps, and put only happens if the version is unchanged.
+ *
+ */
+
+public class ResultCache{
+	private static final int SEGMENTS = 16;
+	private static final int VERSION_STRIPES = 1024;
+	//results kept per flight before the flight's entries are dropped
+	private static final int MAX_PER_FLIGHT = 16;
+
+	/**
+	 * Runs the query behind a cache miss.
+	 */
+	public interface Loader<V> {
+		V load() throws SQLException;
+	}
+
+	/**
+	 * The operation and non-flight arguments a result was computed for.
+	 */
+	private static final class Key {
+		final String operation;
+		final Object argument;
+
+		Key(String operation, Object argument) {
+			this.operation = operation;
+			this.argument = argument;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.operation.equals(other.operation) && this.argument.equals(other.argument);
+		}
+
+		public int hashCode() {
+			return 31 * this.operation.hashCode() + this.argument.hashCode();
+		}
+	}
+
+	private static final class Entry {
+		final Object value;
+		final long expiresAt;
+
+		Entry(Object value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * One LRU map of flights, guarded by its own lock.
+	 */
+	private final class Segment extends LinkedHashMap<Integer, Map<Key, Entry>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Integer, Map<Key, Entry>> eldest) {
+			if (size() > this.capacity) {
+				_evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private final Segment[] _segments = new Segment[SEGMENTS];
+	private final AtomicLongArray _versions = new AtomicLongArray(VERSION_STRIPES);
+	private final long _ttlNanos;
+
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _evictions = new AtomicLong();
+	private final AtomicLong _expirations = new AtomicLong();
+	private final AtomicLong _invalidations = new AtomicLong();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ResultCache (int maxFlights, long ttlMillis)
+	 * Purpose  -> Creates a cache holding results for up to maxFlights
+	 *             flights, each result for at most ttlMillis.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int maxFlights, long ttlMillis
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ResultCache(int maxFlights, long ttlMillis) {
+		if (maxFlights <= 0 || ttlMillis <= 0) {
+			throw new IllegalArgumentException("Cache size and TTL must be positive");
+		}
+		for (int i = 0; i < SEGMENTS; ++i) {
+			this._segments[i] = new Segment(Math.max(1, (maxFlights + SEGMENTS - 1) / SEGMENTS));
+		}
+		this._ttlNanos = ttlMillis * 1000000L;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> <V> V get(String operation, int flightNum, Object argument,
+	 *                       Loader<V> loader) throws SQLException
+	 * Purpose  -> Returns the cached result of an operation on a flight, or
+	 *             loads and caches it. The loader runs outside any lock, so
+	 *             concurrent misses on one key may each load it.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String operation, int flightNum, Object argument,
+	 *             Loader<V> loader
+	 * Returns  -> V result
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public <V> V get(String operation, int flightNum, Object argument, Loader<V> loader) throws SQLException {
+		V value = peek(operation, flightNum, argument);
+		if (value == null) {
+			long version = version(flightNum);
+			value = loader.load();
+			put(operation, flightNum, argument, value, version);
+		}
+		return value;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> <V> V peek(String operation, int flightNum,
+	 *                        Object argument)
+	 * Purpose  -> Returns a live cached result, or null (counted as a miss)
+	 *             if there is none. Callers that load the result themselves
+	 *             read version() before loading and pass it to put().
+	 * -----------------------------------------------------------------------
+	 * Receives -> String operation, int flightNum, Object argument
+	 * Returns  -> V result || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V peek(String operation, int flightNum, Object argument) {
+		Key key = new Key(operation, argument);
+		Segment segment = segment(flightNum);
+		long now = System.nanoTime();
+		synchronized (segment) {
+			Map<Key, Entry> results = segment.get(flightNum);
+			Entry entry = results == null ? null : results.get(key);
+			if (entry != null) {
+				if (entry.expiresAt - now > 0) {
+					this._hits.incrementAndGet();
+					return (V) entry.value;
+				}
+				results.remove(key);
+				this._expirations.incrementAndGet();
+			}
+		}
+		this._misses.incrementAndGet();
+		return null;
+	}
+
+	/* Returns the flight's invalidation version, to be read before loading */
+	public long version(int flightNum) {
+		return this._versions.get(stripe(flightNum));
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void put(String operation, int flightNum, Object argument,
+	 *                      Object value, long version)
+	 * Purpose  -> Caches a loaded result, unless the flight was invalidated
+	 *             since version was read.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String operation, int flightNum, Object argument,
+	 *             Object value, long version
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void put(String operation, int flightNum, Object argument, Object value, long version) {
+		Segment segment = segment(flightNum);
+		synchronized (segment) {
+			if (this._versions.get(stripe(flightNum)) == version) {
+				Map<Key, Entry> results = segment.get(flightNum);
+				if (results == null || results.size() >= MAX_PER_FLIGHT) {
+					results = new HashMap<Key, Entry>();
+					segment.put(flightNum, results);
+				}
+				results.put(new Key(operation, argument), new Entry(value, System.nanoTime() + this._ttlNanos));
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void invalidate(int flightNum)
+	 * Purpose  -> Drops every result cached for a flight. Call it after the
+	 *             transaction that changed the flight has committed.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int flightNum
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void invalidate(int flightNum) {
+		Segment segment = segment(flightNum);
+		synchronized (segment) {
+			this._versions.incrementAndGet(stripe(flightNum));
+			if (segment.remove(flightNum) != null) {
+				this._invalidations.incrementAndGet();
+			}
+		}
+	}
+
+	public void clear() {
+		for (int i = 0; i < SEGMENTS; ++i) {
+			synchronized (this._segments[i]) {
+				for (Integer flightNum : this._segments[i].keySet())
+					this._versions.incrementAndGet(stripe(flightNum));
+				this._segments[i].clear();
+			}
+		}
+	}
+
+	public long hits() {
+		return this._hits.get();
+	}
+
+	public long misses() {
+		return this._misses.get();
+	}
+
+	public long evictions() {
+		return this._evictions.get();
+	}
+
+	public long expirations() {
+		return this._expirations.get();
+	}
+
+	public long invalidations() {
+		return this._invalidations.get();
+	}
+
+	/* Number of flights with cached results */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < SEGMENTS; ++i) {
+			synchronized (this._segments[i]) {
+				size += this._segments[i].size();
+			}
+		}
+		return size;
+	}
+
+	private Segment segment(int flightNum) {
+		return this._segments[(flightNum * 0x9E3779B9 >>> 16) & (SEGMENTS - 1)];
+	}
+
+	private static int stripe(int flightNum) {
+		return flightNum & (VERSION_STRIPES - 1);
+	}
+}/* End of ResultCache !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
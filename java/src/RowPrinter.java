@@ -0,0 +1,391 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints query results to standard out for the menu. Every row is rendered
+ * into one reusable line builder and copied into a byte buffer, which is
+ * written out when it fills up and on close(), so a large result costs a
+ * write per buffer instead of a print call per value.
+ *
+ * The format comes from dbproject.output:
+ *   text     a header line, then one tab separated line per row (default)
+ *   aligned  fixed width columns with a header, a page at a time
+ *   csv      RFC 4180 rows after a header line, for piping into tools
+ *   json     one JSON object per row (JSON lines), for piping into tools
+ *
+ * dbproject.output.limit stops printing after that many rows; the rest are
+ * still read and counted, and a note goes to standard error. In aligned
+ * mode dbproject.output.page rows (default 1000) are held to size the
+ * columns, and the header is repeated for every page.
+ *
+ * Use a new one for every query and close it when the query ends.
+ * Not thread-safe.
+ *
+ */
+
+public class RowPrinter implements Storage.Rows, AutoCloseable{
+	public static final int TEXT = 0;
+	public static final int ALIGNED = 1;
+	public static final int CSV = 2;
+	public static final int JSON = 3;
+
+	private static final String[] FORMATS = {"text", "aligned", "csv", "json"};
+
+	private final OutputStream _out;
+	private final int _format;
+	private final long _limit;
+	private final int _page;
+	private final byte[] _buffer;
+	private int _used = 0;
+	//the row being rendered, reused for every row
+	private final StringBuilder _line = new StringBuilder(256);
+	private String[] _columns = null;
+	//aligned mode: the rows of the current page, rendered to text
+	private final List<String[]> _rows = new ArrayList<>();
+	private boolean[] _numeric = null;
+	private long _count = 0;
+	private long _printed = 0;
+	private boolean _closed = false;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> RowPrinter (OutputStream out, int format, long limit,
+	 *                         int page, int bufferSize)
+	 * Purpose  -> Prints to out in one of TEXT, ALIGNED, CSV or JSON,
+	 *             stopping after limit rows (0 for no limit).
+	 * -----------------------------------------------------------------------
+	 * Receives -> OutputStream out, int format, long limit, int page,
+	 *             int bufferSize
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public RowPrinter(OutputStream out, int format, long limit, int page, int bufferSize) {
+		if (format < TEXT || format > JSON) {
+			throw new IllegalArgumentException("Unknown output format " + format);
+		}
+		this._out = out;
+		this._format = format;
+		this._limit = limit > 0 ? limit : Long.MAX_VALUE;
+		this._page = Math.max(1, page);
+		this._buffer = new byte[Math.max(1024, bufferSize)];
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> RowPrinter standard()
+	 * Purpose  -> A printer for standard out configured from dbproject.output,
+	 *             dbproject.output.limit, dbproject.output.page and
+	 *             dbproject.output.buffer (bytes, default 64k).
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> RowPrinter
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static RowPrinter standard() {
+		return new RowPrinter(System.out, format(System.getProperty("dbproject.output", "text")),
+			Long.getLong("dbproject.output.limit", 0L),
+			Integer.getInteger("dbproject.output.page", 1000),
+			Integer.getInteger("dbproject.output.buffer", 1 << 16));
+	}
+
+	/* The format constant for a name in FORMATS */
+	public static int format(String name) {
+		for (int i = 0; i < FORMATS.length; ++i) {
+			if (FORMATS[i].equalsIgnoreCase(name)) return i;
+		}
+		throw new IllegalArgumentException("Unknown output format '" + name + "', expected text, aligned, csv or json");
+	}
+
+	public void row(String[] columns, Object[] values) {
+		if (this._columns == null) {
+			this._columns = columns;
+			header();
+		}
+		if (++this._count > this._limit) return;
+		++this._printed;
+		StringBuilder line = this._line;
+		line.setLength(0);
+		switch (this._format) {
+			case TEXT:
+				for (int i = 0; i < values.length; ++i) {
+					value(line, values[i]);
+					line.append('\t');
+				}
+				break;
+			case CSV:
+				for (int i = 0; i < values.length; ++i) {
+					if (i > 0) line.append(',');
+					if (values[i] != null) {
+						int start = line.length();
+						value(line, values[i]);
+						csv(line, start);
+					}
+				}
+				break;
+			case JSON:
+				line.append('{');
+				for (int i = 0; i < values.length; ++i) {
+					if (i > 0) line.append(',');
+					DBserver.quote(line, columns[i]);
+					line.append(':');
+					Object value = values[i];
+					if (value == null) line.append("null");
+					else if (value instanceof Number || value instanceof Boolean) value(line, value);
+					else DBserver.quote(line, value.toString());
+				}
+				line.append('}');
+				break;
+			default:
+				String[] cells = new String[values.length];
+				for (int i = 0; i < values.length; ++i) {
+					Object value = values[i];
+					cells[i] = value == null ? "" : value.toString();
+					if (value != null && !(value instanceof Number)) this._numeric[i] = false;
+				}
+				this._rows.add(cells);
+				if (this._rows.size() == this._page) page();
+				return;
+		}
+		line.append('\n');
+		write(line);
+	}
+
+	/* Rows seen, including those past the limit */
+	public long count() {
+		return this._count;
+	}
+
+	/* Writes out the buffer */
+	public void flush() {
+		if (this._used > 0) {
+			try {
+				this._out.write(this._buffer, 0, this._used);
+				this._out.flush();
+			}catch (IOException e) {
+				//PrintStream does not throw; a closed pipe only loses output
+			}
+			this._used = 0;
+		}
+	}
+
+	/* Prints the last page and any notes, and writes out the buffer */
+	public void close() {
+		if (this._closed) return;
+		this._closed = true;
+		if (this._format == ALIGNED && this._columns != null) {
+			page();
+			this._line.setLength(0);
+			this._line.append('(').append(this._count).append(this._count == 1 ? " row)\n" : " rows)\n");
+			write(this._line);
+		}
+		flush();
+		if (this._count > this._printed) {
+			System.err.printf("(%,d more rows not shown, dbproject.output.limit=%,d)%n",
+				this._count - this._printed, this._limit);
+		}
+	}
+
+	/* The header line, when the format has one */
+	private void header() {
+		String[] columns = this._columns;
+		StringBuilder line = this._line;
+		line.setLength(0);
+		switch (this._format) {
+			case TEXT:
+				for (int i = 0; i < columns.length; ++i)
+					line.append(columns[i]).append('\t');
+				break;
+			case CSV:
+				for (int i = 0; i < columns.length; ++i) {
+					if (i > 0) line.append(',');
+					int start = line.length();
+					line.append(columns[i]);
+					csv(line, start);
+				}
+				break;
+			case ALIGNED:
+				this._numeric = new boolean[columns.length];
+				Arrays.fill(this._numeric, true);
+				return;
+			default:
+				return;
+		}
+		line.append('\n');
+		write(line);
+	}
+
+	/* Prints the held rows under a header sized to them */
+	private void page() {
+		if (this._rows.isEmpty() && this._printed > 0) return;
+		String[] columns = this._columns;
+		int[] widths = new int[columns.length];
+		for (int i = 0; i < columns.length; ++i)
+			widths[i] = columns[i].length();
+		for (String[] cells : this._rows) {
+			for (int i = 0; i < cells.length; ++i)
+				widths[i] = Math.max(widths[i], cells[i].length());
+		}
+		StringBuilder line = this._line;
+		line.setLength(0);
+		for (int i = 0; i < columns.length; ++i) {
+			if (i > 0) line.append(" | ");
+			pad(line, columns[i], widths[i], false, i == columns.length - 1);
+		}
+		line.append('\n');
+		for (int i = 0; i < columns.length; ++i) {
+			if (i > 0) line.append("-+-");
+			for (int j = 0; j < widths[i]; ++j)
+				line.append('-');
+		}
+		line.append('\n');
+		write(line);
+		for (String[] cells : this._rows) {
+			line.setLength(0);
+			for (int i = 0; i < cells.length; ++i) {
+				if (i > 0) line.append(" | ");
+				pad(line, cells[i], widths[i], this._numeric[i], i == cells.length - 1);
+			}
+			line.append('\n');
+			write(line);
+		}
+		this._rows.clear();
+	}
+
+	/* Appends text padded to width, numbers on the right */
+	private static void pad(StringBuilder line, String text, int width, boolean right, boolean last) {
+		int spaces = width - text.length();
+		if (right) for (int i = 0; i < spaces; ++i) line.append(' ');
+		line.append(text);
+		//no trailing spaces after the last column
+		if (!right && !last) for (int i = 0; i < spaces; ++i) line.append(' ');
+	}
+
+	/* Appends a value without boxing ints to strings on the way */
+	private static void value(StringBuilder line, Object value) {
+		if (value instanceof Integer) line.append(((Integer) value).intValue());
+		else if (value instanceof Long) line.append(((Long) value).longValue());
+		else line.append(value);
+	}
+
+	/* Quotes the field starting at start if it holds a separator or quote */
+	private static void csv(StringBuilder line, int start) {
+		boolean quote = false;
+		for (int i = start; i < line.length() && !quote; ++i) {
+			char c = line.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) return;
+		for (int i = line.length() - 1; i >= start; --i) {
+			if (line.charAt(i) == '"') line.insert(i, '"');
+		}
+		line.insert(start, '"').append('"');
+	}
+
+	/* Copies a rendered line into the buffer as UTF-8 */
+	private void write(StringBuilder line) {
+		int length = line.length();
+		byte[] buffer = this._buffer;
+		int used = this._used;
+		for (int i = 0; i < length; ++i) {
+			char c = line.charAt(i);
+			if (c >= 0x80) {
+				//rare: encode the rest of the line in one go
+				this._used = used;
+				byte[] utf8 = line.substring(i).getBytes(StandardCharsets.UTF_8);
+				for (int off = 0; off < utf8.length; ) {
+					if (this._used == buffer.length) flush();
+					int n = Math.min(utf8.length - off, buffer.length - this._used);
+					System.arraycopy(utf8, off, buffer, this._used, n);
+					this._used += n;
+					off += n;
+				}
+				return;
+			}
+			if (used == buffer.length) {
+				this._used = used;
+				flush();
+				used = 0;
+			}
+			buffer[used++] = (byte) c;
+		}
+		this._used = used;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void main(String[] args)
+	 * Purpose  -> Prints rows shaped like a flight listing to standard out,
+	 *             first through the old per value print calls and then
+	 *             through a RowPrinter, and reports the rate of each to
+	 *             standard error. Redirect standard out to a file or pipe.
+	 * -----------------------------------------------------------------------
+	 * Receives -> [String[]] args
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static void main(String[] args) {
+		if (args.length > 2) {
+			System.err.println (
+				"Usage: " +
+				"java [-classpath <classpath>] " +
+				RowPrinter.class.getName () +
+				" [rows=1000000] [text|aligned|csv|json]");
+			return;
+		}//end if
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int format = args.length > 1 ? format(args[1]) : TEXT;
+		String[] columns = {"fnum", "cost", "num_sold", "departure_airport", "actual_departure_date"};
+		Object[][] values = new Object[1000][];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = new Object[] {i, 100 + i % 900, i % 250, "A" + (i % 97),
+				java.sql.Date.valueOf(java.time.LocalDate.of(2020, 1, 1).plusDays(i))};
+		}
+
+		long start = System.nanoTime();
+		PrintStream out = System.out;
+		for (int i = 0; i < columns.length; i++)
+			out.print(columns[i] + "\t");
+		out.println();
+		for (int r = 0; r < rows; ++r) {
+			Object[] row = values[r % values.length];
+			for (int i = 0; i < row.length; ++i)
+				out.print(row[i] + "\t");
+			out.println();
+		}
+		out.flush();
+		long naive = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		try (RowPrinter printer = new RowPrinter(System.out, format, 0, 1000, 1 << 16)) {
+			for (int r = 0; r < rows; ++r)
+				printer.row(columns, values[r % values.length]);
+		}
+		long buffered = System.nanoTime() - start;
+
+		System.err.printf("print calls: %,d rows in %,d ms (%,.0f rows/s)%n",
+			rows, naive / 1000000, rows * 1e9 / naive);
+		System.err.printf("%s: %,d rows in %,d ms (%,.0f rows/s)%n",
+			FORMATS[format], rows, buffered / 1000000, rows * 1e9 / buffered);
+	}
+}/* End of RowPrinter !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,538 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports a seasonal timetable: every line is a flight together with the
+ * pilot and plane flying it,
+ *
+ *   fnum,cost,num_sold,num_stops,departure,arrival,arrival_airport,
+ *   departure_airport,pilot_id,plane_id
+ *
+ * with times as "yyyy-mm-dd hh:mm" (or just the day). Accepted lines
+ * become a Flight, a FlightInfo and a Schedule row, written with batched
+ * inserts in one transaction.
+ *
+ * A line is rejected when its flight number exists, or when its pilot or
+ * plane is already flying during [departure, arrival). The imported lines
+ * are swept once in departure order and a line is accepted only when both
+ * its plane and its pilot are free, so of two overlapping lines the later
+ * one is rejected and a rejected line never blocks another. Existing
+ * assignments are sorted by resource and departure and searched, O(n log n)
+ * overall. FlightInfo is locked against concurrent writers
+ * from the moment the existing assignments are read until the commit.
+ *
+ * The database keeps only the day of each departure and arrival, so an
+ * existing flight occupies its pilot and plane from the start of its
+ * departure day to the end of its arrival day.
+ *
+ * Usage: java ScheduleImport <dbname> <port> <user> <timetable.csv>
+ *                            [--dry-run] [--report <file>]
+ *
+ */
+
+public class ScheduleImport{
+	private static final int BATCH_SIZE = 1000;
+	private static final int MINUTES_PER_DAY = 24 * 60;
+
+	static final String LOCK = "LOCK TABLE FlightInfo IN SHARE ROW EXCLUSIVE MODE";
+	static final String ASSIGNMENTS =
+		"SELECT F.fnum, FI.pilot_id, FI.plane_id, F.actual_departure_date, F.actual_arrival_date " +
+		"FROM FlightInfo FI, Flight F WHERE FI.flight_id = F.fnum";
+	static final String NEXT_IDS =
+		"SELECT COALESCE((SELECT MAX(fiid) FROM FlightInfo), -1) + 1, COALESCE((SELECT MAX(id) FROM Schedule), -1) + 1";
+	static final String INSERT_FLIGHT =
+		"INSERT INTO Flight (fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, " +
+		"arrival_airport, departure_airport) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	static final String INSERT_SCHEDULE =
+		"INSERT INTO Schedule (id, flightNum, departure_time, arrival_time) VALUES (?, ?, ?, ?)";
+	static final String INSERT_FLIGHT_INFO =
+		"INSERT INTO FlightInfo (fiid, flight_id, pilot_id, plane_id) VALUES (?, ?, ?, ?)";
+
+	/**
+	 * Intervals during which pilots or planes are busy, existing and
+	 * imported, as parallel arrays.
+	 */
+	static final class Intervals {
+		int size = 0;
+		int[] fnum = new int[1024];
+		int[] pilot = new int[1024];
+		int[] plane = new int[1024];
+		long[] start = new long[1024];
+		long[] end = new long[1024];
+		//line of the timetable, or 0 for an existing flight
+		int[] line = new int[1024];
+
+		void add(int fnum, int pilot, int plane, long start, long end, int line) {
+			if (this.size == this.fnum.length) {
+				int grown = this.size * 2;
+				this.fnum = Arrays.copyOf(this.fnum, grown);
+				this.pilot = Arrays.copyOf(this.pilot, grown);
+				this.plane = Arrays.copyOf(this.plane, grown);
+				this.start = Arrays.copyOf(this.start, grown);
+				this.end = Arrays.copyOf(this.end, grown);
+				this.line = Arrays.copyOf(this.line, grown);
+			}
+			int i = this.size++;
+			this.fnum[i] = fnum;
+			this.pilot[i] = pilot;
+			this.plane[i] = plane;
+			this.start[i] = start;
+			this.end[i] = end;
+			this.line[i] = line;
+		}
+	}
+
+	/**
+	 * One parsed timetable line.
+	 */
+	static final class Row {
+		final int line;
+		final int fnum;
+		final int cost;
+		final int numSold;
+		final int numStops;
+		final LocalDateTime departure;
+		final LocalDateTime arrival;
+		final String arrivalAirport;
+		final String departureAirport;
+		final int pilot;
+		final int plane;
+		//why the line was rejected, null while accepted
+		String conflict = null;
+
+		Row(int line, String[] f) {
+			this.line = line;
+			this.fnum = Integer.parseInt(f[0].trim());
+			this.cost = Integer.parseInt(f[1].trim());
+			this.numSold = Integer.parseInt(f[2].trim());
+			this.numStops = Integer.parseInt(f[3].trim());
+			this.departure = time(f[4]);
+			this.arrival = time(f[5]);
+			this.arrivalAirport = f[6].trim();
+			this.departureAirport = f[7].trim();
+			this.pilot = Integer.parseInt(f[8].trim());
+			this.plane = Integer.parseInt(f[9].trim());
+			if (!this.arrival.isAfter(this.departure)) {
+				throw new IllegalArgumentException("arrival is not after departure");
+			}
+			if (this.arrivalAirport.isEmpty() || this.arrivalAirport.length() > 5
+					|| this.departureAirport.isEmpty() || this.departureAirport.length() > 5) {
+				throw new IllegalArgumentException("airport codes are 1 to 5 characters");
+			}
+		}
+	}
+
+	private final DBproject _esql;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> ScheduleImport (DBproject esql)
+	 * Purpose  -> Creates an importer writing through esql's pool.
+	 * -----------------------------------------------------------------------
+	 * Receives -> DBproject esql
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public ScheduleImport(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int load(File timetable, boolean dryRun, PrintStream report)
+	 *                                     throws SQLException, IOException
+	 * Purpose  -> Imports a timetable, writing one report line per rejected
+	 *             line. A dry run checks everything and rolls back.
+	 * -----------------------------------------------------------------------
+	 * Receives -> File timetable, boolean dryRun, PrintStream report
+	 * Returns  -> [int] rejected lines
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int load(File timetable, boolean dryRun, PrintStream report) throws SQLException, IOException {
+		long start = System.nanoTime();
+		List<Row> rows = new ArrayList<Row>();
+		int rejected = parse(timetable, rows, report);
+
+		ConnectionPool.PooledConnection conn = this._esql.getPool().acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			conn.prepare(LOCK).execute();
+
+			Intervals busy = existing(conn);
+			Set<Integer> taken = new HashSet<Integer>(flightNumbers(conn));
+
+			for (Row row : rows) {
+				if (!taken.add(row.fnum)) {
+					row.conflict = "flight " + row.fnum + " already exists";
+				}else {
+					busy.add(row.fnum, row.pilot, row.plane, minutes(row.departure), minutes(row.arrival), row.line);
+				}
+			}
+			sweep(busy, index(rows));
+
+			List<Row> accepted = new ArrayList<Row>(rows.size());
+			for (Row row : rows) {
+				if (row.conflict == null) {
+					accepted.add(row);
+				}else {
+					report.println("line " + row.line + ": " + row.conflict);
+					++rejected;
+				}
+			}
+
+			if (!dryRun) {
+				insert(conn, accepted);
+				c.commit();
+				ItinerarySearch search = this._esql.getItinerarySearch();
+				for (Row row : accepted)
+					search.add(row.fnum, row.cost, row.departure.toLocalDate(), row.arrival.toLocalDate(),
+						row.departureAirport, row.arrivalAirport);
+			}
+			System.out.printf("%s %,d flights, rejected %,d lines in %.2fs%n", dryRun ? "Would import" : "Imported",
+				accepted.size(), rejected, (System.nanoTime() - start) / 1e9);
+			return rejected;
+		}finally {
+			this._esql.getPool().release(conn);
+		}
+	}//end load
+
+	/* Reads the timetable; malformed lines are reported and counted */
+	private static int parse(File timetable, List<Row> rows, PrintStream report) throws IOException {
+		int rejected = 0;
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(timetable),
+			StandardCharsets.UTF_8), 1 << 16);
+		try {
+			String text;
+			int line = 0;
+			while ((text = in.readLine()) != null) {
+				++line;
+				if (text.trim().isEmpty()) {
+					continue;
+				}
+				String[] fields = text.split(",", -1);
+				try {
+					if (fields.length != 10) {
+						throw new IllegalArgumentException("expected 10 fields, got " + fields.length);
+					}
+					rows.add(new Row(line, fields));
+				}catch (RuntimeException e) {
+					report.println("line " + line + ": " + e.getMessage());
+					++rejected;
+				}
+			}
+		}finally {
+			in.close();
+		}
+		return rejected;
+	}
+
+	/* Reads every existing assignment as whole days */
+	private static Intervals existing(ConnectionPool.PooledConnection conn) throws SQLException {
+		Intervals busy = new Intervals();
+		PreparedStatement stmt = conn.prepare(ASSIGNMENTS);
+		stmt.setFetchSize(10000);
+		try {
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				long departure = rs.getDate(4).toLocalDate().toEpochDay() * MINUTES_PER_DAY;
+				long arrival = (rs.getDate(5).toLocalDate().toEpochDay() + 1) * MINUTES_PER_DAY;
+				busy.add(rs.getInt(1), rs.getInt(2), rs.getInt(3), departure, arrival, 0);
+			}
+			rs.close();
+		}finally {
+			stmt.setFetchSize(0);
+		}
+		return busy;
+	}
+
+	/* Flight numbers in use, including flights nobody is assigned to yet */
+	private static List<Integer> flightNumbers(ConnectionPool.PooledConnection conn) throws SQLException {
+		List<Integer> fnums = new ArrayList<Integer>();
+		PreparedStatement stmt = conn.prepare("SELECT fnum FROM Flight");
+		stmt.setFetchSize(10000);
+		try {
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next())
+				fnums.add(rs.getInt(1));
+			rs.close();
+		}finally {
+			stmt.setFetchSize(0);
+		}
+		return fnums;
+	}
+
+	/**
+	 * The existing intervals of one kind of resource, sorted by resource and
+	 * start, with the one ending last so far within each resource.
+	 */
+	private static final class Existing {
+		private final Intervals _busy;
+		private final int[] _resource;
+		private final int[] _order;
+		//the interval ending last among _order[first of its resource .. i]
+		private final int[] _latest;
+
+		Existing(final Intervals busy, final int[] resource) {
+			this._busy = busy;
+			this._resource = resource;
+			int count = 0;
+			for (int i = 0; i < busy.size; ++i)
+				if (busy.line[i] == 0) ++count;
+			Integer[] order = new Integer[count];
+			for (int i = 0, n = 0; i < busy.size; ++i)
+				if (busy.line[i] == 0) order[n++] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					if (resource[a] != resource[b]) return Integer.compare(resource[a], resource[b]);
+					return Long.compare(busy.start[a], busy.start[b]);
+				}
+			});
+			this._order = new int[count];
+			this._latest = new int[count];
+			for (int n = 0; n < count; ++n) {
+				int i = order[n];
+				this._order[n] = i;
+				int previous = n > 0 && resource[this._order[n - 1]] == resource[i] ? this._latest[n - 1] : -1;
+				this._latest[n] = previous >= 0 && busy.end[previous] >= busy.end[i] ? previous : i;
+			}
+		}
+
+		/* The existing interval of resource r overlapping [from, to) that ends last, or -1 */
+		int overlapping(int r, long from, long to) {
+			//last interval of r starting before to
+			int low = 0;
+			int high = this._order.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				int i = this._order[mid];
+				if (this._resource[i] < r || (this._resource[i] == r && this._busy.start[i] < to)) {
+					low = mid + 1;
+				}else {
+					high = mid;
+				}
+			}
+			if (low == 0 || this._resource[this._order[low - 1]] != r) {
+				return -1;
+			}
+			int latest = this._latest[low - 1];
+			return this._busy.end[latest] > from ? latest : -1;
+		}
+	}
+
+	/*
+	 * Walks the imported intervals in start order, keeping for every plane
+	 * and pilot the accepted interval that ends last. An interval is
+	 * accepted only when neither its plane nor its pilot is held by an
+	 * existing flight or an accepted line; a rejected one blocks nothing.
+	 */
+	static void sweep(final Intervals busy, Row[] byLine) {
+		Existing planes = new Existing(busy, busy.plane);
+		Existing pilots = new Existing(busy, busy.pilot);
+		List<Integer> imported = new ArrayList<Integer>();
+		for (int i = 0; i < busy.size; ++i)
+			if (busy.line[i] != 0) imported.add(i);
+		imported.sort(new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				if (busy.start[a] != busy.start[b]) return Long.compare(busy.start[a], busy.start[b]);
+				return Integer.compare(busy.line[a], busy.line[b]);
+			}
+		});
+
+		Map<Integer, Integer> planeHolder = new HashMap<Integer, Integer>();
+		Map<Integer, Integer> pilotHolder = new HashMap<Integer, Integer>();
+		for (int i : imported) {
+			Row row = byLine[busy.line[i]];
+			if (row.conflict != null) {
+				continue;
+			}
+			row.conflict = conflict(busy, i, busy.plane, "plane", planes, planeHolder);
+			if (row.conflict == null) {
+				row.conflict = conflict(busy, i, busy.pilot, "pilot", pilots, pilotHolder);
+			}
+			if (row.conflict == null) {
+				hold(busy, i, busy.plane, planeHolder);
+				hold(busy, i, busy.pilot, pilotHolder);
+			}
+		}
+	}
+
+	/* Why interval i cannot have its resource, or null when it is free */
+	private static String conflict(Intervals busy, int i, int[] resource, String what, Existing existing,
+			Map<Integer, Integer> holder) {
+		int blocker = existing.overlapping(resource[i], busy.start[i], busy.end[i]);
+		if (blocker < 0) {
+			Integer held = holder.get(resource[i]);
+			if (held != null && busy.start[i] < busy.end[held]) {
+				blocker = held;
+			}
+		}
+		if (blocker < 0) {
+			return null;
+		}
+		return what + " " + resource[i] + " is flying flight " + busy.fnum[blocker] + " until "
+			+ LocalDateTime.ofEpochSecond(busy.end[blocker] * 60, 0, ZoneOffset.UTC);
+	}
+
+	private static void hold(Intervals busy, int i, int[] resource, Map<Integer, Integer> holder) {
+		Integer held = holder.get(resource[i]);
+		if (held == null || busy.end[i] > busy.end[held]) {
+			holder.put(resource[i], i);
+		}
+	}
+
+	/* Writes the accepted lines with batched inserts */
+	private static void insert(ConnectionPool.PooledConnection conn, List<Row> accepted) throws SQLException {
+		ResultSet ids = conn.prepare(NEXT_IDS).executeQuery();
+		ids.next();
+		int fiid = ids.getInt(1);
+		int scheduleId = ids.getInt(2);
+		ids.close();
+
+		PreparedStatement flight = conn.prepare(INSERT_FLIGHT);
+		PreparedStatement info = conn.prepare(INSERT_FLIGHT_INFO);
+		PreparedStatement schedule = conn.prepare(INSERT_SCHEDULE);
+		for (int i = 0; i < accepted.size(); ++i) {
+			Row row = accepted.get(i);
+			java.sql.Date departure = java.sql.Date.valueOf(row.departure.toLocalDate());
+			java.sql.Date arrival = java.sql.Date.valueOf(row.arrival.toLocalDate());
+
+			flight.setInt(1, row.fnum);
+			flight.setInt(2, row.cost);
+			flight.setInt(3, row.numSold);
+			flight.setInt(4, row.numStops);
+			flight.setDate(5, departure);
+			flight.setDate(6, arrival);
+			flight.setString(7, row.arrivalAirport);
+			flight.setString(8, row.departureAirport);
+			flight.addBatch();
+
+			info.setInt(1, fiid++);
+			info.setInt(2, row.fnum);
+			info.setInt(3, row.pilot);
+			info.setInt(4, row.plane);
+			info.addBatch();
+
+			schedule.setInt(1, scheduleId++);
+			schedule.setInt(2, row.fnum);
+			schedule.setDate(3, departure);
+			schedule.setDate(4, arrival);
+			schedule.addBatch();
+
+			//flights first, the other two reference them
+			if ((i + 1) % BATCH_SIZE == 0 || i + 1 == accepted.size()) {
+				flight.executeBatch();
+				info.executeBatch();
+				schedule.executeBatch();
+			}
+		}
+	}
+
+	/* Rows by timetable line, for the sweep */
+	private static Row[] index(List<Row> rows) {
+		int last = rows.isEmpty() ? 0 : rows.get(rows.size() - 1).line;
+		Row[] byLine = new Row[last + 1];
+		for (Row row : rows)
+			byLine[row.line] = row;
+		return byLine;
+	}
+
+	private static long minutes(LocalDateTime time) {
+		return time.toEpochSecond(ZoneOffset.UTC) / 60;
+	}
+
+	/* Parses "yyyy-mm-dd hh:mm", or a day meaning its midnight */
+	private static LocalDateTime time(String text) {
+		text = text.trim();
+		if (text.length() == 10) {
+			return LocalDate.parse(text).atStartOfDay();
+		}
+		return LocalDateTime.parse(text.replace(' ', 'T'));
+	}
+
+	/**
+	 * The timetable import command
+	 *
+	 * @param args <dbname> <port> <user> <timetable.csv> [--dry-run] [--report <file>]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + ScheduleImport.class.getName () +
+		            " <dbname> <port> <user> <timetable.csv> [--dry-run] [--report <file>]");
+			return;
+		}//end if
+
+		boolean dryRun = false;
+		String reportFile = null;
+		for (int i = 4; i < args.length; ++i) {
+			if (args[i].equals("--dry-run")) {
+				dryRun = true;
+			}else if (args[i].equals("--report") && i + 1 < args.length) {
+				reportFile = args[++i];
+			}else {
+				System.err.println("Unknown option: " + args[i]);
+				return;
+			}
+		}
+
+		DBproject esql = null;
+		PrintStream report = System.out;
+		int status = 0;
+		try {
+			Class.forName("org.postgresql.Driver");
+			if (reportFile != null) {
+				report = new PrintStream(new FileOutputStream(reportFile), false, "UTF-8");
+			}
+			esql = new DBproject(args[0], args[1], args[2], "");
+			status = new ScheduleImport(esql).load(new File(args[3]), dryRun, report) == 0 ? 0 : 1;
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 2;
+		}finally {
+			if (report != System.out) {
+				report.close();
+			}
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		System.exit(status);
+	}
+}/* End of ScheduleImport !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,458 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-process seat inventory for options 5 and 6. Capacity (Plane.seats),
+ * seats sold (Flight.num_sold) and the departure day of every flight are
+ * kept in primitive int arrays indexed by fnum, so availability is answered
+ * without a database round trip. Only fnums below MAX_INDEXED are kept;
+ * larger ones are read from the database on every access, so one huge
+ * flight number cannot blow up the arrays.
+ *
+ * Updates are guarded by a fixed set of lock stripes chosen by fnum. The
+ * database stays authoritative: BookingService writes every sale through to
+ * Flight.num_sold and tells the inventory about it, and flights the
+ * inventory has not seen yet (e.g. added by AddFlight) are loaded on first
+ * access.
+ *
+ * Every stripe carries a version that each change reported to the inventory
+ * bumps. A flight read from the database is only stored if its stripe
+ * version did not move during the read, so a sale that commits while the
+ * row is in flight can never be overwritten by the older count.
+ *
+ */
+
+public class SeatInventory{
+	private static final int STRIPES = 64;
+	//fnums held in the arrays, 48 MB at most; room for DataGenerator scale 2000
+	static final int MAX_INDEXED = 1 << 22;
+	//capacity marker for flights that are not loaded (or have no plane yet)
+	private static final int UNKNOWN = -1;
+	//reads of one flight before ensureLoaded() lets the database decide
+	private static final int LOAD_ATTEMPTS = 4;
+	//ensureLoaded() results
+	private static final int LOADED = 0;
+	private static final int MISSING = 1;
+	//read but not kept: raced with changes, or beyond MAX_INDEXED
+	private static final int UNCACHED = 2;
+	//columns of the row ensureLoaded() reads
+	private static final int SEATS = 0;
+	private static final int SOLD = 1;
+	private static final int DEPARTURE_DAY = 2;
+
+	//tryReserve() results
+	public static final int FULL = 0;
+	public static final int HELD = 1;
+	//no seat taken in memory; the database decides
+	public static final int NOT_HELD = 2;
+
+	static final String LOAD_FLIGHTS =
+		"SELECT F.fnum, F.num_sold, F.actual_departure_date, (" +
+			"SELECT P.seats FROM FlightInfo FI, Plane P " +
+			"WHERE FI.flight_id = F.fnum AND FI.plane_id = P.id ORDER BY FI.fiid LIMIT 1) " +
+		"FROM Flight F";
+
+	static final String LOAD_FLIGHT = LOAD_FLIGHTS + " WHERE F.fnum = ?";
+
+	private final ConnectionPool _pool;
+	private final Object[] _stripes = new Object[STRIPES];
+	//bumped under the stripe lock by every change reported for its flights
+	private final long[] _versions = new long[STRIPES];
+	private volatile int[] _capacity = new int[0];
+	private volatile int[] _sold = new int[0];
+	private volatile int[] _departureDay = new int[0];
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> SeatInventory (ConnectionPool pool)
+	 * Purpose  -> Creates an empty inventory; use load() to fill it.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ConnectionPool pool
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public SeatInventory(ConnectionPool pool) {
+		this._pool = pool;
+		for (int i = 0; i < STRIPES; ++i)
+			this._stripes[i] = new Object();
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load() throws SQLException
+	 * Purpose  -> Reads every flight with its plane capacity in one query.
+	 * -----------------------------------------------------------------------
+	 * @throws java.sql.SQLException when the flights could not be read
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load() throws SQLException {
+		long[] versions = new long[STRIPES];
+		for (int i = 0; i < STRIPES; ++i) {
+			synchronized (this._stripes[i]) {
+				versions[i] = this._versions[i];
+			}
+		}
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			ResultSet rs = conn.prepare(LOAD_FLIGHTS).executeQuery();
+			int[] row = new int[3];
+			while (rs.next()) {
+				// flights changed during the scan are left to ensureLoaded()
+				int fnum = read(rs, row);
+				if (fnum >= 0 && fnum < MAX_INDEXED) {
+					store(fnum, row, versions[fnum & (STRIPES - 1)]);
+				}
+			}
+			rs.close();
+		}finally {
+			this._pool.release(conn);
+		}
+	}//end load
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void load(SnapshotFile snapshot,
+	 *                       List<ChangeLog.Record> changes)
+	 * Purpose  -> Fills the inventory from a snapshot instead of the
+	 *             database. Flights the change log touched since are
+	 *             forgotten, so their first access reads them again.
+	 * -----------------------------------------------------------------------
+	 * Receives -> SnapshotFile snapshot, List<ChangeLog.Record> changes
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void load(SnapshotFile snapshot, List<ChangeLog.Record> changes) {
+		int[] seats = snapshot.seats();
+		int[] fnums = snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.FNUM);
+		int[] sold = snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.NUM_SOLD);
+		int[] departureDay = snapshot.column(SnapshotFile.FLIGHT, SnapshotFile.DEPARTURE_DAY);
+		int maxFnum = -1;
+		for (int fnum : fnums)
+			if (fnum < MAX_INDEXED) maxFnum = Math.max(maxFnum, fnum);
+		if (maxFnum >= this._capacity.length) {
+			grow(maxFnum + 1);
+		}
+		for (int f = 0; f < seats.length; ++f) {
+			if (seats[f] >= 0 && fnums[f] >= 0 && fnums[f] < MAX_INDEXED) {
+				store(fnums[f], new int[] {seats[f], sold[f], departureDay[f]}, -1);
+			}
+		}
+		for (ChangeLog.Record change : changes) {
+			if (change.type == ChangeLog.BOOKED) {
+				invalidate(change.ints[2]);
+			}else if (change.type == ChangeLog.CANCELLED || change.type == ChangeLog.PROMOTED) {
+				invalidate(change.ints[1]);
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int available(int fnum) throws SQLException
+	 * Purpose  -> Returns the number of free seats on a flight.
+	 * -----------------------------------------------------------------------
+	 * @param fnum Flight.fnum
+	 * @return free seats, or -1 when the flight (or its plane) is unknown
+	 * @throws java.sql.SQLException when an unseen flight could not be loaded
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum
+	 * Returns  -> [int] seats
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int available(int fnum) throws SQLException {
+		int[] row = new int[3];
+		switch (ensureLoaded(fnum, row)) {
+			case MISSING:
+				return -1;
+			case UNCACHED:
+				return row[SEATS] - row[SOLD];
+			default:
+				break;
+		}
+		synchronized (stripe(fnum)) {
+			int capacity = this._capacity[fnum];
+			return capacity == UNKNOWN ? -1 : capacity - this._sold[fnum];
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int available(int fnum, LocalDate departure)
+	 *                                                  throws SQLException
+	 * Purpose  -> Same as available(fnum), but only for a flight that
+	 *             departs on the given day (option 6).
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum, LocalDate departure
+	 * Returns  -> [int] seats || [int] -1
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int available(int fnum, LocalDate departure) throws SQLException {
+		int[] row = new int[3];
+		switch (ensureLoaded(fnum, row)) {
+			case MISSING:
+				return -1;
+			case UNCACHED:
+				return row[DEPARTURE_DAY] != (int) departure.toEpochDay() ? -1 : row[SEATS] - row[SOLD];
+			default:
+				break;
+		}
+		synchronized (stripe(fnum)) {
+			int capacity = this._capacity[fnum];
+			if (capacity == UNKNOWN || this._departureDay[fnum] != (int) departure.toEpochDay()) {
+				return -1;
+			}
+			return capacity - this._sold[fnum];
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int tryReserve(int fnum) throws SQLException
+	 * Purpose  -> Takes one seat in memory if the flight still has one. On
+	 *             HELD the caller must write the sale through to
+	 *             Flight.num_sold and call confirm() once it commits or
+	 *             release() if it fails. A flight that is not cached is
+	 *             NOT_HELD: nothing was taken, so nothing is given back,
+	 *             and the database check decides.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum
+	 * Returns  -> [int] FULL || HELD || NOT_HELD
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int tryReserve(int fnum) throws SQLException {
+		switch (ensureLoaded(fnum, new int[3])) {
+			case MISSING:
+				return FULL;
+			case UNCACHED:
+				return NOT_HELD;
+			default:
+				break;
+		}
+		synchronized (stripe(fnum)) {
+			int[] sold = this._sold;
+			int capacity = this._capacity[fnum];
+			if (capacity == UNKNOWN) {
+				//forgotten since it was loaded; let the database decide
+				return NOT_HELD;
+			}
+			if (sold[fnum] >= capacity) {
+				return FULL;
+			}
+			++sold[fnum];
+			return HELD;
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void adjust(int fnum, int delta)
+	 * Purpose  -> Applies a committed change of Flight.num_sold (positive
+	 *             for sales, negative for cancellations) to a loaded flight.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum, int delta
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void adjust(int fnum, int delta) {
+		if (fnum < 0) {
+			return;
+		}
+		synchronized (stripe(fnum)) {
+			//also for flights being loaded, whose read is now out of date
+			++this._versions[fnum & (STRIPES - 1)];
+			int[] sold = this._sold;
+			if (fnum < sold.length && this._capacity[fnum] != UNKNOWN) {
+				sold[fnum] = Math.max(0, sold[fnum] + delta);
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void confirm(int fnum)
+	 * Purpose  -> Reports that a seat taken by tryReserve() has committed.
+	 *             The seat is already counted; this only stops a read of the
+	 *             flight that started before the commit from being stored.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void confirm(int fnum) {
+		adjust(fnum, 0);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void release(int fnum)
+	 * Purpose  -> Gives back a seat taken by tryReserve().
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void release(int fnum) {
+		adjust(fnum, -1);
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void invalidate(int fnum)
+	 * Purpose  -> Forgets a flight so the next access reloads it from the
+	 *             database (e.g. after it was found out of sync).
+	 * -----------------------------------------------------------------------
+	 * Receives -> int fnum
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void invalidate(int fnum) {
+		if (fnum < 0) {
+			return;
+		}
+		synchronized (stripe(fnum)) {
+			++this._versions[fnum & (STRIPES - 1)];
+			if (fnum < this._capacity.length) {
+				this._capacity[fnum] = UNKNOWN;
+			}
+		}
+	}
+
+	/*
+	 * Loads a flight that is not in memory yet. MISSING when it does not
+	 * exist or has no plane; UNCACHED, with the last row read left in row,
+	 * when changes kept landing on its stripe while it was read or fnum is
+	 * too large to be kept.
+	 */
+	private int ensureLoaded(int fnum, int[] row) throws SQLException {
+		if (fnum < 0) {
+			return MISSING;
+		}
+		boolean indexed = fnum < MAX_INDEXED;
+		for (int attempt = 0; attempt < LOAD_ATTEMPTS; ++attempt) {
+			long version;
+			synchronized (stripe(fnum)) {
+				if (fnum < this._capacity.length && this._capacity[fnum] != UNKNOWN) {
+					return LOADED;
+				}
+				version = this._versions[fnum & (STRIPES - 1)];
+			}
+
+			ConnectionPool.PooledConnection conn = this._pool.acquire();
+			try {
+				PreparedStatement stmt = conn.prepare(LOAD_FLIGHT);
+				stmt.setInt(1, fnum);
+				ResultSet rs = stmt.executeQuery();
+				boolean found = rs.next() && read(rs, row) >= 0;
+				rs.close();
+				if (!found) {
+					return MISSING;
+				}
+			}finally {
+				this._pool.release(conn);
+			}
+			if (!indexed) {
+				return UNCACHED;
+			}
+			if (store(fnum, row, version)) {
+				return LOADED;
+			}
+		}
+		return UNCACHED;
+	}
+
+	/* Reads one row of LOAD_FLIGHTS; -1 for flights without a plane */
+	private static int read(ResultSet rs, int[] row) throws SQLException {
+		int fnum = rs.getInt(1);
+		row[SOLD] = rs.getInt(2);
+		Date departure = rs.getDate(3);
+		row[SEATS] = rs.getInt(4);
+		if (rs.wasNull() || fnum < 0) {
+			return -1;
+		}
+		row[DEPARTURE_DAY] = (int) departure.toLocalDate().toEpochDay();
+		return fnum;
+	}
+
+	/*
+	 * Stores a row read while the stripe was at version (-1 for any); false
+	 * when the stripe moved since, as the row may miss a committed change.
+	 * A flight someone else loaded first is kept. fnum is below MAX_INDEXED.
+	 */
+	private boolean store(int fnum, int[] row, long version) {
+		if (fnum >= this._capacity.length) {
+			grow(fnum + 1);
+		}
+		synchronized (stripe(fnum)) {
+			if (version >= 0 && this._versions[fnum & (STRIPES - 1)] != version) {
+				return false;
+			}
+			if (version < 0 || this._capacity[fnum] == UNKNOWN) {
+				this._capacity[fnum] = row[SEATS];
+				this._sold[fnum] = row[SOLD];
+				this._departureDay[fnum] = row[DEPARTURE_DAY];
+			}
+			return true;
+		}
+	}
+
+	/* Grows the arrays while holding every stripe, so no update is lost */
+	private void grow(int minLength) {
+		synchronized (this) {
+			growHolding(0, minLength);
+		}
+	}
+
+	private void growHolding(int stripe, int minLength) {
+		if (stripe < STRIPES) {
+			synchronized (this._stripes[stripe]) {
+				growHolding(stripe + 1, minLength);
+			}
+			return;
+		}
+		int length = this._capacity.length;
+		if (length >= minLength) {
+			return;
+		}
+		int newLength = Math.max(minLength, Math.min(MAX_INDEXED, length + (length >> 1)));
+		int[] capacity = Arrays.copyOf(this._capacity, newLength);
+		Arrays.fill(capacity, length, newLength, UNKNOWN);
+		this._sold = Arrays.copyOf(this._sold, newLength);
+		this._departureDay = Arrays.copyOf(this._departureDay, newLength);
+		this._capacity = capacity;
+	}
+
+	private Object stripe(int fnum) {
+		return this._stripes[fnum & (STRIPES - 1)];
+	}
+}/* End of SeatInventory !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,607 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary snapshot of Flight, Plane, FlightInfo and Reservation that the
+ * in-memory indexes (SeatInventory, ItinerarySearch, ReservationSnapshot)
+ * load instead of querying the database on start. The file is mapped
+ * read-only with FileChannel.map and read in place. Layout, big-endian:
+ *
+ *   header      int magic "DBPS", int version, long created (epoch ms),
+ *               long log sequence, int sections, then per section
+ *               int id, int rows, int record width, long offset
+ *   DICTIONARY  int[rows + 1] byte offsets, then the UTF-8 of every
+ *               string (airport codes, plane makes and models)
+ *   FLIGHT      fnum, cost, num_sold, num_stops, departure day,
+ *               arrival day, departure airport, arrival airport
+ *   PLANE       id, make, model, age, seats
+ *   FLIGHT_INFO fiid, flight_id, pilot_id, plane_id
+ *   RESERVATION rnum, cid, fid, status; sorted by fid, then rnum
+ *
+ * Every record is a fixed number of ints, days count from 1970-01-01,
+ * strings are dictionary ids and a null is -1 (0 for status). The tables
+ * are read in one REPEATABLE READ transaction and written to a temporary
+ * file that is forced to disk and renamed over the old one, so readers
+ * see either the old or the new snapshot.
+ *
+ * The log sequence is where the ChangeLog stood when the tables were
+ * read; replaying the log from there brings the snapshot up to date.
+ *
+ * Usage: java SnapshotFile <dbname> <port> <user> <file>
+ *
+ */
+
+public class SnapshotFile{
+	static final int MAGIC = 0x44425053;
+	static final int VERSION = 1;
+
+	//section ids, in file order
+	public static final int DICTIONARY = 0;
+	public static final int FLIGHT = 1;
+	public static final int PLANE = 2;
+	public static final int FLIGHT_INFO = 3;
+	public static final int RESERVATION = 4;
+	private static final int SECTIONS = 5;
+
+	//FLIGHT columns
+	public static final int FNUM = 0;
+	public static final int COST = 1;
+	public static final int NUM_SOLD = 2;
+	public static final int NUM_STOPS = 3;
+	public static final int DEPARTURE_DAY = 4;
+	public static final int ARRIVAL_DAY = 5;
+	public static final int DEPARTURE_AIRPORT = 6;
+	public static final int ARRIVAL_AIRPORT = 7;
+	//PLANE columns
+	public static final int PLANE_ID = 0;
+	public static final int MAKE = 1;
+	public static final int MODEL = 2;
+	public static final int AGE = 3;
+	public static final int SEATS = 4;
+	//FLIGHT_INFO columns
+	public static final int FIID = 0;
+	public static final int FLIGHT_ID = 1;
+	public static final int PILOT_ID = 2;
+	public static final int INFO_PLANE_ID = 3;
+	//RESERVATION columns
+	public static final int RNUM = 0;
+	public static final int CID = 1;
+	public static final int FID = 2;
+	public static final int STATUS = 3;
+
+	private static final int[] WIDTH = { 0, 8, 5, 4, 4 };
+	private static final int HEADER = 28 + SECTIONS * 20;
+
+	static final String[] READ = {
+		null,
+		"SELECT fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, " +
+			"departure_airport, arrival_airport FROM Flight",
+		"SELECT id, make, model, age, seats FROM Plane",
+		"SELECT fiid, flight_id, pilot_id, plane_id FROM FlightInfo ORDER BY fiid",
+		"SELECT rnum, cid, fid, status FROM Reservation ORDER BY fid, rnum"
+	};
+
+	//what totals() expects, as the database has it
+	static final String TOTALS =
+		"SELECT (SELECT COUNT(*) FROM Flight), (SELECT COALESCE(MAX(fnum), -1) FROM Flight), " +
+			"COUNT(*), COALESCE(MAX(rnum), -1), COUNT(*) FILTER (WHERE status = 'W'), " +
+			"COUNT(*) FILTER (WHERE status = 'C'), (SELECT COALESCE(SUM(num_sold), 0) FROM Flight) " +
+		"FROM Reservation";
+
+	private final Path _path;
+	private final ByteBuffer _map;
+	private final long _created;
+	private final long _logSequence;
+	private final int[] _rows = new int[SECTIONS];
+	private final int[] _offsets = new int[SECTIONS];
+	private final String[] _strings;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> SnapshotFile (Path path) throws IOException
+	 * Purpose  -> Maps a snapshot read-only and checks its header. Only
+	 *             the string dictionary is decoded; records are read from
+	 *             the mapping on demand.
+	 * -----------------------------------------------------------------------
+	 * @throws java.io.IOException when the file is missing, of another
+	 *         version or truncated
+	 * -----------------------------------------------------------------------
+	 * Receives -> Path path
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public SnapshotFile(Path path) throws IOException {
+		this._path = path;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(path + " is not a snapshot");
+			}
+			this._map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer map = this._map;
+		if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(24) != SECTIONS) {
+			throw new IOException(path + " is not a version " + VERSION + " snapshot");
+		}
+		this._created = map.getLong(8);
+		this._logSequence = map.getLong(16);
+		for (int s = 0; s < SECTIONS; ++s) {
+			int entry = 28 + s * 20;
+			long offset = map.getLong(entry + 12);
+			if (map.getInt(entry) != s || map.getInt(entry + 8) != WIDTH[s]) {
+				throw new IOException(path + " has a bad section directory");
+			}
+			this._rows[s] = map.getInt(entry + 4);
+			this._offsets[s] = (int) offset;
+			long end = s == DICTIONARY ? offset + 4L * (this._rows[s] + 1) : offset + 4L * WIDTH[s] * this._rows[s];
+			if (offset < HEADER || end > map.capacity()) {
+				throw new IOException(path + " is truncated");
+			}
+		}
+
+		int base = this._offsets[DICTIONARY];
+		int bytes = base + 4 * (this._rows[DICTIONARY] + 1);
+		this._strings = new String[this._rows[DICTIONARY]];
+		ByteBuffer utf8 = map.duplicate();
+		for (int i = 0; i < this._strings.length; ++i) {
+			int from = map.getInt(base + 4 * i);
+			int to = map.getInt(base + 4 * (i + 1));
+			byte[] text = new byte[to - from];
+			utf8.position(bytes + from);
+			utf8.get(text);
+			this._strings[i] = new String(text, StandardCharsets.UTF_8);
+		}
+	}
+
+	public Path path() {
+		return this._path;
+	}
+
+	/* When the tables were read, in epoch milliseconds */
+	public long created() {
+		return this._created;
+	}
+
+	/* The first ChangeLog record the snapshot may not contain */
+	public long logSequence() {
+		return this._logSequence;
+	}
+
+	public int rows(int section) {
+		return this._rows[section];
+	}
+
+	/* One field of a record: rows of a section are numbered from 0 */
+	public int get(int section, int row, int column) {
+		return this._map.getInt(this._offsets[section] + 4 * (row * WIDTH[section] + column));
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int[] column(int section, int column)
+	 * Purpose  -> Copies one column of a section out of the mapping with a
+	 *             bulk read, which is much faster than get() per row.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int section, int column
+	 * Returns  -> int[] one value per row
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int[] column(int section, int column) {
+		int rows = this._rows[section];
+		int width = WIDTH[section];
+		int[] values = new int[rows];
+		ByteBuffer view = this._map.duplicate();
+		view.position(this._offsets[section]);
+		IntBuffer records = view.slice().asIntBuffer();
+		//a block of whole records at a time, then pick the column
+		int[] block = new int[width * 4096];
+		for (int row = 0; row < rows; ) {
+			int count = Math.min(4096, rows - row);
+			records.get(block, 0, count * width);
+			for (int i = 0; i < count; ++i)
+				values[row + i] = block[i * width + column];
+			row += count;
+		}
+		return values;
+	}
+
+	/* A dictionary string, or null for -1 */
+	public String string(int id) {
+		return id < 0 ? null : this._strings[id];
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int[] seats()
+	 * Purpose  -> Capacity of every flight, from the plane of its lowest
+	 *             fiid (rows are stored in fiid order), as the queries in
+	 *             JdbcStorage; -1 for flights without a plane.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> int[] seats indexed by FLIGHT row
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int[] seats() {
+		//ids are dense enough to index arrays by, as in SeatInventory
+		int[] planeIds = column(PLANE, PLANE_ID);
+		int[] planeSeats = byKey(planeIds, column(PLANE, SEATS));
+		int[] infoFlights = column(FLIGHT_INFO, FLIGHT_ID);
+		int[] infoPlanes = column(FLIGHT_INFO, INFO_PLANE_ID);
+		int maxFlight = -1;
+		for (int fnum : infoFlights)
+			maxFlight = Math.max(maxFlight, fnum);
+		int[] flightSeats = new int[maxFlight + 1];
+		Arrays.fill(flightSeats, -1);
+		for (int i = 0; i < infoFlights.length; ++i) {
+			int plane = infoPlanes[i];
+			int fnum = infoFlights[i];
+			if (fnum >= 0 && flightSeats[fnum] < 0 && plane >= 0 && plane < planeSeats.length) {
+				flightSeats[fnum] = planeSeats[plane];
+			}
+		}
+		int[] fnums = column(FLIGHT, FNUM);
+		int[] seats = new int[fnums.length];
+		for (int f = 0; f < seats.length; ++f)
+			seats[f] = fnums[f] >= 0 && fnums[f] < flightSeats.length ? flightSeats[fnums[f]] : -1;
+		return seats;
+	}
+
+	/* values[i] stored at keys[i], -1 where no key points */
+	private static int[] byKey(int[] keys, int[] values) {
+		int max = -1;
+		for (int key : keys)
+			max = Math.max(max, key);
+		int[] byKey = new int[max + 1];
+		Arrays.fill(byKey, -1);
+		for (int i = 0; i < keys.length; ++i)
+			if (keys[i] >= 0) byKey[keys[i]] = values[i];
+		return byKey;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> long[] totals(List<ChangeLog.Record> changes)
+	 * Purpose  -> The totals the database must show if this snapshot and
+	 *             the changes logged since hold every committed change.
+	 *             Statuses only move from W to R or C and
+	 *             from R to C, so a lost CANCELLED raises the real C count
+	 *             and a lost PROMOTED lowers the real W count; a lost
+	 *             BOOKED or FLIGHT shows in the row counts.
+	 * -----------------------------------------------------------------------
+	 * Receives -> List<ChangeLog.Record> changes
+	 * Returns  -> long[] flights, max fnum, reservations, max rnum,
+	 *             waitlisted, cancelled, sum of num_sold
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public long[] totals(List<ChangeLog.Record> changes) {
+		int[] fnums = column(FLIGHT, FNUM);
+		int[] sold = column(FLIGHT, NUM_SOLD);
+		long maxFnum = -1;
+		long seatsSold = 0;
+		for (int f = 0; f < fnums.length; ++f) {
+			maxFnum = Math.max(maxFnum, fnums[f]);
+			seatsSold += sold[f];
+		}
+		int[] sortedFnums = fnums.clone();
+		Arrays.sort(sortedFnums);
+
+		int[] rnums = column(RESERVATION, RNUM);
+		int[] fids = column(RESERVATION, FID);
+		int[] statuses = column(RESERVATION, STATUS);
+		long maxRnum = -1;
+		long[] byStatus = new long[128];
+		for (int r = 0; r < rnums.length; ++r) {
+			maxRnum = Math.max(maxRnum, rnums[r]);
+			++byStatus[statuses[r] & 0x7F];
+		}
+
+		long flights = fnums.length;
+		long reservations = rnums.length;
+		Set<Integer> addedFlights = new HashSet<Integer>();
+		//status of every reservation the log touched, by rnum
+		Map<Integer, Integer> changed = new HashMap<Integer, Integer>();
+		for (ChangeLog.Record change : changes) {
+			if (change.type == ChangeLog.FLIGHT) {
+				if (Arrays.binarySearch(sortedFnums, change.ints[0]) < 0 && addedFlights.add(change.ints[0])) {
+					++flights;
+					maxFnum = Math.max(maxFnum, change.ints[0]);
+					seatsSold += change.ints[4];
+				}
+				continue;
+			}
+			if (change.type != ChangeLog.BOOKED && change.type != ChangeLog.CANCELLED
+					&& change.type != ChangeLog.PROMOTED) {
+				continue;
+			}
+			int rnum = change.ints[0];
+			int fid = change.ints[change.type == ChangeLog.BOOKED ? 2 : 1];
+			Integer known = changed.get(rnum);
+			int current = known != null ? known : status(rnums, fids, statuses, fid, rnum);
+			int next;
+			if (change.type == ChangeLog.BOOKED) {
+				if (current >= 0) {
+					continue;
+				}
+				++reservations;
+				maxRnum = Math.max(maxRnum, rnum);
+				next = change.ints[3];
+			}else if (current < 0 || current == BookingService.CANCELLED) {
+				//a status change for a row never booked shows in the row count
+				continue;
+			}else if (change.type == ChangeLog.CANCELLED) {
+				next = BookingService.CANCELLED;
+			}else if (current == BookingService.WAITLISTED) {
+				next = BookingService.RESERVED;
+			}else {
+				continue;
+			}
+			if (current >= 0) {
+				--byStatus[current & 0x7F];
+				if (current == BookingService.RESERVED) --seatsSold;
+			}
+			++byStatus[next & 0x7F];
+			if (next == BookingService.RESERVED) ++seatsSold;
+			changed.put(rnum, next);
+		}
+		return new long[] { flights, maxFnum, reservations, maxRnum, byStatus[BookingService.WAITLISTED],
+			byStatus[BookingService.CANCELLED], seatsSold };
+	}
+
+	/* Status of a reservation in the (fid, rnum) sorted columns, -1 if absent */
+	private static int status(int[] rnums, int[] fids, int[] statuses, int fid, int rnum) {
+		int lo = 0;
+		int hi = rnums.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (fids[mid] < fid || (fids[mid] == fid && rnums[mid] < rnum)) {
+				lo = mid + 1;
+			}else {
+				hi = mid;
+			}
+		}
+		return lo < rnums.length && fids[lo] == fid && rnums[lo] == rnum ? statuses[lo] : -1;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void write(ConnectionPool pool, Path path, long logSequence)
+	 *                                      throws SQLException, IOException
+	 * Purpose  -> Reads the four tables in one consistent transaction and
+	 *             atomically replaces the snapshot at path.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ConnectionPool pool, Path path, long logSequence
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static void write(ConnectionPool pool, Path path, long logSequence) throws SQLException, IOException {
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		int[][] tables = new int[SECTIONS][];
+		int[] rows = new int[SECTIONS];
+
+		ConnectionPool.PooledConnection conn = pool.acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+			c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+			for (int s = FLIGHT; s < SECTIONS; ++s) {
+				PreparedStatement stmt = c.prepareStatement(READ[s]);
+				stmt.setFetchSize(10000);
+				ResultSet rs = stmt.executeQuery();
+				int width = WIDTH[s];
+				int[] table = new int[1024 * width];
+				int n = 0;
+				while (rs.next()) {
+					if ((n + 1) * width > table.length) {
+						table = Arrays.copyOf(table, table.length * 2);
+					}
+					for (int col = 0; col < width; ++col)
+						table[n * width + col] = field(rs, s, col, ids, strings);
+					++n;
+				}
+				rs.close();
+				stmt.close();
+				tables[s] = table;
+				rows[s] = n;
+			}
+			c.commit();
+		}finally {
+			try {
+				conn.getConnection().setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+			}catch (SQLException e) {
+				// release() resets the rest; a broken connection is dropped there
+			}
+			pool.release(conn);
+		}
+		writeFile(path, logSequence, tables, rows, strings);
+	}
+
+	/* Lays out tables (WIDTH[s] ints per row) and strings as a snapshot file */
+	static void writeFile(Path path, long logSequence, int[][] tables, int[] rows, List<String> strings)
+			throws IOException {
+		byte[][] utf8 = new byte[strings.size()][];
+		int dictionaryBytes = 0;
+		for (int i = 0; i < utf8.length; ++i) {
+			utf8[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+			dictionaryBytes += utf8[i].length;
+		}
+		rows[DICTIONARY] = utf8.length;
+
+		long[] offsets = new long[SECTIONS];
+		long offset = HEADER;
+		offsets[DICTIONARY] = offset;
+		offset += 4L * (utf8.length + 1) + dictionaryBytes;
+		offset = (offset + 7) & ~7L;
+		for (int s = FLIGHT; s < SECTIONS; ++s) {
+			offsets[s] = offset;
+			offset += 4L * WIDTH[s] * rows[s];
+		}
+
+		Path temp = Paths.get(path + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putLong(logSequence).putInt(SECTIONS);
+			for (int s = 0; s < SECTIONS; ++s)
+				buffer.putInt(s).putInt(rows[s]).putInt(WIDTH[s]).putLong(offsets[s]);
+
+			int position = 0;
+			for (int i = 0; i <= utf8.length; ++i) {
+				buffer = room(channel, buffer, 4);
+				buffer.putInt(position);
+				position += i < utf8.length ? utf8[i].length : 0;
+			}
+			for (byte[] text : utf8) {
+				buffer = room(channel, buffer, text.length);
+				buffer.put(text);
+			}
+			//pad the dictionary so the records start 8-byte aligned
+			for (long pad = offsets[FLIGHT] - (HEADER + 4L * (utf8.length + 1) + dictionaryBytes); pad > 0; --pad) {
+				buffer = room(channel, buffer, 1);
+				buffer.put((byte) 0);
+			}
+			for (int s = FLIGHT; s < SECTIONS; ++s) {
+				int[] table = tables[s];
+				for (int i = 0, end = rows[s] * WIDTH[s]; i < end; ++i) {
+					buffer = room(channel, buffer, 4);
+					buffer.putInt(table[i]);
+				}
+			}
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		//make the rename itself durable
+		try (FileChannel directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+			directory.force(true);
+		}catch (IOException e) {
+			// not every platform can sync a directory
+		}
+	}
+
+	/* Reads one column of a row as an int; strings become dictionary ids */
+	private static int field(ResultSet rs, int section, int column, Map<String, Integer> ids, List<String> strings)
+			throws SQLException {
+		boolean date = section == FLIGHT && (column == DEPARTURE_DAY || column == ARRIVAL_DAY);
+		boolean text = (section == FLIGHT && column >= DEPARTURE_AIRPORT) ||
+			(section == PLANE && (column == MAKE || column == MODEL));
+		if (date) {
+			java.sql.Date day = rs.getDate(column + 1);
+			return day == null ? -1 : (int) day.toLocalDate().toEpochDay();
+		}
+		if (text) {
+			String value = rs.getString(column + 1);
+			if (value == null) {
+				return -1;
+			}
+			value = value.trim();
+			Integer id = ids.get(value);
+			if (id == null) {
+				id = strings.size();
+				ids.put(value, id);
+				strings.add(value);
+			}
+			return id;
+		}
+		if (section == RESERVATION && column == STATUS) {
+			String status = rs.getString(column + 1);
+			return status == null || status.isEmpty() ? 0 : status.charAt(0);
+		}
+		int value = rs.getInt(column + 1);
+		return rs.wasNull() ? -1 : value;
+	}
+
+	/* Flushes the buffer when fewer than bytes are left */
+	private static ByteBuffer room(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+			if (buffer.remaining() < bytes) {
+				buffer = ByteBuffer.allocateDirect(bytes);
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes a snapshot of a database
+	 *
+	 * @param args <dbname> <port> <user> <file>
+	 */
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + SnapshotFile.class.getName () +
+		            " <dbname> <port> <user> <file>");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		int status = 0;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			Path path = Paths.get(args[3]);
+			//a log next to the file keeps its numbering; start after it
+			long sequence = 0;
+			List<ChangeLog.Record> records = ChangeLog.read(Paths.get(path + ".log"), 0);
+			if (!records.isEmpty()) {
+				sequence = records.get(records.size() - 1).sequence + 1;
+			}
+			long start = System.nanoTime();
+			write(esql.getPool(), path, sequence);
+			SnapshotFile snapshot = new SnapshotFile(path);
+			System.out.printf("Wrote %,d flights, %,d planes, %,d flight infos and %,d reservations " +
+				"(%,d bytes) in %.2fs%n", snapshot.rows(FLIGHT), snapshot.rows(PLANE), snapshot.rows(FLIGHT_INFO),
+				snapshot.rows(RESERVATION), Files.size(path), (System.nanoTime() - start) / 1e9);
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		System.exit(status);
+	}
+}/* End of SnapshotFile !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
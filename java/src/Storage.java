@@ -0,0 +1,133 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The tables behind the nine menu operations. Operations validates the
+ * arguments and times every call; a Storage only reads and writes.
+ *
+ * JdbcStorage runs them against PostgreSQL; MemoryStorage keeps every table
+ * in this process, seeded from the data/ CSV files. Both report integrity
+ * violations (duplicate keys, unknown customers or flights, out of range
+ * values) as SQLExceptions with the SQLState PostgreSQL would use.
+ *
+ * Implementations are thread-safe.
+ *
+ */
+
+public interface Storage{
+
+	/**
+	 * Callback for the operations that list rows. The column names are the
+	 * same array on every call; do not keep a reference to the values.
+	 */
+	interface Rows {
+		void row(String[] columns, Object[] values) throws SQLException;
+	}
+
+	/* /// OPTION 1 /// returns the rows added */
+	int addPlane(int id, String make, String model, int age, int seats) throws SQLException;
+
+	/* /// OPTION 2 /// returns the rows added */
+	int addPilot(int id, String fullname, String nationality) throws SQLException;
+
+	/* /// OPTION 3 /// returns the rows added */
+	int addFlight(int fnum, int cost, int numSold, int numStops, LocalDate departure, LocalDate arrival,
+		String arrivalAirport, String departureAirport) throws SQLException;
+
+	/* /// OPTION 4 /// returns the rows added */
+	int addTechnician(int id, String fullName) throws SQLException;
+
+	/* Lists the status of every reservation a customer holds on a flight */
+	long reservations(int customerId, int flightNum, Rows rows) throws SQLException;
+
+	/* /// OPTION 5 /// books a seat, or a waitlist spot on a full flight */
+	BookingService.Booking book(int customerId, int flightNum) throws SQLException;
+
+	/* /// OPTION 5 /// cancels a customer's open reservations on a flight */
+	int cancel(int customerId, int flightNum) throws SQLException;
+
+	/* /// OPTION 6 /// unsold seats, -1 if no such flight departs that day */
+	int availableSeats(int flightNum, LocalDate departure) throws SQLException;
+
+	/* /// OPTION 6 /// for many flights at once, -1 for those that do not depart that day */
+	CompletableFuture<Map<Integer, Integer>> availableSeatsAsync(Map<Integer, LocalDate> flights);
+
+	/* /// OPTION 7 /// plane_id, total_num_repairs, most repaired first */
+	long repairsPerPlane(Rows rows) throws SQLException;
+
+	/* /// OPTION 8 /// yyyy, total_num_repairs, fewest repairs first */
+	long repairsPerYear(Rows rows) throws SQLException;
+
+	/* /// OPTION 9 /// reservations of a flight with status W, C or R */
+	long passengerCount(int flightNum, char status) throws SQLException;
+
+	/* Releases whatever the storage holds beyond its DBproject */
+	void close();
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> DBproject.RowHandler handler(Rows rows)
+	 * Purpose  -> Adapts a Rows callback to a streamed query, reading the
+	 *             column labels once. Integer columns are read with
+	 *             getObject, so JSON output keeps them numbers; the rest
+	 *             with getString, so text prints as the server formats it
+	 *             (no 2015.0 or trailing .0 on timestamps). Use a new one
+	 *             for every query.
+	 * -----------------------------------------------------------------------
+	 * Receives -> Rows rows
+	 * Returns  -> DBproject.RowHandler
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	static DBproject.RowHandler handler(final Rows rows) {
+		return new DBproject.RowHandler() {
+			private String[] columns;
+			private Object[] values;
+			//columns whose getObject prints exactly like getString
+			private boolean[] integral;
+
+			public void row(ResultSet rs) throws SQLException {
+				if (columns == null) {
+					ResultSetMetaData rsmd = rs.getMetaData();
+					columns = new String[rsmd.getColumnCount()];
+					values = new Object[columns.length];
+					integral = new boolean[columns.length];
+					for (int i = 0; i < columns.length; ++i) {
+						columns[i] = rsmd.getColumnLabel(i + 1);
+						switch (rsmd.getColumnType(i + 1)) {
+							case Types.TINYINT:
+							case Types.SMALLINT:
+							case Types.INTEGER:
+							case Types.BIGINT:
+								integral[i] = true;
+								break;
+							default:
+								break;
+						}
+					}
+				}
+				for (int i = 0; i < values.length; ++i)
+					values[i] = integral[i] ? rs.getObject(i + 1) : rs.getString(i + 1);
+				rows.row(columns, values);
+			}
+		};
+	}
+}/* End of Storage !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
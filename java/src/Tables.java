@@ -0,0 +1,93 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * Catalog of the tables created by sql/create.sql, with the column order of
+ * their data/*.csv files. Tables are listed in foreign key dependency order;
+ * tables that share a level only depend on tables of lower levels.
+ *
+ */
+
+public final class Tables{
+
+	/**
+	 * One table of the schema and the CSV file that holds its rows.
+	 */
+	public static final class Table {
+		public final String name;
+		public final String file;
+		public final int level;
+		public final String[] columns;
+
+		Table(String name, String file, int level, String... columns) {
+			this.name = name;
+			this.file = file;
+			this.level = level;
+			this.columns = columns;
+		}
+
+		/* Returns the columns as "a, b, c" for COPY and INSERT statements */
+		public String columnList() {
+			return String.join(", ", this.columns);
+		}
+	}
+
+	public static final Table CUSTOMER = new Table("Customer", "customer.csv", 0,
+		"id", "fname", "lname", "gtype", "dob", "address", "phone", "zipcode");
+	public static final Table PILOT = new Table("Pilot", "pilots.csv", 0,
+		"id", "fullname", "nationality");
+	public static final Table PLANE = new Table("Plane", "planes.csv", 0,
+		"id", "make", "model", "age", "seats");
+	public static final Table TECHNICIAN = new Table("Technician", "technician.csv", 0,
+		"id", "full_name");
+	public static final Table FLIGHT = new Table("Flight", "flights.csv", 0,
+		"fnum", "cost", "num_sold", "num_stops", "actual_departure_date",
+		"actual_arrival_date", "arrival_airport", "departure_airport");
+	public static final Table RESERVATION = new Table("Reservation", "reservation.csv", 1,
+		"rnum", "cid", "fid", "status");
+	public static final Table FLIGHT_INFO = new Table("FlightInfo", "flightinfo.csv", 1,
+		"fiid", "flight_id", "pilot_id", "plane_id");
+	public static final Table REPAIRS = new Table("Repairs", "repairs.csv", 1,
+		"rid", "repair_date", "repair_code", "pilot_id", "plane_id", "technician_id");
+	public static final Table SCHEDULE = new Table("Schedule", "schedule.csv", 1,
+		"id", "flightNum", "departure_time", "arrival_time");
+
+	//every table, parents before children
+	public static final Table[] ALL = {
+		CUSTOMER, PILOT, PLANE, TECHNICIAN, FLIGHT,
+		RESERVATION, FLIGHT_INFO, REPAIRS, SCHEDULE
+	};
+
+	private Tables() {
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> Table byName(String name)
+	 * Purpose  -> Looks a table up by name, ignoring case like PostgreSQL
+	 *             does for unquoted identifiers.
+	 * -----------------------------------------------------------------------
+	 * Receives -> String name
+	 * Returns  -> Table || null
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public static Table byName(String name) {
+		for (Table table : ALL) {
+			if (table.name.equalsIgnoreCase(name)) {
+				return table;
+			}
+		}
+		return null;
+	}
+}/* End of Tables !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
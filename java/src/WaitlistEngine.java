@@ -0,0 +1,498 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Promotes waitlisted reservations (W) to reserved (R) when seats free up.
+ * Every flight has a queue of its W reservation numbers in memory, seeded
+ * from Reservation and appended to by BookingService; rnums come from one
+ * sequence, so the queue in rnum order is first come, first served.
+ *
+ * Cancellations and capacity changes only mark their flight. A single
+ * background thread picks the marked flights up after
+ * dbproject.waitlist.delay ms (20), so bursts of cancellations share a
+ * round, and promotes up to dbproject.waitlist.chunk flights (500) per
+ * transaction: the flights are locked in fnum order, the free seats of
+ * each go to the head of its queue with one UPDATE, and num_sold follows
+ * in one batch. Bookers never wait for this beyond the Flight row lock.
+ *
+ * Queue entries may be stale (cancelled while waiting); the UPDATE only
+ * promotes rows still in W, and stale entries are dropped when reached.
+ * A booking that commits between a cancellation and the next round can
+ * still take the freed seat first.
+ *
+ * Usage: java WaitlistEngine <dbname> <port> <user>
+ *        (reconciles every flight once, e.g. after a schedule disruption)
+ *
+ */
+
+public class WaitlistEngine{
+	static final String WAITLISTED =
+		"SELECT R.fid, R.rnum FROM Reservation R WHERE R.status = 'W'";
+
+	static final String PROMOTE =
+		"UPDATE Reservation SET status = 'R' " +
+		"WHERE rnum = ANY (?) AND status = 'W' RETURNING rnum, fid";
+
+	//flights that oversold, or that have free seats while passengers wait
+	static final String VIOLATIONS =
+		"SELECT F.fnum, F.num_sold, S.seats, " +
+			"(SELECT COUNT(*) FROM Reservation R WHERE R.fid = F.fnum AND R.status = 'W') AS waiting " +
+		"FROM Flight F, (SELECT DISTINCT ON (FI.flight_id) FI.flight_id, P.seats FROM FlightInfo FI, Plane P " +
+			"WHERE FI.plane_id = P.id ORDER BY FI.flight_id, FI.fiid) S " +
+		"WHERE S.flight_id = F.fnum AND (F.num_sold > S.seats OR (F.num_sold < S.seats AND EXISTS (" +
+			"SELECT 1 FROM Reservation R WHERE R.fid = F.fnum AND R.status = 'W')))";
+
+	private final ConnectionPool _pool;
+	private final long _delayMillis;
+	private final int _chunk;
+	//waiting rnums by flight; each set is guarded by itself, and is only
+	//created or removed inside _queues.compute so no add can miss the map
+	private final Map<Integer, TreeSet<Integer>> _queues = new ConcurrentHashMap<Integer, TreeSet<Integer>>();
+	//flights to look at in the next round
+	private final Set<Integer> _dirty = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean _scheduled = new AtomicBoolean();
+	private final ScheduledExecutorService _scheduler;
+	private final AtomicLong _promoted = new AtomicLong();
+	private final AtomicLong _rounds = new AtomicLong();
+	private volatile SeatInventory _inventory = null;
+	private volatile ResultCache _cache = null;
+	private volatile ReservationSnapshot _snapshot = null;
+	private volatile ChangeLog _changeLog = null;
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> WaitlistEngine (ConnectionPool pool)
+	 * Purpose  -> Creates an engine with empty queues and starts its
+	 *             background thread; use seed() to fill the queues.
+	 * -----------------------------------------------------------------------
+	 * Receives -> ConnectionPool pool
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public WaitlistEngine(ConnectionPool pool) {
+		this._pool = pool;
+		this._delayMillis = Math.max(0, Integer.getInteger("dbproject.waitlist.delay", 20));
+		this._chunk = Math.max(1, Integer.getInteger("dbproject.waitlist.chunk", 500));
+		this._scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "dbproject-waitlist");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public void setSeatInventory(SeatInventory inventory) {
+		this._inventory = inventory;
+	}
+
+	public void setResultCache(ResultCache cache) {
+		this._cache = cache;
+	}
+
+	public void setReservationSnapshot(ReservationSnapshot snapshot) {
+		this._snapshot = snapshot;
+	}
+
+	public void setChangeLog(ChangeLog log) {
+		this._changeLog = log;
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> int seed() throws SQLException
+	 * Purpose  -> Adds every W reservation to its flight's queue. Entries
+	 *             already queued are kept, so seeding while bookings run
+	 *             loses nothing.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> [int] flights with someone waiting
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public int seed() throws SQLException {
+		Set<Integer> flights = new HashSet<Integer>();
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		PreparedStatement stmt = null;
+		try {
+			conn.getConnection().setAutoCommit(false);
+			stmt = conn.prepare(WAITLISTED);
+			stmt.setFetchSize(10000);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				enqueue(rs.getInt(1), rs.getInt(2));
+				flights.add(rs.getInt(1));
+			}
+			rs.close();
+			conn.getConnection().commit();
+		}finally {
+			if (stmt != null) {
+				stmt.setFetchSize(0);
+			}
+			this._pool.release(conn);
+		}
+		return flights.size();
+	}
+
+	/* Queues a reservation that was just waitlisted */
+	public void enqueue(int flightNum, int rnum) {
+		this._queues.compute(flightNum, (fnum, queue) -> {
+			if (queue == null) {
+				queue = new TreeSet<Integer>();
+			}
+			synchronized (queue) {
+				queue.add(rnum);
+			}
+			return queue;
+		});
+	}
+
+	/* Drops reservations from a flight's queue, and the queue once it is empty */
+	void dequeue(int flightNum, Collection<Integer> rnums) {
+		this._queues.computeIfPresent(flightNum, (fnum, queue) -> {
+			synchronized (queue) {
+				queue.removeAll(rnums);
+				return queue.isEmpty() ? null : queue;
+			}
+		});
+	}
+
+	/* The reservations waiting on a flight, in rnum order */
+	List<Integer> queued(int flightNum) {
+		TreeSet<Integer> queue = this._queues.get(flightNum);
+		if (queue == null) {
+			return new ArrayList<Integer>();
+		}
+		synchronized (queue) {
+			return new ArrayList<Integer>(queue);
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void reconcile(int flightNum)
+	 * Purpose  -> Marks a flight whose seats were freed (a cancellation, a
+	 *             bigger plane) for the next promotion round.
+	 * -----------------------------------------------------------------------
+	 * Receives -> int flightNum
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public void reconcile(int flightNum) {
+		if (!this._queues.containsKey(flightNum)) {
+			return;
+		}
+		this._dirty.add(flightNum);
+		if (this._scheduled.compareAndSet(false, true)) {
+			try {
+				this._scheduler.schedule(this::drain, this._delayMillis, TimeUnit.MILLISECONDS);
+			}catch (java.util.concurrent.RejectedExecutionException e) {
+				//closed; the next seed() or reconcileAll() picks the flight up
+				this._scheduled.set(false);
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> CompletableFuture<Long> reconcileAll()
+	 * Purpose  -> Bulk mode: re-reads every W reservation and promotes on
+	 *             every flight that has free seats, on the background
+	 *             thread.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> CompletableFuture<Long> reservations promoted
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public CompletableFuture<Long> reconcileAll() {
+		final CompletableFuture<Long> done = new CompletableFuture<Long>();
+		this._scheduler.execute(() -> {
+			try {
+				long before = this._promoted.get();
+				seed();
+				this._dirty.addAll(this._queues.keySet());
+				drain();
+				done.complete(this._promoted.get() - before);
+			}catch (Exception e) {
+				done.completeExceptionally(e);
+			}
+		});
+		return done;
+	}
+
+	/* Waits until every round scheduled so far has run */
+	public void awaitIdle() throws InterruptedException {
+		while (this._scheduled.get() || !this._dirty.isEmpty()) {
+			Thread.sleep(Math.max(1, this._delayMillis));
+		}
+		CompletableFuture<Void> marker = new CompletableFuture<Void>();
+		this._scheduler.execute(() -> marker.complete(null));
+		marker.join();
+	}
+
+	public long promoted() {
+		return this._promoted.get();
+	}
+
+	public long rounds() {
+		return this._rounds.get();
+	}
+
+	/* Stops the background thread; a round already running finishes */
+	public void close() {
+		this._scheduler.shutdown();
+		try {
+			this._scheduler.awaitTermination(10, TimeUnit.SECONDS);
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> List<String> check() throws SQLException
+	 * Purpose  -> Lists flights that sold more seats than their plane has,
+	 *             or have free seats while reservations wait.
+	 * -----------------------------------------------------------------------
+	 * Receives -> NONE
+	 * Returns  -> List<String> violations, empty when consistent
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	public List<String> check() throws SQLException {
+		List<String> violations = new ArrayList<String>();
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			ResultSet rs = conn.prepare(VIOLATIONS).executeQuery();
+			while (rs.next()) {
+				violations.add("flight " + rs.getInt(1) + ": " + rs.getInt(2) + " sold of " + rs.getInt(3) +
+					" seats, " + rs.getLong(4) + " waiting");
+			}
+			rs.close();
+		}finally {
+			this._pool.release(conn);
+		}
+		return violations;
+	}
+
+	/* Runs rounds until no flight is marked; only ever on the background thread */
+	private void drain() {
+		this._scheduled.set(false);
+		while (!this._dirty.isEmpty()) {
+			List<Integer> chunk = new ArrayList<Integer>(this._chunk);
+			Iterator<Integer> marked = this._dirty.iterator();
+			while (marked.hasNext() && chunk.size() < this._chunk) {
+				chunk.add(marked.next());
+				marked.remove();
+			}
+			try {
+				promote(chunk);
+			}catch (SQLException e) {
+				//try these flights again with the next round
+				System.err.println("Waitlist promotion failed: " + e.getMessage());
+				this._dirty.addAll(chunk);
+				if (this._scheduled.compareAndSet(false, true)) {
+					this._scheduler.schedule(this::drain, Math.max(1000, this._delayMillis), TimeUnit.MILLISECONDS);
+				}
+				return;
+			}
+		}
+	}
+
+	/*
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 * Author   -> Dan Murphy
+	 * Method   -> void promote(List<Integer> flights) throws SQLException
+	 * Purpose  -> One round in one transaction: locks the flights, offers
+	 *             each one's free seats to the head of its queue, skipping
+	 *             stale entries, and raises num_sold by what was promoted.
+	 * -----------------------------------------------------------------------
+	 * Receives -> List<Integer> flights
+	 * Returns  -> NONE
+	 * =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	 */
+	private void promote(List<Integer> flights) throws SQLException {
+		this._rounds.incrementAndGet();
+		Map<Integer, Integer> promoted = new HashMap<Integer, Integer>();
+		List<Integer> done = new ArrayList<Integer>();
+		//flight of every promoted reservation
+		Map<Integer, Integer> doneFids = new HashMap<Integer, Integer>();
+		List<Integer> stale = new ArrayList<Integer>();
+
+		ConnectionPool.PooledConnection conn = this._pool.acquire();
+		try {
+			Connection c = conn.getConnection();
+			c.setAutoCommit(false);
+
+			//same lock order as BookingService.bookBatch
+			Array fnums = c.createArrayOf("int4", flights.toArray(new Integer[0]));
+			PreparedStatement lock = conn.prepare(BookingService.LOCK_FLIGHTS);
+			lock.setArray(1, fnums);
+			ResultSet rs = lock.executeQuery();
+			Map<Integer, Integer> free = new HashMap<Integer, Integer>();
+			while (rs.next()) {
+				int seats = rs.getInt(3);
+				if (!rs.wasNull() && seats > rs.getInt(2)) {
+					free.put(rs.getInt(1), seats - rs.getInt(2));
+				}
+			}
+			rs.close();
+			fnums.free();
+
+			//entries tried so far this round, by flight
+			Map<Integer, Integer> tried = new HashMap<Integer, Integer>();
+			while (true) {
+				List<Integer> candidates = new ArrayList<Integer>();
+				for (Map.Entry<Integer, Integer> flight : free.entrySet()) {
+					int wanted = flight.getValue() - count(promoted, flight.getKey());
+					TreeSet<Integer> queue = this._queues.get(flight.getKey());
+					if (wanted <= 0 || queue == null) {
+						continue;
+					}
+					synchronized (queue) {
+						Integer after = tried.get(flight.getKey());
+						for (Integer rnum : after == null ? queue : queue.tailSet(after, false)) {
+							if (wanted-- == 0) break;
+							candidates.add(rnum);
+							tried.put(flight.getKey(), rnum);
+						}
+					}
+				}
+				if (candidates.isEmpty()) {
+					break;
+				}
+
+				Array rnums = c.createArrayOf("int4", candidates.toArray(new Integer[0]));
+				PreparedStatement promote = conn.prepare(PROMOTE);
+				promote.setArray(1, rnums);
+				rs = promote.executeQuery();
+				Set<Integer> won = new HashSet<Integer>();
+				while (rs.next()) {
+					won.add(rs.getInt(1));
+					doneFids.put(rs.getInt(1), rs.getInt(2));
+					promoted.put(rs.getInt(2), count(promoted, rs.getInt(2)) + 1);
+				}
+				rs.close();
+				rnums.free();
+				for (Integer rnum : candidates)
+					(won.contains(rnum) ? done : stale).add(rnum);
+			}
+
+			if (!promoted.isEmpty()) {
+				PreparedStatement sell = conn.prepare(BookingService.SELL_SEATS);
+				for (Map.Entry<Integer, Integer> flight : promoted.entrySet()) {
+					sell.setInt(1, flight.getValue());
+					sell.setInt(2, flight.getKey());
+					sell.addBatch();
+				}
+				sell.executeBatch();
+			}
+			c.commit();
+		}finally {
+			this._pool.release(conn);
+		}
+
+		//promoted and stale entries both leave their queue
+		stale.addAll(done);
+		for (Integer fnum : flights)
+			dequeue(fnum, stale);
+		SeatInventory inventory = this._inventory;
+		ResultCache cache = this._cache;
+		for (Map.Entry<Integer, Integer> flight : promoted.entrySet()) {
+			if (inventory != null) {
+				inventory.adjust(flight.getKey(), flight.getValue());
+			}
+			if (cache != null) {
+				cache.invalidate(flight.getKey());
+			}
+		}
+		ReservationSnapshot snapshot = this._snapshot;
+		if (snapshot != null) {
+			for (Map.Entry<Integer, Integer> reservation : doneFids.entrySet())
+				snapshot.promoted(reservation.getKey(), reservation.getValue());
+		}
+		ChangeLog log = this._changeLog;
+		if (log != null) {
+			for (Map.Entry<Integer, Integer> reservation : doneFids.entrySet())
+				log.promoted(reservation.getKey(), reservation.getValue());
+		}
+		this._promoted.addAndGet(done.size());
+	}
+
+	private static int count(Map<Integer, Integer> counts, int key) {
+		Integer count = counts.get(key);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * The bulk reconciliation command
+	 *
+	 * @param args <dbname> <port> <user>
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + WaitlistEngine.class.getName () +
+		            " <dbname> <port> <user>");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		int status = 0;
+		try {
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			WaitlistEngine waitlist = new WaitlistEngine(esql.getPool());
+			long start = System.nanoTime();
+			long promoted = DBproject.join(waitlist.reconcileAll());
+			System.out.printf("Promoted %,d reservations in %,d rounds, %.2fs%n", promoted, waitlist.rounds(),
+				(System.nanoTime() - start) / 1e9);
+			List<String> violations = waitlist.check();
+			for (String violation : violations)
+				System.out.println(violation);
+			waitlist.close();
+			status = violations.isEmpty() ? 0 : 1;
+		}catch (Exception e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		}finally {
+			if (esql != null) {
+				esql.cleanup();
+			}
+		}
+		System.exit(status);
+	}
+}/* End of WaitlistEngine !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,11 @@
+#!/bin/sh
+
+# build with Maven (see ../pom.xml), which also fetches the postgresql driver
+mvn -B -q -f ../pom.xml package
+
+# Export classpath with the compiled classes and the postgressql driver
+export CLASSPATH=$CLASSPATH:$PWD/../target/classes:$PWD/../lib/postgresql-42.1.4.jar
+
+#run the benchmarks, extra arguments are passed on to DBbench
+#(e.g. -t 8 -m 30 BookFlight BookFlightHot)
+java DBbench $USER"_DB" $PGPORT $USER "$@"
@@ -1,10 +1,10 @@
 #!/bin/sh
 
 # Export classpath with the postgressql driver
-export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
+export CLASSPATH=$CLASSPATH:$PWD:$PWD/../lib/postgresql-42.1.4.jar
 
 # compile the java program
-javac  -Xlint:deprecation DBproject.java
+javac  -Xlint:deprecation *.java
 
 #run the java program
 #Use your database name, port number and login
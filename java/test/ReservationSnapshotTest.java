@@ -0,0 +1,70 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ReservationSnapshot fed only through its change feed, with flight ids
+ * far apart: the columns are indexed by the distinct fids, not by fid.
+ */
+public class ReservationSnapshotTest{
+	private static final int FAR = 2000000000;
+
+	@Test
+	public void sparseAndNegativeFlightIds() {
+		System.setProperty("dbproject.snapshot.merge", "4");
+		ReservationSnapshot snapshot;
+		try {
+			snapshot = new ReservationSnapshot(null);
+		}finally {
+			System.clearProperty("dbproject.snapshot.merge");
+		}
+		//the fourth row merges the delta into the sorted columns
+		snapshot.booked(10, 1, FAR, 'R');
+		snapshot.booked(11, 1, -5, 'W');
+		snapshot.booked(12, 2, 7, 'R');
+		snapshot.booked(-3, 2, FAR, 'W');
+		snapshot.booked(13, 1, FAR, 'R');
+		snapshot.cancelled(10, FAR);
+		snapshot.promoted(-3, FAR);
+		snapshot.promoted(11, -5);
+
+		assertEquals(5, snapshot.size());
+		assertEquals(2, snapshot.count(FAR, 'R'));
+		assertEquals(1, snapshot.count(FAR, 'C'));
+		assertEquals(1, snapshot.count(-5, 'R'));
+		assertEquals(0, snapshot.count(8, 'R'));
+		assertEquals(4, snapshot.count('R'));
+
+		Map<Integer, Integer> reserved = snapshot.countsByFlight('R');
+		assertEquals(3, reserved.size());
+		assertEquals(2, (int) reserved.get(FAR));
+		assertEquals(1, (int) reserved.get(-5));
+		assertEquals(1, (int) reserved.get(7));
+
+		List<ReservationSnapshot.Entry> first = snapshot.reservations(1);
+		assertEquals(3, first.size());
+		assertEquals(-5, first.get(0).fid);
+		assertEquals(FAR, first.get(1).fid);
+		assertEquals('C', first.get(1).status);
+		List<ReservationSnapshot.Entry> second = snapshot.reservations(2);
+		assertEquals(7, second.get(0).fid);
+		assertEquals(-3, second.get(1).rnum);
+		assertEquals(FAR, second.get(1).fid);
+	}
+}/* End of ReservationSnapshotTest !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
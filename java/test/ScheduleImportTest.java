@@ -0,0 +1,85 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The conflict sweep of ScheduleImport, without a database: existing
+ * flights are added as whole days, timetable lines as parsed rows.
+ */
+public class ScheduleImportTest{
+	private final ScheduleImport.Intervals _busy = new ScheduleImport.Intervals();
+	private final ScheduleImport.Row[] _byLine = new ScheduleImport.Row[8];
+
+	/* An existing flight, busy from the start of day to the end of it */
+	private void existing(int fnum, int pilot, int plane, String day) {
+		long start = LocalDate.parse(day).atStartOfDay().toEpochSecond(ZoneOffset.UTC) / 60;
+		this._busy.add(fnum, pilot, plane, start, start + 24 * 60, 0);
+	}
+
+	private ScheduleImport.Row line(int line, int fnum, String departure, String arrival, int pilot, int plane) {
+		ScheduleImport.Row row = new ScheduleImport.Row(line, new String[] { String.valueOf(fnum), "100", "0", "0",
+			departure, arrival, "LAX", "SFO", String.valueOf(pilot), String.valueOf(plane) });
+		this._byLine[line] = row;
+		this._busy.add(fnum, pilot, plane, row.departure.toEpochSecond(ZoneOffset.UTC) / 60,
+			row.arrival.toEpochSecond(ZoneOffset.UTC) / 60, line);
+		return row;
+	}
+
+	@Test
+	public void rejectedLineBlocksNothing() {
+		//E holds pilot 1 all day; X wants pilot 1 and plane 5, Y plane 5 an hour later
+		existing(900, 1, 9, "2024-06-01");
+		ScheduleImport.Row x = line(1, 901, "2024-06-01 10:00", "2024-06-01 12:00", 1, 5);
+		ScheduleImport.Row y = line(2, 902, "2024-06-01 11:00", "2024-06-01 13:00", 2, 5);
+
+		ScheduleImport.sweep(this._busy, this._byLine);
+
+		assertEquals("pilot 1 is flying flight 900 until 2024-06-02T00:00", x.conflict);
+		assertNull(y.conflict);
+	}
+
+	@Test
+	public void laterLineLosesEitherResource() {
+		ScheduleImport.Row first = line(1, 901, "2024-06-01 10:00", "2024-06-01 12:00", 1, 5);
+		ScheduleImport.Row plane = line(2, 902, "2024-06-01 11:00", "2024-06-01 13:00", 2, 5);
+		ScheduleImport.Row pilot = line(3, 903, "2024-06-01 11:30", "2024-06-01 14:00", 1, 6);
+		ScheduleImport.Row after = line(4, 904, "2024-06-01 12:00", "2024-06-01 15:00", 1, 5);
+
+		ScheduleImport.sweep(this._busy, this._byLine);
+
+		assertNull(first.conflict);
+		assertEquals("plane 5 is flying flight 901 until 2024-06-01T12:00", plane.conflict);
+		assertEquals("pilot 1 is flying flight 901 until 2024-06-01T12:00", pilot.conflict);
+		assertNull(after.conflict);
+	}
+
+	@Test
+	public void existingFlightStartingLaterStillConflicts() {
+		//the overnight line runs into a day the plane is already flying
+		existing(900, 7, 5, "2024-06-02");
+		ScheduleImport.Row overnight = line(1, 901, "2024-06-01 22:00", "2024-06-02 02:00", 1, 5);
+		ScheduleImport.Row before = line(2, 902, "2024-06-01 08:00", "2024-06-01 20:00", 2, 5);
+
+		ScheduleImport.sweep(this._busy, this._byLine);
+
+		assertEquals("plane 5 is flying flight 900 until 2024-06-03T00:00", overnight.conflict);
+		assertNull(before.conflict);
+	}
+}/* End of ScheduleImportTest !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
@@ -0,0 +1,87 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The waitlist queues under concurrent enqueue and promotion cleanup,
+ * without a database: every queued reservation must either be dequeued
+ * or still be waiting, never dropped with a queue that left the map.
+ */
+public class WaitlistEngineTest{
+	private static final int FLIGHTS = 4;
+	private static final int PRODUCERS = 4;
+	private static final int PER_PRODUCER = 50000;
+
+	@Test
+	public void enqueueRacingDequeueLosesNothing() throws Exception {
+		final WaitlistEngine waitlist = new WaitlistEngine(null);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean producing = new AtomicBoolean(true);
+		final Set<Integer> dequeued = new HashSet<Integer>();
+
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; ++p) {
+			final int base = p * PER_PRODUCER;
+			producers[p] = new Thread(() -> {
+				try {
+					start.await();
+				}catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < PER_PRODUCER; ++i)
+					waitlist.enqueue((base + i) % FLIGHTS, base + i);
+			});
+			producers[p].start();
+		}
+		//empties the queues as promote() does once they are all promoted
+		Thread promoter = new Thread(() -> {
+			try {
+				start.await();
+			}catch (InterruptedException e) {
+				return;
+			}
+			while (producing.get()) {
+				for (int fnum = 0; fnum < FLIGHTS; ++fnum) {
+					List<Integer> queued = waitlist.queued(fnum);
+					waitlist.dequeue(fnum, queued);
+					dequeued.addAll(queued);
+				}
+			}
+		});
+		promoter.start();
+
+		start.countDown();
+		for (Thread producer : producers)
+			producer.join();
+		producing.set(false);
+		promoter.join();
+		waitlist.close();
+
+		Set<Integer> seen = new HashSet<Integer>(dequeued);
+		for (int fnum = 0; fnum < FLIGHTS; ++fnum)
+			for (Integer rnum : waitlist.queued(fnum)) {
+				assertEquals(fnum, rnum % FLIGHTS);
+				seen.add(rnum);
+			}
+		assertEquals(PRODUCERS * PER_PRODUCER, seen.size());
+	}
+}/* End of WaitlistEngineTest !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
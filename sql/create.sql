@@ -8,6 +8,7 @@ DROP TABLE IF EXISTS Reservation CASCADE;--OK
 DROP TABLE IF EXISTS FlightInfo CASCADE;--OK
 DROP TABLE IF EXISTS Repairs CASCADE;--OK
 DROP TABLE IF EXISTS Schedule CASCADE;--OK
+DROP SEQUENCE IF EXISTS reservation_rnum_seq;--OK
 
 -------------
 ---DOMAINS---
@@ -90,6 +91,9 @@ CREATE TABLE Reservation
 	FOREIGN KEY (fid) REFERENCES Flight(fnum)
 );
 
+--Reservation numbers handed out by the booking engine
+CREATE SEQUENCE reservation_rnum_seq;
+
 CREATE TABLE FlightInfo
 (
 	fiid INTEGER NOT NULL,
@@ -190,6 +194,8 @@ COPY Reservation (
 FROM 'reservation.csv'
 WITH DELIMITER ',';
 
+SELECT setval('reservation_rnum_seq', (SELECT MAX(rnum) FROM Reservation));
+
 COPY FlightInfo (
 	fiid,
 	flight_id,
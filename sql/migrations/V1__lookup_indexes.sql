@@ -0,0 +1,21 @@
+----------------------------
+-- LOOKUP / ACCESS PATHS --
+----------------------------
+
+--FindPassengersCountWithStatus: WHERE R.status = ? AND R.fid = ?
+--covers the count, so it is answered by an index-only scan
+CREATE INDEX reservation_fid_status_idx ON Reservation (fid, status);
+
+--BookFlight: WHERE R.cid = ? AND R.fid = ?, status carried along
+CREATE INDEX reservation_cid_fid_idx ON Reservation (cid, fid, status);
+
+--seat queries: FI.flight_id = ? joined to Plane through plane_id
+CREATE INDEX flightinfo_flight_id_idx ON FlightInfo (flight_id, plane_id);
+
+--repair reports: per plane grouping and per year filtering
+CREATE INDEX repairs_plane_id_idx ON Repairs (plane_id);
+CREATE INDEX repairs_year_idx ON Repairs ((EXTRACT(year FROM repair_date)));
+
+ANALYZE Reservation;
+ANALYZE FlightInfo;
+ANALYZE Repairs;
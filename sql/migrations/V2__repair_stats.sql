@@ -0,0 +1,99 @@
+---------------------------
+-- REPAIR STATISTICS     --
+---------------------------
+
+--per plane and per year repair counts for options 7 and 8, kept current by
+--statement level triggers on Repairs so a report reads one row per plane or
+--year instead of aggregating every repair; a count that drops to zero
+--removes its row, so the tables match GROUP BY over Repairs exactly
+CREATE TABLE repair_stats_plane
+(
+	plane_id INTEGER NOT NULL,
+	total_num_repairs BIGINT NOT NULL,
+	PRIMARY KEY (plane_id)
+);
+
+CREATE TABLE repair_stats_year
+(
+	yyyy INTEGER NOT NULL,
+	total_num_repairs BIGINT NOT NULL,
+	PRIMARY KEY (yyyy)
+);
+
+--transition tables hand the trigger every changed row of a statement at
+--once, so a COPY or a batched INSERT costs one grouped upsert per table
+--instead of one per row
+CREATE FUNCTION repair_stats_maintain() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP = 'TRUNCATE' THEN
+		TRUNCATE repair_stats_plane, repair_stats_year;
+	ELSIF TG_OP = 'INSERT' THEN
+		WITH changes AS (
+			SELECT plane_id, repair_date, 1 AS delta FROM new_rows
+		), planes AS (
+			INSERT INTO repair_stats_plane AS S (plane_id, total_num_repairs)
+			SELECT plane_id, SUM(delta) FROM changes GROUP BY plane_id
+			ON CONFLICT (plane_id) DO UPDATE SET total_num_repairs = S.total_num_repairs + EXCLUDED.total_num_repairs
+		)
+		INSERT INTO repair_stats_year AS S (yyyy, total_num_repairs)
+		SELECT EXTRACT(year FROM repair_date), SUM(delta) FROM changes GROUP BY 1
+		ON CONFLICT (yyyy) DO UPDATE SET total_num_repairs = S.total_num_repairs + EXCLUDED.total_num_repairs;
+	ELSIF TG_OP = 'DELETE' THEN
+		WITH changes AS (
+			SELECT plane_id, repair_date, -1 AS delta FROM old_rows
+		), planes AS (
+			INSERT INTO repair_stats_plane AS S (plane_id, total_num_repairs)
+			SELECT plane_id, SUM(delta) FROM changes GROUP BY plane_id
+			ON CONFLICT (plane_id) DO UPDATE SET total_num_repairs = S.total_num_repairs + EXCLUDED.total_num_repairs
+		)
+		INSERT INTO repair_stats_year AS S (yyyy, total_num_repairs)
+		SELECT EXTRACT(year FROM repair_date), SUM(delta) FROM changes GROUP BY 1
+		ON CONFLICT (yyyy) DO UPDATE SET total_num_repairs = S.total_num_repairs + EXCLUDED.total_num_repairs;
+	ELSE
+		WITH changes AS (
+			SELECT plane_id, repair_date, -1 AS delta FROM old_rows
+			UNION ALL
+			SELECT plane_id, repair_date, 1 AS delta FROM new_rows
+		), planes AS (
+			INSERT INTO repair_stats_plane AS S (plane_id, total_num_repairs)
+			SELECT plane_id, SUM(delta) FROM changes GROUP BY plane_id
+			ON CONFLICT (plane_id) DO UPDATE SET total_num_repairs = S.total_num_repairs + EXCLUDED.total_num_repairs
+		)
+		INSERT INTO repair_stats_year AS S (yyyy, total_num_repairs)
+		SELECT EXTRACT(year FROM repair_date), SUM(delta) FROM changes GROUP BY 1
+		ON CONFLICT (yyyy) DO UPDATE SET total_num_repairs = S.total_num_repairs + EXCLUDED.total_num_repairs;
+	END IF;
+
+	DELETE FROM repair_stats_plane WHERE total_num_repairs <= 0;
+	DELETE FROM repair_stats_year WHERE total_num_repairs <= 0;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+--a trigger with transition tables may only fire on one event
+CREATE TRIGGER repair_stats_insert AFTER INSERT ON Repairs
+	REFERENCING NEW TABLE AS new_rows
+	FOR EACH STATEMENT EXECUTE PROCEDURE repair_stats_maintain();
+CREATE TRIGGER repair_stats_delete AFTER DELETE ON Repairs
+	REFERENCING OLD TABLE AS old_rows
+	FOR EACH STATEMENT EXECUTE PROCEDURE repair_stats_maintain();
+CREATE TRIGGER repair_stats_update AFTER UPDATE ON Repairs
+	REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+	FOR EACH STATEMENT EXECUTE PROCEDURE repair_stats_maintain();
+CREATE TRIGGER repair_stats_truncate AFTER TRUNCATE ON Repairs
+	FOR EACH STATEMENT EXECUTE PROCEDURE repair_stats_maintain();
+
+--recomputes both tables from Repairs; SHARE mode keeps writers out while
+--still letting the reports run
+CREATE FUNCTION repair_stats_rebuild() RETURNS void AS $$
+BEGIN
+	LOCK TABLE Repairs IN SHARE MODE;
+	TRUNCATE repair_stats_plane, repair_stats_year;
+	INSERT INTO repair_stats_plane (plane_id, total_num_repairs)
+	SELECT plane_id, COUNT(*) FROM Repairs GROUP BY plane_id;
+	INSERT INTO repair_stats_year (yyyy, total_num_repairs)
+	SELECT EXTRACT(year FROM repair_date), COUNT(*) FROM Repairs GROUP BY 1;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT repair_stats_rebuild();